@@ -0,0 +1,191 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of JDBC connections used by PostgreSQLDatabase when
+ * pool.enabled is set to true.
+ *
+ * The number of connections is bounded by a fair semaphore, so
+ * threads waiting for a connection are served in order and give up
+ * after a timeout. Idle connections are validated before they are
+ * handed out, and connections returned in the middle of a transaction
+ * are rolled back.
+ */
+public class PostgreSQLConnectionPool {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PostgreSQLConnectionPool.class);
+
+    public final static int DEFAULT_SIZE = 10;
+    public final static int DEFAULT_TIMEOUT = 30; // seconds
+    public final static int DEFAULT_VALIDATION_TIMEOUT = 5; // seconds
+
+    private String url;
+    private Properties info;
+
+    private int size;
+    private long timeout;
+    private int validationTimeout;
+
+    private ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+    private Semaphore permits;
+    private AtomicInteger total = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * @param size maximum number of connections
+     * @param timeout time to wait for a connection in seconds
+     * @param validationTimeout time to wait for connection validation in seconds
+     */
+    public PostgreSQLConnectionPool(
+            String url,
+            Properties info,
+            int size,
+            int timeout,
+            int validationTimeout) {
+
+        this.url = url;
+        this.info = info;
+        this.size = size;
+        this.timeout = timeout * 1000L;
+        this.validationTimeout = validationTimeout;
+
+        permits = new Semaphore(size, true);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getTotal() {
+        return total.get();
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    public int getInUse() {
+        return size - permits.availablePermits();
+    }
+
+    /**
+     * Returns a valid connection from the pool or creates a new one.
+     * The connection must be returned with returnConnection().
+     */
+    public Connection getConnection() throws Exception {
+
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        if (!permits.tryAcquire()) {
+
+            logger.warn("PostgreSQLConnectionPool: Out of database connections");
+
+            try {
+                if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Unable to get database connection within " + timeout / 1000 + " seconds");
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for database connection: " + e.getMessage(), e);
+            }
+        }
+
+        try {
+            Connection connection;
+            while ((connection = idle.pollFirst()) != null) {
+
+                if (connection.isValid(validationTimeout)) {
+                    return connection;
+                }
+
+                logger.info("PostgreSQLConnectionPool: Discarding invalid connection");
+                close(connection);
+            }
+
+            logger.info("PostgreSQLConnectionPool: Connecting to " + url);
+            connection = DriverManager.getConnection(url, info);
+            total.incrementAndGet();
+
+            return connection;
+
+        } catch (Exception e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. An unfinished transaction
+     * will be rolled back.
+     */
+    public void returnConnection(Connection connection) {
+
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            if (closed || connection.isClosed()) {
+                close(connection);
+                return;
+            }
+
+            if (!connection.getAutoCommit()) {
+                logger.warn("PostgreSQLConnectionPool: Rolling back unfinished transaction");
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+            idle.offerFirst(connection);
+
+        } catch (SQLException e) {
+            logger.warn("PostgreSQLConnectionPool: Unable to return connection: " + e.getMessage(), e);
+            close(connection);
+
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void close(Connection connection) {
+
+        total.decrementAndGet();
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("PostgreSQLConnectionPool: Unable to close connection: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closes the idle connections. Connections in use will be closed
+     * when they are returned.
+     */
+    public void close() {
+
+        closed = true;
+
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            close(connection);
+        }
+    }
+}
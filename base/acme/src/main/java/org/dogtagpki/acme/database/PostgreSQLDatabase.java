@@ -45,8 +45,13 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     protected String url;
 
     protected Properties statements;
+
+    // shared connection used when the pool is disabled
     protected Connection connection;
 
+    protected PostgreSQLConnectionPool pool;
+    volatile boolean initialized;
+
     Boolean enabled;
     PostgreSQLConfigMonitor monitor;
 
@@ -84,6 +89,41 @@ public class PostgreSQLDatabase extends ACMEDatabase {
             logger.info("- " + name + ": " + value);
         }
 
+        if (statements.getProperty("consumeNonce") == null) {
+            // custom statements files from older versions
+            logger.warn("Missing consumeNonce statement in " + statementsFilename
+                    + ", nonces will be consumed with getNonce and removeNonce statements");
+        }
+
+        String poolEnabled = config.getParameter("pool.enabled");
+        logger.info("- pool enabled: " + poolEnabled);
+
+        if ("true".equals(poolEnabled)) {
+
+            String poolSize = config.getParameter("pool.size");
+            int size = poolSize == null ? PostgreSQLConnectionPool.DEFAULT_SIZE : Integer.parseInt(poolSize);
+            logger.info("- pool size: " + size);
+
+            String poolTimeout = config.getParameter("pool.timeout");
+            int timeout = poolTimeout == null ? PostgreSQLConnectionPool.DEFAULT_TIMEOUT : Integer.parseInt(poolTimeout);
+            logger.info("- pool timeout (seconds): " + timeout);
+
+            String validationTimeout = config.getParameter("pool.validationTimeout");
+            int validation = validationTimeout == null
+                    ? PostgreSQLConnectionPool.DEFAULT_VALIDATION_TIMEOUT
+                    : Integer.parseInt(validationTimeout);
+            logger.info("- pool validation timeout (seconds): " + validation);
+
+            // Let the JDBC driver use server-side prepared statements from
+            // the first execution. The driver caches them per connection,
+            // so the statements are only parsed once per pooled connection.
+            if (!info.containsKey("prepareThreshold")) {
+                info.put("prepareThreshold", "1");
+            }
+
+            pool = new PostgreSQLConnectionPool(url, info, size, timeout, validation);
+        }
+
         String monitorEnabled = config.getParameter("monitor.enabled");
         logger.info("- monitor enabled: " + monitorEnabled);
 
@@ -107,22 +147,39 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     }
 
     /**
-     * This method will create the initial connection, validate
-     * the current connection, or reestablish the connection if
-     * it's closed.
+     * This method will return a connection for the current operation.
+     * The connection must be released with release().
+     *
+     * If the pool is enabled, this method will borrow a validated
+     * connection from the pool. Otherwise, it will create the initial
+     * shared connection, validate the current connection, or
+     * reestablish the connection if it's closed.
      *
      * This method should only be called by methods implementing
      * ACMEDatabase.
-     *
-     * TODO: Use connection pool.
      */
-    public void connect() throws Exception {
+    public Connection connect() throws Exception {
+
+        if (pool != null) {
+            Connection pooledConnection = pool.getConnection();
+
+            if (!initialized) {
+                try {
+                    initDatabase(pooledConnection);
+                } catch (Exception e) {
+                    pool.returnConnection(pooledConnection);
+                    throw e;
+                }
+            }
+
+            return pooledConnection;
+        }
 
         if (connection == null) { // create the initial connection
             logger.info("Connecting to " + url);
             connection = DriverManager.getConnection(url, info);
-            setup();
-            return;
+            setup(connection);
+            return connection;
         }
 
         // validate the current connection
@@ -134,7 +191,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
             if (connection.isClosed()) { // reestablish the connection
                 logger.info("Reconnecting to " + url);
                 connection = DriverManager.getConnection(url, info);
-                return;
+                return connection;
             }
 
             logger.error("Unable to access database: " + e.getMessage());
@@ -144,12 +201,63 @@ public class PostgreSQLDatabase extends ACMEDatabase {
 
             throw e;
         }
+
+        return connection;
+    }
+
+    /**
+     * This method will set up the database once using the first
+     * pooled connection.
+     */
+    synchronized void initDatabase(Connection connection) throws Exception {
+
+        if (initialized) return;
+
+        setup(connection);
+        initialized = true;
+    }
+
+    /**
+     * This method will return the connection to the pool. The shared
+     * connection will remain open.
+     */
+    public void release(Connection connection) {
+
+        if (pool == null) return;
+
+        pool.returnConnection(connection);
+    }
+
+    /**
+     * This method will start a transaction for operations consisting
+     * of multiple statements. Transactions are only used with pooled
+     * connections since the shared connection is used by multiple
+     * threads concurrently.
+     */
+    void begin(Connection connection) throws Exception {
+
+        if (pool == null) return;
+
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * This method will commit the transaction started by begin().
+     * If the operation fails before the commit, the transaction will
+     * be rolled back when the connection is released.
+     */
+    void commit(Connection connection) throws Exception {
+
+        if (pool == null) return;
+
+        connection.commit();
+        connection.setAutoCommit(true);
     }
 
     /**
      * This method will create the tables if they do not exist.
      */
-    public void setup() throws Exception {
+    public void setup(Connection connection) throws Exception {
 
         logger.info("Setting up database");
 
@@ -181,7 +289,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    String getConfig(String id) throws Exception {
+    String getConfig(Connection connection, String id) throws Exception {
 
         logger.info("Getting config " + id);
 
@@ -202,7 +310,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    void addConfig(String id, String value) throws Exception {
+    void addConfig(Connection connection, String id, String value) throws Exception {
 
         logger.info("Setting config " + id + ": " + value);
 
@@ -216,7 +324,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    int updateConfig(String id, String value) throws Exception {
+    int updateConfig(Connection connection, String id, String value) throws Exception {
 
         logger.info("Updating config " + id + ": " + value);
 
@@ -230,7 +338,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    void removeConfig(String id) throws Exception {
+    void removeConfig(Connection connection, String id) throws Exception {
 
         logger.info("Removing config " + id);
 
@@ -243,17 +351,17 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    void setConfig(String id, String value) throws Exception {
+    void setConfig(Connection connection, String id, String value) throws Exception {
 
         if (value == null) {
-            removeConfig(id);
+            removeConfig(connection, id);
             return;
         }
 
-        int updatedRows = updateConfig(id, value);
+        int updatedRows = updateConfig(connection, id, value);
         if (updatedRows > 0) return;
 
-        addConfig(id, value);
+        addConfig(connection, id, value);
     }
 
     @Override
@@ -265,10 +373,13 @@ public class PostgreSQLDatabase extends ACMEDatabase {
 
         if (monitor == null) {
 
-            connect();
-
-            String value = getConfig("enabled");
-            enabled = value == null ? null : Boolean.valueOf(value);
+            Connection connection = connect();
+            try {
+                String value = getConfig(connection, "enabled");
+                enabled = value == null ? null : Boolean.valueOf(value);
+            } finally {
+                release(connection);
+            }
         }
 
         return enabled;
@@ -277,15 +388,60 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void setEnabled(Boolean enabled) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            String value = enabled == null ? null : enabled.toString();
+            setConfig(connection, "enabled", value);
+
+            this.enabled = enabled;
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public void addNonce(ACMENonce nonce) throws Exception {
+
+        Connection connection = connect();
+        try {
+            String nonceID = nonce.getID();
+            logger.info("Adding nonce " + nonceID);
+
+            String sql = statements.getProperty("addNonce");
+            logger.info("SQL: " + sql);
+
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+
+                ps.setString(1, nonceID);
+
+                Date creationTime = nonce.getCreationTime();
+                ps.setTimestamp(2, new Timestamp(creationTime.getTime()), UTC);
+
+                Date expirationTime = nonce.getExpirationTime();
+                ps.setTimestamp(3, new Timestamp(expirationTime.getTime()), UTC);
+
+                ps.executeUpdate();
+            }
+        } finally {
+            release(connection);
+        }
+    }
+
+    private ACMENonce createNonce(String nonceID, ResultSet rs) throws Exception {
 
-        String value = enabled == null ? null : enabled.toString();
-        setConfig("enabled", value);
+        ACMENonce nonce = new ACMENonce();
+        nonce.setID(nonceID);
 
-        this.enabled = enabled;
+        Timestamp created = rs.getTimestamp("created");
+        nonce.setCreationTime(new Date(created.getTime()));
+
+        Timestamp expires = rs.getTimestamp("expires");
+        nonce.setExpirationTime(new Date(expires.getTime()));
+
+        return nonce;
     }
 
-    private ACMENonce getNonce(String nonceID) throws Exception {
+    private ACMENonce getNonce(Connection connection, String nonceID) throws Exception {
 
         logger.info("Getting nonce " + nonceID);
 
@@ -301,58 +457,56 @@ public class PostgreSQLDatabase extends ACMEDatabase {
                     return null;
                 }
 
-                ACMENonce nonce = new ACMENonce();
-                nonce.setID(nonceID);
-
-                Timestamp created = rs.getTimestamp("created");
-                nonce.setCreationTime(new Date(created.getTime()));
-
-                Timestamp expires = rs.getTimestamp("expires");
-                nonce.setExpirationTime(new Date(expires.getTime()));
-
-                return nonce;
+                return createNonce(nonceID, rs);
             }
         }
     }
 
     @Override
-    public void addNonce(ACMENonce nonce) throws Exception {
-
-        connect();
-
-        String nonceID = nonce.getID();
-        logger.info("Adding nonce " + nonceID);
-
-        String sql = statements.getProperty("addNonce");
-        logger.info("SQL: " + sql);
+    public ACMENonce removeNonce(String nonceID) throws Exception {
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        logger.info("Consuming nonce " + nonceID);
 
-            ps.setString(1, nonceID);
+        // delete and return the nonce in a single statement so that
+        // concurrent requests cannot consume the same nonce twice
+        String sql = statements.getProperty("consumeNonce");
 
-            Date creationTime = nonce.getCreationTime();
-            ps.setTimestamp(2, new Timestamp(creationTime.getTime()), UTC);
+        Connection connection = connect();
+        try {
+            if (sql == null) {
+                // Only the request that actually deleted the nonce
+                // gets it, so a nonce still cannot be used twice.
+                ACMENonce nonce = getNonce(connection, nonceID);
+                if (nonce == null || deleteNonce(connection, nonceID) == 0) {
+                    return null;
+                }
+                return nonce;
+            }
 
-            Date expirationTime = nonce.getExpirationTime();
-            ps.setTimestamp(3, new Timestamp(expirationTime.getTime()), UTC);
+            logger.info("SQL: " + sql);
 
-            ps.executeUpdate();
-        }
-    }
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, nonceID);
 
-    @Override
-    public ACMENonce removeNonce(String nonceID) throws Exception {
+                try (ResultSet rs = ps.executeQuery()) {
 
-        connect();
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-        ACMENonce nonce = getNonce(nonceID);
-        if (nonce == null) return null;
+                    return createNonce(nonceID, rs);
+                }
+            }
 
-        deleteNonce(nonceID);
-        return nonce;
+        } finally {
+            release(connection);
+        }
     }
 
-    private void deleteNonce(String nonceID) throws Exception {
+    /**
+     * @return the number of removed nonces
+     */
+    private int deleteNonce(Connection connection, String nonceID) throws Exception {
 
         logger.info("Removing nonce " + nonceID);
 
@@ -361,27 +515,30 @@ public class PostgreSQLDatabase extends ACMEDatabase {
 
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, nonceID);
-            ps.executeUpdate();
+            return ps.executeUpdate();
         }
     }
 
     @Override
     public void removeExpiredNonces(Date currentTime) throws Exception {
 
-        connect();
-
-        logger.info("Getting expired nonces");
+        Connection connection = connect();
+        try {
+            logger.info("Getting expired nonces");
 
-        Collection<String> nonceIDs = getExpiredNonceIDs(currentTime);
+            Collection<String> nonceIDs = getExpiredNonceIDs(connection, currentTime);
 
-        logger.info("Removing expired nonces");
+            logger.info("Removing expired nonces");
 
-        for (String nonceID : nonceIDs) {
-            deleteNonce(nonceID);
+            for (String nonceID : nonceIDs) {
+                deleteNonce(connection, nonceID);
+            }
+        } finally {
+            release(connection);
         }
     }
 
-    private Collection<String> getExpiredNonceIDs(Date currentTime) throws Exception {
+    private Collection<String> getExpiredNonceIDs(Connection connection, Date currentTime) throws Exception {
 
         String sql = statements.getProperty("getExpiredNonceIDs");
         logger.info("SQL: " + sql);
@@ -406,42 +563,45 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public ACMEAccount getAccount(String accountID) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            logger.info("Getting account " + accountID);
 
-        logger.info("Getting account " + accountID);
-
-        String sql = statements.getProperty("getAccount");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getAccount");
+            logger.info("SQL: " + sql);
 
-        ACMEAccount account = new ACMEAccount();
+            ACMEAccount account = new ACMEAccount();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, accountID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, accountID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                account.setID(accountID);
+                    account.setID(accountID);
 
-                Timestamp created = rs.getTimestamp("created");
-                account.setCreationTime(new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    account.setCreationTime(new Date(created.getTime()));
 
-                account.setStatus(rs.getString("status"));
+                    account.setStatus(rs.getString("status"));
 
-                String jwk = rs.getString("jwk");
-                account.setJWK(JWK.fromJSON(jwk));
+                    String jwk = rs.getString("jwk");
+                    account.setJWK(JWK.fromJSON(jwk));
+                }
             }
-        }
 
-        getAccountContacts(account);
+            getAccountContacts(connection, account);
 
-        return account;
+            return account;
+        } finally {
+            release(connection);
+        }
     }
 
-    private void getAccountContacts(ACMEAccount account) throws Exception {
+    private void getAccountContacts(Connection connection, ACMEAccount account) throws Exception {
 
         String accountID = account.getID();
         logger.info("Getting contacts for " + accountID);
@@ -471,54 +631,68 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void addAccount(ACMEAccount account) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            begin(connection);
 
-        String accountID = account.getID();
-        logger.info("Adding account " + accountID);
+            String accountID = account.getID();
+            logger.info("Adding account " + accountID);
 
-        String sql = statements.getProperty("addAccount");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("addAccount");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, accountID);
+                ps.setString(1, accountID);
 
-            Date creationTime = account.getCreationTime();
-            ps.setTimestamp(2, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
+                Date creationTime = account.getCreationTime();
+                ps.setTimestamp(2, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
 
-            ps.setString(3, account.getStatus());
-            ps.setString(4, account.getJWK().toJSON());
+                ps.setString(3, account.getStatus());
+                ps.setString(4, account.getJWK().toJSON());
 
-            ps.executeUpdate();
-        }
+                ps.executeUpdate();
+            }
+
+            addAccountContacts(connection, account);
 
-        addAccountContacts(account);
+            commit(connection);
+        } finally {
+            release(connection);
+        }
     }
 
     @Override
     public void updateAccount(ACMEAccount account) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            begin(connection);
 
-        String accountID = account.getID();
-        logger.info("Updating account " + accountID);
+            String accountID = account.getID();
+            logger.info("Updating account " + accountID);
 
-        String sql = statements.getProperty("updateAccount");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("updateAccount");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, account.getStatus());
-            ps.setString(2, accountID);
+                ps.setString(1, account.getStatus());
+                ps.setString(2, accountID);
 
-            ps.executeUpdate();
-        }
+                ps.executeUpdate();
+            }
+
+            removeAccountContacts(connection, accountID);
+            addAccountContacts(connection, account);
 
-        removeAccountContacts(accountID);
-        addAccountContacts(account);
+            commit(connection);
+        } finally {
+            release(connection);
+        }
     }
 
-    private void addAccountContacts(ACMEAccount account) throws Exception {
+    private void addAccountContacts(Connection connection, ACMEAccount account) throws Exception {
 
         String[] contacts = account.getContact();
         if (contacts == null) return;
@@ -541,7 +715,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void removeAccountContacts(String accountID) throws Exception {
+    private void removeAccountContacts(Connection connection, String accountID) throws Exception {
 
         logger.info("Removing contacts for account " + accountID);
 
@@ -559,203 +733,215 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public ACMEOrder getOrder(String orderID) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            logger.info("Getting order " + orderID);
 
-        logger.info("Getting order " + orderID);
-
-        String sql = statements.getProperty("getOrder");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getOrder");
+            logger.info("SQL: " + sql);
 
-        ACMEOrder order = new ACMEOrder();
+            ACMEOrder order = new ACMEOrder();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, orderID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, orderID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                order.setID(orderID);
-                order.setAccountID(rs.getString("account_id"));
+                    order.setID(orderID);
+                    order.setAccountID(rs.getString("account_id"));
 
-                Timestamp created = rs.getTimestamp("created");
-                order.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    order.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                order.setStatus(rs.getString("status"));
+                    order.setStatus(rs.getString("status"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                Timestamp notBefore = rs.getTimestamp("not_before");
-                order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
+                    Timestamp notBefore = rs.getTimestamp("not_before");
+                    order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
 
-                Timestamp notAfter = rs.getTimestamp("not_after");
-                order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
+                    Timestamp notAfter = rs.getTimestamp("not_after");
+                    order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
 
-                order.setCertID(rs.getString("cert_id"));
+                    order.setCertID(rs.getString("cert_id"));
+                }
             }
-        }
 
-        getOrderIdentifiers(order);
-        getOrderAuthorizations(order);
+            getOrderIdentifiers(connection, order);
+            getOrderAuthorizations(connection, order);
 
-        return order;
+            return order;
+        } finally {
+            release(connection);
+        }
     }
 
     @Override
     public Collection<ACMEOrder> getOrdersByAccount(String accountID) throws Exception {
 
-        connect();
-
-        logger.info("Getting orders for account " + accountID);
+        Connection connection = connect();
+        try {
+            logger.info("Getting orders for account " + accountID);
 
-        String sql = statements.getProperty("getOrdersByAccount");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getOrdersByAccount");
+            logger.info("SQL: " + sql);
 
-        Collection<ACMEOrder> orders = new ArrayList<>();
+            Collection<ACMEOrder> orders = new ArrayList<>();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, accountID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, accountID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                while (rs.next()) {
-                    ACMEOrder order = new ACMEOrder();
-                    order.setID(rs.getString("id"));
-                    order.setAccountID(accountID);
+                    while (rs.next()) {
+                        ACMEOrder order = new ACMEOrder();
+                        order.setID(rs.getString("id"));
+                        order.setAccountID(accountID);
 
-                    Timestamp created = rs.getTimestamp("created");
-                    order.setCreationTime(created == null ? null : new Date(created.getTime()));
+                        Timestamp created = rs.getTimestamp("created");
+                        order.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                    order.setStatus(rs.getString("status"));
+                        order.setStatus(rs.getString("status"));
 
-                    Timestamp expires = rs.getTimestamp("expires");
-                    order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                        Timestamp expires = rs.getTimestamp("expires");
+                        order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                    Timestamp notBefore = rs.getTimestamp("not_before");
-                    order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
+                        Timestamp notBefore = rs.getTimestamp("not_before");
+                        order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
 
-                    Timestamp notAfter = rs.getTimestamp("not_after");
-                    order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
+                        Timestamp notAfter = rs.getTimestamp("not_after");
+                        order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
 
-                    order.setCertID(rs.getString("cert_id"));
+                        order.setCertID(rs.getString("cert_id"));
 
-                    getOrderIdentifiers(order);
-                    getOrderAuthorizations(order);
+                        getOrderIdentifiers(connection, order);
+                        getOrderAuthorizations(connection, order);
 
-                    orders.add(order);
+                        orders.add(order);
+                    }
                 }
             }
-        }
 
-        return orders;
+            return orders;
+        } finally {
+            release(connection);
+        }
     }
 
     @Override
     public Collection<ACMEOrder> getOrdersByAuthorizationAndStatus(String authzID, String status)
             throws Exception {
 
-        connect();
-
-        logger.info("Getting " + status + " orders for authorization " + authzID);
+        Connection connection = connect();
+        try {
+            logger.info("Getting " + status + " orders for authorization " + authzID);
 
-        String sql = statements.getProperty("getOrdersByAuthorizationAndStatus");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getOrdersByAuthorizationAndStatus");
+            logger.info("SQL: " + sql);
 
-        Collection<ACMEOrder> orders = new ArrayList<>();
+            Collection<ACMEOrder> orders = new ArrayList<>();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, authzID);
-            ps.setString(2, status);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, authzID);
+                ps.setString(2, status);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                while (rs.next()) {
-                    ACMEOrder order = new ACMEOrder();
-                    order.setID(rs.getString("id"));
-                    order.setAccountID(rs.getString("account_id"));
+                    while (rs.next()) {
+                        ACMEOrder order = new ACMEOrder();
+                        order.setID(rs.getString("id"));
+                        order.setAccountID(rs.getString("account_id"));
 
-                    Timestamp created = rs.getTimestamp("created");
-                    order.setCreationTime(created == null ? null : new Date(created.getTime()));
+                        Timestamp created = rs.getTimestamp("created");
+                        order.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                    order.setStatus(rs.getString("status"));
+                        order.setStatus(rs.getString("status"));
 
-                    Timestamp expires = rs.getTimestamp("expires");
-                    order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                        Timestamp expires = rs.getTimestamp("expires");
+                        order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                    Timestamp notBefore = rs.getTimestamp("not_before");
-                    order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
+                        Timestamp notBefore = rs.getTimestamp("not_before");
+                        order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
 
-                    Timestamp notAfter = rs.getTimestamp("not_after");
-                    order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
+                        Timestamp notAfter = rs.getTimestamp("not_after");
+                        order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
 
-                    order.setCertID(rs.getString("cert_id"));
+                        order.setCertID(rs.getString("cert_id"));
 
-                    getOrderIdentifiers(order);
-                    getOrderAuthorizations(order);
+                        getOrderIdentifiers(connection, order);
+                        getOrderAuthorizations(connection, order);
 
-                    orders.add(order);
+                        orders.add(order);
+                    }
                 }
             }
-        }
 
-        return orders;
+            return orders;
+        } finally {
+            release(connection);
+        }
     }
 
     @Override
     public ACMEOrder getOrderByCertificate(String certID) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            logger.info("Getting order for certificate " + certID);
 
-        logger.info("Getting order for certificate " + certID);
-
-        String sql = statements.getProperty("getOrderByCertificate");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getOrderByCertificate");
+            logger.info("SQL: " + sql);
 
-        ACMEOrder order = new ACMEOrder();
+            ACMEOrder order = new ACMEOrder();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, certID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, certID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    // no order found
-                    return null;
-                }
+                    if (!rs.next()) {
+                        // no order found
+                        return null;
+                    }
 
-                // order found
+                    // order found
 
-                order.setID(rs.getString("id"));
-                order.setAccountID(rs.getString("account_id"));
+                    order.setID(rs.getString("id"));
+                    order.setAccountID(rs.getString("account_id"));
 
-                Timestamp created = rs.getTimestamp("created");
-                order.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    order.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                order.setStatus(rs.getString("status"));
+                    order.setStatus(rs.getString("status"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                Timestamp notBefore = rs.getTimestamp("not_before");
-                order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
+                    Timestamp notBefore = rs.getTimestamp("not_before");
+                    order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
 
-                Timestamp notAfter = rs.getTimestamp("not_after");
-                order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
+                    Timestamp notAfter = rs.getTimestamp("not_after");
+                    order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
 
-                order.setCertID(certID);
+                    order.setCertID(certID);
+                }
             }
-        }
 
-        getOrderIdentifiers(order);
-        getOrderAuthorizations(order);
+            getOrderIdentifiers(connection, order);
+            getOrderAuthorizations(connection, order);
 
-        return order;
+            return order;
+        } finally {
+            release(connection);
+        }
     }
 
-    private Collection<String> getExpiredOrderIDs(Date currentTime) throws Exception {
+    private Collection<String> getExpiredOrderIDs(Connection connection, Date currentTime) throws Exception {
 
         String sql = statements.getProperty("getExpiredOrderIDs");
         logger.info("SQL: " + sql);
@@ -777,7 +963,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         return orderIDs;
     }
 
-    private void getOrderIdentifiers(ACMEOrder order) throws Exception {
+    private void getOrderIdentifiers(Connection connection, ACMEOrder order) throws Exception {
 
         String orderID = order.getID();
         logger.info("Getting identifiers for order " + orderID);
@@ -806,7 +992,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void getOrderAuthorizations(ACMEOrder order) throws Exception {
+    private void getOrderAuthorizations(Connection connection, ACMEOrder order) throws Exception {
 
         String orderID = order.getID();
         logger.info("Getting authorizations for order " + orderID);
@@ -836,43 +1022,50 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void addOrder(ACMEOrder order) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            begin(connection);
 
-        String orderID = order.getID();
-        logger.info("Adding order " + orderID);
+            String orderID = order.getID();
+            logger.info("Adding order " + orderID);
 
-        String sql = statements.getProperty("addOrder");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("addOrder");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, orderID);
-            ps.setString(2, order.getAccountID());
+                ps.setString(1, orderID);
+                ps.setString(2, order.getAccountID());
 
-            Date creationTime = order.getCreationTime();
-            ps.setTimestamp(3, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
+                Date creationTime = order.getCreationTime();
+                ps.setTimestamp(3, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
 
-            ps.setString(4, order.getStatus());
+                ps.setString(4, order.getStatus());
 
-            Date expirationTime = order.getExpirationTime();
-            ps.setTimestamp(5, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                Date expirationTime = order.getExpirationTime();
+                ps.setTimestamp(5, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            Date notBefore = order.getNotBeforeTime();
-            ps.setTimestamp(6, notBefore == null ? null : new Timestamp(notBefore.getTime()), UTC);
+                Date notBefore = order.getNotBeforeTime();
+                ps.setTimestamp(6, notBefore == null ? null : new Timestamp(notBefore.getTime()), UTC);
 
-            Date notAfter = order.getNotAfterTime();
-            ps.setTimestamp(7, notAfter == null ? null : new Timestamp(notAfter.getTime()), UTC);
+                Date notAfter = order.getNotAfterTime();
+                ps.setTimestamp(7, notAfter == null ? null : new Timestamp(notAfter.getTime()), UTC);
 
-            ps.setString(8, order.getCertID());
+                ps.setString(8, order.getCertID());
 
-            ps.executeUpdate();
-        }
+                ps.executeUpdate();
+            }
+
+            addOrderIdentifiers(connection, order);
+            addOrderAuthorizations(connection, order);
 
-        addOrderIdentifiers(order);
-        addOrderAuthorizations(order);
+            commit(connection);
+        } finally {
+            release(connection);
+        }
     }
 
-    private void addOrderIdentifiers(ACMEOrder order) throws Exception {
+    private void addOrderIdentifiers(Connection connection, ACMEOrder order) throws Exception {
 
         ACMEIdentifier[] identifiers = order.getIdentifiers();
         if (identifiers == null) return;
@@ -896,7 +1089,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void removeOrderIdentifiers(String orderID) throws Exception {
+    private void removeOrderIdentifiers(Connection connection, String orderID) throws Exception {
 
         logger.info("Removing identifiers for order " + orderID);
 
@@ -909,7 +1102,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void addOrderAuthorizations(ACMEOrder order) throws Exception {
+    private void addOrderAuthorizations(Connection connection, ACMEOrder order) throws Exception {
 
         String[] authzIDs = order.getAuthzIDs();
         if (authzIDs == null) return;
@@ -932,7 +1125,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void removeOrderAuthorizations(String orderID) throws Exception {
+    private void removeOrderAuthorizations(Connection connection, String orderID) throws Exception {
 
         logger.info("Removing authorizations for order " + orderID);
 
@@ -948,32 +1141,35 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void updateOrder(ACMEOrder order) throws Exception {
 
-        connect();
-
-        String orderID = order.getID();
-        logger.info("Updating order " + orderID);
+        Connection connection = connect();
+        try {
+            String orderID = order.getID();
+            logger.info("Updating order " + orderID);
 
-        String sql = statements.getProperty("updateOrder");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("updateOrder");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, order.getStatus());
-            ps.setString(2, order.getCertID());
+                ps.setString(1, order.getStatus());
+                ps.setString(2, order.getCertID());
 
-            Date expirationTime = order.getExpirationTime();
-            ps.setTimestamp(3, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                Date expirationTime = order.getExpirationTime();
+                ps.setTimestamp(3, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            ps.setString(4, orderID);
+                ps.setString(4, orderID);
 
-            ps.executeUpdate();
+                ps.executeUpdate();
+            }
+        } finally {
+            release(connection);
         }
     }
 
-    private void removeOrder(String orderID) throws Exception {
+    private void removeOrder(Connection connection, String orderID) throws Exception {
 
-        removeOrderIdentifiers(orderID);
-        removeOrderAuthorizations(orderID);
+        removeOrderIdentifiers(connection, orderID);
+        removeOrderAuthorizations(connection, orderID);
 
         logger.info("Removing order " + orderID);
 
@@ -989,114 +1185,127 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void removeExpiredOrders(Date currentTime) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            begin(connection);
+
+            logger.info("Getting expired order IDs");
 
-        logger.info("Getting expired order IDs");
+            Collection<String> orderIDs = getExpiredOrderIDs(connection, currentTime);
 
-        Collection<String> orderIDs = getExpiredOrderIDs(currentTime);
+            logger.info("Removing expired orders");
 
-        logger.info("Removing expired orders");
+            for (String orderID : orderIDs) {
+                removeOrder(connection, orderID);
+            }
 
-        for (String orderID : orderIDs) {
-            removeOrder(orderID);
+            commit(connection);
+        } finally {
+            release(connection);
         }
     }
 
     @Override
     public ACMEAuthorization getAuthorization(String authzID) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            logger.info("Getting authorization " + authzID);
 
-        logger.info("Getting authorization " + authzID);
-
-        String sql = statements.getProperty("getAuthorization");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getAuthorization");
+            logger.info("SQL: " + sql);
 
-        ACMEAuthorization authorization = new ACMEAuthorization();
+            ACMEAuthorization authorization = new ACMEAuthorization();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, authzID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, authzID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                authorization.setID(authzID);
-                authorization.setAccountID(rs.getString("account_id"));
+                    authorization.setID(authzID);
+                    authorization.setAccountID(rs.getString("account_id"));
 
-                Timestamp created = rs.getTimestamp("created");
-                authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                authorization.setStatus(rs.getString("status"));
+                    authorization.setStatus(rs.getString("status"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                ACMEIdentifier identifier = new ACMEIdentifier();
-                identifier.setType(rs.getString("identifier_type"));
-                identifier.setValue(rs.getString("identifier_value"));
-                authorization.setIdentifier(identifier);
+                    ACMEIdentifier identifier = new ACMEIdentifier();
+                    identifier.setType(rs.getString("identifier_type"));
+                    identifier.setValue(rs.getString("identifier_value"));
+                    authorization.setIdentifier(identifier);
 
-                boolean wildcard = rs.getBoolean("wildcard");
-                authorization.setWildcard(wildcard ? true : null);
+                    boolean wildcard = rs.getBoolean("wildcard");
+                    authorization.setWildcard(wildcard ? true : null);
+                }
             }
-        }
 
-        getAuthorizationChallenges(authorization);
+            getAuthorizationChallenges(connection, authorization);
 
-        return authorization;
+            return authorization;
+        } finally {
+            release(connection);
+        }
     }
 
     @Override
     public ACMEAuthorization getAuthorizationByChallenge(String challengeID) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            logger.info("Getting authorization for challenge " + challengeID);
 
-        logger.info("Getting authorization for challenge " + challengeID);
-
-        String sql = statements.getProperty("getAuthorizationByChallenge");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getAuthorizationByChallenge");
+            logger.info("SQL: " + sql);
 
-        ACMEAuthorization authorization = new ACMEAuthorization();
+            ACMEAuthorization authorization = new ACMEAuthorization();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, challengeID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, challengeID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                authorization.setID(rs.getString("id"));
-                authorization.setAccountID(rs.getString("account_id"));
+                    authorization.setID(rs.getString("id"));
+                    authorization.setAccountID(rs.getString("account_id"));
 
-                Timestamp created = rs.getTimestamp("created");
-                authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                authorization.setStatus(rs.getString("status"));
+                    authorization.setStatus(rs.getString("status"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                ACMEIdentifier identifier = new ACMEIdentifier();
-                identifier.setType(rs.getString("identifier_type"));
-                identifier.setValue(rs.getString("identifier_value"));
-                authorization.setIdentifier(identifier);
+                    ACMEIdentifier identifier = new ACMEIdentifier();
+                    identifier.setType(rs.getString("identifier_type"));
+                    identifier.setValue(rs.getString("identifier_value"));
+                    authorization.setIdentifier(identifier);
 
-                boolean wildcard = rs.getBoolean("wildcard");
-                authorization.setWildcard(wildcard ? true : null);
+                    boolean wildcard = rs.getBoolean("wildcard");
+                    authorization.setWildcard(wildcard ? true : null);
+                }
             }
-        }
 
-        getAuthorizationChallenges(authorization);
+            getAuthorizationChallenges(connection, authorization);
 
-        return authorization;
+            return authorization;
+        } finally {
+            release(connection);
+        }
     }
 
-    private Collection<String> getExpiredAuthorizationIDs(Date currentTime) throws Exception {
+    private Collection<String> getExpiredAuthorizationIDs(Connection connection, Date currentTime) throws Exception {
 
         String sql = statements.getProperty("getExpiredAuthorizationIDs");
         logger.info("SQL: " + sql);
@@ -1121,55 +1330,58 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public Collection<ACMEAuthorization> getRevocationAuthorizations(String accountID, Date time) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            logger.info("Getting authorizations for account " + accountID);
 
-        logger.info("Getting authorizations for account " + accountID);
-
-        String sql = statements.getProperty("getRevocationAuthorizations");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getRevocationAuthorizations");
+            logger.info("SQL: " + sql);
 
-        Collection<ACMEAuthorization> authorizations = new ArrayList<>();
+            Collection<ACMEAuthorization> authorizations = new ArrayList<>();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, accountID);
-            ps.setTimestamp(2, new Timestamp(time.getTime()), UTC);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, accountID);
+                ps.setTimestamp(2, new Timestamp(time.getTime()), UTC);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                while (rs.next()) {
+                    while (rs.next()) {
 
-                    ACMEAuthorization authorization = new ACMEAuthorization();
+                        ACMEAuthorization authorization = new ACMEAuthorization();
 
-                    authorization.setID(rs.getString("id"));
-                    authorization.setAccountID(accountID);
+                        authorization.setID(rs.getString("id"));
+                        authorization.setAccountID(accountID);
 
-                    Timestamp created = rs.getTimestamp("created");
-                    authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
+                        Timestamp created = rs.getTimestamp("created");
+                        authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                    authorization.setStatus(rs.getString("status"));
+                        authorization.setStatus(rs.getString("status"));
 
-                    Timestamp expires = rs.getTimestamp("expires");
-                    authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                        Timestamp expires = rs.getTimestamp("expires");
+                        authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                    ACMEIdentifier identifier = new ACMEIdentifier();
-                    identifier.setType(rs.getString("identifier_type"));
-                    identifier.setValue(rs.getString("identifier_value"));
-                    authorization.setIdentifier(identifier);
+                        ACMEIdentifier identifier = new ACMEIdentifier();
+                        identifier.setType(rs.getString("identifier_type"));
+                        identifier.setValue(rs.getString("identifier_value"));
+                        authorization.setIdentifier(identifier);
 
-                    boolean wildcard = rs.getBoolean("wildcard");
-                    authorization.setWildcard(wildcard ? true : null);
+                        boolean wildcard = rs.getBoolean("wildcard");
+                        authorization.setWildcard(wildcard ? true : null);
 
-                    getAuthorizationChallenges(authorization);
+                        getAuthorizationChallenges(connection, authorization);
 
-                    authorizations.add(authorization);
+                        authorizations.add(authorization);
+                    }
                 }
             }
-        }
 
-        return authorizations;
+            return authorizations;
+        } finally {
+            release(connection);
+        }
     }
 
-    private void getAuthorizationChallenges(ACMEAuthorization authorization) throws Exception {
+    private void getAuthorizationChallenges(Connection connection, ACMEAuthorization authorization) throws Exception {
 
         String authzID = authorization.getID();
         logger.info("Getting challenges for authorization " + authzID);
@@ -1209,68 +1421,82 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void addAuthorization(ACMEAuthorization authorization) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            begin(connection);
 
-        String authzID = authorization.getID();
-        logger.info("Adding authorization " + authzID);
+            String authzID = authorization.getID();
+            logger.info("Adding authorization " + authzID);
 
-        String sql = statements.getProperty("addAuthorization");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("addAuthorization");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, authzID);
-            ps.setString(2, authorization.getAccountID());
+                ps.setString(1, authzID);
+                ps.setString(2, authorization.getAccountID());
 
-            Date creationTime = authorization.getCreationTime();
-            ps.setTimestamp(3, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
+                Date creationTime = authorization.getCreationTime();
+                ps.setTimestamp(3, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
 
-            ps.setString(4, authorization.getStatus());
+                ps.setString(4, authorization.getStatus());
 
-            Date expirationTime = authorization.getExpirationTime();
-            ps.setTimestamp(5, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                Date expirationTime = authorization.getExpirationTime();
+                ps.setTimestamp(5, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            ACMEIdentifier identifier = authorization.getIdentifier();
-            ps.setString(6, identifier.getType());
-            ps.setString(7, identifier.getValue());
+                ACMEIdentifier identifier = authorization.getIdentifier();
+                ps.setString(6, identifier.getType());
+                ps.setString(7, identifier.getValue());
 
-            Boolean wildcard = authorization.getWildcard();
-            ps.setBoolean(8, wildcard == null ? false : wildcard);
+                Boolean wildcard = authorization.getWildcard();
+                ps.setBoolean(8, wildcard == null ? false : wildcard);
 
-            ps.executeUpdate();
-        }
+                ps.executeUpdate();
+            }
 
-        addAuthorizationChallenges(authorization);
+            addAuthorizationChallenges(connection, authorization);
+
+            commit(connection);
+        } finally {
+            release(connection);
+        }
     }
 
     @Override
     public void updateAuthorization(ACMEAuthorization authorization) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            begin(connection);
 
-        String authzID = authorization.getID();
-        logger.info("Updating authorization " + authzID);
+            String authzID = authorization.getID();
+            logger.info("Updating authorization " + authzID);
 
-        String sql = statements.getProperty("updateAuthorization");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("updateAuthorization");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, authorization.getStatus());
+                ps.setString(1, authorization.getStatus());
 
-            Date expirationTime = authorization.getExpirationTime();
-            ps.setTimestamp(2, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                Date expirationTime = authorization.getExpirationTime();
+                ps.setTimestamp(2, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            ps.setString(3, authzID);
+                ps.setString(3, authzID);
 
-            ps.executeUpdate();
-        }
+                ps.executeUpdate();
+            }
+
+            removeAuthorizationChallenges(connection, authzID);
+            addAuthorizationChallenges(connection, authorization);
 
-        removeAuthorizationChallenges(authzID);
-        addAuthorizationChallenges(authorization);
+            commit(connection);
+        } finally {
+            release(connection);
+        }
     }
 
-    private void removeAuthorizationChallenges(String authzID) throws Exception {
+    private void removeAuthorizationChallenges(Connection connection, String authzID) throws Exception {
 
         logger.info("Removing challenges for authorization " + authzID);
 
@@ -1283,7 +1509,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void addAuthorizationChallenges(ACMEAuthorization authorization) throws Exception {
+    private void addAuthorizationChallenges(Connection connection, ACMEAuthorization authorization) throws Exception {
 
         Collection<ACMEChallenge> challenges = authorization.getChallenges();
         if (challenges == null) return;
@@ -1312,9 +1538,9 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void removeAuthorization(String authzID) throws Exception {
+    private void removeAuthorization(Connection connection, String authzID) throws Exception {
 
-        removeAuthorizationChallenges(authzID);
+        removeAuthorizationChallenges(connection, authzID);
 
         logger.info("Removing authorization " + authzID);
 
@@ -1330,55 +1556,65 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void removeExpiredAuthorizations(Date currentTime) throws Exception {
 
-        connect();
+        Connection connection = connect();
+        try {
+            begin(connection);
+
+            logger.info("Getting expired authorization IDs");
 
-        logger.info("Getting expired authorization IDs");
+            Collection<String> authzIDs = getExpiredAuthorizationIDs(connection, currentTime);
 
-        Collection<String> authzIDs = getExpiredAuthorizationIDs(currentTime);
+            logger.info("Removing expired authorization");
 
-        logger.info("Removing expired authorization");
+            for (String authzID : authzIDs) {
+                removeAuthorization(connection, authzID);
+            }
 
-        for (String authzID : authzIDs) {
-            removeAuthorization(authzID);
+            commit(connection);
+        } finally {
+            release(connection);
         }
     }
 
     @Override
     public ACMECertificate getCertificate(String certID) throws Exception {
 
-        connect();
-
-        logger.info("Getting certificate " + certID);
+        Connection connection = connect();
+        try {
+            logger.info("Getting certificate " + certID);
 
-        String sql = statements.getProperty("getCertificate");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getCertificate");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, certID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, certID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                ACMECertificate certificate = new ACMECertificate();
-                certificate.setID(certID);
+                    ACMECertificate certificate = new ACMECertificate();
+                    certificate.setID(certID);
 
-                Timestamp created = rs.getTimestamp("created");
-                certificate.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    certificate.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                certificate.setData(rs.getBytes("data"));
+                    certificate.setData(rs.getBytes("data"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                certificate.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    certificate.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                return certificate;
+                    return certificate;
+                }
             }
+        } finally {
+            release(connection);
         }
     }
 
-    private Collection<String> getExpiredCertificateIDs(Date currentTime) throws Exception {
+    private Collection<String> getExpiredCertificateIDs(Connection connection, Date currentTime) throws Exception {
 
         String sql = statements.getProperty("getExpiredCertificateIDs");
         logger.info("SQL: " + sql);
@@ -1403,30 +1639,33 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void addCertificate(String certID, ACMECertificate certificate) throws Exception {
 
-        connect();
-
-        logger.info("Adding certificate " + certID);
+        Connection connection = connect();
+        try {
+            logger.info("Adding certificate " + certID);
 
-        String sql = statements.getProperty("addCertificate");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("addCertificate");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, certID);
+                ps.setString(1, certID);
 
-            Date creationTime = certificate.getCreationTime();
-            ps.setTimestamp(2, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
+                Date creationTime = certificate.getCreationTime();
+                ps.setTimestamp(2, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
 
-            ps.setBytes(3, certificate.getData());
+                ps.setBytes(3, certificate.getData());
 
-            Date expirationTime = certificate.getExpirationTime();
-            ps.setTimestamp(4, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                Date expirationTime = certificate.getExpirationTime();
+                ps.setTimestamp(4, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            ps.executeUpdate();
+                ps.executeUpdate();
+            }
+        } finally {
+            release(connection);
         }
     }
 
-    private void removeCertificate(String certID) throws Exception {
+    private void removeCertificate(Connection connection, String certID) throws Exception {
 
         logger.info("Removing certificate " + certID);
 
@@ -1442,16 +1681,19 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void removeExpiredCertificates(Date currentTime) throws Exception {
 
-        connect();
-
-        logger.info("Getting expired certificaate IDs");
+        Connection connection = connect();
+        try {
+            logger.info("Getting expired certificaate IDs");
 
-        Collection<String> certIDs = getExpiredCertificateIDs(currentTime);
+            Collection<String> certIDs = getExpiredCertificateIDs(connection, currentTime);
 
-        logger.info("Removing expired certificates");
+            logger.info("Removing expired certificates");
 
-        for (String certID : certIDs) {
-            removeCertificate(certID);
+            for (String certID : certIDs) {
+                removeCertificate(connection, certID);
+            }
+        } finally {
+            release(connection);
         }
     }
 
@@ -1462,6 +1704,10 @@ public class PostgreSQLDatabase extends ACMEDatabase {
             monitor.stop();
         }
 
+        if (pool != null) {
+            pool.close();
+        }
+
         if (connection != null) {
             connection.close();
         }
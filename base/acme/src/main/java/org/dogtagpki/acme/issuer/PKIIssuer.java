@@ -13,6 +13,7 @@ import java.math.BigInteger;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 import org.apache.commons.codec.binary.Base64;
 import org.dogtagpki.acme.ACMERevocation;
@@ -49,6 +50,18 @@ public class PKIIssuer extends ACMEIssuer {
     private ClientConfig clientConfig = new ClientConfig();
     private String profile;
 
+    // number of idle sessions to keep open (0 = disabled)
+    private int poolSize;
+
+    // maximum session lifetime in milliseconds
+    private long sessionTimeout;
+
+    // enrollment template lifetime in milliseconds (0 = disabled)
+    private long templateTimeout;
+
+    private ConcurrentLinkedDeque<Session> sessions = new ConcurrentLinkedDeque<>();
+    private volatile CachedTemplate template;
+
     public String getProfile() {
         return profile;
     }
@@ -108,6 +121,95 @@ public class PKIIssuer extends ACMEIssuer {
 
         profile = config.getParameter("profile");
         logger.info("- profile: " + profile);
+
+        String poolSize = config.getParameter("pool.size");
+        this.poolSize = poolSize == null ? 0 : Integer.parseInt(poolSize);
+        logger.info("- pool size: " + this.poolSize);
+
+        // keep the sessions shorter than the CA session timeout
+        String sessionTimeout = config.getParameter("pool.timeout");
+        this.sessionTimeout = (sessionTimeout == null ? 600 : Integer.parseInt(sessionTimeout)) * 1000L;
+        logger.info("- pool timeout (seconds): " + this.sessionTimeout / 1000);
+
+        String templateTimeout = config.getParameter("template.timeout");
+        this.templateTimeout = (templateTimeout == null ? 0 : Integer.parseInt(templateTimeout)) * 1000L;
+        logger.info("- template timeout (seconds): " + this.templateTimeout / 1000);
+    }
+
+    @Override
+    public void close() throws Exception {
+
+        Session session;
+        while ((session = sessions.pollFirst()) != null) {
+            session.close();
+        }
+    }
+
+    /**
+     * Returns an idle session from the pool or creates a new one.
+     * The session must be released with releaseSession().
+     */
+    Session getSession() throws Exception {
+
+        long now = System.currentTimeMillis();
+
+        Session session;
+        while ((session = sessions.pollFirst()) != null) {
+
+            if (!session.isExpired(now)) {
+                return session;
+            }
+
+            logger.info("Closing expired CA session");
+            session.close();
+        }
+
+        logger.info("Creating CA session");
+        return new Session(clientConfig, now + sessionTimeout);
+    }
+
+    /**
+     * Returns the session to the pool if it's still usable,
+     * otherwise closes the session.
+     *
+     * @param reusable false if the session might be in a bad state
+     */
+    void releaseSession(Session session, boolean reusable) {
+
+        if (reusable
+                && sessions.size() < poolSize
+                && !session.isExpired(System.currentTimeMillis())) {
+            sessions.offerFirst(session);
+            return;
+        }
+
+        session.close();
+    }
+
+    /**
+     * Returns a new copy of the enrollment template of the profile.
+     *
+     * If enabled, the template is retrieved from the CA once then
+     * copied locally for subsequent requests until it expires.
+     */
+    CertEnrollmentRequest getEnrollmentTemplate(CACertClient certClient) throws Exception {
+
+        if (templateTimeout <= 0) {
+            return certClient.getEnrollmentTemplate(profile);
+        }
+
+        long now = System.currentTimeMillis();
+        CachedTemplate template = this.template;
+
+        if (template == null || now >= template.expiration) {
+            logger.info("Retrieving enrollment template for " + profile);
+            CertEnrollmentRequest request = certClient.getEnrollmentTemplate(profile);
+
+            template = new CachedTemplate(request.toXML(), now + templateTimeout);
+            this.template = template;
+        }
+
+        return CertEnrollmentRequest.fromXML(template.xml);
     }
 
     @Override
@@ -115,10 +217,10 @@ public class PKIIssuer extends ACMEIssuer {
 
         logger.info("Issuing certificate");
 
-        try (PKIClient pkiClient = new PKIClient(clientConfig)) {
-
-            CAClient caClient = new CAClient(pkiClient);
+        Session session = getSession();
+        boolean reusable = false;
 
+        try {
             // Here the agent credentials are stored in the ClientConfig and will
             // be sent to the CA automatically if any of the methods being called
             // requires REST authentication. However, the methods being called
@@ -144,10 +246,14 @@ public class PKIIssuer extends ACMEIssuer {
             // it's not actually necessary to call CAClient.login(). However, to
             // support both types of profiles the CAClient.login() needs to be
             // called explicitly.
-            caClient.login();
+            //
+            // Pooled sessions stay logged in, and the enrollment template may
+            // be cached, so the enrollment itself is the only round trip for
+            // profiles that do not require review.
+            session.login();
 
-            CACertClient certClient = new CACertClient(caClient);
-            CertEnrollmentRequest certEnrollmentRequest = certClient.getEnrollmentTemplate(profile);
+            CACertClient certClient = session.certClient;
+            CertEnrollmentRequest certEnrollmentRequest = getEnrollmentTemplate(certClient);
 
             for (ProfileInput input : certEnrollmentRequest.getInputs()) {
 
@@ -192,9 +298,14 @@ public class PKIIssuer extends ACMEIssuer {
                 id = info.getCertId();
             }
 
+            reusable = true;
+
             logger.info("Serial number: " + id.toHexString());
             BigInteger serialNumber = id.toBigInteger();
             return Base64.encodeBase64URLSafeString(serialNumber.toByteArray());
+
+        } finally {
+            releaseSession(session, reusable);
         }
     }
 
@@ -204,11 +315,12 @@ public class PKIIssuer extends ACMEIssuer {
         CertId id = new CertId(new BigInteger(1, Base64.decodeBase64(certID)));
         logger.info("Serial number: " + id.toHexString());
 
-        try (PKIClient pkiClient = new PKIClient(clientConfig)) {
+        Session session = getSession();
+        boolean reusable = false;
 
-            CAClient caClient = new CAClient(pkiClient);
-            CACertClient certClient = new CACertClient(caClient);
-            CertData certData = certClient.getCert(id);
+        try {
+            CertData certData = session.certClient.getCert(id);
+            reusable = true;
 
             String pkcs7Chain = certData.getPkcs7CertChain();
             logger.info("Cert chain:\n" + pkcs7Chain);
@@ -234,6 +346,9 @@ public class PKIIssuer extends ACMEIssuer {
             }
 
             return sw.toString();
+
+        } finally {
+            releaseSession(session, reusable);
         }
     }
 
@@ -263,10 +378,11 @@ public class PKIIssuer extends ACMEIssuer {
 
         logger.info("Reviewing certificate");
 
-        try (PKIClient pkiClient = new PKIClient(clientConfig)) {
+        Session session = getSession();
+        boolean reusable = false;
 
-            CAClient caClient = new CAClient(pkiClient);
-            CACertClient certClient = new CACertClient(caClient);
+        try {
+            CACertClient certClient = session.certClient;
             CertData certData = certClient.reviewCert(certID);
 
             // Compare cert in request to cert retrieved from PKI.
@@ -298,10 +414,75 @@ public class PKIIssuer extends ACMEIssuer {
                 throw new Exception("Unable to revoke certificate: " + status);
             }
 
+            reusable = true;
+
             if (certRequestInfo.getOperationResult().equals(CertRequestInfo.RES_ERROR)) {
                 String error = certRequestInfo.getErrorMessage();
                 throw new Exception("Unable to revoke certificate: " + error);
             }
+
+        } finally {
+            releaseSession(session, reusable);
+        }
+    }
+
+    /**
+     * Connection to the CA which can be reused by subsequent
+     * operations (one at a time) to avoid TLS handshakes and logins.
+     */
+    static class Session {
+
+        final PKIClient pkiClient;
+        final CAClient caClient;
+        final CACertClient certClient;
+        final long expiration;
+
+        boolean loggedIn;
+
+        Session(ClientConfig clientConfig, long expiration) throws Exception {
+            this.expiration = expiration;
+
+            pkiClient = new PKIClient(clientConfig);
+
+            try {
+                caClient = new CAClient(pkiClient);
+                certClient = new CACertClient(caClient);
+
+            } catch (Exception e) {
+                pkiClient.close();
+                throw e;
+            }
+        }
+
+        void login() throws Exception {
+
+            if (loggedIn) return;
+
+            caClient.login();
+            loggedIn = true;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiration;
+        }
+
+        void close() {
+            try {
+                pkiClient.close();
+            } catch (Exception e) {
+                logger.warn("Unable to close CA session: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    static class CachedTemplate {
+
+        final String xml;
+        final long expiration;
+
+        CachedTemplate(String xml, long expiration) {
+            this.xml = xml;
+            this.expiration = expiration;
         }
     }
 }
@@ -0,0 +1,315 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.dogtagpki.acme.ValidationResult;
+
+import com.netscape.cmscore.metrics.Histogram;
+import com.netscape.cmscore.metrics.Metric;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+
+/**
+ * Executes challenge validations with a bounded number of threads.
+ *
+ * Failed validation attempts are rescheduled after a delay instead of
+ * blocking a thread, so pending retries only occupy the queue. Only one
+ * validation per authorization (i.e. per identifier of an account) is
+ * processed at a time.
+ */
+public class ACMEChallengeExecutor {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEChallengeExecutor.class);
+
+    private ACMEValidationConfig config;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    // authorization ID -> processor
+    private Map<String, ACMEChallengeProcessor> processors = new ConcurrentHashMap<>();
+
+    // number of validations waiting to be executed, including scheduled retries
+    private AtomicInteger queued = new AtomicInteger();
+
+    private LongAdder submitted = new LongAdder();
+    private LongAdder rejected = new LongAdder();
+    private LongAdder attempts = new LongAdder();
+    private LongAdder valid = new LongAdder();
+    private LongAdder invalid = new LongAdder();
+    private LongAdder validationTime = new LongAdder();
+    private LongAccumulator maxValidationTime = new LongAccumulator(Long::max, 0);
+
+    private Histogram validationDuration = MetricsRegistry.getInstance().getHistogram(
+            "pki_acme_validation_duration_seconds",
+            "Time to perform a challenge validation attempt");
+
+    // metrics registered in init(), removed in shutdown()
+    private List<Metric> metrics = new ArrayList<>();
+
+    public ACMEChallengeExecutor(ACMEValidationConfig config) {
+        this.config = config;
+    }
+
+    public ACMEValidationConfig getConfig() {
+        return config;
+    }
+
+    public void init() {
+
+        logger.info("Initializing ACME challenge executor");
+        logger.info("- threads: " + config.getThreads());
+        logger.info("- queue size: " + config.getQueueSize());
+        logger.info("- max attempts: " + config.getMaxAttempts());
+        logger.info("- retry delay: " + config.getRetryDelay());
+        logger.info("- retry backoff: " + config.getRetryBackoff());
+        logger.info("- max retry delay: " + config.getMaxRetryDelay());
+
+        AtomicInteger counter = new AtomicInteger();
+
+        executor = new ScheduledThreadPoolExecutor(config.getThreads(), r -> {
+            Thread t = new Thread(r, "ACMEChallengeExecutor-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        metrics.add(registry.getGauge(
+                "pki_acme_validation_queue_size",
+                "Number of challenge validations waiting to be executed, including retries",
+                this::getQueueSize));
+
+        metrics.add(registry.getGauge(
+                "pki_acme_validation_active_threads",
+                "Number of threads executing challenge validations",
+                this::getActiveCount));
+
+        metrics.add(registry.getGauge(
+                "pki_acme_validation_in_progress",
+                "Number of challenges being validated",
+                this::getInProgress));
+
+        metrics.add(registry.getFunctionCounter(
+                "pki_acme_validations_submitted_total",
+                "Number of challenge validations submitted",
+                this::getSubmitted));
+
+        metrics.add(registry.getFunctionCounter(
+                "pki_acme_validations_rejected_total",
+                "Number of challenge validations rejected because the queue was full",
+                this::getRejected));
+
+        metrics.add(registry.getFunctionCounter(
+                "pki_acme_validation_attempts_total",
+                "Number of challenge validation attempts",
+                this::getAttempts));
+
+        metrics.add(registry.getFunctionCounter(
+                "pki_acme_validations_total",
+                "Number of completed challenge validations",
+                this::getValid,
+                "result", "valid"));
+
+        metrics.add(registry.getFunctionCounter(
+                "pki_acme_validations_total",
+                "Number of completed challenge validations",
+                this::getInvalid,
+                "result", "invalid"));
+
+        metrics.add(registry.getGauge(
+                "pki_acme_validation_max_duration_nanoseconds",
+                "Longest challenge validation attempt",
+                this::getMaxValidationTime));
+    }
+
+    private void unregisterMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        for (Metric metric : metrics) {
+            registry.remove(metric);
+        }
+
+        metrics.clear();
+    }
+
+    /**
+     * Schedules the validation of a challenge.
+     *
+     * @return false if the authorization is already being validated
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public boolean submit(ACMEChallengeProcessor processor) {
+
+        String authzID = processor.authorization.getID();
+
+        // reserve a slot in the queue atomically so concurrent
+        // submissions cannot exceed the configured queue size
+        if (queued.incrementAndGet() > config.getQueueSize()) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("Too many pending challenge validations");
+        }
+
+        if (processors.putIfAbsent(authzID, processor) != null) {
+            queued.decrementAndGet();
+            logger.info("Authorization " + authzID + " is already being validated");
+            return false;
+        }
+
+        try {
+            executor.execute(() -> attempt(processor, 1));
+
+        } catch (RejectedExecutionException e) {
+            processors.remove(authzID, processor);
+            queued.decrementAndGet();
+            rejected.increment();
+            throw e;
+        }
+
+        submitted.increment();
+        return true;
+    }
+
+    void attempt(ACMEChallengeProcessor processor, int attempt) {
+
+        queued.decrementAndGet();
+
+        String challengeID = processor.challenge.getID();
+        logger.info("Validating challenge " + challengeID + " (attempt " + attempt + ")");
+
+        long start = System.nanoTime();
+        ValidationResult r = processor.validateChallenge();
+
+        long time = System.nanoTime() - start;
+        attempts.increment();
+        validationTime.add(time);
+        maxValidationTime.accumulate(time);
+        validationDuration.observe(time);
+
+        if (!r.isOK() && attempt < config.getMaxAttempts()) {
+
+            long delay = config.getRetryDelay(attempt);
+            logger.info("Retrying challenge " + challengeID + " in " + delay + " seconds");
+
+            // retries are not subject to the queue size limit
+            queued.incrementAndGet();
+
+            try {
+                executor.schedule(() -> attempt(processor, attempt + 1), delay, TimeUnit.SECONDS);
+                return;
+
+            } catch (RejectedExecutionException e) {
+                queued.decrementAndGet();
+
+                // executor is shutting down, leave the challenge in processing state
+                logger.warn("Unable to retry challenge " + challengeID + ": " + e.getMessage());
+                processors.remove(processor.authorization.getID(), processor);
+                return;
+            }
+        }
+
+        try {
+            if (r.isOK()) {
+                valid.increment();
+                processor.finalizeValidAuthorization();
+            } else {
+                invalid.increment();
+                processor.finalizeInvalidAuthorization(r.getError());
+            }
+
+        } catch (Exception e) {
+            logger.error("Unable to process challenge " + challengeID + ": " + e.getMessage(), e);
+
+        } finally {
+            processors.remove(processor.authorization.getID(), processor);
+        }
+    }
+
+    /**
+     * Returns the number of validations waiting to be executed,
+     * including scheduled retries.
+     */
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of challenges being validated.
+     */
+    public int getInProgress() {
+        return processors.size();
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    public long getValid() {
+        return valid.sum();
+    }
+
+    public long getInvalid() {
+        return invalid.sum();
+    }
+
+    /**
+     * Returns the total time spent in validation attempts in nanoseconds.
+     */
+    public long getValidationTime() {
+        return validationTime.sum();
+    }
+
+    /**
+     * Returns the longest validation attempt in nanoseconds.
+     */
+    public long getMaxValidationTime() {
+        return maxValidationTime.get();
+    }
+
+    public void shutdown() {
+
+        logger.info("Shutting down ACME challenge executor");
+        logger.info("- submitted: " + getSubmitted());
+        logger.info("- rejected: " + getRejected());
+        logger.info("- attempts: " + getAttempts());
+        logger.info("- valid: " + getValid());
+        logger.info("- invalid: " + getInvalid());
+
+        executor.shutdownNow();
+        processors.clear();
+        queued.set(0);
+
+        unregisterMetrics();
+    }
+}
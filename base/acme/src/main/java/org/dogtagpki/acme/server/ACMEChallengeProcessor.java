@@ -20,7 +20,7 @@ import org.dogtagpki.acme.validator.ACMEValidator;
 /**
  * @author Endi S. Dewata
  */
-public class ACMEChallengeProcessor implements Runnable {
+public class ACMEChallengeProcessor {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEChallengeProcessor.class);
 
@@ -41,43 +41,20 @@ public class ACMEChallengeProcessor implements Runnable {
         this.validator = validator;
     }
 
-    @Override
-    public void run() {
-        try {
-            processChallenge();
-        } catch (Exception e) {
-            logger.error("Unable to process challenge " + challenge.getID() + ": " + e.getMessage(), e);
-        }
-    }
-
-    public void processChallenge() throws Exception {
+    /**
+     * Performs a single validation attempt. Retries are scheduled
+     * by ACMEChallengeExecutor.
+     */
+    public ValidationResult validateChallenge() {
 
-        String challengeID = challenge.getID();
-        logger.info("Processing challenge " + challengeID);
-
-        // TODO make retry parameters configurable
-        int maxAttempts = 5;
-        int delaySeconds = 5;
-        int attempts = 0;
-        ValidationResult r = null;
-
-        while (attempts++ < maxAttempts) {
-            try {
-                r = validator.validateChallenge(authorization, challenge);
-            } catch (Exception e) {
-                ACMEError error = new ACMEError();
-                error.setType("urn:ietf:params:acme:error:serverInternal");
-                error.setDetail("Internal server error: " + e);
-                r = ValidationResult.fail(error);
-            }
-            if (r.isOK()) break;
-            Thread.sleep(delaySeconds * 1000);
-        }
+        try {
+            return validator.validateChallenge(authorization, challenge);
 
-        if (r.isOK()) {
-            finalizeValidAuthorization();
-        } else {
-            finalizeInvalidAuthorization(r.getError());
+        } catch (Exception e) {
+            ACMEError error = new ACMEError();
+            error.setType("urn:ietf:params:acme:error:serverInternal");
+            error.setDetail("Internal server error: " + e);
+            return ValidationResult.fail(error);
         }
     }
 
@@ -6,11 +6,13 @@
 package org.dogtagpki.acme.server;
 
 import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -20,6 +22,7 @@ import javax.ws.rs.core.UriInfo;
 import org.dogtagpki.acme.ACMEAccount;
 import org.dogtagpki.acme.ACMEAuthorization;
 import org.dogtagpki.acme.ACMEChallenge;
+import org.dogtagpki.acme.ACMEError;
 import org.dogtagpki.acme.ACMEHeader;
 import org.dogtagpki.acme.ACMENonce;
 import org.dogtagpki.acme.JWS;
@@ -34,6 +37,9 @@ public class ACMEChallengeService {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEChallengeService.class);
 
+    // seconds before the client should retry when validations are rejected
+    public static final int RETRY_AFTER = 30;
+
     @Context
     UriInfo uriInfo;
 
@@ -83,6 +89,14 @@ public class ACMEChallengeService {
                 throw new Exception("Unsupported challenge type: " + type);
             }
 
+            ACMEChallengeExecutor challengeExecutor = engine.getChallengeExecutor();
+
+            // avoid changing the challenge status if the queue is already full,
+            // the limit itself is enforced atomically by submit()
+            if (challengeExecutor.getQueueSize() >= challengeExecutor.getConfig().getQueueSize()) {
+                throwRateLimited("Too many pending challenge validations. Try again later.");
+            }
+
             challenge.setStatus("processing");
             engine.updateAuthorization(account, authorization);
 
@@ -92,8 +106,26 @@ public class ACMEChallengeService {
                     challenge,
                     validator);
 
-            // TODO: use thread pool
-            new Thread(processor).start();
+            String detail = null;
+
+            try {
+                if (!challengeExecutor.submit(processor)) {
+                    detail = "Authorization " + authzID + " is already being validated. Try again later.";
+                }
+
+            } catch (RejectedExecutionException e) {
+                detail = "Too many pending challenge validations. Try again later.";
+            }
+
+            if (detail != null) {
+                logger.warn("Unable to validate challenge " + challengeID + ": " + detail);
+
+                // the challenge was not scheduled, let the client retry it later
+                challenge.setStatus("pending");
+                engine.updateAuthorization(account, authorization);
+
+                throwRateLimited(detail);
+            }
 
         } else if (challengeStatus.equals("processing")) {
             // TODO: retry the challenge
@@ -134,4 +166,18 @@ public class ACMEChallengeService {
 
         return builder.build();
     }
+
+    void throwRateLimited(String detail) {
+
+        ResponseBuilder builder = Response.status(Response.Status.SERVICE_UNAVAILABLE);
+        builder.type("application/problem+json");
+        builder.header("Retry-After", RETRY_AFTER);
+
+        ACMEError error = new ACMEError();
+        error.setType("urn:ietf:params:acme:error:rateLimited");
+        error.setDetail(detail);
+        builder.entity(error);
+
+        throw new WebApplicationException(builder.build());
+    }
 }
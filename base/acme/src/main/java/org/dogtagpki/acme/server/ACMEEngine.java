@@ -9,6 +9,8 @@ import java.io.File;
 import java.io.FileReader;
 import java.math.BigInteger;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.security.KeyFactory;
 import java.security.MessageDigest;
 import java.security.PublicKey;
@@ -90,6 +92,7 @@ public class ACMEEngine {
 
     private ACMEValidatorsConfig validatorsConfig;
     private Map<String, ACMEValidator> validators = new HashMap<>();
+    private ACMEChallengeExecutor challengeExecutor;
 
     private ACMEIssuerConfig issuerConfig;
     private ACMEIssuer issuer;
@@ -100,6 +103,7 @@ public class ACMEEngine {
 
     private boolean noncesPersistent;
     private Map<String, ACMENonce> nonces = new ConcurrentHashMap<>();
+    private ACMEStatelessNonceManager statelessNonces;
 
     public static ACMEEngine getInstance() {
         return INSTANCE;
@@ -160,6 +164,10 @@ public class ACMEEngine {
         validators.put(name, validator);
     }
 
+    public ACMEChallengeExecutor getChallengeExecutor() {
+        return challengeExecutor;
+    }
+
     public ACMEIssuerConfig getIssuerConfig() {
         return issuerConfig;
     }
@@ -209,6 +217,7 @@ public class ACMEEngine {
         logger.info("- enabled: " + config.isEnabled());
         logger.info("- base URL: " + config.getBaseURL());
         logger.info("- nonces persistent: " + config.getNoncesPersistent());
+        logger.info("- nonces stateless: " + config.getNoncesStateless());
 
         ACMEPolicyConfig policyConfig = config.getPolicyConfig();
         logger.info("- wildcard: " + policyConfig.getEnableWildcards());
@@ -232,6 +241,43 @@ public class ACMEEngine {
         random = SecureRandom.getInstance("pkcs11prng", "Mozilla-JSS");
     }
 
+    public void initStatelessNonces() throws Exception {
+
+        Boolean stateless = config.getNoncesStateless();
+        if (stateless == null || !stateless) return;
+
+        logger.info("Initializing stateless nonces");
+
+        SecureRandom secureRandom = SecureRandom.getInstance("pkcs11prng", "Mozilla-JSS");
+        byte[] secret;
+        String secretFile = config.getNoncesSecretFile();
+
+        if (secretFile != null) {
+            // the secret must be the same on all ACME servers
+            logger.info("- secret file: " + secretFile);
+            secret = Files.readAllBytes(Paths.get(secretFile));
+
+        } else {
+            // nonces can only be validated by this server
+            logger.warn("Missing nonces.secretFile, generating secret for this server only");
+            secret = new byte[32];
+            secureRandom.nextBytes(secret);
+        }
+
+        Integer interval = config.getNoncesKeyRotationInterval();
+        if (interval == null) interval = 3600;
+        logger.info("- key rotation interval (seconds): " + interval);
+
+        long currentTime = System.currentTimeMillis();
+        long lifetime = policy.getNonceExpirationTime(new Date(currentTime)).getTime() - currentTime;
+
+        statelessNonces = new ACMEStatelessNonceManager(
+                secret,
+                interval * 1000L,
+                lifetime,
+                secureRandom);
+    }
+
     public void initMetadata(String filename) throws Exception {
 
         File metadataConfigFile = new File(filename);
@@ -336,6 +382,12 @@ public class ACMEEngine {
         issuer.init();
     }
 
+    public void initChallengeExecutor() throws Exception {
+
+        challengeExecutor = new ACMEChallengeExecutor(config.getValidationConfig());
+        challengeExecutor.init();
+    }
+
     public void initScheduler(String filename) throws Exception {
 
         File schedulerConfigFile = new File(filename);
@@ -457,9 +509,11 @@ public class ACMEEngine {
         this.noncesPersistent =  noncePersistent != null ? noncePersistent : false;
 
         initRandomGenerator();
+        initStatelessNonces();
         initMetadata(acmeConfDir + File.separator + "metadata.conf");
         initDatabase(acmeConfDir + File.separator + "database.conf");
         initValidators(acmeConfDir + File.separator + "validators.conf");
+        initChallengeExecutor();
         initIssuer(acmeConfDir + File.separator + "issuer.conf");
         initScheduler(acmeConfDir + File.separator + "scheduler.conf");
         initMonitors(acmeConfDir + File.separator + "configsources.conf");
@@ -484,6 +538,13 @@ public class ACMEEngine {
         validators.clear();
     }
 
+    public void shutdownChallengeExecutor() throws Exception {
+        if (challengeExecutor == null) return;
+
+        challengeExecutor.shutdown();
+        challengeExecutor = null;
+    }
+
     public void shutdownIssuer() throws Exception {
         if (issuer == null) return;
 
@@ -519,6 +580,7 @@ public class ACMEEngine {
         shutdownRealm();
         shutdownMonitors();
         shutdownScheduler();
+        shutdownChallengeExecutor();
         shutdownIssuer();
         shutdownValidators();
         shutdownDatabase();
@@ -537,6 +599,18 @@ public class ACMEEngine {
         Date currentTime = new Date();
         ACMENonce nonce = new ACMENonce();
 
+        Date expirationTime = policy.getNonceExpirationTime(currentTime);
+
+        if (statelessNonces != null) {
+            // the nonce does not need to be stored
+            nonce.setID(statelessNonces.createNonce(currentTime.getTime()));
+            nonce.setCreationTime(currentTime);
+            nonce.setExpirationTime(expirationTime);
+
+            logger.info("Created nonce: " + nonce);
+            return nonce;
+        }
+
         // generate 128-bit nonce with JSS
         // TODO: make it configurable
 
@@ -547,8 +621,6 @@ public class ACMEEngine {
 
         nonce.setID(nonceID);
         nonce.setCreationTime(currentTime);
-
-        Date expirationTime = policy.getNonceExpirationTime(currentTime);
         nonce.setExpirationTime(expirationTime);
 
         if (noncesPersistent) {
@@ -564,6 +636,11 @@ public class ACMEEngine {
 
     public void validateNonce(String value) throws Exception {
 
+        if (statelessNonces != null) {
+            validateStatelessNonce(value);
+            return;
+        }
+
         ACMENonce nonce;
 
         if (noncesPersistent) {
@@ -588,9 +665,42 @@ public class ACMEEngine {
         logger.info("Valid nonce: " + value);
     }
 
+    public void validateStatelessNonce(String value) throws Exception {
+
+        long creationTime = statelessNonces.getCreationTime(value);
+
+        if (creationTime < 0) {
+            // TODO: generate proper exception
+            throw new Exception("Invalid nonce: " + value);
+        }
+
+        Date currentTime = new Date();
+        long expirationTime = policy.getNonceExpirationTime(new Date(creationTime)).getTime();
+
+        if (expirationTime <= currentTime.getTime()) {
+            // TODO: generate proper exception
+            throw new Exception("Expired nonce: " + value);
+        }
+
+        if (!statelessNonces.markUsed(value, creationTime)) {
+            // TODO: generate proper exception
+            throw new Exception("Invalid nonce: " + value);
+        }
+
+        // creation time of the nonces expiring now
+        long lifetime = policy.getNonceExpirationTime(currentTime).getTime() - currentTime.getTime();
+        statelessNonces.removeExpiredNonces(currentTime.getTime() - lifetime);
+
+        logger.info("Valid nonce: " + value);
+    }
+
     public void removeExpiredRecords(Date currentTime) throws Exception {
 
-        if (noncesPersistent) {
+        if (statelessNonces != null) {
+            long lifetime = policy.getNonceExpirationTime(currentTime).getTime() - currentTime.getTime();
+            statelessNonces.removeExpiredNonces(currentTime.getTime() - lifetime);
+
+        } else if (noncesPersistent) {
             database.removeExpiredNonces(currentTime);
         } else {
             nonces.values().removeIf(n -> !currentTime.before(n.getExpirationTime()));
@@ -25,10 +25,16 @@ public class ACMEEngineConfig implements JSONSerializer {
     private Boolean enabled = true;
     private URL baseURL;
     private Boolean noncesPersistent;
+    private Boolean noncesStateless;
+    private String noncesSecretFile;
+    private Integer noncesKeyRotationInterval;
 
     @JsonProperty("policy")
     private ACMEPolicyConfig policyConfig = new ACMEPolicyConfig();
 
+    @JsonProperty("validation")
+    private ACMEValidationConfig validationConfig = new ACMEValidationConfig();
+
     public Boolean isEnabled() {
         return enabled;
     }
@@ -53,6 +59,30 @@ public class ACMEEngineConfig implements JSONSerializer {
         this.noncesPersistent = noncesPersistent;
     }
 
+    public Boolean getNoncesStateless() {
+        return noncesStateless;
+    }
+
+    public void setNoncesStateless(Boolean noncesStateless) {
+        this.noncesStateless = noncesStateless;
+    }
+
+    public String getNoncesSecretFile() {
+        return noncesSecretFile;
+    }
+
+    public void setNoncesSecretFile(String noncesSecretFile) {
+        this.noncesSecretFile = noncesSecretFile;
+    }
+
+    public Integer getNoncesKeyRotationInterval() {
+        return noncesKeyRotationInterval;
+    }
+
+    public void setNoncesKeyRotationInterval(Integer noncesKeyRotationInterval) {
+        this.noncesKeyRotationInterval = noncesKeyRotationInterval;
+    }
+
     public ACMEPolicyConfig getPolicyConfig() {
         return policyConfig;
     }
@@ -61,6 +91,14 @@ public class ACMEEngineConfig implements JSONSerializer {
         this.policyConfig = wildcard;
     }
 
+    public ACMEValidationConfig getValidationConfig() {
+        return validationConfig;
+    }
+
+    public void setValidationConfig(ACMEValidationConfig validationConfig) {
+        this.validationConfig = validationConfig;
+    }
+
     public static ACMEEngineConfig fromProperties(Properties props) throws Exception {
 
         ACMEEngineConfig config = new ACMEEngineConfig();
@@ -79,12 +117,28 @@ public class ACMEEngineConfig implements JSONSerializer {
             } else if (key.equals("nonces.persistent")) {
                 config.setNoncePersistent(Boolean.valueOf(value));
 
+            } else if (key.equals("nonces.stateless")) {
+                config.setNoncesStateless(Boolean.valueOf(value));
+
+            } else if (key.equals("nonces.secretFile")) {
+                config.setNoncesSecretFile(value);
+
+            } else if (key.equals("nonces.keyRotationInterval")) {
+                config.setNoncesKeyRotationInterval(Integer.valueOf(value));
+
             } else if (key.startsWith("policy.")) {
 
                 String policyKey = key.substring(7);
 
                 ACMEPolicyConfig policyConfig = config.getPolicyConfig();
                 policyConfig.setProperty(policyKey, value);
+
+            } else if (key.startsWith("validation.")) {
+
+                String validationKey = key.substring(11);
+
+                ACMEValidationConfig validationConfig = config.getValidationConfig();
+                validationConfig.setProperty(validationKey, value);
             }
         }
 
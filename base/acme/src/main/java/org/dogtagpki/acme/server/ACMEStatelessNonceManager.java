@@ -0,0 +1,235 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Nonces that can be validated without storing them.
+ *
+ * A nonce consists of a version, a creation time, a random value, and
+ * an HMAC of those fields. The HMAC key is derived from a secret shared
+ * by all ACME servers and the key rotation period of the creation time,
+ * so any server can validate a nonce created by another server, and the
+ * key changes periodically without any coordination.
+ *
+ * Used nonces are remembered in time buckets until they expire to
+ * prevent replays. The buckets are kept in memory, so a nonce can only
+ * be replayed against a different server.
+ */
+public class ACMEStatelessNonceManager {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEStatelessNonceManager.class);
+
+    public static final byte VERSION = 1;
+    public static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    public static final int RANDOM_LENGTH = 16;
+    public static final int MAC_LENGTH = 16;
+    public static final int NONCE_LENGTH = 1 + 8 + RANDOM_LENGTH + MAC_LENGTH;
+
+    // number of buckets per nonce lifetime
+    public static final int BUCKETS = 8;
+
+    // maximum clock difference between servers in milliseconds
+    public static final long CLOCK_SKEW = 60 * 1000;
+
+    private byte[] secret;
+    private long keyRotationInterval;
+    private long lifetime;
+    private SecureRandom random;
+
+    // key rotation period -> HMAC key, only for the current and future periods
+    private Map<Long, SecretKeySpec> keys = new ConcurrentHashMap<>();
+
+    // bucket -> MAC prefixes of used nonces
+    private Map<Long, Set<Long>> buckets = new ConcurrentHashMap<>();
+    private long bucketWidth;
+
+    /**
+     * @param secret secret shared by all servers
+     * @param keyRotationInterval key rotation interval in milliseconds
+     * @param lifetime nonce lifetime in milliseconds
+     */
+    public ACMEStatelessNonceManager(
+            byte[] secret,
+            long keyRotationInterval,
+            long lifetime,
+            SecureRandom random) {
+
+        this.secret = secret;
+        this.keyRotationInterval = keyRotationInterval;
+        this.lifetime = lifetime;
+        this.random = random;
+
+        bucketWidth = Math.max(1000, lifetime / BUCKETS);
+    }
+
+    /**
+     * Creates a new nonce ID for the given creation time.
+     */
+    public String createNonce(long creationTime) throws Exception {
+
+        ByteBuffer buffer = ByteBuffer.allocate(NONCE_LENGTH);
+        buffer.put(VERSION);
+        buffer.putLong(creationTime);
+
+        byte[] bytes = new byte[RANDOM_LENGTH];
+        random.nextBytes(bytes);
+        buffer.put(bytes);
+
+        buffer.put(computeMAC(buffer.array(), creationTime, creationTime));
+
+        return Base64.encodeBase64URLSafeString(buffer.array());
+    }
+
+    /**
+     * Verifies the nonce and returns its creation time.
+     *
+     * @return creation time, or -1 if the nonce is invalid
+     */
+    public long getCreationTime(String nonceID) throws Exception {
+        return getCreationTime(nonceID, System.currentTimeMillis());
+    }
+
+    /**
+     * Verifies the nonce at the given time and returns its creation time.
+     *
+     * @return creation time, or -1 if the nonce is invalid or expired
+     */
+    public long getCreationTime(String nonceID, long currentTime) throws Exception {
+
+        byte[] bytes = Base64.decodeBase64(nonceID);
+        if (bytes.length != NONCE_LENGTH || bytes[0] != VERSION) {
+            return -1;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.get();
+        long creationTime = buffer.getLong();
+
+        // check the creation time before deriving any key for it
+        if (creationTime > currentTime + CLOCK_SKEW) {
+            logger.warn("ACMEStatelessNonceManager: Nonce created in the future: " + nonceID);
+            return -1;
+        }
+
+        if (creationTime < currentTime - lifetime) {
+            logger.warn("ACMEStatelessNonceManager: Expired nonce: " + nonceID);
+            return -1;
+        }
+
+        byte[] mac = computeMAC(bytes, creationTime, currentTime);
+
+        byte[] nonceMAC = new byte[MAC_LENGTH];
+        System.arraycopy(bytes, NONCE_LENGTH - MAC_LENGTH, nonceMAC, 0, MAC_LENGTH);
+
+        if (!MessageDigest.isEqual(mac, nonceMAC)) {
+            return -1;
+        }
+
+        return creationTime;
+    }
+
+    /**
+     * Marks a valid nonce as used.
+     *
+     * @return false if the nonce has already been used
+     */
+    public boolean markUsed(String nonceID, long creationTime) {
+
+        byte[] bytes = Base64.decodeBase64(nonceID);
+
+        // the MAC is unique enough to identify the nonce
+        long id = ByteBuffer.wrap(bytes, NONCE_LENGTH - MAC_LENGTH, 8).getLong();
+
+        Set<Long> bucket = buckets.computeIfAbsent(
+                creationTime / bucketWidth,
+                k -> ConcurrentHashMap.newKeySet());
+
+        return bucket.add(id);
+    }
+
+    /**
+     * Removes the buckets and keys that only contain expired nonces.
+     *
+     * @param expirationTime creation time of the nonces expiring now
+     */
+    public void removeExpiredNonces(long expirationTime) {
+
+        // nonces in a bucket were created before the end of the bucket
+        buckets.keySet().removeIf(bucket -> (bucket + 1) * bucketWidth <= expirationTime);
+
+        // keep the key of the oldest valid nonces
+        long period = expirationTime / keyRotationInterval;
+        keys.keySet().removeIf(p -> p < period);
+    }
+
+    int getCachedKeys() {
+        return keys.size();
+    }
+
+    public int getUsedNonces() {
+        int count = 0;
+        for (Set<Long> bucket : buckets.values()) {
+            count += bucket.size();
+        }
+        return count;
+    }
+
+    byte[] computeMAC(byte[] nonce, long creationTime, long currentTime) throws Exception {
+
+        SecretKeySpec key = getKey(
+                creationTime / keyRotationInterval,
+                currentTime / keyRotationInterval);
+
+        Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+        mac.init(key);
+        mac.update(nonce, 0, NONCE_LENGTH - MAC_LENGTH);
+
+        byte[] result = new byte[MAC_LENGTH];
+        System.arraycopy(mac.doFinal(), 0, result, 0, MAC_LENGTH);
+
+        return result;
+    }
+
+    /**
+     * Derives the HMAC key for a key rotation period from the shared secret.
+     *
+     * Keys of past periods are only needed for the remaining lifetime of
+     * their nonces, so they are derived again instead of being cached.
+     */
+    SecretKeySpec getKey(long period, long currentPeriod) throws Exception {
+
+        SecretKeySpec key = keys.get(period);
+        if (key != null) {
+            return key;
+        }
+
+        Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+        mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+        mac.update("ACME nonce key".getBytes("UTF-8"));
+        mac.update(ByteBuffer.allocate(8).putLong(period).array());
+
+        key = new SecretKeySpec(mac.doFinal(), HMAC_ALGORITHM);
+
+        if (period >= currentPeriod) {
+            keys.put(period, key);
+        }
+
+        return key;
+    }
+}
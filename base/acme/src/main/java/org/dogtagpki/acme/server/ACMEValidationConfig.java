@@ -0,0 +1,148 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.netscape.certsrv.util.JSONSerializer;
+
+/**
+ * Configuration of the challenge validation executor.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class ACMEValidationConfig implements JSONSerializer {
+
+    // number of validation threads
+    private Integer threads = 10;
+
+    // maximum number of validations waiting to be executed
+    private Integer queueSize = 1000;
+
+    // maximum number of validation attempts per challenge
+    private Integer maxAttempts = 5;
+
+    // delay before the first retry in seconds
+    private Integer retryDelay = 5;
+
+    // multiplier applied to the delay after each retry
+    private Double retryBackoff = 1.0;
+
+    // maximum delay between retries in seconds
+    private Integer maxRetryDelay = 60;
+
+    public ACMEValidationConfig() {}
+
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public void setThreads(Integer threads) {
+        this.threads = threads;
+    }
+
+    public Integer getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(Integer queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(Integer maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Integer getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(Integer retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public Double getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(Double retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public Integer getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+
+    public void setMaxRetryDelay(Integer maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    /**
+     * Returns the delay in seconds before the given retry (starting from 1).
+     */
+    public long getRetryDelay(int retry) {
+
+        double delay = retryDelay * Math.pow(retryBackoff, retry - 1);
+        return (long) Math.min(delay, maxRetryDelay);
+    }
+
+    public void setProperty(String key, String value) throws Exception {
+
+        if (key.equals("threads")) {
+            threads = Integer.valueOf(value);
+
+        } else if (key.equals("queueSize")) {
+            queueSize = Integer.valueOf(value);
+
+        } else if (key.equals("maxAttempts")) {
+            maxAttempts = Integer.valueOf(value);
+
+        } else if (key.equals("retryDelay")) {
+            retryDelay = Integer.valueOf(value);
+
+        } else if (key.equals("retryBackoff")) {
+            retryBackoff = Double.valueOf(value);
+
+        } else if (key.equals("maxRetryDelay")) {
+            maxRetryDelay = Integer.valueOf(value);
+        }
+    }
+
+    public static ACMEValidationConfig fromProperties(Properties props) throws Exception {
+
+        ACMEValidationConfig config = new ACMEValidationConfig();
+
+        for (Entry<Object, Object> entry : props.entrySet()) {
+            String key = entry.getKey().toString();
+            String value = entry.getValue().toString();
+            config.setProperty(key, value);
+        }
+
+        return config;
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return toJSON();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void main(String[] args) {
+        ACMEValidationConfig config = new ACMEValidationConfig();
+        System.out.println(config);
+    }
+}
@@ -0,0 +1,148 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ACMEStatelessNonceManagerTest {
+
+    static final long KEY_ROTATION_INTERVAL = 60 * 1000;
+    static final long LIFETIME = 5 * 60 * 1000;
+
+    // fixed current time in the middle of a key rotation period
+    static final long CURRENT_TIME = 1000 * KEY_ROTATION_INTERVAL + KEY_ROTATION_INTERVAL / 2;
+
+    byte[] secret;
+    ACMEStatelessNonceManager manager;
+
+    @Before
+    public void setUp() {
+        secret = "secret".getBytes();
+        manager = createManager(secret);
+    }
+
+    ACMEStatelessNonceManager createManager(byte[] secret) {
+        return new ACMEStatelessNonceManager(
+                secret,
+                KEY_ROTATION_INTERVAL,
+                LIFETIME,
+                new SecureRandom());
+    }
+
+    /**
+     * Creates a nonce with an arbitrary creation time and an invalid MAC.
+     */
+    String createForgedNonce(long creationTime) {
+
+        ByteBuffer buffer = ByteBuffer.allocate(ACMEStatelessNonceManager.NONCE_LENGTH);
+        buffer.put(ACMEStatelessNonceManager.VERSION);
+        buffer.putLong(creationTime);
+
+        return Base64.encodeBase64URLSafeString(buffer.array());
+    }
+
+    @Test
+    public void testValidNonce() throws Exception {
+
+        String nonceID = manager.createNonce(CURRENT_TIME);
+
+        assertEquals(CURRENT_TIME, manager.getCreationTime(nonceID, CURRENT_TIME));
+        assertEquals(CURRENT_TIME, manager.getCreationTime(nonceID, CURRENT_TIME + LIFETIME));
+    }
+
+    @Test
+    public void testNonceFromAnotherServer() throws Exception {
+
+        ACMEStatelessNonceManager other = createManager(secret);
+        String nonceID = other.createNonce(CURRENT_TIME);
+
+        assertEquals(CURRENT_TIME, manager.getCreationTime(nonceID, CURRENT_TIME));
+
+        // servers with a different secret cannot validate the nonce
+        ACMEStatelessNonceManager foreign = createManager("other".getBytes());
+        assertEquals(-1, foreign.getCreationTime(nonceID, CURRENT_TIME));
+    }
+
+    @Test
+    public void testModifiedNonce() throws Exception {
+
+        byte[] bytes = Base64.decodeBase64(manager.createNonce(CURRENT_TIME));
+        bytes[ACMEStatelessNonceManager.NONCE_LENGTH - 1] ^= 1;
+
+        String nonceID = Base64.encodeBase64URLSafeString(bytes);
+        assertEquals(-1, manager.getCreationTime(nonceID, CURRENT_TIME));
+
+        assertEquals(-1, manager.getCreationTime("invalid", CURRENT_TIME));
+    }
+
+    @Test
+    public void testExpiredNonce() throws Exception {
+
+        String nonceID = manager.createNonce(CURRENT_TIME);
+
+        assertEquals(-1, manager.getCreationTime(nonceID, CURRENT_TIME + LIFETIME + 1));
+    }
+
+    @Test
+    public void testFutureNonce() throws Exception {
+
+        long skewed = CURRENT_TIME + ACMEStatelessNonceManager.CLOCK_SKEW;
+        assertEquals(skewed, manager.getCreationTime(manager.createNonce(skewed), CURRENT_TIME));
+
+        String nonceID = manager.createNonce(skewed + 1);
+        assertEquals(-1, manager.getCreationTime(nonceID, CURRENT_TIME));
+    }
+
+    @Test
+    public void testKeysOutsideWindowAreNotDerived() throws Exception {
+
+        // forged nonces from arbitrary periods must not grow the key cache
+        for (int i = 1; i <= 100; i++) {
+            long creationTime = CURRENT_TIME - LIFETIME - i * KEY_ROTATION_INTERVAL;
+            assertEquals(-1, manager.getCreationTime(createForgedNonce(creationTime), CURRENT_TIME));
+        }
+
+        assertEquals(0, manager.getCachedKeys());
+    }
+
+    @Test
+    public void testPastKeysAreNotCached() throws Exception {
+
+        ACMEStatelessNonceManager other = createManager(secret);
+
+        long creationTime = CURRENT_TIME - 2 * KEY_ROTATION_INTERVAL;
+        String nonceID = other.createNonce(creationTime);
+
+        assertEquals(creationTime, manager.getCreationTime(nonceID, CURRENT_TIME));
+        assertEquals(0, manager.getCachedKeys());
+
+        // the key of the current period is cached
+        manager.createNonce(CURRENT_TIME);
+        assertEquals(1, manager.getCachedKeys());
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+
+        String nonceID = manager.createNonce(CURRENT_TIME);
+
+        assertTrue(manager.markUsed(nonceID, CURRENT_TIME));
+        assertFalse(manager.markUsed(nonceID, CURRENT_TIME));
+        assertEquals(1, manager.getUsedNonces());
+
+        manager.removeExpiredNonces(CURRENT_TIME + LIFETIME);
+        assertEquals(0, manager.getUsedNonces());
+    }
+}
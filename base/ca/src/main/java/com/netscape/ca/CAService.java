@@ -82,6 +82,9 @@ import com.netscape.cmscore.crmf.PKIArchiveOptionsContainer;
 import com.netscape.cmscore.dbs.CertRecord;
 import com.netscape.cmscore.dbs.CertificateRepository;
 import com.netscape.cmscore.dbs.RevocationInfo;
+import com.netscape.cmscore.metrics.Counter;
+import com.netscape.cmscore.metrics.Histogram;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 import com.netscape.cmscore.profile.ProfileSubsystem;
 import com.netscape.cmscore.request.Request;
 import com.netscape.cmsutil.crypto.CryptoUtil;
@@ -94,6 +97,19 @@ public class CAService implements IService {
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CAService.class);
     private static Logger signedAuditLogger = SignedAuditLogger.getLogger();
 
+    static final Histogram issuanceTime = MetricsRegistry.getInstance().getHistogram(
+            "pki_cert_issuance_duration_seconds",
+            "Time to issue a certificate");
+    static final Counter issuanceFailures = MetricsRegistry.getInstance().getCounter(
+            "pki_cert_issuance_failures_total",
+            "Number of failed certificate issuances");
+    static final Histogram revocationTime = MetricsRegistry.getInstance().getHistogram(
+            "pki_cert_revocation_duration_seconds",
+            "Time to revoke a certificate");
+    static final Counter revocationFailures = MetricsRegistry.getInstance().getCounter(
+            "pki_cert_revocation_failures_total",
+            "Number of failed certificate revocations");
+
     public static final String CRMF_REQUEST = "CRMFRequest";
     public static final String CHALLENGE_PHRASE = "challengePhrase";
     public static final String SERIALNO_ARRAY = "serialNoArray";
@@ -591,6 +607,27 @@ public class CAService implements IService {
             boolean renewal, BigInteger oldSerialNo
             ) throws EBaseException {
 
+        long startTime = System.nanoTime();
+        boolean success = false;
+
+        try {
+            X509CertImpl cert = createX509Cert(aid, rid, certi, renewal, oldSerialNo);
+            success = true;
+            return cert;
+
+        } finally {
+            issuanceTime.observeSince(startTime);
+            if (!success) {
+                issuanceFailures.increment();
+            }
+        }
+    }
+
+    private X509CertImpl createX509Cert(
+            AuthorityID aid, String rid, X509CertInfo certi,
+            boolean renewal, BigInteger oldSerialNo
+            ) throws EBaseException {
+
         CAEngine engine = CAEngine.getInstance();
         CertificateRepository cr = engine.getCertificateRepository();
 
@@ -1002,6 +1039,24 @@ public class CAService implements IService {
     public void revokeCert(RevokedCertImpl crlentry, String requestId)
             throws EBaseException {
 
+        long startTime = System.nanoTime();
+        boolean success = false;
+
+        try {
+            markCertRevoked(crlentry, requestId);
+            success = true;
+
+        } finally {
+            revocationTime.observeSince(startTime);
+            if (!success) {
+                revocationFailures.increment();
+            }
+        }
+    }
+
+    private void markCertRevoked(RevokedCertImpl crlentry, String requestId)
+            throws EBaseException {
+
         CAEngine engine = CAEngine.getInstance();
         CertificateRepository cr = engine.getCertificateRepository();
 
@@ -17,8 +17,6 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.ca;
 
-import java.security.SignatureException;
-
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.NoSuchTokenException;
 import org.mozilla.jss.NotInitializedException;
@@ -111,6 +109,8 @@ public final class CASigningUnit extends SigningUnit {
 
             mPubk = mCert.getPublicKey();
 
+            initSignaturePool();
+
             // get def alg and check if def sign alg is valid for token.
             mDefSigningAlgname = config.getDefaultSigningAlgorithm();
             mDefSigningAlgorithm = checkSigningAlgorithmFromName(mDefSigningAlgname);
@@ -158,31 +158,30 @@ public final class CASigningUnit extends SigningUnit {
             signAlg = checkSigningAlgorithmFromName(algname);
         }
 
-        // XXX use a pool of signers based on alg ?
-        // XXX Map algor. name to id. hack: use hardcoded define for now.
-        logger.info("CASigningUnit: Getting algorithm context for " + algname + " " + signAlg);
-        Signature signer = mToken.getSignatureContext(signAlg);
+        logger.info("CASigningUnit: Signing with " + signAlg);
+        return signWithPool(data, signAlg);
+    }
 
-        signer.initSign(mPrivk);
-        signer.update(data);
+    /**
+     * Signs data written in multiple parts (e.g. a large CRL).
+     *
+     * @param writer writes the data to be signed
+     * @param algname is expected to be one of JCA's algorithm names.
+     */
+    public byte[] sign(DataWriter writer, String algname) throws Exception {
 
-        /* debugging
-        boolean testAutoShutdown = false;
-        testAutoShutdown = mConfig.getBoolean("autoShutdown.test", false);
-        if (testAutoShutdown) {
-            logger.debug("SigningUnit.sign: test auto shutdown");
-            CMS.checkForAndAutoShutdown();
+        if (!mInited) {
+            throw new EBaseException("CASigningUnit not initialized");
         }
-        */
 
-        logger.info("CASigningUnit: Signing Certificate");
+        SignatureAlgorithm signAlg = mDefSigningAlgorithm;
 
-        boolean testSignatureFailure = mConfig.getTestSignatureFailure();
-        if (testSignatureFailure) {
-            throw new SignatureException("SignatureException forced for testing");
+        if (algname != null) {
+            signAlg = checkSigningAlgorithmFromName(algname);
         }
 
-        return signer.sign();
+        logger.info("CASigningUnit: Signing streamed data with " + signAlg);
+        return signWithPool(writer, signAlg);
     }
 
     @Override
@@ -70,6 +70,7 @@ import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
 import com.netscape.cmscore.dbs.CRLRepository;
 import com.netscape.cmscore.dbs.CertRecord;
 import com.netscape.cmscore.dbs.CertificateRepository;
+import com.netscape.cmscore.dbs.RevokedCertificatesUpdate;
 import com.netscape.cmscore.ldap.CAPublisherProcessor;
 import com.netscape.cmscore.ldap.LdapRule;
 import com.netscape.cmscore.request.CertRequestRepository;
@@ -210,6 +211,12 @@ public class CRLIssuingPoint implements Runnable {
      */
     private long mCacheUpdateInterval;
 
+    /**
+     * Number of updates appended to the stored revoked certificates
+     * since they were last replaced (guarded by cacheMonitor).
+     */
+    private int mRevokedCertsUpdates;
+
     /**
      * Enable CRL updates.
      */
@@ -371,6 +378,12 @@ public class CRLIssuingPoint implements Runnable {
 
     private boolean mSaveMemory = false;
 
+    /**
+     * Encode and sign CRLs without building intermediate encodings.
+     */
+    private boolean mStreaming = false;
+    private int mStreamingBatchSize = StreamingCRLBuilder.DEFAULT_BATCH_SIZE;
+
     /**
      * One time config flag that we have an updated schedule and we want it
      * followed immediately after startup.
@@ -902,6 +915,8 @@ public class CRLIssuingPoint implements Runnable {
         mPublishDN = config.getPublishDN();
 
         mSaveMemory = config.getSaveMemory();
+        mStreaming = config.getStreaming();
+        mStreamingBatchSize = config.getStreamingBatchSize();
 
         mCMSCRLExtensions = new CMSCRLExtensions(this, config);
 
@@ -2306,7 +2321,10 @@ public class CRLIssuingPoint implements Runnable {
             }
 
             try {
-                mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                synchronized (cacheMonitor) {
+                    mRevokedCertsUpdates = 0;
+                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                }
                 mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
                 mCRLCacheIsCleared = false;
             } catch (EBaseException e) {
@@ -2427,13 +2445,19 @@ public class CRLIssuingPoint implements Runnable {
     private void updateRevokedCert(int certType,
                                    BigInteger serialNumber,
                                    RevokedCertImpl revokedCert) {
-        updateRevokedCert(certType, serialNumber, revokedCert, null);
+        updateRevokedCert(certType, serialNumber, revokedCert, null, null, null);
     }
 
+    /**
+     * update CRL cache with new revoked-unrevoked certificate info
+     * and record the changes in the specified updates (if any)
+     */
     private void updateRevokedCert(int certType,
                                    BigInteger serialNumber,
                                    RevokedCertImpl revokedCert,
-                                   String requestId) {
+                                   String requestId,
+                                   RevokedCertificatesUpdate revokedUpdate,
+                                   RevokedCertificatesUpdate unrevokedUpdate) {
         synchronized (cacheMonitor) {
             if (requestId != null && mFirstUnsaved != null &&
                     mFirstUnsaved.equals(CRLIssuingPointRecord.CLEAN_CACHE)) {
@@ -2447,6 +2471,9 @@ public class CRLIssuingPoint implements Runnable {
             if (certType == REVOKED_CERT) {
                 if (mUnrevokedCerts.containsKey(serialNumber)) {
                     mUnrevokedCerts.remove(serialNumber);
+                    if (unrevokedUpdate != null) {
+                        unrevokedUpdate.remove(serialNumber);
+                    }
                     if (mCRLCerts.containsKey(serialNumber)) {
                         Date revocationDate = revokedCert.getRevocationDate();
                         CRLExtensions entryExt = getRequiredEntryExtensions(revokedCert.getExtensions());
@@ -2462,10 +2489,16 @@ public class CRLIssuingPoint implements Runnable {
                             new RevokedCertImpl(serialNumber, revocationDate, entryExt);
 
                     mRevokedCerts.put(serialNumber, newRevokedCert);
+                    if (revokedUpdate != null) {
+                        revokedUpdate.put(serialNumber, newRevokedCert);
+                    }
                 }
             } else if (certType == UNREVOKED_CERT) {
                 if (mRevokedCerts.containsKey(serialNumber)) {
                     mRevokedCerts.remove(serialNumber);
+                    if (revokedUpdate != null) {
+                        revokedUpdate.remove(serialNumber);
+                    }
                 } else {
                     CRLExtensions entryExt = new CRLExtensions();
 
@@ -2478,11 +2511,39 @@ public class CRLIssuingPoint implements Runnable {
                             new Date(), entryExt);
 
                     mUnrevokedCerts.put(serialNumber, newRevokedCert);
+                    if (unrevokedUpdate != null) {
+                        unrevokedUpdate.put(serialNumber, newRevokedCert);
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Stores recently revoked certificates info into CRL repository.
+     * If possible the changes are appended to the stored info,
+     * otherwise the stored info is replaced.
+     */
+    private void storeRevokedCerts(
+            RevokedCertificatesUpdate revokedUpdate,
+            RevokedCertificatesUpdate unrevokedUpdate)
+            throws EBaseException {
+
+        // serialize the writes so that a replacement of the stored info
+        // cannot overwrite an update appended concurrently
+        synchronized (cacheMonitor) {
+
+            if (++mRevokedCertsUpdates <= mCRLRepository.getMaxRevokedCertsUpdates()) {
+                mCRLRepository.appendRevokedCerts(mId, revokedUpdate, unrevokedUpdate);
+                return;
+            }
+
+            // replace the stored info to merge the appended updates
+            mRevokedCertsUpdates = 0;
+            mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+        }
+    }
+
     /**
      * Adds revoked certificate to delta-CRL cache.
      *
@@ -2509,11 +2570,15 @@ public class CRLIssuingPoint implements Runnable {
             includeCert = cp.checkRevokedCertExtensions(revokedCert.getExtensions());
 
         if (mEnable && mEnableCRLCache && includeCert == true) {
-            updateRevokedCert(REVOKED_CERT, serialNumber, revokedCert, requestId);
+            RevokedCertificatesUpdate revokedUpdate = new RevokedCertificatesUpdate();
+            RevokedCertificatesUpdate unrevokedUpdate = new RevokedCertificatesUpdate();
+
+            updateRevokedCert(REVOKED_CERT, serialNumber, revokedCert, requestId,
+                    revokedUpdate, unrevokedUpdate);
 
             if (mCacheUpdateInterval == 0) {
                 try {
-                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                    storeRevokedCerts(revokedUpdate, unrevokedUpdate);
                     mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
                 } catch (EBaseException e) {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_REVOKED_CERT", mId, e.toString()), e);
@@ -2539,11 +2604,15 @@ public class CRLIssuingPoint implements Runnable {
      */
     public void addUnrevokedCert(BigInteger serialNumber, String requestId) {
         if (mEnable && mEnableCRLCache) {
-            updateRevokedCert(UNREVOKED_CERT, serialNumber, null, requestId);
+            RevokedCertificatesUpdate revokedUpdate = new RevokedCertificatesUpdate();
+            RevokedCertificatesUpdate unrevokedUpdate = new RevokedCertificatesUpdate();
+
+            updateRevokedCert(UNREVOKED_CERT, serialNumber, null, requestId,
+                    revokedUpdate, unrevokedUpdate);
 
             if (mCacheUpdateInterval == 0) {
                 try {
-                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                    storeRevokedCerts(revokedUpdate, unrevokedUpdate);
                     mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
                 } catch (EBaseException e) {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_UNREVOKED_CERT", mId, e.toString()), e);
@@ -2592,8 +2661,11 @@ public class CRLIssuingPoint implements Runnable {
     public void updateCRLCacheRepository() {
         synchronized (repositoryMonitor) {
             try {
-                mCRLRepository.updateCRLCache(mId, Long.valueOf(mCRLSize),
-                        mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
+                synchronized (cacheMonitor) {
+                    mRevokedCertsUpdates = 0;
+                    mCRLRepository.updateCRLCache(mId, Long.valueOf(mCRLSize),
+                            mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
+                }
                 mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
             } catch (EBaseException e) {
                 logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
@@ -3083,9 +3155,17 @@ public class CRLIssuingPoint implements Runnable {
                     AlgorithmId.get(signingAlgorithm),
                     thisUpdate, nextDeltaUpdate, deltaCRLCerts, ext);
 
-            newX509DeltaCRL = mCA.sign(crl, signingAlgorithm);
+            byte[] newDeltaCRL;
+
+            if (mStreaming) {
+                newDeltaCRL = signStreaming(crl, deltaCRLCerts, ext,
+                        signingAlgorithm, thisUpdate, nextDeltaUpdate);
+                newX509DeltaCRL = crl;
 
-            byte[] newDeltaCRL = newX509DeltaCRL.getEncoded();
+            } else {
+                newX509DeltaCRL = mCA.sign(crl, signingAlgorithm);
+                newDeltaCRL = newX509DeltaCRL.getEncoded();
+            }
 
             mSplits[2] += System.currentTimeMillis();
 
@@ -3196,11 +3276,21 @@ public class CRLIssuingPoint implements Runnable {
                     AlgorithmId.get(signingAlgorithm),
                     thisUpdate, nextUpdate, mCRLCerts, ext);
 
-            logger.debug("CRLIssuingPoint: signing CRL");
-            newX509CRL = mCA.sign(crl, signingAlgorithm);
+            byte[] newCRL;
+
+            if (mStreaming) {
+                logger.debug("CRLIssuingPoint: encoding and signing CRL");
+                newCRL = signStreaming(crl, mCRLCerts, ext,
+                        signingAlgorithm, thisUpdate, nextUpdate);
+                newX509CRL = crl;
+
+            } else {
+                logger.debug("CRLIssuingPoint: signing CRL");
+                newX509CRL = mCA.sign(crl, signingAlgorithm);
 
-            logger.debug("CRLIssuingPoint: encoding CRL");
-            byte[] newCRL = newX509CRL.getEncoded();
+                logger.debug("CRLIssuingPoint: encoding CRL");
+                newCRL = newX509CRL.getEncoded();
+            }
 
             mSplits[7] += System.currentTimeMillis();
 
@@ -3220,10 +3310,13 @@ public class CRLIssuingPoint implements Runnable {
                 updateCRLCacheRepository();
 
             } else {
-                mCRLRepository.updateCRLIssuingPointRecord(
-                        mId, newCRL, thisUpdate, nextUpdateDate,
-                        mNextCRLNumber, Long.valueOf(mCRLCerts.size()),
-                        mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
+                synchronized (cacheMonitor) {
+                    mRevokedCertsUpdates = 0;
+                    mCRLRepository.updateCRLIssuingPointRecord(
+                            mId, newCRL, thisUpdate, nextUpdateDate,
+                            mNextCRLNumber, Long.valueOf(mCRLCerts.size()),
+                            mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
+                }
                 mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
             }
 
@@ -3303,6 +3396,32 @@ public class CRLIssuingPoint implements Runnable {
         }
     }
 
+    /**
+     * Encodes the CRL entries in serial number order directly into
+     * the signature and the CRL encoding.
+     *
+     * @return encoded signed CRL
+     */
+    byte[] signStreaming(
+            X509CRLImpl crl,
+            Hashtable<BigInteger, RevokedCertificate> revokedCerts,
+            CRLExtensions ext,
+            String signingAlgorithm,
+            Date thisUpdate,
+            Date nextUpdate) throws Exception {
+
+        StreamingCRLBuilder builder = new StreamingCRLBuilder(
+                mCA.getCRLX500Name(),
+                AlgorithmId.get(signingAlgorithm),
+                thisUpdate,
+                nextUpdate,
+                revokedCerts,
+                ext);
+        builder.setBatchSize(mStreamingBatchSize);
+
+        return mCA.sign(crl, builder, signingAlgorithm);
+    }
+
     /**
      * Publishes the CRL immediately.
      *
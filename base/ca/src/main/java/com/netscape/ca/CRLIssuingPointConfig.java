@@ -193,6 +193,22 @@ public class CRLIssuingPointConfig extends ConfigStore {
         putBoolean("saveMemory", saveMemory);
     }
 
+    public boolean getStreaming() throws EBaseException {
+        return getBoolean("streaming", false);
+    }
+
+    public void setStreaming(boolean streaming) {
+        putBoolean("streaming", streaming);
+    }
+
+    public int getStreamingBatchSize() throws EBaseException {
+        return getInteger("streamingBatchSize", StreamingCRLBuilder.DEFAULT_BATCH_SIZE);
+    }
+
+    public void setStreamingBatchSize(int streamingBatchSize) {
+        putInteger("streamingBatchSize", streamingBatchSize);
+    }
+
     public String getSigningAlgorithm() throws EBaseException {
         return getString("signingAlgorithm", null);
     }
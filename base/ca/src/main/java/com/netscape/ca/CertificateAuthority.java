@@ -40,6 +40,9 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
@@ -55,6 +58,7 @@ import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.NicknameConflictException;
 import org.mozilla.jss.NotInitializedException;
 import org.mozilla.jss.UserCertConflictException;
+import org.mozilla.jss.asn1.ANY;
 import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.INTEGER;
@@ -112,6 +116,7 @@ import com.netscape.certsrv.logging.event.CertSigningInfoEvent;
 import com.netscape.certsrv.logging.event.OCSPSigningInfoEvent;
 import com.netscape.certsrv.ocsp.IOCSPService;
 import com.netscape.certsrv.request.RequestStatus;
+import com.netscape.certsrv.security.SigningUnit;
 import com.netscape.certsrv.security.SigningUnitConfig;
 import com.netscape.certsrv.util.IStatsSubsystem;
 import com.netscape.cms.logging.Logger;
@@ -193,11 +198,12 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
 
     protected String[] mCASigningAlgorithms = null;
 
-    protected long mNumOCSPRequest = 0;
-    protected long mTotalTime = 0;
-    protected long mTotalData = 0;
-    protected long mSignTime = 0;
-    protected long mLookupTime = 0;
+    // times in nanoseconds
+    protected LongAdder mNumOCSPRequest = new LongAdder();
+    protected LongAdder mTotalTime = new LongAdder();
+    protected LongAdder mTotalData = new LongAdder();
+    protected LongAdder mSignTime = new LongAdder();
+    protected LongAdder mLookupTime = new LongAdder();
 
     public final static int FASTSIGNING_DISABLED = 0;
     public final static int FASTSIGNING_ENABLED = 1;
@@ -214,9 +220,8 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
      * Package constants
      */
 
-    /* cache responder ID for performance */
-    private ResponderID mResponderIDByName = null;
-    private ResponderID mResponderIDByHash = null;
+    /* cache responder ID of the current OCSP signing cert for performance */
+    private volatile CachedResponderID mResponderID;
 
     /**
      * Internal constants
@@ -488,6 +493,18 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
      */
     @Override
     public void shutdown() {
+
+        if (mSigningUnit != null) {
+            mSigningUnit.shutdown();
+        }
+
+        if (mCRLSigningUnit != null) {
+            mCRLSigningUnit.shutdown();
+        }
+
+        if (mOCSPSigningUnit != null) {
+            mOCSPSigningUnit.shutdown();
+        }
     }
 
     /**
@@ -902,27 +919,27 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
             statsSub.startTiming("signing");
         }
 
-        try (DerOutputStream out = new DerOutputStream()) {
-            DerOutputStream tmp = new DerOutputStream();
+        try (DerOutputStream tmp = new DerOutputStream()) {
 
             if (algname == null) {
                 algname = mSigningUnit.getDefaultAlgorithm();
             }
 
+            // encodeInfo() keeps the encoded TBSCertList in the CRL
             crl.encodeInfo(tmp);
-            AlgorithmId.get(algname).encode(tmp);
-
             byte[] tbsCertList = crl.getTBSCertList();
 
             byte[] signature = mCRLSigningUnit.sign(tbsCertList, algname);
 
             if (crl.setSignature(signature)) {
-                tmp.putBitString(signature);
-                out.write(DerValue.tag_Sequence, tmp);
+                byte[] data = SigningUnit.encodeSignedData(
+                        tbsCertList,
+                        mCRLSigningUnit.getEncodedAlgorithmId(algname),
+                        signature,
+                        null);
 
-                if (crl.setSignedCRL(out.toByteArray())) {
+                if (crl.setSignedCRL(data)) {
                     signedcrl = crl;
-                    // signedcrl = new X509CRLImpl(out.toByteArray());
                 } else {
                     logger.warn("Failed to add signed-CRL to CRL object.");
                 }
@@ -967,6 +984,79 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
         return signedcrl;
     }
 
+    /**
+     * Signs CRL encoded by the given builder. The TBSCertList is passed
+     * to the signature while it is being encoded, and the signed CRL is
+     * encoded into a buffer of the exact size, so no intermediate
+     * encodings of the CRL are created.
+     *
+     * @param crl the unsigned CRL that will receive the signature
+     * @param builder the CRL builder
+     * @param algname the algorithm name to use
+     * @return the encoded signed CRL
+     * @exception EBaseException failed to sign CRL
+     */
+    public byte[] sign(X509CRLImpl crl, StreamingCRLBuilder builder, String algname)
+            throws EBaseException {
+
+        CAEngine engine = CAEngine.getInstance();
+        ensureReady();
+
+        IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
+        if (statsSub != null) {
+            statsSub.startTiming("signing");
+        }
+
+        try {
+            if (algname == null) {
+                algname = mSigningUnit.getDefaultAlgorithm();
+            }
+
+            builder.init();
+
+            AtomicReference<byte[]> tbsCertList = new AtomicReference<>();
+            byte[] signature = mCRLSigningUnit.sign(
+                    out -> tbsCertList.set(builder.encode(out)),
+                    algname);
+
+            byte[] data = SigningUnit.encodeSignedData(
+                    tbsCertList.get(),
+                    mCRLSigningUnit.getEncodedAlgorithmId(algname),
+                    signature,
+                    null);
+
+            if (!crl.setSignature(signature)) {
+                logger.warn("Failed to add signature to CRL object.");
+            } else if (!crl.setSignedCRL(data)) {
+                logger.warn("Failed to add signed-CRL to CRL object.");
+            }
+
+            return data;
+
+        } catch (CRLException | NoSuchAlgorithmException | IOException e) {
+            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
+            throw new ECAException(
+                    CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+
+        } catch (SignatureException e) {
+            logger.error(CMS.getUserMessage("CMS_CA_SIGNING_OPERATION_FAILED", e.toString()), e);
+            engine.checkForAndAutoShutdown();
+            throw new EBaseException(e);
+
+        } catch (EBaseException e) {
+            throw e;
+
+        } catch (Exception e) {
+            logger.error("Unable to sign data: " + e.getMessage(), e);
+            throw new EBaseException(e);
+
+        } finally {
+            if (statsSub != null) {
+                statsSub.endTiming("signing");
+            }
+        }
+    }
+
     /**
      * Signs the given certificate info using specified signing algorithm
      * If no algorithm is specified the CA's default algorithm is used.
@@ -1203,9 +1293,16 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
 
         SigningUnitConfig caSigningCfg = mConfig.getSigningUnitConfig();
 
+        CASigningUnit oldSigningUnit = mSigningUnit;
+
         mSigningUnit = new CASigningUnit();
         mSigningUnit.init(caSigningCfg, mNickname);
 
+        if (oldSigningUnit != null) {
+            // the signing cert or key might have changed
+            oldSigningUnit.shutdown();
+        }
+
         hasKeys = true;
         signingUnitException = null;
 
@@ -1249,6 +1346,8 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
 
         SigningUnitConfig crlSigningConfig = mConfig.getCRLSigningUnitConfig();
 
+        CASigningUnit oldSigningUnit = mCRLSigningUnit;
+
         if (hostCA && crlSigningConfig != null && crlSigningConfig.size() > 0) {
             mCRLSigningUnit = new CASigningUnit();
             mCRLSigningUnit.init(crlSigningConfig, null);
@@ -1256,6 +1355,10 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
             mCRLSigningUnit = mSigningUnit;
         }
 
+        if (oldSigningUnit != null && oldSigningUnit != mSigningUnit) {
+            oldSigningUnit.shutdown();
+        }
+
         X509Certificate crlCert = mCRLSigningUnit.getCert();
         logger.info("CertificateAuthority: - nickname: " + crlCert.getNickname());
 
@@ -1277,6 +1380,8 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
 
         SigningUnitConfig ocspSigningConfig = mConfig.getOCSPSigningUnitConfig();
 
+        CASigningUnit oldSigningUnit = mOCSPSigningUnit;
+
         if (hostCA && ocspSigningConfig != null && ocspSigningConfig.size() > 0) {
             mOCSPSigningUnit = new CASigningUnit();
             mOCSPSigningUnit.init(ocspSigningConfig, null);
@@ -1284,6 +1389,10 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
             mOCSPSigningUnit = mSigningUnit;
         }
 
+        if (oldSigningUnit != null && oldSigningUnit != mSigningUnit) {
+            oldSigningUnit.shutdown();
+        }
+
         X509Certificate ocspCert = mOCSPSigningUnit.getCert();
         logger.info("CertificateAuthority: - nickname: " + ocspCert.getNickname());
 
@@ -1343,7 +1452,7 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
      * @return number of processed OCSP requests in memory
      */
     public long getNumOCSPRequest() {
-        return mNumOCSPRequest;
+        return mNumOCSPRequest.sum();
     }
 
     /**
@@ -1353,7 +1462,7 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
      * @return processed times for OCSP requests
      */
     public long getOCSPRequestTotalTime() {
-        return mTotalTime;
+        return TimeUnit.NANOSECONDS.toMillis(mTotalTime.sum());
     }
 
     /**
@@ -1363,7 +1472,7 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
      * @return processed times for OCSP requests
      */
     public long getOCSPTotalData() {
-        return mTotalData;
+        return mTotalData.sum();
     }
 
     /**
@@ -1373,12 +1482,12 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
      * @return processed times for OCSP requests
      */
     public long getOCSPTotalSignTime() {
-        return mSignTime;
+        return TimeUnit.NANOSECONDS.toMillis(mSignTime.sum());
     }
 
     @Override
     public long getOCSPTotalLookupTime() {
-        return mLookupTime;
+        return TimeUnit.NANOSECONDS.toMillis(mLookupTime.sum());
     }
 
     public ResponderID getResponderIDByName() {
@@ -1483,9 +1592,9 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
 
         logger.debug("CertificateAuthority: validating OCSP request");
 
-        mNumOCSPRequest++;
+        mNumOCSPRequest.increment();
         IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
-        long startTime = new Date().getTime();
+        long startTime = System.nanoTime();
 
         try {
             //logger.info("start OCSP request");
@@ -1498,7 +1607,7 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
                 statsSub.startTiming("lookup");
             }
 
-            long lookupStartTime = new Date().getTime();
+            long lookupStartTime = System.nanoTime();
 
             for (int i = 0; i < tbsReq.getRequestCount(); i++) {
                 Request req = tbsReq.getRequestAt(i);
@@ -1506,8 +1615,7 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
                 singleResponses.addElement(sr);
             }
 
-            long lookupEndTime = new Date().getTime();
-            mLookupTime += lookupEndTime - lookupStartTime;
+            mLookupTime.add(System.nanoTime() - lookupStartTime);
 
             if (statsSub != null) {
                 statsSub.endTiming("lookup");
@@ -1520,19 +1628,7 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
             SingleResponse res[] = new SingleResponse[singleResponses.size()];
             singleResponses.copyInto(res);
 
-            ResponderID rid = null;
-
-            if (engine.getOCSPResponderByName()) {
-                if (mResponderIDByName == null) {
-                    mResponderIDByName = getResponderIDByName();
-                }
-                rid = mResponderIDByName;
-            } else {
-                if (mResponderIDByHash == null) {
-                    mResponderIDByHash = getResponderIDByHash();
-                }
-                rid = mResponderIDByHash;
-            }
+            CachedResponderID responderID = getResponderID(engine.getOCSPResponderByName());
 
             Extension nonce[] = null;
 
@@ -1545,7 +1641,9 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
                 }
             }
 
-            ResponseData rd = new ResponseData(rid,
+            ResponseData rd = new ResponseData(
+                    responderID.responderID,
+                    responderID.encodedResponderID,
                     new GeneralizedTime(new Date()), res, nonce);
 
             if (statsSub != null) {
@@ -1556,12 +1654,11 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
                 statsSub.startTiming("signing");
             }
 
-            long signStartTime = new Date().getTime();
+            long signStartTime = System.nanoTime();
 
             BasicOCSPResponse basicRes = sign(rd);
 
-            long signEndTime = new Date().getTime();
-            mSignTime += signEndTime - signStartTime;
+            mSignTime.add(System.nanoTime() - signStartTime);
 
             if (statsSub != null) {
                 statsSub.endTiming("signing");
@@ -1573,8 +1670,7 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
                             new OCTET_STRING(ASN1Util.encode(basicRes))));
 
             //logger.info("done OCSP request");
-            long endTime = new Date().getTime();
-            mTotalTime += endTime - startTime;
+            mTotalTime.add(System.nanoTime() - startTime);
 
             return response;
 
@@ -1584,6 +1680,40 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
         }
     }
 
+    /**
+     * Returns the responder ID of the current OCSP signing unit. The
+     * responder ID and its encoding are computed once per signing cert
+     * and published as a single immutable object, so requests do not
+     * need any locking.
+     */
+    private CachedResponderID getResponderID(boolean byName) {
+
+        // the signing unit creates a new cert object when it is
+        // reinitialized, e.g. after the signing cert is renewed
+        X509CertImpl ocspCert = getOCSPSigningUnit().getCertImpl();
+
+        CachedResponderID cached = mResponderID;
+        if (cached != null && cached.cert == ocspCert && cached.byName == byName) {
+            return cached;
+        }
+
+        ResponderID rid = byName ? getResponderIDByName() : getResponderIDByHash();
+        ANY encodedRID = null;
+
+        try {
+            encodedRID = ResponseData.encodeResponderID(rid);
+        } catch (Exception e) {
+            logger.warn("CertificateAuthority: Unable to encode responder ID: " + e.getMessage(), e);
+        }
+
+        // concurrent requests might create the same responder ID,
+        // the last one wins
+        cached = new CachedResponderID(ocspCert, byName, rid, encodedRID);
+        mResponderID = cached;
+
+        return cached;
+    }
+
     private BasicOCSPResponse sign(ResponseData rd) throws EBaseException {
 
         CAEngine engine = CAEngine.getInstance();
@@ -1591,37 +1721,22 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
 
         String algname = mOCSPSigningUnit.getDefaultAlgorithm();
 
-        try (DerOutputStream out = new DerOutputStream()) {
-            DerOutputStream tmp = new DerOutputStream();
-
+        try {
+            // encode the response data only once
             byte rd_data[] = ASN1Util.encode(rd);
-            if (rd_data != null) {
-                mTotalData += rd_data.length;
-            }
-            rd.encode(tmp);
-            AlgorithmId.get(algname).encode(tmp);
+            mTotalData.add(rd_data.length);
+
             logger.debug("adding signature");
             byte[] signature = mOCSPSigningUnit.sign(rd_data, algname);
 
-            tmp.putBitString(signature);
             // optional, put the certificate chains in also
+            byte[] data = SigningUnit.encodeSignedData(
+                    rd_data,
+                    mOCSPSigningUnit.getEncodedAlgorithmId(algname),
+                    signature,
+                    mOCSPSigningUnit.getEncodedCertChain());
 
-            DerOutputStream tmpChain = new DerOutputStream();
-            DerOutputStream tmp1 = new DerOutputStream();
-            java.security.cert.X509Certificate chains[] = mOCSPSigningUnit.getCertChain().getChain();
-
-            for (int i = 0; i < chains.length; i++) {
-                tmpChain.putDerValue(new DerValue(chains[i].getEncoded()));
-            }
-            tmp1.write(DerValue.tag_Sequence, tmpChain);
-            tmp.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 0),
-                    tmp1);
-
-            out.write(DerValue.tag_Sequence, tmp);
-
-            BasicOCSPResponse response = new BasicOCSPResponse(out.toByteArray());
-
-            return response;
+            return BasicOCSPResponse.wrap(data);
 
         } catch (NoSuchAlgorithmException e) {
             logger.error(CMS.getLogMessage("OPERATION_ERROR", e.toString()), e);
@@ -2032,4 +2147,22 @@ public class CertificateAuthority implements IAuthority, ICertificateAuthority,
             throw new ECAException("TokenException while deleting cert: " + e);
         }
     }
+
+    /**
+     * Responder ID created for an OCSP signing cert.
+     */
+    private static class CachedResponderID {
+
+        final X509CertImpl cert;
+        final boolean byName;
+        final ResponderID responderID;
+        final ANY encodedResponderID;
+
+        CachedResponderID(X509CertImpl cert, boolean byName, ResponderID responderID, ANY encodedResponderID) {
+            this.cert = cert;
+            this.byName = byName;
+            this.responderID = responderID;
+            this.encodedResponderID = encodedResponderID;
+        }
+    }
 }
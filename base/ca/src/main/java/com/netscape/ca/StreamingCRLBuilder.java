@@ -0,0 +1,261 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ca;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Map;
+
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+
+/**
+ * Encodes the TBSCertList of a CRL directly from a table of revoked
+ * certificates.
+ *
+ * The revoked certificates are written in ascending serial number
+ * order in batches, so the encoding can be passed to the signature
+ * and to the output as it is generated without building the CRL
+ * object and its intermediate encodings. The lengths are computed
+ * in a separate pass, so each entry is encoded twice.
+ *
+ * The entries are taken from the table once in init(), so changes
+ * to the table afterwards do not affect the encoding.
+ */
+public class StreamingCRLBuilder {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(StreamingCRLBuilder.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // dates before 2050 are encoded as UTCTime (RFC 5280 section 4.1.2.5)
+    public static final long YR_2050 = 2524636800000L;
+
+    private X500Name issuer;
+    private AlgorithmId algorithm;
+    private Date thisUpdate;
+    private Date nextUpdate;
+    private Map<BigInteger, RevokedCertificate> revokedCerts;
+    private CRLExtensions extensions;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private RevokedCertificate[] entries;
+    private byte[] header;
+    private long entriesLength;
+    private byte[] trailer;
+    private long length;
+
+    public StreamingCRLBuilder(
+            X500Name issuer,
+            AlgorithmId algorithm,
+            Date thisUpdate,
+            Date nextUpdate,
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            CRLExtensions extensions) {
+
+        this.issuer = issuer;
+        this.algorithm = algorithm;
+        this.thisUpdate = thisUpdate;
+        this.nextUpdate = nextUpdate;
+        this.revokedCerts = revokedCerts;
+        this.extensions = extensions;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getSize() {
+        return entries.length;
+    }
+
+    /**
+     * Returns the length of the encoded TBSCertList.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Takes a sorted snapshot of the entries and computes the length
+     * of the TBSCertList. This must be called before writing.
+     */
+    public void init() throws Exception {
+
+        // lock the table like Hashtable.writeObject() does
+        synchronized (revokedCerts) {
+            entries = revokedCerts.values().toArray(new RevokedCertificate[0]);
+        }
+        Arrays.sort(entries, Comparator.comparing(RevokedCertificate::getSerialNumber));
+
+        // version 2 is required if there are CRL or CRL entry extensions
+        boolean hasExtensions = extensions != null && !extensions.isEmpty();
+        boolean v2 = hasExtensions;
+
+        entriesLength = 0;
+        for (RevokedCertificate revokedCert : entries) {
+            entriesLength += revokedCert.getEncoded().length;
+            v2 = v2 || revokedCert.hasExtensions();
+        }
+
+        try (DerOutputStream out = new DerOutputStream()) {
+
+            if (v2) {
+                out.putInteger(new BigInt(1));
+            }
+
+            algorithm.encode(out);
+            issuer.encode(out);
+            putTime(out, thisUpdate);
+
+            if (nextUpdate != null) {
+                putTime(out, nextUpdate);
+            }
+
+            header = out.toByteArray();
+        }
+
+        // crlExtensions is omitted if there are no extensions
+        if (hasExtensions) {
+            try (DerOutputStream out = new DerOutputStream()) {
+                extensions.encode(out, true);
+                trailer = out.toByteArray();
+            }
+        } else {
+            trailer = new byte[0];
+        }
+
+        // revokedCertificates is omitted if there are no entries
+        long revokedCertsLength = entries.length == 0 ? 0
+                : 1 + getLengthSize(entriesLength) + entriesLength;
+
+        long contentLength = header.length + revokedCertsLength + trailer.length;
+        length = 1 + getLengthSize(contentLength) + contentLength;
+
+        logger.info("StreamingCRLBuilder: CRL entries: " + entries.length);
+        logger.info("StreamingCRLBuilder: TBSCertList length: " + length);
+    }
+
+    /**
+     * Writes the TBSCertList into the given stream.
+     */
+    public void writeTo(OutputStream out) throws Exception {
+
+        long revokedCertsLength = entries.length == 0 ? 0
+                : 1 + getLengthSize(entriesLength) + entriesLength;
+
+        writeHeader(out, DerValue.tag_Sequence, header.length + revokedCertsLength + trailer.length);
+        out.write(header);
+
+        if (entries.length > 0) {
+            writeHeader(out, DerValue.tag_Sequence, entriesLength);
+
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            long written = 0;
+
+            for (int i = 0; i < entries.length; i++) {
+
+                byte[] entry = entries[i].getEncoded();
+                batch.write(entry);
+                written += entry.length;
+
+                if ((i + 1) % batchSize == 0) {
+                    batch.writeTo(out);
+                    batch.reset();
+                }
+            }
+
+            batch.writeTo(out);
+
+            if (written != entriesLength) {
+                // an entry was modified after init()
+                throw new IOException("CRL entries changed during encoding");
+            }
+        }
+
+        out.write(trailer);
+    }
+
+    /**
+     * Encodes the TBSCertList into a byte array of the exact size
+     * while passing the encoding to the given stream (e.g. the signature).
+     */
+    public byte[] encode(OutputStream out) throws Exception {
+
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("CRL too large: " + length);
+        }
+
+        byte[] encoding = new byte[(int) length];
+
+        writeTo(new OutputStream() {
+
+            int pos;
+
+            @Override
+            public void write(int b) throws IOException {
+                encoding[pos++] = (byte) b;
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                System.arraycopy(b, off, encoding, pos, len);
+                pos += len;
+                out.write(b, off, len);
+            }
+        });
+
+        return encoding;
+    }
+
+    static void putTime(DerOutputStream out, Date date) throws IOException {
+        if (date.getTime() < YR_2050) {
+            out.putUTCTime(date);
+        } else {
+            out.putGeneralizedTime(date);
+        }
+    }
+
+    static int getLengthSize(long length) {
+        if (length < 0x80) return 1;
+        if (length < 0x100) return 2;
+        if (length < 0x10000) return 3;
+        if (length < 0x1000000) return 4;
+        return 5;
+    }
+
+    static void writeHeader(OutputStream out, byte tag, long length) throws IOException {
+
+        out.write(tag);
+
+        int size = getLengthSize(length);
+
+        if (size == 1) {
+            out.write((int) length);
+            return;
+        }
+
+        out.write(0x80 | (size - 1));
+        for (int i = size - 2; i >= 0; i--) {
+            out.write((int) (length >>> (8 * i)) & 0xff);
+        }
+    }
+}
@@ -224,6 +224,13 @@ public class PublishCertsJob extends Job
             if (rec == null)
                 break;
 
+            if (isStopped()) {
+                logger.info("PublishCertsJob: Job stopped");
+                break;
+            }
+
+            recordProcessed();
+
             CertId certID = new CertId(rec.getSerialNumber());
             logger.info("PublishCertsJob: Publishing cert " + certID.toHexString());
 
@@ -418,6 +418,13 @@ public class RenewalNotificationJob
                 while (en.hasMoreElements()) {
                     Object element = en.nextElement();
 
+                    if (isStopped()) {
+                        logger.info("RenewalNotificationJob: Job stopped");
+                        break;
+                    }
+
+                    recordProcessed();
+
                     try {
                         cp.process(element);
                     } catch (Exception e) {
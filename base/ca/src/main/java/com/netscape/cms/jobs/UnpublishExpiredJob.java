@@ -211,6 +211,14 @@ public class UnpublishExpiredJob extends Job
 
             if (rec == null)
                 break;
+
+            if (isStopped()) {
+                logger.info("UnpublishExpiredJob: Job stopped");
+                break;
+            }
+
+            recordProcessed();
+
             X509CertImpl cert = rec.getCertificate();
 
             if (mSummary == true)
@@ -18,6 +18,7 @@
 package com.netscape.cms.publish.publishers;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
@@ -29,11 +30,13 @@ import java.security.cert.X509CRL;
 import java.util.Date;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.zip.GZIPOutputStream;
 
 import org.dogtagpki.server.PKIClientSocketListener;
 import org.dogtagpki.server.ca.CAEngine;
 import org.dogtagpki.server.ca.CAEngineConfig;
 import org.mozilla.jss.netscape.security.util.Utils;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IExtendedPluginInfo;
@@ -62,6 +65,22 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
     private static final String PROP_PATH = "path";
     private static final String PROP_NICK = "nickName";
     private static final String PROP_CLIENT_AUTH_ENABLE = "enableClientAuth";
+    private static final String PROP_ASYNC = "async";
+    private static final String PROP_FORMAT = "format";
+    private static final String PROP_COMPRESS = "compress";
+    private static final String PROP_DELTA_CRL = "deltaCRL";
+    private static final String PROP_RETRY_DELAY = "retryDelay";
+    private static final String PROP_MAX_RETRY_DELAY = "maxRetryDelay";
+
+    public static final String FORMAT_PEM = "pem";
+    public static final String FORMAT_DER = "der";
+
+    public static final String CONTENT_TYPE_PKIX_CRL = "application/pkix-crl";
+
+    // status codes returned by the OCSP responder
+    public static final int STATUS_SUCCESS = 0;
+    public static final int STATUS_REJECTED = 1;
+    public static final int STATUS_FULL_CRL_REQUIRED = 2;
 
     private ConfigStore mConfig;
     private String mHost = null;
@@ -69,6 +88,10 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
     private String mPath = null;
     private String mNickname = null;
     private boolean mClientAuthEnabled = true;
+    private String mFormat = FORMAT_PEM;
+    private boolean mCompress = false;
+    private boolean mDeltaCRL = true;
+    private OCSPPublisherQueue mQueue;
 
     /**
      * Returns the implementation name.
@@ -94,6 +117,13 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
                 PROP_PATH + ";string;URI of CMS's OCSP Secure agent service",
                 PROP_NICK + ";string;Nickname of cert used for client authentication",
                 PROP_CLIENT_AUTH_ENABLE + ";boolean;Client Authentication enabled",
+                PROP_ASYNC + ";boolean;Publish CRLs in the background and retry failures",
+                PROP_FORMAT + ";choice(" + FORMAT_PEM + "," + FORMAT_DER + ");"
+                        + "Send CRLs as PEM form parameter or as DER request body",
+                PROP_COMPRESS + ";boolean;Compress DER CRLs with gzip",
+                PROP_DELTA_CRL + ";boolean;Publish delta CRLs",
+                PROP_RETRY_DELAY + ";integer;Initial delay in seconds before retrying a failed asynchronous publication",
+                PROP_MAX_RETRY_DELAY + ";integer;Maximum delay in seconds between retries",
                 IExtendedPluginInfo.HELP_TOKEN +
                         ";configuration-ldappublish-publisher-ocsppublisher",
                 IExtendedPluginInfo.HELP_TEXT +
@@ -140,6 +170,25 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
         } catch (EBaseException e) {
         }
         v.addElement(PROP_CLIENT_AUTH_ENABLE + "=" + clientAuthEnabled);
+
+        String[] names = {
+                PROP_ASYNC,
+                PROP_FORMAT,
+                PROP_COMPRESS,
+                PROP_DELTA_CRL,
+                PROP_RETRY_DELAY,
+                PROP_MAX_RETRY_DELAY
+        };
+
+        for (String name : names) {
+            String value = "";
+            try {
+                value = mConfig.getString(name, "");
+            } catch (EBaseException e) {
+            }
+            v.addElement(name + "=" + value);
+        }
+
         return v;
     }
 
@@ -168,6 +217,12 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
         v.addElement(PROP_PATH + "=/ocsp/agent/ocsp/addCRL");
         v.addElement(PROP_CLIENT_AUTH_ENABLE + "=true");
         v.addElement(PROP_NICK + "=" + nickname);
+        v.addElement(PROP_ASYNC + "=false");
+        v.addElement(PROP_FORMAT + "=" + FORMAT_PEM);
+        v.addElement(PROP_COMPRESS + "=false");
+        v.addElement(PROP_DELTA_CRL + "=true");
+        v.addElement(PROP_RETRY_DELAY + "=" + OCSPPublisherQueue.DEFAULT_RETRY_DELAY);
+        v.addElement(PROP_MAX_RETRY_DELAY + "=" + OCSPPublisherQueue.DEFAULT_MAX_RETRY_DELAY);
         return v;
     }
 
@@ -182,6 +237,50 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
         mPath = mConfig.getString(PROP_PATH, "");
         mNickname = mConfig.getString(PROP_NICK, "");
         mClientAuthEnabled = mConfig.getBoolean(PROP_CLIENT_AUTH_ENABLE, true);
+        mFormat = mConfig.getString(PROP_FORMAT, FORMAT_PEM);
+        mCompress = mConfig.getBoolean(PROP_COMPRESS, false);
+        mDeltaCRL = mConfig.getBoolean(PROP_DELTA_CRL, true);
+
+        if (!FORMAT_PEM.equals(mFormat) && !FORMAT_DER.equals(mFormat)) {
+            throw new EBaseException("Invalid OCSP publisher format: " + mFormat);
+        }
+
+        if (mCompress && !FORMAT_DER.equals(mFormat)) {
+            logger.warn("OCSPPublisher: Compression is only supported in " + FORMAT_DER + " format");
+            mCompress = false;
+        }
+
+        // stop the queue of a previous configuration
+        shutdown();
+        mQueue = null;
+
+        if (mConfig.getBoolean(PROP_ASYNC, false)) {
+            mQueue = new OCSPPublisherQueue(
+                    this,
+                    mConfig.getInteger(PROP_RETRY_DELAY, OCSPPublisherQueue.DEFAULT_RETRY_DELAY),
+                    mConfig.getInteger(PROP_MAX_RETRY_DELAY, OCSPPublisherQueue.DEFAULT_MAX_RETRY_DELAY));
+        }
+    }
+
+    /**
+     * Stops publishing the queued CRLs.
+     */
+    public void shutdown() {
+        if (mQueue != null) {
+            mQueue.shutdown();
+        }
+    }
+
+    public String getURL() {
+        return "https://" + mHost + ":" + mPort + mPath;
+    }
+
+    /**
+     * Returns the queue of CRLs waiting to be published,
+     * or null if publishing synchronously.
+     */
+    public OCSPPublisherQueue getQueue() {
+        return mQueue;
     }
 
     @Override
@@ -227,79 +326,153 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
      *            java.security.cert.X509CRL)
      */
     @Override
-    public synchronized void publish(LDAPConnection conn, String dn, Object object)
+    public void publish(LDAPConnection conn, String dn, Object object)
             throws ELdapException {
+
+        if (!(object instanceof X509CRLImpl)) {
+            return;
+        }
+
+        X509CRLImpl crl = (X509CRLImpl) object;
+
+        if (crl.isDeltaCRL() && !mDeltaCRL) {
+            logger.debug("OCSPPublisher: Skipping delta CRL");
+            return;
+        }
+
+        if (mQueue == null) {
+            publishCRL(crl);
+            return;
+        }
+
         try {
-            if (!(object instanceof X509CRL)) {
-                return;
+            mQueue.add(crl.getEncoded(), crl.getCRLNumber(), crl.isDeltaCRL());
+
+        } catch (CRLException e) {
+            logger.warn("OCSPPublisher: Unable to publish CRL: " + e.getMessage(), e);
+            logger.warn(CMS.getLogMessage("PUBLISH_OCSP_PUBLISHER_ERROR", e.toString()));
+        }
+    }
+
+    /**
+     * Publishes a CRL and waits for the OCSP responder to store it.
+     */
+    protected synchronized void publishCRL(X509CRL crl) {
+        try {
+            int status = send(crl.getEncoded());
+
+            if (status == STATUS_FULL_CRL_REQUIRED) {
+                logger.warn("OCSPPublisher: OCSP responder requires full CRL");
             }
 
-            X509CRL crl = (X509CRL) object;
+        } catch (IOException e) {
+            logger.warn("OCSPPublisher: Unable to publish CRL: " + e.getMessage(), e);
+            logger.warn(CMS.getLogMessage("PUBLISH_OCSP_PUBLISHER_ERROR", e.toString()));
+
+        } catch (CRLException e) {
+            logger.warn("OCSPPublisher: Unable to publish CRL: " + e.getMessage(), e);
+            logger.warn(CMS.getLogMessage("PUBLISH_OCSP_PUBLISHER_ERROR", e.toString()));
 
-            // talk to agent port of CMS
+        } catch (Exception e) {
+            logger.warn("OCSPPublisher: Unable to publish CRL: " + e.getMessage(), e);
+            logger.warn(CMS.getLogMessage("PUBLISH_OCSP_PUBLISHER_ERROR", e.toString()));
+        }
+    }
 
-            // open the connection and prepare it to POST
-            boolean secure = true;
+    /**
+     * Sends an encoded CRL to the OCSP responder.
+     *
+     * @return status returned by the OCSP responder
+     */
+    public int send(byte[] crl) throws Exception {
 
-            String host = mHost;
-            int port = Integer.parseInt(mPort);
-            String path = mPath;
+        // talk to agent port of CMS
 
-            String url = "https://" + host + ":" + port + path;
-            logger.info("OCSPPublisher: Publishing CRL to " + url);
+        // open the connection and prepare it to POST
+        boolean secure = true;
 
-            StringBuffer query = new StringBuffer();
-            query.append("crl=");
-            query.append(URLEncoder.encode("-----BEGIN CERTIFICATE REVOCATION LIST-----\n", "UTF-8"));
-            query.append(URLEncoder.encode(Utils.base64encode(crl.getEncoded(), true), "UTF-8"));
-            query.append(URLEncoder.encode("\n-----END CERTIFICATE REVOCATION LIST-----", "UTF-8"));
-            query.append("&noui=true");
+        String host = mHost;
+        int port = Integer.parseInt(mPort);
+        String path = mPath;
 
-            Socket socket = null;
-            JssSSLSocketFactory factory;
-            PKIClientSocketListener sockListener = new PKIClientSocketListener();
+        String url = "https://" + host + ":" + port + path;
+        logger.info("OCSPPublisher: Publishing CRL to " + url);
 
-            if (mClientAuthEnabled) {
-                factory = new JssSSLSocketFactory(mNickname);
-            } else {
-                factory = new JssSSLSocketFactory();
-            }
-            factory.addSocketListener(sockListener);
-
-            if (mHost != null && mHost.indexOf(' ') != -1) {
-                // support failover hosts configuration
-                // host parameter can be
-                // "directory.knowledge.com:1050 people.catalog.com 199.254.1.2"
-                do {
-                    socket = Connect(mHost, secure, factory);
-                } while (socket == null);
+        Socket socket = null;
+        JssSSLSocketFactory factory;
+        PKIClientSocketListener sockListener = new PKIClientSocketListener();
+
+        if (mClientAuthEnabled) {
+            factory = new JssSSLSocketFactory(mNickname);
+        } else {
+            factory = new JssSSLSocketFactory();
+        }
+        factory.addSocketListener(sockListener);
+
+        if (mHost != null && mHost.indexOf(' ') != -1) {
+            // support failover hosts configuration
+            // host parameter can be
+            // "directory.knowledge.com:1050 people.catalog.com 199.254.1.2"
+            do {
+                socket = Connect(mHost, secure, factory);
+            } while (socket == null);
+        } else {
+            if (secure) {
+                socket = factory.makeSocket(host, port);
             } else {
-                if (secure) {
-                    socket = factory.makeSocket(host, port);
-                } else {
-                    socket = new Socket(host, port);
-                }
+                socket = new Socket(host, port);
             }
+        }
 
-            if (socket == null) {
-                logger.error("OCSPPublisher: Unable to connect to " + url);
-                throw new ELdapException("Unable to connect to " + url);
-            }
+        if (socket == null) {
+            logger.error("OCSPPublisher: Unable to connect to " + url);
+            throw new ELdapException("Unable to connect to " + url);
+        }
 
+        try {
             // use HttpRequest and POST
             HttpRequest httpReq = new HttpRequest();
 
             httpReq.setMethod("POST");
             httpReq.setURI(path);
-            httpReq.setHeader("Connection", "Keep-Alive");
 
-            httpReq.setHeader("Content-Type",
-                    "application/x-www-form-urlencoded");
-            httpReq.setHeader("Content-Transfer-Encoding", "7bit");
+            byte[] content = null;
+
+            if (FORMAT_DER.equals(mFormat)) {
+                content = crl;
+
+                if (mCompress) {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    try (GZIPOutputStream gos = new GZIPOutputStream(bos)) {
+                        gos.write(crl);
+                    }
+                    content = bos.toByteArray();
+                    httpReq.setHeader("Content-Encoding", "gzip");
+                }
+
+                httpReq.setHeader("Connection", "close");
+                httpReq.setHeader("Content-Type", CONTENT_TYPE_PKIX_CRL);
+                httpReq.setHeader("Content-Length", Integer.toString(content.length));
+
+            } else {
+                StringBuffer query = new StringBuffer();
+                query.append("crl=");
+                query.append(URLEncoder.encode("-----BEGIN CERTIFICATE REVOCATION LIST-----\n", "UTF-8"));
+                query.append(URLEncoder.encode(Utils.base64encode(crl, true), "UTF-8"));
+                query.append(URLEncoder.encode("\n-----END CERTIFICATE REVOCATION LIST-----", "UTF-8"));
+                query.append("&noui=true");
+
+                httpReq.setHeader("Connection", "Keep-Alive");
+
+                httpReq.setHeader("Content-Type",
+                        "application/x-www-form-urlencoded");
+                httpReq.setHeader("Content-Transfer-Encoding", "7bit");
+
+                httpReq.setHeader("Content-Length",
+                        Integer.toString(query.length()));
+                httpReq.setContent(query.toString());
+            }
 
-            httpReq.setHeader("Content-Length",
-                    Integer.toString(query.length()));
-            httpReq.setContent(query.toString());
             OutputStream os = socket.getOutputStream();
             OutputStreamWriter outputStreamWriter = new OutputStreamWriter(os, "UTF8");
 
@@ -310,6 +483,11 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
 
             httpReq.write(outputStreamWriter);
 
+            if (content != null) {
+                os.write(content);
+                os.flush();
+            }
+
             long endTime = new Date().getTime();
             logger.debug("OCSPPublisher: done CRL sending endTime=" + endTime + " diff=" + (endTime - startTime));
 
@@ -318,12 +496,14 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
             BufferedReader dis = new BufferedReader(new InputStreamReader(socket.getInputStream()));
             String nextline;
             String error = "";
-            boolean status = false;
+            int status = STATUS_REJECTED;
 
             while ((nextline = dis.readLine()) != null) {
                 if (nextline.startsWith("status=")) {
-                    if (nextline.substring(7, nextline.length()).equals("0")) {
-                        status = true;
+                    try {
+                        status = Integer.parseInt(nextline.substring(7, nextline.length()).trim());
+                    } catch (NumberFormatException e) {
+                        status = STATUS_REJECTED;
                     }
                 }
                 if (nextline.startsWith("error=")) {
@@ -331,23 +511,16 @@ public class OCSPPublisher implements ILdapPublisher, IExtendedPluginInfo {
                 }
             }
             dis.close();
-            if (status) {
+            if (status == STATUS_SUCCESS) {
                 logger.debug("OCSPPublisher: successful");
             } else {
                 logger.warn("OCSPPublisher: Unable to publish CRL: " + error);
             }
 
-        } catch (IOException e) {
-            logger.warn("OCSPPublisher: Unable to publish CRL: " + e.getMessage(), e);
-            logger.warn(CMS.getLogMessage("PUBLISH_OCSP_PUBLISHER_ERROR", e.toString()));
+            return status;
 
-        } catch (CRLException e) {
-            logger.warn("OCSPPublisher: Unable to publish CRL: " + e.getMessage(), e);
-            logger.warn(CMS.getLogMessage("PUBLISH_OCSP_PUBLISHER_ERROR", e.toString()));
-
-        } catch (Exception e) {
-            logger.warn("OCSPPublisher: Unable to publish CRL: " + e.getMessage(), e);
-            logger.warn(CMS.getLogMessage("PUBLISH_OCSP_PUBLISHER_ERROR", e.toString()));
+        } finally {
+            socket.close();
         }
     }
 
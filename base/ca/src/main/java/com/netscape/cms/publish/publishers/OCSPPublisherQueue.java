@@ -0,0 +1,331 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.publish.publishers;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.metrics.Metric;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+
+/**
+ * CRLs waiting to be published to an OCSP responder.
+ *
+ * Each asynchronous OCSP publisher has its own queue and thread, so
+ * a slow or unavailable responder does not delay CRL publishing or
+ * the other responders. Only the latest full CRL and the latest delta
+ * CRL are kept: a new full CRL replaces all pending CRLs, and a new
+ * delta CRL replaces the pending delta CRL since delta CRLs contain
+ * all changes since their base CRL. Failed attempts are retried with
+ * exponential backoff until they succeed or the CRL is replaced.
+ *
+ * If the responder does not have the base CRL of a delta CRL, the
+ * last full CRL is sent before the delta CRL again.
+ */
+public class OCSPPublisherQueue {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPPublisherQueue.class);
+
+    public static final int DEFAULT_RETRY_DELAY = 5; // seconds
+    public static final int DEFAULT_MAX_RETRY_DELAY = 300; // seconds
+
+    static class PendingCRL {
+
+        byte[] data;
+        BigInteger number;
+        boolean delta;
+        long time;
+
+        // whether the full CRL has already been resent for this delta CRL
+        boolean fullCRLSent;
+
+        PendingCRL(byte[] data, BigInteger number, boolean delta, long time) {
+            this.data = data;
+            this.number = number;
+            this.delta = delta;
+            this.time = time;
+        }
+    }
+
+    private OCSPPublisher publisher;
+    private int retryDelay;
+    private int maxRetryDelay;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private PendingCRL pendingCRL;
+    private PendingCRL pendingDeltaCRL;
+
+    // kept in case the responder requires a full CRL for a delta CRL
+    private PendingCRL lastCRL;
+
+    private boolean scheduled;
+    private int attempts;
+
+    private volatile long lastPublished;
+    private volatile long lastLag;
+
+    private LongAdder published = new LongAdder();
+    private LongAdder failures = new LongAdder();
+
+    // metrics removed on shutdown()
+    private List<Metric> metrics = new ArrayList<>();
+
+    public OCSPPublisherQueue(OCSPPublisher publisher, int retryDelay, int maxRetryDelay) {
+
+        this.publisher = publisher;
+        this.retryDelay = Math.max(1, retryDelay);
+        this.maxRetryDelay = Math.max(this.retryDelay, maxRetryDelay);
+
+        executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "OCSPPublisher-" + publisher.getURL());
+            t.setDaemon(true);
+            return t;
+        });
+
+        // release the thread while there is nothing to publish
+        executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+
+        registerMetrics();
+    }
+
+    /**
+     * Registers the queue statistics in the metrics registry, labeled
+     * with the publisher instance and the responder URL.
+     */
+    private void registerMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        ConfigStore config = publisher.getConfigStore();
+        String[] labels = {
+                "publisher", config == null ? null : config.getName(),
+                "responder", publisher.getURL()
+        };
+
+        metrics.add(registry.getGauge(
+                "pki_ocsp_publisher_queue_size",
+                "Number of CRLs waiting to be published to the OCSP responder",
+                this::getSize,
+                labels));
+
+        metrics.add(registry.getGauge(
+                "pki_ocsp_publisher_lag_milliseconds",
+                "Time the oldest pending CRL has been waiting to be published",
+                this::getLag,
+                labels));
+
+        metrics.add(registry.getGauge(
+                "pki_ocsp_publisher_last_lag_milliseconds",
+                "Time between queuing and publishing of the last published CRL",
+                this::getLastLag,
+                labels));
+
+        metrics.add(registry.getGauge(
+                "pki_ocsp_publisher_last_published_timestamp_seconds",
+                "Time of the last successful CRL publication",
+                () -> TimeUnit.MILLISECONDS.toSeconds(getLastPublished()),
+                labels));
+
+        metrics.add(registry.getFunctionCounter(
+                "pki_ocsp_publisher_published_total",
+                "Number of CRLs published to the OCSP responder",
+                this::getPublished,
+                labels));
+
+        metrics.add(registry.getFunctionCounter(
+                "pki_ocsp_publisher_failures_total",
+                "Number of failed attempts to publish a CRL to the OCSP responder",
+                this::getFailures,
+                labels));
+    }
+
+    /**
+     * Adds an encoded CRL to the queue and returns immediately.
+     */
+    public synchronized void add(byte[] data, BigInteger number, boolean delta) {
+
+        PendingCRL crl = new PendingCRL(data, number, delta, System.currentTimeMillis());
+
+        if (delta) {
+            logger.info("OCSPPublisher: Queuing delta CRL " + number + " for " + publisher.getURL());
+            pendingDeltaCRL = crl;
+
+        } else {
+            logger.info("OCSPPublisher: Queuing CRL " + number + " for " + publisher.getURL());
+            pendingCRL = crl;
+            pendingDeltaCRL = null;
+            lastCRL = crl;
+        }
+
+        if (scheduled) {
+            // the CRL will be sent by the pending attempt or retry
+            return;
+        }
+
+        scheduled = true;
+        schedule(0);
+    }
+
+    void schedule(long delay) {
+        try {
+            executor.schedule(this::publish, delay, TimeUnit.SECONDS);
+
+        } catch (RejectedExecutionException e) {
+            logger.warn("OCSPPublisher: Unable to schedule CRL publishing: " + e.getMessage());
+            scheduled = false;
+        }
+    }
+
+    void publish() {
+
+        PendingCRL crl;
+        synchronized (this) {
+            crl = pendingCRL != null ? pendingCRL : pendingDeltaCRL;
+            if (crl == null) {
+                scheduled = false;
+                return;
+            }
+        }
+
+        String type = crl.delta ? "delta CRL " : "CRL ";
+        int status;
+
+        try {
+            status = publisher.send(crl.data);
+
+        } catch (Exception e) {
+            failures.increment();
+
+            synchronized (this) {
+                attempts++;
+                long delay = Math.min((long) retryDelay << Math.min(attempts - 1, 20), maxRetryDelay);
+
+                logger.warn("OCSPPublisher: Unable to publish " + type + crl.number + " to " + publisher.getURL()
+                        + " (lag: " + getLag() + " ms), retrying in " + delay + " seconds: " + e.getMessage(), e);
+
+                schedule(delay);
+            }
+            return;
+        }
+
+        synchronized (this) {
+
+            attempts = 0;
+
+            // remove the CRL unless it has been replaced in the meantime
+            if (crl == pendingCRL) {
+                pendingCRL = null;
+            } else if (crl == pendingDeltaCRL) {
+                pendingDeltaCRL = null;
+            }
+
+            long now = System.currentTimeMillis();
+
+            if (status == OCSPPublisher.STATUS_SUCCESS) {
+                published.increment();
+                lastPublished = now;
+                lastLag = now - crl.time;
+                logger.info("OCSPPublisher: Published " + type + crl.number + " to " + publisher.getURL()
+                        + " (lag: " + lastLag + " ms)");
+
+            } else if (status == OCSPPublisher.STATUS_FULL_CRL_REQUIRED && crl.delta
+                    && !crl.fullCRLSent && pendingCRL == null && lastCRL != null) {
+
+                logger.info("OCSPPublisher: Sending CRL " + lastCRL.number + " to " + publisher.getURL()
+                        + " before delta CRL " + crl.number);
+
+                pendingCRL = lastCRL;
+                if (pendingDeltaCRL == null) {
+                    crl.fullCRLSent = true;
+                    pendingDeltaCRL = crl;
+                }
+
+            } else {
+                // retrying will not change the result
+                failures.increment();
+                logger.warn("OCSPPublisher: OCSP responder " + publisher.getURL()
+                        + " did not accept " + type + crl.number + " (status: " + status + ")");
+            }
+
+            if (pendingCRL == null && pendingDeltaCRL == null) {
+                scheduled = false;
+                return;
+            }
+
+            schedule(0);
+        }
+    }
+
+    /**
+     * Returns the number of CRLs waiting to be published.
+     */
+    public synchronized int getSize() {
+        return (pendingCRL == null ? 0 : 1) + (pendingDeltaCRL == null ? 0 : 1);
+    }
+
+    /**
+     * Returns how long the oldest pending CRL has been waiting
+     * in milliseconds, or 0 if the responder is up to date.
+     */
+    public synchronized long getLag() {
+
+        long time = Long.MAX_VALUE;
+
+        if (pendingCRL != null) {
+            time = Math.min(time, pendingCRL.time);
+        }
+
+        if (pendingDeltaCRL != null) {
+            time = Math.min(time, pendingDeltaCRL.time);
+        }
+
+        return time == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - time;
+    }
+
+    /**
+     * Returns the time between queuing and publishing of the last
+     * published CRL in milliseconds.
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * Returns the time of the last successful publication.
+     */
+    public long getLastPublished() {
+        return lastPublished;
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public void shutdown() {
+
+        executor.shutdownNow();
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        for (Metric metric : metrics) {
+            registry.remove(metric);
+        }
+
+        metrics.clear();
+    }
+}
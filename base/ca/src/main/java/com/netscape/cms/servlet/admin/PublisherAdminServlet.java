@@ -2527,8 +2527,9 @@ public class PublisherAdminServlet extends AdminServlet {
 
         // only remove from memory
         // cannot shutdown because we don't keep track of whether it's
-        // being used.
-        mProcessor.getPublisherInsts().remove(id);
+        // being used, but stop its background tasks (if any).
+        PublisherProxy oldProxy = mProcessor.getPublisherInsts().remove(id);
+        PublisherProcessor.shutdownPublisher(oldProxy.getPublisher());
 
         // remove the configuration.
         PublishingPublisherConfig destStore = publishingConfig.getPublisherConfig();
@@ -2808,7 +2809,10 @@ public class PublisherAdminServlet extends AdminServlet {
 
         // commited ok. replace instance.
 
-        mProcessor.getPublisherInsts().put(id, new PublisherProxy(true, newMgrInst));
+        PublisherProxy oldProxy = mProcessor.getPublisherInsts().put(id, new PublisherProxy(true, newMgrInst));
+        if (oldProxy != null) {
+            PublisherProcessor.shutdownPublisher(oldProxy.getPublisher());
+        }
 
         logger.info(CMS.getLogMessage("ADMIN_SRVLT_PUB_INST_REP", id));
 
@@ -370,6 +370,55 @@ public class CRLRepository extends Repository {
         modifyCRLIssuingPointRecord(id, mods);
     }
 
+    /**
+     * Returns the maximum number of updates that can be appended to the
+     * revoked certificates before they have to be replaced, or 0 if
+     * updates cannot be appended.
+     */
+    public int getMaxRevokedCertsUpdates() throws EBaseException {
+
+        DatabaseConfig dbConfig = dbSubsystem.getDBConfigStore();
+
+        // serialized tables cannot be updated incrementally
+        if (!RevokedCertificatesMapper.FORMAT_COMPACT.equals(dbConfig.getCRLCacheFormat())) {
+            return 0;
+        }
+
+        return dbConfig.getCRLCacheMaxUpdates();
+    }
+
+    /**
+     * Appends recently revoked certificates info to CRL issuing point
+     * record without rewriting the existing info.
+     *
+     * @param id issuing point record id
+     * @param revokedCerts changes of revoked certificates
+     * @param unrevokedCerts changes of released from hold certificates
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void appendRevokedCerts(
+            String id,
+            RevokedCertificatesUpdate revokedCerts,
+            RevokedCertificatesUpdate unrevokedCerts)
+            throws EBaseException {
+
+        logger.info("CRLRepository: Appending revoked certificates");
+
+        ModificationSet mods = new ModificationSet();
+
+        if (!revokedCerts.isEmpty()) {
+            mods.add(CRLIssuingPointRecord.ATTR_REVOKED_CERTS, Modification.MOD_ADD, revokedCerts);
+        }
+
+        if (!unrevokedCerts.isEmpty()) {
+            mods.add(CRLIssuingPointRecord.ATTR_UNREVOKED_CERTS, Modification.MOD_ADD, unrevokedCerts);
+        }
+
+        mods.add(CRLIssuingPointRecord.ATTR_FIRST_UNSAVED, Modification.MOD_REPLACE, CRLIssuingPointRecord.CLEAN_CACHE);
+
+        modifyCRLIssuingPointRecord(id, mods);
+    }
+
     /**
      * Updates CRL issuing point record with recently expired certificates info.
      *
@@ -18,12 +18,21 @@
 package com.netscape.cmscore.dbs;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.dogtagpki.server.ca.CAEngine;
 
@@ -31,7 +40,20 @@ import com.netscape.ca.CRLIssuingPoint;
 import com.netscape.ca.CertRecordProcessor;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.cmscore.apps.CMS;
-
+import com.netscape.cmscore.metrics.Metric;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+
+/**
+ * Updates the status of certificates that have become valid or expired.
+ *
+ * By default the status updates are done one at a time by the task
+ * thread. With more than one thread the certificates found by each scan
+ * (which are sorted by validity date) are split into batches covering
+ * consecutive validity ranges. The batches are updated by a worker pool
+ * while the scan continues, each worker with its own LDAP connection.
+ * The number of batches waiting or in progress is limited to twice the
+ * number of threads.
+ */
 public class CertStatusUpdateTask implements Runnable {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CertStatusUpdateTask.class);
@@ -41,8 +63,138 @@ public class CertStatusUpdateTask implements Runnable {
     int interval;
     int pageSize = 200;
     int maxRecords = 1000000;
+    int threads = 1;
+    int batchSize = 100;
 
     ScheduledExecutorService executorService;
+    ExecutorService updateExecutor;
+
+    LongAdder updated = new LongAdder();
+    LongAdder failed = new LongAdder();
+
+    // statistics of the last run, replaced after each run
+    volatile RunStats lastRun = new RunStats(0, 0, 0);
+
+    // metrics registered in start(), removed in stop()
+    List<Metric> metrics = new ArrayList<>();
+
+    /**
+     * Statistics of a run of the task.
+     */
+    static class RunStats {
+
+        final long time;
+        final long duration;
+        final long updated;
+
+        RunStats(long time, long duration, long updated) {
+            this.time = time;
+            this.duration = duration;
+            this.updated = updated;
+        }
+
+        /**
+         * Returns the number of certificates updated per second.
+         */
+        double getThroughput() {
+            return duration == 0 ? 0 : updated * 1000.0 / duration;
+        }
+    }
+
+    /**
+     * Status update of the certificates found by a scan.
+     */
+    class StatusUpdate {
+
+        String status;
+        Vector<BigInteger> serialNumbers = new Vector<>();
+        int count;
+
+        List<BigInteger> batch = new ArrayList<>();
+        List<Future<Integer>> results = new ArrayList<>();
+        Semaphore permits = new Semaphore(2 * threads);
+
+        StatusUpdate(String status) {
+            this.status = status;
+        }
+
+        void add(BigInteger serialNumber) throws Exception {
+
+            serialNumbers.add(serialNumber);
+
+            if (updateExecutor == null) {
+                return;
+            }
+
+            batch.add(serialNumber);
+
+            if (batch.size() >= batchSize) {
+                submit();
+            }
+        }
+
+        void submit() throws Exception {
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<BigInteger> serials = batch;
+            batch = new ArrayList<>();
+
+            // wait if too many batches are pending
+            permits.acquire();
+
+            try {
+                results.add(updateExecutor.submit(() -> {
+                    try {
+                        return updateBatch(serials, status);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Waits until all certificates have been updated and
+         * returns the number of updated certificates.
+         */
+        int finish() throws Exception {
+
+            if (updateExecutor == null) {
+                repository.updateStatus(serialNumbers, status);
+                count = serialNumbers.size();
+                updated.add(count);
+                return count;
+            }
+
+            submit();
+
+            Exception exception = null;
+
+            for (Future<Integer> result : results) {
+                try {
+                    count += result.get();
+
+                } catch (ExecutionException e) {
+                    if (exception == null && e.getCause() instanceof Exception) {
+                        exception = (Exception) e.getCause();
+                    }
+                }
+            }
+
+            if (exception != null) {
+                throw exception;
+            }
+
+            return count;
+        }
+    }
 
     public CertStatusUpdateTask(
             CertificateRepository repository,
@@ -56,6 +208,79 @@ public class CertStatusUpdateTask implements Runnable {
         this.maxRecords = maxRecords;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads updating the certificates.
+     * With 1 thread the certificates are updated sequentially.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Returns the number of certificates updated since startup.
+     */
+    public long getUpdated() {
+        return updated.sum();
+    }
+
+    /**
+     * Returns the number of failed updates since startup.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getLastRunTime() {
+        return lastRun.time;
+    }
+
+    /**
+     * Returns the duration of the last run in milliseconds.
+     */
+    public long getLastRunDuration() {
+        return lastRun.duration;
+    }
+
+    /**
+     * Returns the number of certificates updated in the last run.
+     */
+    public long getLastRunUpdated() {
+        return lastRun.updated;
+    }
+
+    /**
+     * Returns the number of certificates updated per second
+     * in the last run.
+     */
+    public double getLastRunThroughput() {
+        return lastRun.getThroughput();
+    }
+
+    int updateBatch(List<BigInteger> serialNumbers, String status) throws EBaseException {
+
+        int count = repository.updateStatusBatch(serialNumbers, status);
+
+        updated.add(count);
+        failed.add(serialNumbers.size() - count);
+
+        logger.debug("CertStatusUpdateTask: Updated " + count + " of " + serialNumbers.size()
+                + " certs to " + status + " (total: " + updated.sum() + ", failed: " + failed.sum() + ")");
+
+        return count;
+    }
+
     public void start() {
         // schedule task to run immediately and repeat after specified interval
         executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
@@ -64,9 +289,66 @@ public class CertStatusUpdateTask implements Runnable {
                 return new Thread(r, "CertStatusUpdateTask");
             }
         });
+
+        if (threads > 1) {
+            logger.info("CertStatusUpdateTask: Updating certs with " + threads
+                    + " threads in batches of " + batchSize);
+
+            AtomicInteger counter = new AtomicInteger();
+            updateExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "CertStatusUpdateTask-" + counter.incrementAndGet());
+                }
+            });
+        }
+
+        registerMetrics();
+
         executorService.scheduleWithFixedDelay(this, 0, interval, TimeUnit.SECONDS);
     }
 
+    private void registerMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        metrics.add(registry.getFunctionCounter(
+                "pki_cert_status_updates_total",
+                "Number of certificates whose status has been updated",
+                this::getUpdated));
+
+        metrics.add(registry.getFunctionCounter(
+                "pki_cert_status_update_failures_total",
+                "Number of certificates whose status could not be updated",
+                this::getFailed));
+
+        metrics.add(registry.getGauge(
+                "pki_cert_status_last_run_timestamp_seconds",
+                "Start time of the last certificate status update",
+                () -> TimeUnit.MILLISECONDS.toSeconds(getLastRunTime())));
+
+        metrics.add(registry.getGauge(
+                "pki_cert_status_last_run_duration_milliseconds",
+                "Duration of the last certificate status update",
+                this::getLastRunDuration));
+
+        metrics.add(registry.getGauge(
+                "pki_cert_status_last_run_updates",
+                "Number of certificates updated in the last certificate status update",
+                this::getLastRunUpdated));
+    }
+
+    private void unregisterMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        for (Metric metric : metrics) {
+            registry.remove(metric);
+        }
+
+        metrics.clear();
+    }
+
     /**
      * Updates a certificate status from INVALID to VALID
      * if a certificate becomes valid.
@@ -90,7 +372,7 @@ public class CertStatusUpdateTask implements Runnable {
         listSize = Math.min(listSize, maxRecords);
         logger.debug("CertStatusUpdateTask: - list size: " + listSize);
 
-        Vector<BigInteger> list = new Vector<>(listSize);
+        StatusUpdate update = new StatusUpdate(CertRecord.STATUS_VALID);
 
         for (int i = 0; i < listSize; i++) {
             CertRecord certRecord = recordList.getCertRecord(i);
@@ -107,10 +389,11 @@ public class CertStatusUpdateTask implements Runnable {
             }
 
             logger.debug("CertStatusUpdateTask: Updating cert record #" + i + " to valid");
-            list.add(certRecord.getSerialNumber());
+            update.add(certRecord.getSerialNumber());
         }
 
-        repository.updateStatus(list, CertRecord.STATUS_VALID);
+        int count = update.finish();
+        logger.info("CertStatusUpdateTask: Updated " + count + " certs to valid");
     }
 
     /**
@@ -136,7 +419,7 @@ public class CertStatusUpdateTask implements Runnable {
         listSize = Math.min(listSize, maxRecords);
         logger.debug("CertStatusUpdateTask: - list size: " + listSize);
 
-        Vector<BigInteger> list = new Vector<>(listSize);
+        StatusUpdate update = new StatusUpdate(CertRecord.STATUS_EXPIRED);
 
         for (int i = 0; i < listSize; i++) {
             CertRecord certRecord = recordList.getCertRecord(i);
@@ -153,16 +436,17 @@ public class CertStatusUpdateTask implements Runnable {
             }
 
             logger.debug("CertStatusUpdateTask: Updating cert record #" + i + " to expired");
-            list.add(certRecord.getSerialNumber());
+            update.add(certRecord.getSerialNumber());
         }
 
-        repository.updateStatus(list, CertRecord.STATUS_EXPIRED);
+        int count = update.finish();
+        logger.info("CertStatusUpdateTask: Updated " + count + " certs to expired");
     }
     /**
      * Updates a certificate status from REVOKED to REVOKED_EXPIRED
      * if a revoked certificate becomes expired.
      */
-    public void updateRevokedExpiredCertificates() throws EBaseException {
+    public void updateRevokedExpiredCertificates() throws Exception {
 
         logger.info("CertStatusUpdateTask: Updating revoked certs to expired");
         CAEngine engine = CAEngine.getInstance();
@@ -182,7 +466,7 @@ public class CertStatusUpdateTask implements Runnable {
         listSize = Math.min(listSize, maxRecords);
         logger.debug("CertStatusUpdateTask: - list size: " + listSize);
 
-        Vector<BigInteger> list = new Vector<>(listSize);
+        StatusUpdate update = new StatusUpdate(CertRecord.STATUS_REVOKED_EXPIRED);
 
         for (int i = 0; i < listSize; i++) {
             CertRecord certRecord = recordList.getCertRecord(i);
@@ -199,10 +483,13 @@ public class CertStatusUpdateTask implements Runnable {
             }
 
             logger.debug("CertStatusUpdateTask: Updating cert record #" + i + " to expired");
-            list.add(certRecord.getSerialNumber());
+            update.add(certRecord.getSerialNumber());
         }
 
-        repository.updateStatus(list, CertRecord.STATUS_REVOKED_EXPIRED);
+        int count = update.finish();
+        logger.info("CertStatusUpdateTask: Updated " + count + " revoked certs to expired");
+
+        Vector<BigInteger> list = update.serialNumbers;
 
         // notify all CRL issuing points about revoked and expired certificates
 
@@ -226,17 +513,32 @@ public class CertStatusUpdateTask implements Runnable {
 
         logger.info("CertStatusUpdateTask: Updating cert status");
 
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_VALID_SEARCH"));
-        updateInvalidCertificates();
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_VALID_SEARCH"));
+        long start = System.currentTimeMillis();
+        long startUpdated = updated.sum();
 
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_EXPIRED_SEARCH"));
-        updateValidCertificates();
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_EXPIRED_SEARCH"));
-
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_REVOKED_EXPIRED_SEARCH"));
-        updateRevokedExpiredCertificates();
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_REVOKED_EXPIRED_SEARCH"));
+        try {
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_VALID_SEARCH"));
+            updateInvalidCertificates();
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_VALID_SEARCH"));
+
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_EXPIRED_SEARCH"));
+            updateValidCertificates();
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_EXPIRED_SEARCH"));
+
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_REVOKED_EXPIRED_SEARCH"));
+            updateRevokedExpiredCertificates();
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_REVOKED_EXPIRED_SEARCH"));
+
+        } finally {
+            RunStats stats = new RunStats(
+                    start,
+                    System.currentTimeMillis() - start,
+                    updated.sum() - startUpdated);
+            lastRun = stats;
+
+            logger.info("CertStatusUpdateTask: Updated " + stats.updated + " certs in "
+                    + stats.duration + " ms (" + String.format("%.1f", stats.getThroughput()) + " certs/s)");
+        }
     }
 
     /**
@@ -278,5 +580,7 @@ public class CertStatusUpdateTask implements Runnable {
     public void stop() {
         // shutdown executorService without interrupting running task
         if (executorService != null) executorService.shutdown();
+        if (updateExecutor != null) updateExecutor.shutdown();
+        unregisterMetrics();
     }
 }
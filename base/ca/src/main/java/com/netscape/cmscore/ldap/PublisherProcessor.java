@@ -33,6 +33,7 @@ import com.netscape.certsrv.publish.PublisherPlugin;
 import com.netscape.certsrv.publish.PublisherProxy;
 import com.netscape.certsrv.publish.RulePlugin;
 import com.netscape.certsrv.request.IRequestListener;
+import com.netscape.cms.publish.publishers.OCSPPublisher;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.request.Request;
@@ -373,6 +374,11 @@ public abstract class PublisherProcessor {
 
     public void shutdown() {
         logger.debug("Shuting down publishing.");
+
+        for (PublisherProxy proxy : mPublisherInsts.values()) {
+            shutdownPublisher(proxy.getPublisher());
+        }
+
         try {
             if (mLdapConnModule != null) {
                 mLdapConnModule.getLdapConnFactory().reset();
@@ -383,6 +389,15 @@ public abstract class PublisherProcessor {
         }
     }
 
+    /**
+     * Releases the resources of a publisher instance that is no longer used.
+     */
+    public static void shutdownPublisher(ILdapPublisher publisher) {
+        if (publisher instanceof OCSPPublisher) {
+            ((OCSPPublisher) publisher).shutdown();
+        }
+    }
+
     /**
      * Returns Hashtable of rule plugins.
      */
@@ -679,6 +679,12 @@ public class CAEngine extends CMSEngine {
         int maxRecords = caConfig.getInteger(CertificateRepository.PROP_TRANS_MAXRECORDS, 1000000);
         logger.info("CAEngine: - max records: " + maxRecords);
 
+        int threads = caConfig.getInteger(CertificateRepository.PROP_TRANS_THREADS, 1);
+        logger.info("CAEngine: - threads: " + threads);
+
+        int batchSize = caConfig.getInteger(CertificateRepository.PROP_TRANS_BATCHSIZE, 100);
+        logger.info("CAEngine: - batch size: " + batchSize);
+
         if (certStatusUpdateTask != null) {
             certStatusUpdateTask.stop();
         }
@@ -704,6 +710,8 @@ public class CAEngine extends CMSEngine {
                 interval,
                 pageSize,
                 maxRecords);
+        certStatusUpdateTask.setThreads(threads);
+        certStatusUpdateTask.setBatchSize(batchSize);
         certStatusUpdateTask.start();
     }
 
@@ -993,9 +1001,14 @@ public class CAEngine extends CMSEngine {
     }
 
     public void removeCA(AuthorityID aid) {
-        authorities.remove(aid);
+
+        CertificateAuthority ca = authorities.remove(aid);
         entryUSNs.remove(aid);
         nsUniqueIds.remove(aid);
+
+        if (ca != null) {
+            ca.shutdown();
+        }
     }
 
     /**
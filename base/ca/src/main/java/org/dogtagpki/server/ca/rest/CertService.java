@@ -27,6 +27,7 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
@@ -98,6 +99,12 @@ public class CertService extends PKIService implements CertResource {
     public static final int DEFAULT_MAXTIME = 0;
     public static final int DEFAULT_MAXRESULTS = 20;
 
+    // same limit as the certificate search servlet
+    public static final String PROP_MAX_SEARCH_RETURNS = "maxSearchReturns";
+    public static final int MAX_SEARCH_RETURNS = 1000;
+
+    int maxSearchReturns = MAX_SEARCH_RETURNS;
+
     public CertService() {
 
         CAEngine engine = CAEngine.getInstance();
@@ -110,6 +117,12 @@ public class CertService extends PKIService implements CertResource {
         }
 
         repo = engine.getCertificateRepository();
+
+        try {
+            maxSearchReturns = authority.getConfigStore().getInteger(PROP_MAX_SEARCH_RETURNS, MAX_SEARCH_RETURNS);
+        } catch (EBaseException e) {
+            logger.warn("CertService: Unable to get " + PROP_MAX_SEARCH_RETURNS + ": " + e.getMessage(), e);
+        }
     }
 
     @Override
@@ -422,7 +435,7 @@ public class CertService extends PKIService implements CertResource {
     }
 
     @Override
-    public Response listCerts(String status, Integer maxResults, Integer maxTime, Integer start, Integer size) {
+    public Response listCerts(String status, Integer maxResults, Integer maxTime, Integer start, Integer size, String next) {
 
         logger.info("Listing certificates");
 
@@ -434,6 +447,19 @@ public class CertService extends PKIService implements CertResource {
         String filter = createSearchFilter(status);
         logger.info("Search filter: " + filter);
 
+        if (next != null) {
+            try {
+                return createOKResponse(findCertsAfter(filter, next, size, maxTime));
+
+            } catch (BadRequestException e) {
+                throw e;
+
+            } catch (Exception e) {
+                logger.error("Unable to list certificates: " + e.getMessage(), e);
+                throw new PKIException("Unable to list certificates: " + e.getMessage(), e);
+            }
+        }
+
         CertDataInfos infos = new CertDataInfos();
         try {
             Enumeration<CertRecord> e = repo.searchCertificates(filter, maxResults, maxTime);
@@ -466,7 +492,7 @@ public class CertService extends PKIService implements CertResource {
     }
 
     @Override
-    public Response searchCerts(String searchRequest, Integer start, Integer size) {
+    public Response searchCerts(String searchRequest, Integer start, Integer size, String next) {
 
         logger.info("Searching for certificates");
 
@@ -482,6 +508,19 @@ public class CertService extends PKIService implements CertResource {
         String filter = createSearchFilter(data);
         logger.info("Search filter: " + filter);
 
+        if (next != null) {
+            try {
+                return createOKResponse(findCertsAfter(filter, next, size, DEFAULT_MAXTIME));
+
+            } catch (BadRequestException e) {
+                throw e;
+
+            } catch (Exception e) {
+                logger.error("Unable to search for certificates: " + e.getMessage(), e);
+                throw new PKIException("Unable to search for certificates: " + e.getMessage(), e);
+            }
+        }
+
         CertDataInfos infos = new CertDataInfos();
         try {
             CertRecordList list = repo.findCertRecordsInList(filter, null, "serialno", size);
@@ -509,6 +548,64 @@ public class CertService extends PKIService implements CertResource {
         return createOKResponse(infos);
     }
 
+    /**
+     * Returns a page of certificates in serial number order starting
+     * from the position in the continuation token. Only the entries of
+     * the page are retrieved from the database, so the cost of a page
+     * does not depend on its position in the results.
+     *
+     * The token is the base64url-encoded serial number following the
+     * last entry of the previous page, or empty for the first page.
+     * The token for the next page is returned in CertDataInfos.next.
+     * The total is the number of entries in this page, which is
+     * limited by the ca.maxSearchReturns parameter.
+     */
+    CertDataInfos findCertsAfter(String filter, String next, int size, int maxTime) throws Exception {
+
+        BigInteger serialNumber = null;
+
+        if (!next.isEmpty()) {
+            try {
+                serialNumber = new BigInteger(1, Base64.getUrlDecoder().decode(next));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid continuation token: " + next);
+            }
+
+            filter = "(&" + filter + "(" + CertRecord.ATTR_ID + ">=" + serialNumber + "))";
+        }
+
+        if (size > maxSearchReturns) {
+            logger.debug("Resetting page size from " + size + " to " + maxSearchReturns);
+            size = maxSearchReturns;
+        }
+
+        size = Math.max(1, size);
+        logger.info("Retrieving " + size + " certificates from " + (serialNumber == null ? "start" : "0x" + serialNumber.toString(16)));
+
+        // retrieve one more entry to find out whether there is a next page
+        Enumeration<CertRecord> e = repo.searchCertificates(filter, size + 1, maxTime, "serialno");
+
+        CertDataInfos infos = new CertDataInfos();
+        int count = 0;
+
+        while (e.hasMoreElements()) {
+            CertRecord record = e.nextElement();
+            if (record == null) continue;
+
+            if (count == size) {
+                infos.setNext(Base64.getUrlEncoder().withoutPadding().encodeToString(
+                        record.getSerialNumber().toByteArray()));
+                break;
+            }
+
+            infos.addEntry(createCertDataInfo(record));
+            count++;
+        }
+
+        infos.setTotal(count);
+        return infos;
+    }
+
     public CertData getCert(CertRetrievalRequest data, boolean generateNonce) throws Exception {
 
         CAEngine engine = CAEngine.getInstance();
@@ -0,0 +1,197 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ca;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLNumberExtension;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+
+public class StreamingCRLBuilderTest {
+
+    X500Name issuer;
+    AlgorithmId algorithm;
+    Date thisUpdate;
+    Date nextUpdate;
+    Hashtable<BigInteger, RevokedCertificate> revokedCerts;
+
+    @Before
+    public void setUp() throws Exception {
+
+        issuer = new X500Name("CN=Test CA");
+        algorithm = AlgorithmId.get("SHA256withRSA");
+
+        // DER times have a resolution of one second
+        thisUpdate = new Date(1700000000000L);
+        nextUpdate = new Date(1700086400000L);
+
+        revokedCerts = new Hashtable<>();
+    }
+
+    RevokedCertImpl createEntry(long serialNumber, RevocationReason reason) throws Exception {
+
+        Date revocationDate = new Date(1600000000000L + serialNumber * 1000);
+
+        if (reason == null) {
+            return new RevokedCertImpl(BigInteger.valueOf(serialNumber), revocationDate);
+        }
+
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(reason));
+        return new RevokedCertImpl(BigInteger.valueOf(serialNumber), revocationDate, exts);
+    }
+
+    CRLExtensions createExtensions() throws Exception {
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(CRLNumberExtension.NAME, new CRLNumberExtension(BigInteger.valueOf(10)));
+        return exts;
+    }
+
+    byte[] encodeWithBuilder(CRLExtensions extensions) throws Exception {
+
+        StreamingCRLBuilder builder = new StreamingCRLBuilder(
+                issuer, algorithm, thisUpdate, nextUpdate, revokedCerts, extensions);
+        builder.setBatchSize(2);
+        builder.init();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] encoding = builder.encode(out);
+
+        assertEquals(builder.getLength(), encoding.length);
+        assertArrayEquals(encoding, out.toByteArray());
+
+        return encoding;
+    }
+
+    byte[] encodeWithCRL(CRLExtensions extensions) throws Exception {
+
+        X509CRLImpl crl = new X509CRLImpl(
+                issuer, algorithm, thisUpdate, nextUpdate, revokedCerts, extensions);
+
+        try (DerOutputStream tmp = new DerOutputStream()) {
+            crl.encodeInfo(tmp);
+            return crl.getTBSCertList();
+        }
+    }
+
+    @Test
+    public void testEmptyCRL() throws Exception {
+        assertArrayEquals(encodeWithCRL(null), encodeWithBuilder(null));
+    }
+
+    @Test
+    public void testCRLExtensions() throws Exception {
+
+        revokedCerts.put(BigInteger.valueOf(1), createEntry(1, null));
+
+        assertArrayEquals(encodeWithCRL(createExtensions()), encodeWithBuilder(createExtensions()));
+    }
+
+    @Test
+    public void testEntryExtensions() throws Exception {
+
+        revokedCerts.put(BigInteger.valueOf(1), createEntry(1, RevocationReason.KEY_COMPROMISE));
+
+        assertArrayEquals(encodeWithCRL(null), encodeWithBuilder(null));
+    }
+
+    @Test
+    public void testEmptyExtensions() throws Exception {
+
+        revokedCerts.put(BigInteger.valueOf(1), createEntry(1, null));
+
+        // empty CRL extensions are omitted like missing extensions
+        assertArrayEquals(encodeWithCRL(null), encodeWithBuilder(new CRLExtensions()));
+    }
+
+    @Test
+    public void testSortedEntries() throws Exception {
+
+        List<RevokedCertificate> entries = new ArrayList<>();
+        for (long serialNumber : new long[] { 7, 300, 2, 65536, 5 }) {
+            RevocationReason reason = serialNumber % 2 == 0 ? RevocationReason.SUPERSEDED : null;
+            RevokedCertImpl entry = createEntry(serialNumber, reason);
+            revokedCerts.put(entry.getSerialNumber(), entry);
+            entries.add(entry);
+        }
+
+        byte[] expected = encodeWithCRL(createExtensions());
+        byte[] actual = encodeWithBuilder(createExtensions());
+
+        assertEquals(expected.length, actual.length);
+
+        // X509CRLImpl writes the entries in table order,
+        // the builder writes them in serial number order
+        entries.sort((a, b) -> a.getSerialNumber().compareTo(b.getSerialNumber()));
+
+        ByteArrayOutputStream sorted = new ByteArrayOutputStream();
+        for (RevokedCertificate entry : entries) {
+            sorted.write(entry.getEncoded());
+        }
+        byte[] sortedEntries = sorted.toByteArray();
+
+        int start = indexOf(actual, sortedEntries);
+        int end = start + sortedEntries.length;
+
+        // the rest of the encoding is identical
+        assertArrayEquals(
+                Arrays.copyOfRange(expected, 0, start),
+                Arrays.copyOfRange(actual, 0, start));
+        assertArrayEquals(
+                Arrays.copyOfRange(expected, end, expected.length),
+                Arrays.copyOfRange(actual, end, actual.length));
+    }
+
+    @Test
+    public void testTableChangedAfterInit() throws Exception {
+
+        revokedCerts.put(BigInteger.valueOf(1), createEntry(1, null));
+
+        byte[] expected = encodeWithCRL(null);
+
+        StreamingCRLBuilder builder = new StreamingCRLBuilder(
+                issuer, algorithm, thisUpdate, nextUpdate, revokedCerts, null);
+        builder.init();
+
+        // the encoding uses the entries at the time of init()
+        revokedCerts.remove(BigInteger.valueOf(1));
+        revokedCerts.put(BigInteger.valueOf(2), createEntry(2, null));
+
+        byte[] actual = builder.encode(OutputStream.nullOutputStream());
+
+        assertEquals(1, builder.getSize());
+        assertArrayEquals(expected, actual);
+    }
+
+    static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(data, i, i + pattern.length, pattern, 0, pattern.length)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Pattern not found");
+    }
+}
@@ -84,13 +84,31 @@ public class CACertClient extends Client {
     }
 
     public CertDataInfos listCerts(String status, Integer maxResults, Integer maxTime, Integer start, Integer size) throws Exception {
-        Response response = certClient.listCerts(status, maxResults, maxTime, start, size);
+        return listCerts(status, maxResults, maxTime, start, size, null);
+    }
+
+    /**
+     * Lists certificates ordered by serial number. To iterate over all
+     * certificates, specify an empty token for the first page, then
+     * the token returned by CertDataInfos.getNext() until it is null.
+     */
+    public CertDataInfos listCerts(String status, Integer maxResults, Integer maxTime, Integer start, Integer size, String next) throws Exception {
+        Response response = certClient.listCerts(status, maxResults, maxTime, start, size, next);
         return client.getEntity(response, CertDataInfos.class);
     }
 
     public CertDataInfos findCerts(CertSearchRequest data, Integer start, Integer size) throws Exception {
+        return findCerts(data, start, size, null);
+    }
+
+    /**
+     * Finds certificates ordered by serial number. To iterate over all
+     * certificates, specify an empty token for the first page, then
+     * the token returned by CertDataInfos.getNext() until it is null.
+     */
+    public CertDataInfos findCerts(CertSearchRequest data, Integer start, Integer size, String next) throws Exception {
         String searchRequest = (String) client.marshall(data);
-        Response response = certClient.searchCerts(searchRequest, start, size);
+        Response response = certClient.searchCerts(searchRequest, start, size, next);
         return client.getEntity(response, CertDataInfos.class);
     }
 
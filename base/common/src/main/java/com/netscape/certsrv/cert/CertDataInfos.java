@@ -43,6 +43,17 @@ import com.netscape.certsrv.base.DataCollection;
 @JsonIgnoreProperties(ignoreUnknown=true)
 public class CertDataInfos extends DataCollection<CertDataInfo> {
 
+    // token to retrieve the next page, or null if this is the last page
+    protected String next;
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
     public Element toDOM(Document document) {
 
         Element infosElement = document.createElement("CertDataInfos");
@@ -52,6 +63,12 @@ public class CertDataInfos extends DataCollection<CertDataInfo> {
         totalElement.appendChild(document.createTextNode(Integer.toString(total)));
         infosElement.appendChild(totalElement);
 
+        if (next != null) {
+            Element nextElement = document.createElement("next");
+            nextElement.appendChild(document.createTextNode(next));
+            infosElement.appendChild(nextElement);
+        }
+
         for (CertDataInfo certDataInfo : getEntries()) {
             Element infoElement = certDataInfo.toDOM(document);
             infosElement.appendChild(infoElement);
@@ -93,6 +110,11 @@ public class CertDataInfos extends DataCollection<CertDataInfo> {
             infos.setTotal(Integer.parseInt(value));
         }
 
+        NodeList nextList = infosElement.getElementsByTagName("next");
+        if (nextList.getLength() > 0) {
+            infos.setNext(nextList.item(0).getTextContent());
+        }
+
         NodeList infoList = infosElement.getElementsByTagName("CertDataInfo");
         int infoCount = infoList.getLength();
         for (int i=0; i<infoCount; i++) {
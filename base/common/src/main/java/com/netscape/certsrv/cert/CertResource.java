@@ -21,14 +21,16 @@ public interface CertResource {
             @QueryParam("maxResults") Integer maxResults,
             @QueryParam("maxTime") Integer maxTime,
             @QueryParam("start") Integer start,
-            @QueryParam("size") Integer size);
+            @QueryParam("size") Integer size,
+            @QueryParam("next") String next);
 
     @POST
     @Path("certs/search")
     public Response searchCerts(
             String searchRequest,
             @QueryParam("start") Integer start,
-            @QueryParam("size") Integer size);
+            @QueryParam("size") Integer size,
+            @QueryParam("next") String next);
 
     @GET
     @Path("certs/{id}")
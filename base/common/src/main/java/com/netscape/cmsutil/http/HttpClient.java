@@ -46,6 +46,8 @@ public class HttpClient {
     protected BufferedReader mBufferedReader = null;
     protected SSLCertificateApprovalCallback mCertApprovalCallback = null;
     protected boolean mConnected = false;
+    // whether to keep the connection open for subsequent requests
+    protected boolean mKeepAlive = false;
     // for auditing purposes
     protected String mHost;
     protected String mPort;
@@ -101,6 +103,19 @@ public class HttpClient {
         return mConnected;
     }
 
+    public boolean isKeepAlive() {
+        return mKeepAlive;
+    }
+
+    /**
+     * Keeps the connection open after a response if the server
+     * allows it, so subsequent requests do not need to reconnect
+     * (and redo the SSL handshake).
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        mKeepAlive = keepAlive;
+    }
+
     /**
      * Sends a request to http server.
      * Returns a http response.
@@ -119,6 +134,14 @@ public class HttpClient {
             disconnect();
             throw e;
         }
+
+        // the end of the response can only be determined with content length
+        if (mKeepAlive
+                && resp.getHeader("Content-Length") != null
+                && !"close".equalsIgnoreCase(resp.getHeader("Connection"))) {
+            return resp;
+        }
+
         disconnect();
         return resp;
     }
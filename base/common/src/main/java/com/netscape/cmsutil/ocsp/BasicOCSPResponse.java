@@ -67,13 +67,50 @@ public class BasicOCSPResponse implements Response {
 
     public BasicOCSPResponse(byte data[]) throws InvalidBERException, IOException {
         mData = data;
+        decode();
+    }
+
+    private BasicOCSPResponse() {
+    }
+
+    /**
+     * Wraps an encoded response without decoding it. The response is
+     * decoded when one of its components is accessed for the first time.
+     * This is meant for responses that have just been encoded locally.
+     */
+    public static BasicOCSPResponse wrap(byte data[]) {
+        BasicOCSPResponse response = new BasicOCSPResponse();
+        response.mData = data;
+        return response;
+    }
+
+    private synchronized void decode() throws InvalidBERException, IOException {
+
+        if (_rd != null || mData == null) {
+            return;
+        }
 
         // extract _rd, _signAlg, _signature and _certs
-        BasicOCSPResponse resp = (BasicOCSPResponse) getTemplate().decode(new ByteArrayInputStream(data));
-        _rd = resp.getResponseData();
+        BasicOCSPResponse resp = (BasicOCSPResponse) getTemplate().decode(new ByteArrayInputStream(mData));
         _signAlg = resp.getSignatureAlgorithm();
         _signature = resp.getSignature();
         _certs = resp.getCerts();
+        _rd = resp.getResponseData();
+    }
+
+    private void ensureDecoded() {
+        try {
+            decode();
+        } catch (InvalidBERException | IOException e) {
+            throw new RuntimeException("Unable to decode OCSP response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the DER encoding of this response if available, or null.
+     */
+    public byte[] getEncoded() {
+        return mData;
     }
 
     private static final Tag TAG = SEQUENCE.TAG;
@@ -115,26 +152,32 @@ public class BasicOCSPResponse implements Response {
     }
 
     public ResponseData getResponseData() {
+        ensureDecoded();
         return _rd;
     }
 
     public AlgorithmIdentifier getSignatureAlgorithm() {
+        ensureDecoded();
         return _signAlg;
     }
 
     public BIT_STRING getSignature() {
+        ensureDecoded();
         return _signature;
     }
 
     public int getCertsCount() {
+        ensureDecoded();
         return (_certs != null) ? _certs.length : 0;
     }
 
     public Certificate[] getCerts() {
+        ensureDecoded();
         return _certs;
     }
 
     public Certificate getCertificateAt(int pos) {
+        ensureDecoded();
         return (_certs != null) ? _certs[pos] : null;
     }
 
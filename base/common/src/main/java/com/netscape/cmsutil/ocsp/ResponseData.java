@@ -18,6 +18,7 @@
 package com.netscape.cmsutil.ocsp;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -51,6 +52,7 @@ public class ResponseData implements ASN1Value {
     private static final INTEGER v1 = new INTEGER(0);
     private INTEGER mVer;
     private ResponderID mRID = null;
+    private ANY mEncodedRID = null;
     private GeneralizedTime mProduced = null;
     private SingleResponse mSR[] = null;
     private Extension mExts[] = null;
@@ -76,6 +78,27 @@ public class ResponseData implements ASN1Value {
         this(v1, rid, produced, sr, exts);
     }
 
+    /**
+     * Creates response data with a pre-encoded responder ID
+     * (see {@link #encodeResponderID(ResponderID)}) so that the
+     * responder ID does not have to be encoded for every response.
+     */
+    public ResponseData(ResponderID rid, ANY encodedRID, GeneralizedTime produced,
+            SingleResponse sr[], Extension exts[]) {
+        this(v1, rid, produced, sr, exts);
+        mEncodedRID = encodedRID;
+    }
+
+    /**
+     * Returns the DER encoding of the responder ID as it appears
+     * in the response data.
+     */
+    public static ANY encodeResponderID(ResponderID rid) throws InvalidBERException, IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new EXPLICIT(rid.getTag(), rid).encode(os);
+        return new ANY(os.toByteArray());
+    }
+
     @Override
     public Tag getTag() {
         return TAG;
@@ -94,7 +117,11 @@ public class ResponseData implements ASN1Value {
             seq.addElement(new EXPLICIT(Tag.get(0), new INTEGER(mVer)));
         }
 
-        seq.addElement(new EXPLICIT(mRID.getTag(), mRID));
+        if (mEncodedRID != null) {
+            seq.addElement(mEncodedRID);
+        } else {
+            seq.addElement(new EXPLICIT(mRID.getTag(), mRID));
+        }
         seq.addElement(mProduced);
         SEQUENCE responses = new SEQUENCE();
         for (int i = 0; i < mSR.length; i++) {
@@ -45,4 +45,14 @@ public class JobClient extends Client {
         Response response = resource.startJob(id);
         client.getEntity(response, Void.class);
     }
+
+    public JobStatus getJobStatus(String id) throws Exception {
+        Response response = resource.getJobStatus(id);
+        return client.getEntity(response, JobStatus.class);
+    }
+
+    public void cancelJob(String id) throws Exception {
+        Response response = resource.cancelJob(id);
+        client.getEntity(response, Void.class);
+    }
 }
@@ -30,4 +30,12 @@ public interface JobResource {
 
     @POST
     public Response startJob(String id) throws EBaseException;
+
+    @GET
+    @Path("{id}/status")
+    public Response getJobStatus(@PathParam("id") String id) throws EBaseException;
+
+    @POST
+    @Path("{id}/cancel")
+    public Response cancelJob(@PathParam("id") String id) throws EBaseException;
 }
@@ -0,0 +1,126 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.job;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.netscape.certsrv.util.JSONSerializer;
+
+/**
+ * Execution state and statistics of a job.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class JobStatus implements JSONSerializer {
+
+    String id;
+    boolean running;
+    boolean queued;
+
+    long runs;
+    long failures;
+    long cancellations;
+
+    Date lastStartTime;
+    long lastDuration;
+    long lastRecordsProcessed;
+    long totalRecordsProcessed;
+
+    public String getID() {
+        return id;
+    }
+
+    public void setID(String id) {
+        this.id = id;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public boolean isQueued() {
+        return queued;
+    }
+
+    public void setQueued(boolean queued) {
+        this.queued = queued;
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public void setRuns(long runs) {
+        this.runs = runs;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    public long getCancellations() {
+        return cancellations;
+    }
+
+    public void setCancellations(long cancellations) {
+        this.cancellations = cancellations;
+    }
+
+    public Date getLastStartTime() {
+        return lastStartTime;
+    }
+
+    public void setLastStartTime(Date lastStartTime) {
+        this.lastStartTime = lastStartTime;
+    }
+
+    /**
+     * Returns the duration of the last completed run in milliseconds.
+     */
+    public long getLastDuration() {
+        return lastDuration;
+    }
+
+    public void setLastDuration(long lastDuration) {
+        this.lastDuration = lastDuration;
+    }
+
+    public long getLastRecordsProcessed() {
+        return lastRecordsProcessed;
+    }
+
+    public void setLastRecordsProcessed(long lastRecordsProcessed) {
+        this.lastRecordsProcessed = lastRecordsProcessed;
+    }
+
+    public long getTotalRecordsProcessed() {
+        return totalRecordsProcessed;
+    }
+
+    public void setTotalRecordsProcessed(long totalRecordsProcessed) {
+        this.totalRecordsProcessed = totalRecordsProcessed;
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return toJSON();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
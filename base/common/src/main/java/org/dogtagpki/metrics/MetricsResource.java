@@ -0,0 +1,25 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.metrics;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Metrics in the Prometheus text format.
+ */
+@Path("metrics")
+@RolesAllowed("Administrators")
+public interface MetricsResource {
+
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getMetrics();
+}
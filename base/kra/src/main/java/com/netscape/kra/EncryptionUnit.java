@@ -18,6 +18,7 @@
 package com.netscape.kra;
 
 import java.security.PublicKey;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.mozilla.jss.crypto.CryptoToken;
 import org.mozilla.jss.crypto.EncryptionAlgorithm;
@@ -51,6 +52,21 @@ public abstract class EncryptionUnit implements IEncryptionUnit {
     public static final IVParameterSpec IV = new IVParameterSpec(iv);
     public static final IVParameterSpec IV2 = new IVParameterSpec(iv2);
 
+    // minimum time between key refreshes after failed operations (ms)
+    public static final long REFRESH_INTERVAL = 10000;
+
+    // PKCS #11 errors indicating that a key handle is no longer usable
+    static final String[] STALE_KEY_ERRORS = {
+            "CKR_KEY_HANDLE_INVALID",
+            "CKR_OBJECT_HANDLE_INVALID",
+            "CKR_SESSION_HANDLE_INVALID",
+            "CKR_TOKEN_NOT_PRESENT",
+            "CKR_DEVICE_REMOVED",
+            "SEC_ERROR_NO_TOKEN"
+    };
+
+    private final AtomicLong lastRefreshTime = new AtomicLong();
+
     public EncryptionUnit() {
         logger.debug("EncryptionUnit.EncryptionUnit this: " + this);
     }
@@ -68,6 +84,28 @@ public abstract class EncryptionUnit implements IEncryptionUnit {
 
     public abstract PrivateKey getPrivateKey(org.mozilla.jss.crypto.X509Certificate cert);
 
+    /**
+     * Discards cached key handles so they will be looked up again
+     * on next use.
+     *
+     * @return true if cached key handles were discarded
+     */
+    public boolean refreshKeys() {
+        return false;
+    }
+
+    /**
+     * Checks whether a cached key handle can still be used.
+     */
+    protected boolean isValid(PrivateKey privateKey) {
+        try {
+            return privateKey.getOwningToken().isPresent();
+        } catch (Exception e) {
+            logger.warn("EncryptionUnit: Unable to check private key: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
     @Override
     public WrappingParams getOldWrappingParams() {
         return new WrappingParams(
@@ -76,6 +114,50 @@ public abstract class EncryptionUnit implements IEncryptionUnit {
                 KeyWrapAlgorithm.DES3_CBC_PAD, IV, IV);
     }
 
+    /**
+     * Checks whether an operation failed because the key handle
+     * became invalid or its token was removed.
+     */
+    protected boolean isStaleKey(Exception e, PrivateKey privateKey) {
+
+        if (!isValid(privateKey)) {
+            return true;
+        }
+
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            String message = t.getMessage();
+            if (message == null) continue;
+
+            for (String error : STALE_KEY_ERRORS) {
+                if (message.contains(error)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Discards cached key handles unless they were already discarded
+     * within REFRESH_INTERVAL, so repeated failures do not cause a key
+     * lookup on every operation.
+     *
+     * @return true if cached key handles were discarded
+     */
+    protected boolean refreshStaleKeys() {
+
+        long now = System.currentTimeMillis();
+        long last = lastRefreshTime.get();
+
+        if (now - last < REFRESH_INTERVAL || !lastRefreshTime.compareAndSet(last, now)) {
+            logger.debug("EncryptionUnit: Keys were refreshed recently");
+            return false;
+        }
+
+        return refreshKeys();
+    }
+
     @Override
     public SymmetricKey unwrap_session_key(CryptoToken token, byte encSymmKey[], SymmetricKey.Usage usage,
             WrappingParams params) throws Exception {
@@ -84,6 +166,58 @@ public abstract class EncryptionUnit implements IEncryptionUnit {
         if (priKeyAlgo.equals("EC"))
             params.setSkWrapAlgorithm(KeyWrapAlgorithm.AES_ECB);
 
+        return unwrap_session_key(token, encSymmKey, usage, params, null, wrappingKey);
+    }
+
+    /**
+     * Unwraps a session key with the private key of the given
+     * certificate, or with the default private key if null.
+     */
+    protected SymmetricKey unwrap_session_key(CryptoToken token, byte encSymmKey[], SymmetricKey.Usage usage,
+            WrappingParams params, org.mozilla.jss.crypto.X509Certificate cert) throws Exception {
+        return unwrap_session_key(token, encSymmKey, usage, params, cert, getPrivateKey(cert));
+    }
+
+    /**
+     * If the key handle has become stale, the unwrap is retried once
+     * with a new handle of the private key of the same certificate.
+     */
+    private SymmetricKey unwrap_session_key(CryptoToken token, byte encSymmKey[], SymmetricKey.Usage usage,
+            WrappingParams params, org.mozilla.jss.crypto.X509Certificate cert, PrivateKey wrappingKey)
+            throws Exception {
+
+        try {
+            return unwrap_session_key(token, encSymmKey, usage, params, wrappingKey);
+
+        } catch (Exception e) {
+
+            if (!isStaleKey(e, wrappingKey)) {
+                throw e;
+            }
+
+            // another thread might have refreshed the handle already
+            PrivateKey newKey = getPrivateKey(cert);
+
+            if (newKey == wrappingKey) {
+                if (!refreshStaleKeys()) {
+                    throw e;
+                }
+                newKey = getPrivateKey(cert);
+            }
+
+            if (newKey == null) {
+                throw e;
+            }
+
+            logger.warn("EncryptionUnit: Unable to unwrap session key with stale key handle, retrying: " + e.getMessage());
+
+            return unwrap_session_key(token, encSymmKey, usage, params, newKey);
+        }
+    }
+
+    private SymmetricKey unwrap_session_key(CryptoToken token, byte encSymmKey[], SymmetricKey.Usage usage,
+            WrappingParams params, PrivateKey wrappingKey) throws Exception {
+
         return CryptoUtil.unwrap(
                 token,
                 params.getSkType(),
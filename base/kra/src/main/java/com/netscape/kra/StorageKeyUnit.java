@@ -98,6 +98,11 @@ public class StorageKeyUnit extends EncryptionUnit implements IStorageKeyUnit {
     private byte mPrivateKeyData[] = null;
     private boolean mKeySplitting = false;
     private boolean useOAEPKeyWrap = false;
+
+    // resolved on first use, see getPrivateKey() and refreshKeys()
+    private volatile PrivateKey mCachedPrivateKey;
+    private volatile WrappingTemplate mWrappingTemplate;
+
     private static final String PROP_N = "n";
     private static final String PROP_M = "m";
     private static final String PROP_UID = "uid";
@@ -135,6 +140,50 @@ public class StorageKeyUnit extends EncryptionUnit implements IStorageKeyUnit {
 
     @Override
     public WrappingParams getWrappingParams(boolean encrypt) throws Exception {
+
+        WrappingTemplate wrapping = mWrappingTemplate;
+        if (wrapping == null) {
+            wrapping = loadWrappingTemplate();
+            mWrappingTemplate = wrapping;
+        }
+
+        WrappingParams template = wrapping.params;
+
+        // callers may modify the params, so return a copy
+        WrappingParams params = new WrappingParams(
+                template.getSkType(),
+                template.getSkKeyGenAlgorithm(),
+                template.getSkLength(),
+                template.getSkWrapAlgorithm(),
+                template.getPayloadEncryptionAlgorithm(),
+                template.getPayloadWrapAlgorithm(),
+                template.getPayloadEncryptionIV(),
+                template.getPayloadWrappingIV());
+
+        // the IVs are not cached since they might have to be
+        // generated randomly for each record
+        if (wrapping.config != null) {
+            setConfigIVs(wrapping.config, params);
+        }
+
+        if (encrypt) {
+            // Some HSMs have not yet implemented AES-KW.  Use AES-CBC-PAD instead
+            if (params.getPayloadWrapAlgorithm().equals(KeyWrapAlgorithm.AES_KEY_WRAP) ||
+                params.getPayloadWrapAlgorithm().equals(KeyWrapAlgorithm.AES_KEY_WRAP_PAD)) {
+                params.setPayloadWrapAlgorithm(KeyWrapAlgorithm.AES_CBC_PAD);
+                byte[] iv = CryptoUtil.getNonceData(16);
+                params.setPayloadWrappingIV(new IVParameterSpec(iv));
+            }
+        }
+
+        return params;
+    }
+
+    /**
+     * Reads the wrapping parameters from the configuration,
+     * except for the IVs which are set by setConfigIVs().
+     */
+    private WrappingTemplate loadWrappingTemplate() throws Exception {
         String choice = null;
         try {
             choice = mConfig.getString(PROP_WRAPPING_CHOICE);
@@ -142,7 +191,7 @@ public class StorageKeyUnit extends EncryptionUnit implements IStorageKeyUnit {
             // choice parameter does not exist
             // this is probably an old server
             // return the old params
-            return this.getOldWrappingParams();
+            return new WrappingTemplate(this.getOldWrappingParams(), null);
         }
 
         ConfigStore config = mConfig.getSubStore("wrapping." + choice, ConfigStore.class);
@@ -172,6 +221,11 @@ public class StorageKeyUnit extends EncryptionUnit implements IStorageKeyUnit {
                 config.getInteger(KeyRecordParser.OUT_SK_LENGTH));
         }
 
+        return new WrappingTemplate(params, config);
+    }
+
+    private void setConfigIVs(ConfigStore config, WrappingParams params) throws Exception {
+
         byte [] iv = getConfigIV(
                 config, KeyRecordParser.OUT_PL_ENCRYPTION_IV,
                 KeyRecordParser.OUT_PL_ENCRYPTION_IV_LEN);
@@ -181,18 +235,6 @@ public class StorageKeyUnit extends EncryptionUnit implements IStorageKeyUnit {
                 config, KeyRecordParser.OUT_PL_WRAP_IV,
                 KeyRecordParser.OUT_PL_WRAP_IV_LEN);
         if (iv != null) params.setPayloadWrappingIV(new IVParameterSpec(iv));
-
-        if (encrypt) {
-            // Some HSMs have not yet implemented AES-KW.  Use AES-CBC-PAD instead
-            if (params.getPayloadWrapAlgorithm().equals(KeyWrapAlgorithm.AES_KEY_WRAP) ||
-                params.getPayloadWrapAlgorithm().equals(KeyWrapAlgorithm.AES_KEY_WRAP_PAD)) {
-                params.setPayloadWrapAlgorithm(KeyWrapAlgorithm.AES_CBC_PAD);
-                iv = CryptoUtil.getNonceData(16);
-                params.setPayloadWrappingIV(new IVParameterSpec(iv));
-            }
-        }
-
-        return params;
     }
 
     private byte[] getConfigIV(ConfigStore config, String iv_label, String len_label)
@@ -418,6 +460,19 @@ public class StorageKeyUnit extends EncryptionUnit implements IStorageKeyUnit {
             throw new EBaseException(CMS.getUserMessage("CMS_BASE_CERT_ERROR", e.toString()), e);
         }
 
+        // resolve the key handle and wrapping parameters once instead of on each request
+        refreshKeys();
+
+        if (!mKeySplitting && getPrivateKey() == null) {
+            // the token might not be logged in yet
+            logger.warn("StorageKeyUnit: Storage private key not found");
+        }
+
+        try {
+            getWrappingParams(false);
+        } catch (Exception e) {
+            logger.warn("StorageKeyUnit: Unable to load wrapping parameters: " + e.getMessage(), e);
+        }
     }
 
     /**
@@ -614,6 +669,7 @@ public class StorageKeyUnit extends EncryptionUnit implements IStorageKeyUnit {
 
         }
         mPrivateKey = null;
+        mCachedPrivateKey = null;
     }
 
     /**
@@ -803,26 +859,64 @@ public class StorageKeyUnit extends EncryptionUnit implements IStorageKeyUnit {
         return mCert.getPublicKey();
     }
 
+    /**
+     * Returns the storage private key. Without key splitting the key
+     * handle is looked up on the token once and cached, since finding
+     * it requires going through all private keys on the token.
+     */
     @Override
     public PrivateKey getPrivateKey() {
 
         if (!mKeySplitting) {
-            try {
-                PrivateKey pk[] = getToken().getCryptoStore().getPrivateKeys();
-                for (int i = 0; i < pk.length; i++) {
-                    if (arraysEqual(pk[i].getUniqueID(),
-                            ((TokenCertificate) mCert).getUniqueID())) {
-                        return pk[i];
-                    }
-                }
-            } catch (TokenException e) {
+            PrivateKey privateKey = mCachedPrivateKey;
+
+            if (privateKey != null && isValid(privateKey)) {
+                return privateKey;
             }
-            return null;
+
+            privateKey = findPrivateKey();
+            mCachedPrivateKey = privateKey;
+            return privateKey;
+
         } else {
             return mPrivateKey;
         }
     }
 
+    private PrivateKey findPrivateKey() {
+
+        logger.debug("StorageKeyUnit: Looking up storage private key");
+
+        try {
+            PrivateKey pk[] = getToken().getCryptoStore().getPrivateKeys();
+            for (int i = 0; i < pk.length; i++) {
+                if (arraysEqual(pk[i].getUniqueID(),
+                        ((TokenCertificate) mCert).getUniqueID())) {
+                    return pk[i];
+                }
+            }
+        } catch (TokenException e) {
+        }
+        return null;
+    }
+
+    /**
+     * Discards the cached key handle and wrapping parameters so they
+     * will be resolved again on next use (e.g. after key rotation or
+     * if the token has been reinserted).
+     */
+    @Override
+    public boolean refreshKeys() {
+
+        logger.debug("StorageKeyUnit: Refreshing cached keys");
+
+        boolean cached = mCachedPrivateKey != null;
+        mCachedPrivateKey = null;
+        mWrappingTemplate = null;
+
+        return cached;
+    }
+
     @Override
     public PrivateKey getPrivateKey(org.mozilla.jss.crypto.X509Certificate cert) {
         return getPrivateKey();
@@ -1324,4 +1418,20 @@ public class StorageKeyUnit extends EncryptionUnit implements IStorageKeyUnit {
                 params.getPayloadWrapAlgorithm(),
                 params.getPayloadWrappingIV());
     }
+
+    /**
+     * Wrapping parameters read from the configuration and the
+     * config store to get the IVs from, or null if the IVs are
+     * fixed.
+     */
+    private static class WrappingTemplate {
+
+        final WrappingParams params;
+        final ConfigStore config;
+
+        WrappingTemplate(WrappingParams params, ConfigStore config) {
+            this.params = params;
+            this.config = config;
+        }
+    }
 }
@@ -65,6 +65,9 @@ public class TransportKeyUnit extends EncryptionUnit implements
     private org.mozilla.jss.crypto.X509Certificate mCert = null;
     private org.mozilla.jss.crypto.X509Certificate[] chain;
     private org.mozilla.jss.crypto.X509Certificate mNewCert = null;
+    // key handles of the current and new transport certificates
+    private volatile PrivateKey mPrivateKey;
+    private volatile PrivateKey mNewPrivateKey;
     private CryptoManager mManager = null;
     private KeyWrapAlgorithm rsaKeyWrapAlg = KeyWrapAlgorithm.RSA;
 
@@ -285,11 +288,39 @@ public class TransportKeyUnit extends EncryptionUnit implements
         return getPrivateKey(mCert);
     }
 
+    /**
+     * Returns the private key of a transport certificate. The key handles
+     * of the current and new transport certificates are cached since they
+     * are used for every archival and recovery.
+     */
     @Override
     public PrivateKey getPrivateKey(org.mozilla.jss.crypto.X509Certificate cert) {
         if (cert == null) {
             cert = mCert;
         }
+
+        if (cert == mCert) {
+            PrivateKey privateKey = mPrivateKey;
+            if (privateKey == null || !isValid(privateKey)) {
+                privateKey = findPrivateKey(cert);
+                mPrivateKey = privateKey;
+            }
+            return privateKey;
+        }
+
+        if (cert == mNewCert) {
+            PrivateKey privateKey = mNewPrivateKey;
+            if (privateKey == null || !isValid(privateKey)) {
+                privateKey = findPrivateKey(cert);
+                mNewPrivateKey = privateKey;
+            }
+            return privateKey;
+        }
+
+        return findPrivateKey(cert);
+    }
+
+    private PrivateKey findPrivateKey(org.mozilla.jss.crypto.X509Certificate cert) {
         try {
             return mManager.findPrivKeyByCert(cert);
         } catch (TokenException e) {
@@ -299,6 +330,22 @@ public class TransportKeyUnit extends EncryptionUnit implements
         }
     }
 
+    /**
+     * Discards the cached key handles so they will be looked up
+     * again on next use.
+     */
+    @Override
+    public boolean refreshKeys() {
+
+        logger.debug("TransportKeyUnit: Refreshing cached keys");
+
+        boolean cached = mPrivateKey != null || mNewPrivateKey != null;
+        mPrivateKey = null;
+        mNewPrivateKey = null;
+
+        return cached;
+    }
+
     /**
      * Verifies the integrity of the given key pair.
      */
@@ -341,14 +388,10 @@ public class TransportKeyUnit extends EncryptionUnit implements
             skWrapAlgorithm = params.getSkWrapAlgorithm();
         }
 
-        SymmetricKey sk = CryptoUtil.unwrap(
-                token,
-                params.getSkType(),
-                params.getSkType().equals(SymmetricKey.DES3)? 0: params.getSkLength(),
-                SymmetricKey.Usage.DECRYPT,
-                wrappingKey,
-                encSymmKey,
-                skWrapAlgorithm);
+        params.setSkWrapAlgorithm(skWrapAlgorithm);
+
+        // retries with a new handle of the same transport key if needed
+        SymmetricKey sk = unwrap_session_key(token, encSymmKey, SymmetricKey.Usage.DECRYPT, params, transCert);
 
         return CryptoUtil.decryptUsingSymmetricKey(
                 token,
@@ -422,14 +465,10 @@ public class TransportKeyUnit extends EncryptionUnit implements
             skWrapAlgorithm = params.getSkWrapAlgorithm();
         }
 
-        SymmetricKey sk = CryptoUtil.unwrap(
-                token,
-                params.getSkType(),
-                params.getSkType().equals(SymmetricKey.DES3)? 0: params.getSkLength(),
-                SymmetricKey.Usage.UNWRAP,
-                wrappingKey,
-                encSymmKey,
-                skWrapAlgorithm);
+        params.setSkWrapAlgorithm(skWrapAlgorithm);
+
+        // retries with a new handle of the same transport key if needed
+        SymmetricKey sk = unwrap_session_key(token, encSymmKey, SymmetricKey.Usage.UNWRAP, params, transCert);
 
         // (2) unwrap the session-wrapped-private key
         return CryptoUtil.unwrap(
@@ -13,6 +13,7 @@ import org.dogtagpki.server.rest.GroupService;
 import org.dogtagpki.server.rest.JobService;
 import org.dogtagpki.server.rest.KRAInfoService;
 import org.dogtagpki.server.rest.MessageFormatInterceptor;
+import org.dogtagpki.server.rest.MetricsService;
 import org.dogtagpki.server.rest.PKIExceptionMapper;
 import org.dogtagpki.server.rest.SelfTestService;
 import org.dogtagpki.server.rest.SessionContextInterceptor;
@@ -46,6 +47,9 @@ public class KRAApplication extends Application {
         // selftests
         classes.add(SelfTestService.class);
 
+        // metrics
+        classes.add(MetricsService.class);
+
         // user and group management
         classes.add(GroupService.class);
         classes.add(UserService.class);
@@ -91,6 +91,17 @@ public interface IDefStore extends IOCSPStore {
      */
     public void updateCRL(X509CRL crl) throws EBaseException;
 
+    /**
+     * This method applies the specified delta CRL to the current CRL.
+     * <P>
+     *
+     * @param deltaCRL the delta CRL to be applied
+     * @return false if the base CRL of the delta CRL is newer than the
+     *         current CRL, i.e. a full CRL is required
+     * @exception EBaseException occurs when the CRL cannot be updated
+     */
+    public boolean updateDeltaCRL(X509CRL deltaCRL) throws EBaseException;
+
     /**
      * This method attempts to read the CRL issuing point.
      * <P>
@@ -0,0 +1,435 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2022 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.ocsp;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.mozilla.jss.asn1.GeneralizedTime;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+
+/**
+ * Immutable revocation status index used by DefStore.
+ *
+ * The index maps the issuer key hash of every known CA, computed
+ * with each digest algorithm a CertID may use, to an {@link Issuer} entry holding the revoked serial
+ * numbers in sorted primitive arrays. A new index is built whenever
+ * a CRL is committed and swapped in atomically, so OCSP lookups
+ * only need a hash lookup and a binary search.
+ */
+public class CRLStatusIndex {
+
+    // digest algorithms supported in CertID
+    public static final String[] DIGEST_NAMES = {
+            "MD2", "MD5", "SHA-1", "SHA-224", "SHA-256", "SHA-384", "SHA-512"
+    };
+
+    public static final long NOT_REVOKED = Long.MIN_VALUE;
+
+    public static final CRLStatusIndex EMPTY = new CRLStatusIndex(Collections.emptyMap());
+
+    private final Map<ByteBuffer, Issuer> issuers;
+
+    private CRLStatusIndex(Map<ByteBuffer, Issuer> issuers) {
+        this.issuers = issuers;
+    }
+
+    /**
+     * Returns the issuer with the given key hash, or null if unknown.
+     */
+    public Issuer getIssuer(byte[] keyHash) {
+        return issuers.get(ByteBuffer.wrap(keyHash));
+    }
+
+    /**
+     * Returns the issuer with the given ID, or null if unknown.
+     */
+    public Issuer getIssuerById(String id) {
+        for (Issuer issuer : issuers.values()) {
+            if (issuer.getId().equals(id)) {
+                return issuer;
+            }
+        }
+        return null;
+    }
+
+    public Collection<Issuer> getIssuers() {
+        return Collections.unmodifiableCollection(new LinkedHashSet<>(issuers.values()));
+    }
+
+    /**
+     * Returns a copy of this index with the given issuer added,
+     * replacing any previous entry with the same ID.
+     */
+    public CRLStatusIndex with(Issuer issuer) {
+
+        Map<ByteBuffer, Issuer> map = new HashMap<>(issuers);
+        map.values().removeIf(i -> i.getId().equals(issuer.getId()));
+
+        for (byte[] keyHash : issuer.keyHashes) {
+            map.put(ByteBuffer.wrap(keyHash), issuer);
+        }
+
+        return new CRLStatusIndex(Collections.unmodifiableMap(map));
+    }
+
+    /**
+     * Returns a copy of this index without the issuer with the given ID.
+     */
+    public CRLStatusIndex without(String id) {
+
+        Map<ByteBuffer, Issuer> map = new HashMap<>(issuers);
+        map.values().removeIf(i -> i.getId().equals(id));
+
+        return new CRLStatusIndex(Collections.unmodifiableMap(map));
+    }
+
+    /**
+     * Revocation status of all certificates issued by a single CA
+     * as of a given CRL.
+     */
+    public static class Issuer {
+
+        private final String id;
+        private final X509CertImpl cert;
+        private final BigInteger crlNumber;
+        private final GeneralizedTime thisUpdate;
+        private final GeneralizedTime nextUpdate;
+
+        private final byte[][] keyHashes;
+        private final byte[][] nameHashes;
+
+        // serial numbers that fit into a long, sorted
+        private final long[] serials;
+        private final long[] revocationTimes;
+
+        // larger serial numbers (e.g. random serials), sorted
+        private final BigInteger[] bigSerials;
+        private final long[] bigRevocationTimes;
+
+        private Issuer(
+                String id,
+                X509CertImpl cert,
+                BigInteger crlNumber,
+                Date thisUpdate,
+                Date nextUpdate,
+                byte[][] keyHashes,
+                byte[][] nameHashes,
+                long[] serials,
+                long[] revocationTimes,
+                BigInteger[] bigSerials,
+                long[] bigRevocationTimes) {
+
+            this.id = id;
+            this.cert = cert;
+            this.crlNumber = crlNumber;
+            this.thisUpdate = thisUpdate == null ? null : new GeneralizedTime(thisUpdate);
+            this.nextUpdate = nextUpdate == null ? null : new GeneralizedTime(nextUpdate);
+            this.keyHashes = keyHashes;
+            this.nameHashes = nameHashes;
+            this.serials = serials;
+            this.revocationTimes = revocationTimes;
+            this.bigSerials = bigSerials;
+            this.bigRevocationTimes = bigRevocationTimes;
+        }
+
+        /**
+         * Builds an issuer entry from the CA certificate and the
+         * revoked certificate entries of its current CRL.
+         */
+        public static Issuer create(
+                String id,
+                X509CertImpl cert,
+                BigInteger crlNumber,
+                Date thisUpdate,
+                Date nextUpdate,
+                Collection<? extends X509CRLEntry> entries) throws NoSuchAlgorithmException {
+
+            X509Key key = (X509Key) cert.getPublicKey();
+            byte[] name = cert.getSubjectX500Principal().getEncoded();
+
+            List<byte[]> keyHashList = new ArrayList<>();
+            List<byte[]> nameHashList = new ArrayList<>();
+
+            for (String digestName : DIGEST_NAMES) {
+                MessageDigest md;
+                try {
+                    md = MessageDigest.getInstance(digestName);
+                } catch (NoSuchAlgorithmException e) {
+                    // legacy digests might be disabled in the provider,
+                    // requests using them cannot be verified anyway
+                    continue;
+                }
+                keyHashList.add(md.digest(key.getKey()));
+                nameHashList.add(md.digest(name));
+            }
+
+            if (keyHashList.isEmpty()) {
+                throw new NoSuchAlgorithmException("No CertID digest algorithm available");
+            }
+
+            byte[][] keyHashes = keyHashList.toArray(new byte[0][]);
+            byte[][] nameHashes = nameHashList.toArray(new byte[0][]);
+
+            List<X509CRLEntry> small = new ArrayList<>();
+            List<X509CRLEntry> big = new ArrayList<>();
+
+            if (entries != null) {
+                for (X509CRLEntry entry : entries) {
+                    if (entry.getSerialNumber().bitLength() < Long.SIZE) {
+                        small.add(entry);
+                    } else {
+                        big.add(entry);
+                    }
+                }
+            }
+
+            small.sort((a, b) -> a.getSerialNumber().compareTo(b.getSerialNumber()));
+            big.sort((a, b) -> a.getSerialNumber().compareTo(b.getSerialNumber()));
+
+            long[] serials = new long[small.size()];
+            long[] revocationTimes = new long[small.size()];
+
+            for (int i = 0; i < serials.length; i++) {
+                X509CRLEntry entry = small.get(i);
+                serials[i] = entry.getSerialNumber().longValue();
+                revocationTimes[i] = entry.getRevocationDate().getTime();
+            }
+
+            BigInteger[] bigSerials = new BigInteger[big.size()];
+            long[] bigRevocationTimes = new long[big.size()];
+
+            for (int i = 0; i < bigSerials.length; i++) {
+                X509CRLEntry entry = big.get(i);
+                bigSerials[i] = entry.getSerialNumber();
+                bigRevocationTimes[i] = entry.getRevocationDate().getTime();
+            }
+
+            return new Issuer(
+                    id,
+                    cert,
+                    crlNumber,
+                    thisUpdate,
+                    nextUpdate,
+                    keyHashes,
+                    nameHashes,
+                    serials,
+                    revocationTimes,
+                    bigSerials,
+                    bigRevocationTimes);
+        }
+
+        /**
+         * Returns a copy of this issuer entry with the entries of a
+         * delta CRL applied. Entries with removeFromCRL reason are
+         * removed, other entries are added or replace existing ones.
+         * The sorted arrays are merged in a single pass.
+         */
+        public Issuer applyDelta(
+                BigInteger crlNumber,
+                Date thisUpdate,
+                Date nextUpdate,
+                Collection<? extends X509CRLEntry> entries) {
+
+            // serial number -> revocation time, or null if removed
+            TreeMap<Long, Long> changes = new TreeMap<>();
+            TreeMap<BigInteger, Long> bigChanges = new TreeMap<>();
+
+            if (entries != null) {
+                for (X509CRLEntry entry : entries) {
+                    BigInteger serialNumber = entry.getSerialNumber();
+                    Long time = isRemoved(entry) ? null : entry.getRevocationDate().getTime();
+
+                    if (serialNumber.bitLength() < Long.SIZE) {
+                        changes.put(serialNumber.longValue(), time);
+                    } else {
+                        bigChanges.put(serialNumber, time);
+                    }
+                }
+            }
+
+            long[] newSerials = new long[serials.length + changes.size()];
+            long[] newRevocationTimes = new long[newSerials.length];
+            int n = 0;
+            int i = 0;
+
+            for (Map.Entry<Long, Long> change : changes.entrySet()) {
+                long serial = change.getKey();
+
+                while (i < serials.length && serials[i] < serial) {
+                    newSerials[n] = serials[i];
+                    newRevocationTimes[n++] = revocationTimes[i++];
+                }
+
+                if (i < serials.length && serials[i] == serial) {
+                    // replaced or removed
+                    i++;
+                }
+
+                if (change.getValue() != null) {
+                    newSerials[n] = serial;
+                    newRevocationTimes[n++] = change.getValue();
+                }
+            }
+
+            while (i < serials.length) {
+                newSerials[n] = serials[i];
+                newRevocationTimes[n++] = revocationTimes[i++];
+            }
+
+            BigInteger[] newBigSerials = new BigInteger[bigSerials.length + bigChanges.size()];
+            long[] newBigRevocationTimes = new long[newBigSerials.length];
+            int bn = 0;
+            int bi = 0;
+
+            for (Map.Entry<BigInteger, Long> change : bigChanges.entrySet()) {
+                BigInteger serial = change.getKey();
+
+                while (bi < bigSerials.length && bigSerials[bi].compareTo(serial) < 0) {
+                    newBigSerials[bn] = bigSerials[bi];
+                    newBigRevocationTimes[bn++] = bigRevocationTimes[bi++];
+                }
+
+                if (bi < bigSerials.length && bigSerials[bi].equals(serial)) {
+                    bi++;
+                }
+
+                if (change.getValue() != null) {
+                    newBigSerials[bn] = serial;
+                    newBigRevocationTimes[bn++] = change.getValue();
+                }
+            }
+
+            while (bi < bigSerials.length) {
+                newBigSerials[bn] = bigSerials[bi];
+                newBigRevocationTimes[bn++] = bigRevocationTimes[bi++];
+            }
+
+            return new Issuer(
+                    id,
+                    cert,
+                    crlNumber,
+                    thisUpdate,
+                    nextUpdate,
+                    keyHashes,
+                    nameHashes,
+                    Arrays.copyOf(newSerials, n),
+                    Arrays.copyOf(newRevocationTimes, n),
+                    Arrays.copyOf(newBigSerials, bn),
+                    Arrays.copyOf(newBigRevocationTimes, bn));
+        }
+
+        /**
+         * Checks whether a delta CRL entry removes the certificate
+         * from the CRL (i.e. the certificate is no longer on hold).
+         */
+        public static boolean isRemoved(X509CRLEntry entry) {
+
+            if (!(entry instanceof RevokedCertificate)) {
+                return false;
+            }
+
+            CRLExtensions exts = ((RevokedCertificate) entry).getExtensions();
+            if (exts == null) {
+                return false;
+            }
+
+            Enumeration<Extension> e = exts.getElements();
+            while (e.hasMoreElements()) {
+                Extension ext = e.nextElement();
+                if (ext instanceof CRLReasonExtension) {
+                    return ((CRLReasonExtension) ext).getReason() == RevocationReason.REMOVE_FROM_CRL;
+                }
+            }
+
+            return false;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public X509CertImpl getCert() {
+            return cert;
+        }
+
+        public BigInteger getCRLNumber() {
+            return crlNumber;
+        }
+
+        public GeneralizedTime getThisUpdate() {
+            return thisUpdate;
+        }
+
+        public GeneralizedTime getNextUpdate() {
+            return nextUpdate;
+        }
+
+        public int size() {
+            return serials.length + bigSerials.length;
+        }
+
+        /**
+         * Checks whether the issuer name hash matches this issuer
+         * for any of the supported digest algorithms.
+         */
+        public boolean matchesNameHash(byte[] nameHash) {
+            for (byte[] h : nameHashes) {
+                if (Arrays.equals(h, nameHash)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the revocation time in milliseconds of the given
+         * serial number, or {@link CRLStatusIndex#NOT_REVOKED}.
+         */
+        public long getRevocationTime(BigInteger serialNumber) {
+
+            if (serialNumber.bitLength() < Long.SIZE) {
+                int i = Arrays.binarySearch(serials, serialNumber.longValue());
+                return i < 0 ? NOT_REVOKED : revocationTimes[i];
+            }
+
+            int i = Arrays.binarySearch(bigSerials, serialNumber);
+            return i < 0 ? NOT_REVOKED : bigRevocationTimes[i];
+        }
+    }
+}
@@ -17,24 +17,30 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.ocsp;
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Locale;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.codec.binary.Hex;
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.DeltaCRLIndicatorExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
 import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
-import org.mozilla.jss.netscape.security.x509.X509Key;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IExtendedPluginInfo;
@@ -51,6 +57,8 @@ import com.netscape.cmscore.dbs.DBSSession;
 import com.netscape.cmscore.dbs.DBSearchResults;
 import com.netscape.cmscore.dbs.DBSubsystem;
 import com.netscape.cmscore.dbs.RepositoryRecord;
+import com.netscape.cmscore.dbs.RevokedCertificatesMapper;
+import com.netscape.cmscore.dbs.RevokedCertificatesUpdate;
 import com.netscape.cmsutil.ocsp.CertID;
 import com.netscape.cmsutil.ocsp.CertStatus;
 import com.netscape.cmsutil.ocsp.GoodInfo;
@@ -77,6 +85,12 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
     private static final String PROP_REFRESH_IN_SEC = "refreshInSec";
     private static final int DEF_REFRESH_IN_SEC = 0;
 
+    // how long (in seconds) an unknown issuer key hash is remembered
+    // before the database is searched for it again
+    private static final String PROP_UNKNOWN_ISSUER_TTL = "unknownIssuerTTL";
+    private static final int DEF_UNKNOWN_ISSUER_TTL = 10;
+    private static final int MAX_UNKNOWN_ISSUERS = 1000;
+
     public static final BigInteger BIG_ZERO = new BigInteger("0");
     public static final Long MINUS_ONE = Long.valueOf(-1);
 
@@ -88,12 +102,21 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
     private static final String PROP_INCLUDE_NEXT_UPDATE =
             "includeNextUpdate";
 
-    protected Hashtable<String, Long> mReqCounts = new Hashtable<>();
+    protected ConcurrentHashMap<String, Long> mReqCounts = new ConcurrentHashMap<>();
     protected boolean mNotFoundGood = true;
     protected boolean mUseCache = true;
     protected boolean mByName = true;
     protected boolean mIncludeNextUpdate = false;
-    protected Hashtable<String, CRLIPContainer> mCacheCRLIssuingPoints = new Hashtable<>();
+    protected volatile CRLStatusIndex mStatusIndex = CRLStatusIndex.EMPTY;
+    protected final Object mStatusIndexLock = new Object();
+
+    // in-progress database searches for issuers not in the status index
+    protected final ConcurrentHashMap<String, CompletableFuture<CRLStatusIndex.Issuer>> mIssuerLoads =
+            new ConcurrentHashMap<>();
+
+    // expiration times of issuer key hashes that could not be found
+    protected final ConcurrentHashMap<String, Long> mUnknownIssuers = new ConcurrentHashMap<>();
+    protected int mUnknownIssuerTTL = DEF_UNKNOWN_ISSUER_TTL;
     private ConfigStore mConfig;
     private String mId = null;
     private DBSubsystem dbSubsystem;
@@ -150,6 +173,8 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
         mByName = mConfig.getBoolean(PROP_BY_NAME, true);
 
+        mUnknownIssuerTTL = mConfig.getInteger(PROP_UNKNOWN_ISSUER_TTL, DEF_UNKNOWN_ISSUER_TTL);
+
         // To include next update in the OCSP response. If included,
         // PSM (client) will check to see if the revoked information
         // is too old or not
@@ -212,7 +237,7 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
     }
 
     public void incReqCount(String id) {
-        mReqCounts.put(id, Long.valueOf(getReqCount(id) + 1));
+        mReqCounts.merge(id, 1L, Long::sum);
     }
 
     /**
@@ -284,11 +309,20 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
     @Override
     public void startup() throws EBaseException {
+
+        // build the status index before serving requests
+        try {
+            refreshStatusIndex();
+        } catch (EBaseException e) {
+            logger.warn("DefStore: Unable to build status index: " + e.getMessage(), e);
+        }
+
         int refresh = mConfig.getInteger(PROP_REFRESH_IN_SEC,
                 DEF_REFRESH_IN_SEC);
         if (refresh > 0) {
             DefStoreCRLUpdater updater =
-                    new DefStoreCRLUpdater(mCacheCRLIssuingPoints, refresh);
+                    new DefStoreCRLUpdater(this, refresh);
+            updater.setDaemon(true);
             updater.start();
         }
     }
@@ -309,6 +343,13 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
         return mId;
     }
 
+    /**
+     * Returns the current revocation status index.
+     */
+    public CRLStatusIndex getStatusIndex() {
+        return mStatusIndex;
+    }
+
     /**
      * Check against the database for status.
      */
@@ -318,176 +359,286 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
         CertID cid = req.getCertID();
         INTEGER serialNo = cid.getSerialNumber();
-        logger.info("DefStore: Processing request for cert 0x" + serialNo.toString(16));
+        logger.debug("DefStore: Processing request for cert 0x" + serialNo.toString(16));
 
-        // cache result to speed up the performance
-        X509CertImpl theCert = null;
-        X509CRLImpl theCRL = null;
-        CRLIssuingPointRecord theRec = null;
         byte keyhsh[] = cid.getIssuerKeyHash().toByteArray();
-        logger.info("DefStore: Issuer key hash: " + new String(Hex.encodeHex(keyhsh)));
 
-        CRLIPContainer matched = mCacheCRLIssuingPoints.get(new String(keyhsh));
-        logger.info("DefStore: CRL issuing point container: " + matched);
+        // the index is immutable, so lookups do not need any locking
+        CRLStatusIndex.Issuer issuer = mStatusIndex.getIssuer(keyhsh);
+
+        if (issuer == null) {
+            logger.info("DefStore: Issuer key hash not indexed: " + new String(Hex.encodeHex(keyhsh)));
+            issuer = loadIssuer(keyhsh);
+        }
 
-        if (matched == null) {
-            logger.info("DefStore: Searching for objectclass=" + CRLIssuingPointRecord.class.getName());
-            Enumeration<CRLIssuingPointRecord> recs = searchCRLIssuingPointRecord(
-                    "objectclass=" + CRLIssuingPointRecord.class.getName(),
-                    100);
+        if (issuer == null) {
+            throw new Exception("Missing issuer certificate");
+        }
 
-            while (recs.hasMoreElements()) {
-                CRLIssuingPointRecord rec = recs.nextElement();
-                logger.info("DefStore: - ID: " + rec.getId());
+        if (!issuer.matchesNameHash(cid.getIssuerNameHash().toByteArray())) {
+            logger.debug("DefStore: Issuer name hash does not match " + issuer.getId());
+        }
 
-                byte certdata[] = rec.getCACert();
-                X509CertImpl cert = null;
+        incReqCount(issuer.getId());
 
-                try {
-                    cert = new X509CertImpl(certdata);
-                } catch (Exception e) {
-                    logger.error(CMS.getLogMessage("OCSP_DECODE_CERT", e.toString()), e);
-                    throw e;
-                }
+        GeneralizedTime thisUpdate = issuer.getThisUpdate();
+        if (thisUpdate == null) {
+            thisUpdate = new GeneralizedTime(new Date());
+        }
 
-                MessageDigest md = MessageDigest.getInstance(cid.getDigestName());
-                X509Key key = (X509Key) cert.getPublicKey();
-                byte digest[] = md.digest(key.getKey());
-                logger.info("DefStore:   Digest: " + new String(Hex.encodeHex(digest)));
+        // this is an optional field
+        GeneralizedTime nextUpdate = includeNextUpdate() ? issuer.getNextUpdate() : null;
 
-                if (!Arrays.equals(digest, keyhsh)) {
-                    continue;
-                }
+        CertStatus certStatus;
+        long revocationTime = issuer.getRevocationTime(serialNo);
 
-                logger.info("DefStore: Found issuer");
+        if (revocationTime != CRLStatusIndex.NOT_REVOKED) {
+            certStatus = new RevokedInfo(new GeneralizedTime(new Date(revocationTime)));
 
-                theCert = cert;
-                theRec = rec;
-                incReqCount(theRec.getId());
+        } else if (isNotFoundGood()) {
+            certStatus = new GoodInfo();
 
-                byte crldata[] = rec.getCRL();
-                logger.info("DefStore: CRL: " + crldata);
+        } else {
+            certStatus = new UnknownInfo();
+        }
 
-                if (crldata == null) {
-                    throw new Exception("Missing CRL data");
-                }
+        return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
+    }
 
-                if (rec.getCRLCache() == null) {
-                    logger.debug("DefStore: start building x509 crl impl");
-                    try {
-                        theCRL = new X509CRLImpl(crldata);
-                    } catch (Exception e) {
-                        logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
-                        throw e;
-                    }
-                    logger.debug("DefStore: done building x509 crl impl");
-                } else {
-                    logger.debug("DefStore: using crl cache");
-                }
+    /**
+     * Loads the issuer with the given key hash from the database
+     * into the status index. Concurrent requests for an unknown
+     * issuer wait for a single load instead of searching the
+     * database each, and key hashes that could not be found are
+     * not searched again until the unknown issuer TTL expires.
+     * The database search runs outside of the status index lock
+     * so it does not block CRL updates or other lookups.
+     */
+    private CRLStatusIndex.Issuer loadIssuer(byte[] keyhsh) throws Exception {
 
-                logger.info("DefStore: Adding CRL issuing point container for " + new String(Hex.encodeHex(digest)));
-                mCacheCRLIssuingPoints.put(new String(digest), new CRLIPContainer(theRec, theCert, theCRL));
-                break;
-            }
+        String key = new String(Hex.encodeHex(keyhsh));
 
-        } else {
-            theCert = matched.getX509CertImpl();
-            theRec = matched.getCRLIssuingPointRecord();
-            theCRL = matched.getX509CRLImpl();
-            incReqCount(theRec.getId());
+        Long expiration = mUnknownIssuers.get(key);
+        if (expiration != null) {
+            if (expiration > System.currentTimeMillis()) {
+                logger.debug("DefStore: Issuer key hash recently not found: " + key);
+                return null;
+            }
+            mUnknownIssuers.remove(key, expiration);
         }
 
-        logger.info("DefStore: Issuer: " + theCert);
+        CompletableFuture<CRLStatusIndex.Issuer> future = new CompletableFuture<>();
+        CompletableFuture<CRLStatusIndex.Issuer> pending = mIssuerLoads.putIfAbsent(key, future);
 
-        if (theCert == null) {
-            throw new Exception("Missing issuer certificate");
+        if (pending != null) {
+            // another thread is already loading this issuer
+            try {
+                return pending.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
         }
 
-        logger.info("DefStore: Issuer: " + theCert.getSubjectX500Principal());
+        try {
+            CRLStatusIndex.Issuer issuer = searchIssuer(keyhsh);
 
-        // check the serial number
-        logger.info("Checked Status of certificate 0x" + serialNo.toString(16));
+            if (issuer == null && mUnknownIssuerTTL > 0) {
+                rememberUnknownIssuer(key);
+            }
 
-        GeneralizedTime thisUpdate;
+            future.complete(issuer);
+            return issuer;
 
-        if (theRec == null) {
-            thisUpdate = new GeneralizedTime(new Date());
-        } else {
-            Date d = theRec.getThisUpdate();
-            logger.debug("DefStore: CRL record this update: " + d);
-            thisUpdate = new GeneralizedTime(d);
-        }
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
 
-        logger.debug("DefStore: this update: " + thisUpdate.toDate());
+        } finally {
+            mIssuerLoads.remove(key, future);
+        }
+    }
 
-        // this is an optional field
-        GeneralizedTime nextUpdate;
+    /**
+     * Remembers an unknown issuer key hash. The key hashes come from
+     * the clients, so the number of entries is bounded: expired entries
+     * are purged once the limit is reached, and if the cache is still
+     * full the key hash is simply not remembered.
+     */
+    private void rememberUnknownIssuer(String key) {
 
-        if (!includeNextUpdate()) {
-            nextUpdate = null;
+        long now = System.currentTimeMillis();
 
-        } else if (theRec == null) {
-            nextUpdate = new GeneralizedTime(new Date());
+        if (mUnknownIssuers.size() >= MAX_UNKNOWN_ISSUERS) {
+            mUnknownIssuers.values().removeIf(expiration -> expiration <= now);
+        }
 
-        } else {
-            Date d = theRec.getNextUpdate();
-            logger.debug("DefStore: CRL record next update: " + d);
-            nextUpdate = new GeneralizedTime(d);
+        if (mUnknownIssuers.size() >= MAX_UNKNOWN_ISSUERS) {
+            return;
         }
 
-        logger.debug("DefStore: next update: " + (nextUpdate == null ? null : nextUpdate.toDate()));
+        mUnknownIssuers.put(key, now + mUnknownIssuerTTL * 1000L);
+    }
 
-        CertStatus certStatus;
+    /**
+     * Searches the CRL issuing point records for the issuer with
+     * the given key hash. Records that are not indexed yet are added
+     * to the status index along the way.
+     */
+    private CRLStatusIndex.Issuer searchIssuer(byte[] keyhsh) throws Exception {
 
-        if (theCRL == null) {
+        // another thread might have loaded it already
+        CRLStatusIndex.Issuer issuer = mStatusIndex.getIssuer(keyhsh);
+        if (issuer != null) {
+            return issuer;
+        }
 
-            certStatus = new UnknownInfo();
+        logger.info("DefStore: Searching for objectclass=" + CRLIssuingPointRecord.class.getName());
+        Enumeration<CRLIssuingPointRecord> recs = searchCRLIssuingPointRecord(
+                "objectclass=" + CRLIssuingPointRecord.class.getName(),
+                100);
+
+        while (recs.hasMoreElements()) {
+            CRLIssuingPointRecord rec = recs.nextElement();
+            logger.info("DefStore: - ID: " + rec.getId());
 
-            if (theRec == null) {
-                return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
+            if (mStatusIndex.getIssuerById(rec.getId()) != null) {
+                continue;
             }
 
-            // if crl is not available, we can try crl cache
-            logger.debug("DefStore: evaluating crl cache");
-            Hashtable<BigInteger, RevokedCertificate> cache = theRec.getCRLCacheNoClone();
-            if (cache != null) {
-                RevokedCertificate rc = cache.get(new BigInteger(serialNo.toString()));
-                if (rc == null) {
-                    if (isNotFoundGood()) {
-                        certStatus = new GoodInfo();
-                    } else {
-                        certStatus = new UnknownInfo();
-                    }
-                } else {
+            CRLStatusIndex.Issuer candidate;
+            try {
+                candidate = createIssuer(rec, null);
+            } catch (Exception e) {
+                logger.warn("DefStore: Unable to index " + rec.getId() + ": " + e.getMessage(), e);
+                continue;
+            }
+
+            synchronized (mStatusIndexLock) {
 
-                    certStatus = new RevokedInfo(
-                            new GeneralizedTime(
-                                    rc.getRevocationDate()));
+                // do not replace an entry added by a CRL update in the meantime
+                if (mStatusIndex.getIssuerById(rec.getId()) == null) {
+                    mStatusIndex = mStatusIndex.with(candidate);
+                }
+
+                if (mStatusIndex.getIssuer(keyhsh) == candidate) {
+                    logger.info("DefStore: Found issuer " + rec.getId());
+                    issuer = candidate;
                 }
             }
+        }
+
+        return issuer;
+    }
+
+    /**
+     * Builds the status index entry of a CRL issuing point record.
+     * If the CRL has already been decoded it can be passed in to
+     * avoid decoding it again.
+     */
+    private CRLStatusIndex.Issuer createIssuer(CRLIssuingPointRecord rec, X509CRLImpl crl) throws Exception {
+
+        byte certdata[] = rec.getCACert();
+        X509CertImpl cert;
 
-            return new SingleResponse(cid, certStatus, thisUpdate,
-                    nextUpdate);
+        try {
+            cert = new X509CertImpl(certdata);
+        } catch (Exception e) {
+            logger.error(CMS.getLogMessage("OCSP_DECODE_CERT", e.toString()), e);
+            throw e;
         }
 
-        logger.debug("DefStore: evaluating x509 crl impl");
-        X509CRLEntry crlentry = theCRL.getRevokedCertificate(new BigInteger(serialNo.toString()));
+        Collection<? extends X509CRLEntry> entries = null;
 
-        if (crlentry == null) {
-            // good or unknown
-            if (isNotFoundGood()) {
-                certStatus = new GoodInfo();
-            } else {
-                certStatus = new UnknownInfo();
-            }
+        // the CRL cache already includes the changes from delta CRLs
+        boolean deltaIncluded = false;
+
+        if (crl != null) {
+            entries = crl.getRevokedCertificates();
+
+        } else if (rec.getCRLCacheNoClone() != null) {
+            logger.debug("DefStore: using crl cache");
+            entries = rec.getCRLCacheNoClone().values();
+            deltaIncluded = true;
 
         } else {
-            certStatus = new RevokedInfo(new GeneralizedTime(
-                            crlentry.getRevocationDate()));
+            byte crldata[] = rec.getCRL();
+
+            if (crldata == null) {
+                throw new Exception("Missing CRL data");
+            }
+
+            logger.debug("DefStore: start building x509 crl impl");
+            try {
+                entries = new X509CRLImpl(crldata).getRevokedCertificates();
+            } catch (Exception e) {
+                logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
+                throw e;
+            }
+            logger.debug("DefStore: done building x509 crl impl");
+        }
+
+        CRLStatusIndex.Issuer issuer = CRLStatusIndex.Issuer.create(
+                rec.getId(),
+                cert,
+                deltaIncluded ? rec.getLatestCRLNumber() : rec.getCRLNumber(),
+                rec.getThisUpdate(),
+                rec.getNextUpdate(),
+                entries);
+
+        BigInteger deltaNumber = rec.getDeltaCRLNumber();
+        byte[] deltaData = rec.getDeltaCRL();
+
+        if (!deltaIncluded && deltaData != null && deltaNumber != null
+                && !deltaNumber.equals(rec.getCRLNumber())
+                && deltaNumber.equals(rec.getLatestCRLNumber())) {
+
+            logger.debug("DefStore: applying delta CRL " + deltaNumber);
+            try {
+                issuer = issuer.applyDelta(
+                        deltaNumber,
+                        rec.getThisUpdate(),
+                        rec.getNextUpdate(),
+                        new X509CRLImpl(deltaData).getRevokedCertificates());
+            } catch (Exception e) {
+                logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
+                throw e;
+            }
         }
 
-        return new SingleResponse(cid, certStatus, thisUpdate,
-                nextUpdate);
+        return issuer;
+    }
+
+    /**
+     * Rebuilds the whole status index from the database and swaps it in.
+     * This runs outside of the request path, requests keep using the
+     * previous index until the new one is complete.
+     */
+    public void refreshStatusIndex() throws EBaseException {
+
+        synchronized (mStatusIndexLock) {
+
+            CRLStatusIndex index = CRLStatusIndex.EMPTY;
+
+            Enumeration<CRLIssuingPointRecord> recs = searchAllCRLIssuingPointRecord(100);
+            while (recs.hasMoreElements()) {
+                CRLIssuingPointRecord rec = recs.nextElement();
+
+                if (rec.getCACert() == null || rec.getThisUpdate() == null) {
+                    // no CRL received yet
+                    continue;
+                }
+
+                try {
+                    index = index.with(createIssuer(rec, null));
+                } catch (Exception e) {
+                    logger.warn("DefStore: Unable to index " + rec.getId() + ": " + e.getMessage(), e);
+                }
+            }
+
+            mStatusIndex = index;
+            mUnknownIssuers.clear();
+        }
     }
 
     private String transformDN(String dn) {
@@ -809,15 +960,21 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
             } catch (Exception e) {
                 // ignore
             }
-            logger.debug("DefStore: ready to CRL update " +
-                    crl.getIssuerDN().getName());
-            modifyCRLIssuingPointRecord(
-                    crl.getIssuerDN().getName(), mods);
-            logger.debug("DefStore: done CRL update " +
-                    crl.getIssuerDN().getName());
-
-            // update cache
-            mCacheCRLIssuingPoints.clear();
+            // Hold the status index lock while the record is modified
+            // and read back so a concurrent delta CRL update cannot be
+            // applied to the record in between or get overwritten in
+            // the index.
+            synchronized (mStatusIndexLock) {
+                logger.debug("DefStore: ready to CRL update " +
+                        crl.getIssuerDN().getName());
+                modifyCRLIssuingPointRecord(
+                        crl.getIssuerDN().getName(), mods);
+                logger.debug("DefStore: done CRL update " +
+                        crl.getIssuerDN().getName());
+
+                // update status index
+                updateStatusIndex((X509CRLImpl) crl);
+            }
 
             logger.info("DefStore: Finish Committing CRL." +
                     " thisUpdate=" + crl.getThisUpdate() +
@@ -828,6 +985,194 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
         }
     }
 
+    /**
+     * Returns the base CRL number of a delta CRL, or null if the CRL
+     * is not a delta CRL.
+     */
+    public static BigInteger getBaseCRLNumber(X509CRLImpl crl) {
+
+        CRLExtensions crlExtensions = crl.getExtensions();
+        if (crlExtensions == null) {
+            return null;
+        }
+
+        for (int k = 0; k < crlExtensions.size(); k++) {
+            Extension ext = crlExtensions.elementAt(k);
+
+            if (DeltaCRLIndicatorExtension.OID.equals(ext.getExtensionId().toString())
+                    && ext instanceof DeltaCRLIndicatorExtension) {
+                try {
+                    return (BigInteger) ((DeltaCRLIndicatorExtension) ext).get(DeltaCRLIndicatorExtension.NUMBER);
+                } catch (IOException e) {
+                    logger.warn("DefStore: Invalid delta CRL indicator: " + e.getMessage(), e);
+                    return null;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean updateDeltaCRL(X509CRL deltaCRL) throws EBaseException {
+
+        X509CRLImpl crl = (X509CRLImpl) deltaCRL;
+        String name = crl.getIssuerDN().getName();
+
+        try {
+            mStateCount++;
+
+            logger.debug("DefStore: Ready to apply delta CRL");
+
+            try {
+                if (!crl.areEntriesIncluded())
+                    crl = new X509CRLImpl(crl.getEncoded());
+            } catch (Exception e) {
+                logger.warn("DefStore: " + e.getMessage(), e);
+            }
+
+            BigInteger baseNumber = getBaseCRLNumber(crl);
+            BigInteger deltaNumber = crl.getCRLNumber();
+
+            if (baseNumber == null || deltaNumber == null) {
+                logger.warn("DefStore: Missing CRL number in delta CRL of " + name);
+                return false;
+            }
+
+            synchronized (mStatusIndexLock) {
+
+                CRLIssuingPointRecord rec = readCRLIssuingPoint(name);
+                Hashtable<BigInteger, RevokedCertificate> cache = mUseCache ? rec.getCRLCacheNoClone() : null;
+
+                // Without the CRL cache only the full CRL and the latest
+                // delta CRL are stored, so the delta CRL must be based on
+                // the stored full CRL. The cache includes previous delta
+                // CRLs, so it can be updated from any later base CRL.
+                BigInteger currentNumber = cache != null ? rec.getLatestCRLNumber() : rec.getCRLNumber();
+
+                if (currentNumber == null || currentNumber.compareTo(baseNumber) < 0) {
+                    logger.info("DefStore: Delta CRL " + deltaNumber + " of " + name
+                            + " requires base CRL " + baseNumber + ", current CRL: " + currentNumber);
+                    return false;
+                }
+
+                BigInteger latestNumber = rec.getLatestCRLNumber();
+
+                if (deltaNumber.compareTo(latestNumber) <= 0) {
+                    logger.info("DefStore: Delta CRL " + deltaNumber + " of " + name + " has already been applied");
+                    return true;
+                }
+
+                Set<RevokedCertificate> entries = crl.getRevokedCertificates();
+
+                ModificationSet mods = new ModificationSet();
+
+                if (crl.getThisUpdate() != null)
+                    mods.add(CRLIssuingPointRecord.ATTR_THIS_UPDATE,
+                            Modification.MOD_REPLACE, crl.getThisUpdate());
+                if (crl.getNextUpdate() != null)
+                    mods.add(CRLIssuingPointRecord.ATTR_NEXT_UPDATE,
+                            Modification.MOD_REPLACE, crl.getNextUpdate());
+
+                mods.add(CRLIssuingPointRecord.ATTR_DELTA_NUMBER,
+                        Modification.MOD_REPLACE, deltaNumber);
+                mods.add(CRLIssuingPointRecord.ATTR_DELTA_SIZE,
+                        Modification.MOD_REPLACE, Long.valueOf(entries == null ? 0 : entries.size()));
+
+                try {
+                    mods.add(CRLIssuingPointRecord.ATTR_DELTA_CRL,
+                            Modification.MOD_REPLACE, crl.getEncoded());
+                } catch (Exception e) {
+                    logger.warn("DefStore: Unable to encode delta CRL: " + e.getMessage(), e);
+                }
+
+                if (cache != null) {
+                    RevokedCertificatesUpdate update = new RevokedCertificatesUpdate();
+
+                    if (entries != null) {
+                        for (RevokedCertificate entry : entries) {
+                            if (CRLStatusIndex.Issuer.isRemoved(entry)) {
+                                update.remove(entry.getSerialNumber());
+                            } else {
+                                update.put(entry.getSerialNumber(), entry);
+                            }
+                        }
+                    }
+
+                    if (!update.isEmpty()) {
+                        String format = dbSubsystem.getDBConfigStore().getCRLCacheFormat();
+
+                        if (RevokedCertificatesMapper.FORMAT_COMPACT.equals(format)) {
+                            // append the changes instead of rewriting the cache
+                            mods.add(CRLIssuingPointRecord.ATTR_CRL_CACHE,
+                                    Modification.MOD_ADD, update);
+                        } else {
+                            update.applyTo(cache);
+                            mods.add(CRLIssuingPointRecord.ATTR_CRL_CACHE,
+                                    Modification.MOD_REPLACE, cache);
+                        }
+                    }
+                }
+
+                logger.debug("DefStore: ready to delta CRL update " + name);
+                modifyCRLIssuingPointRecord(name, mods);
+                logger.debug("DefStore: done delta CRL update " + name);
+
+                // update status index
+                CRLStatusIndex.Issuer issuer = mStatusIndex.getIssuerById(rec.getId());
+
+                try {
+                    if (issuer != null && latestNumber.equals(issuer.getCRLNumber())) {
+                        issuer = issuer.applyDelta(deltaNumber, crl.getThisUpdate(), crl.getNextUpdate(), entries);
+                    } else {
+                        // the index is not in sync with the record, rebuild the entry
+                        issuer = createIssuer(readCRLIssuingPoint(name), null);
+                    }
+                    mStatusIndex = mStatusIndex.with(issuer);
+
+                } catch (Exception e) {
+                    // the issuer will be reloaded on the next request
+                    logger.warn("DefStore: Unable to index delta CRL of " + name + ": " + e.getMessage(), e);
+                    mStatusIndex = mStatusIndex.without(rec.getId());
+                }
+            }
+
+            logger.info("DefStore: Finish Committing delta CRL " + deltaNumber + "." +
+                    " thisUpdate=" + crl.getThisUpdate() +
+                    " nextUpdate=" + crl.getNextUpdate());
+
+            return true;
+
+        } finally {
+            mStateCount--;
+        }
+    }
+
+    /**
+     * Replaces the status index entry of the CRL issuer with one
+     * built from the committed CRL. The caller should hold the
+     * status index lock while committing the CRL.
+     */
+    private void updateStatusIndex(X509CRLImpl crl) {
+
+        String name = crl.getIssuerDN().getName();
+
+        synchronized (mStatusIndexLock) {
+            try {
+                CRLIssuingPointRecord rec = readCRLIssuingPoint(name);
+                mStatusIndex = mStatusIndex.with(createIssuer(rec, crl));
+
+                // the new CRL might be from a previously unknown issuer
+                mUnknownIssuers.clear();
+
+            } catch (Exception e) {
+                // the issuer will be reloaded on the next request
+                logger.warn("DefStore: Unable to index CRL of " + name + ": " + e.getMessage(), e);
+                mStatusIndex = mStatusIndex.without(name);
+            }
+        }
+    }
+
     @Override
     public int getStateCount() {
         return mStateCount;
@@ -851,39 +1196,16 @@ class DeleteOldCRLsThread extends Thread {
     }
 }
 
-class CRLIPContainer {
-    private CRLIssuingPointRecord mRec = null;
-    private X509CertImpl mCert = null;
-    private X509CRLImpl mCRL = null;
-
-    public CRLIPContainer(CRLIssuingPointRecord rec, X509CertImpl cert, X509CRLImpl crl) {
-        mRec = rec;
-        mCert = cert;
-        mCRL = crl;
-    }
-
-    public CRLIssuingPointRecord getCRLIssuingPointRecord() {
-        return mRec;
-    }
-
-    public X509CertImpl getX509CertImpl() {
-        return mCert;
-    }
-
-    public X509CRLImpl getX509CRLImpl() {
-        return mCRL;
-    }
-}
-
 class DefStoreCRLUpdater extends Thread {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DefStoreCRLUpdater.class);
 
-    private Hashtable<String, CRLIPContainer> mCache = null;
+    private DefStore mDefStore = null;
     private int mSec = 0;
 
-    public DefStoreCRLUpdater(Hashtable<String, CRLIPContainer> cache, int sec) {
-        mCache = cache;
+    public DefStoreCRLUpdater(DefStore defStore, int sec) {
+        super("DefStoreCRLUpdater");
+        mDefStore = defStore;
         mSec = sec;
     }
 
@@ -891,9 +1213,9 @@ class DefStoreCRLUpdater extends Thread {
     public void run() {
         while (true) {
             try {
-                logger.debug("DefStore: CRLUpdater invoked");
-                mCache.clear();
                 sleep(mSec * 1000); // turn sec into millis-sec
+                logger.debug("DefStore: CRLUpdater invoked");
+                mDefStore.refreshStatusIndex();
             } catch (Exception e) {
                 // ignore
             }
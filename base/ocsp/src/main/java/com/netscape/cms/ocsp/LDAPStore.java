@@ -332,6 +332,11 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         throw new EBaseException("NOT SUPPORTED");
     }
 
+    @Override
+    public boolean updateDeltaCRL(X509CRL deltaCRL) throws EBaseException {
+        throw new EBaseException("NOT SUPPORTED");
+    }
+
     @Override
     public CRLIssuingPointRecord readCRLIssuingPoint(String name)
             throws EBaseException {
@@ -18,11 +18,13 @@
 package com.netscape.cms.servlet.ocsp;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
 import java.util.Date;
 import java.util.Locale;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -73,6 +75,7 @@ public class AddCRLServlet extends CMSServlet {
             "-----BEGIN CERTIFICATE REVOCATION LIST-----";
     public static final String END_HEADER =
             "-----END CERTIFICATE REVOCATION LIST-----";
+    public static final String CONTENT_TYPE_PKIX_CRL = "application/pkix-crl";
 
     private final static String TPL_FILE = "addCRL.template";
     private String mFormPath = null;
@@ -108,6 +111,9 @@ public class AddCRLServlet extends CMSServlet {
      * <li>http.param crl certificate revocation list, base-64, DER encoded wrapped in -----BEGIN CERTIFICATE REVOCATION
      * LIST-----, -----END CERTIFICATE REVOCATION LIST----- strings
      * <li>http.param noui if true, use minimal hardcoded text response
+     * <li>alternatively the request body may contain the DER encoded CRL with
+     * application/pkix-crl content type and optional gzip content encoding,
+     * in which case the minimal text response is used
      * <li>signed.audit LOGGING_SIGNED_AUDIT_CRL_RETRIEVAL used when CRLs are retrieved by the OCSP Responder ("agent"
      * or "EE")
      * <li>signed.audit LOGGING_SIGNED_AUDIT_CRL_VALIDATION used when CRL is retrieved and validation process occurs
@@ -178,10 +184,17 @@ public class AddCRLServlet extends CMSServlet {
                 }
             }
 
-            String b64 = cmsReq.getHttpReq().getParameter("crl");
-            logger.info("AddCRLServlet: CRL: " + b64);
+            boolean raw = isRawCRL(req);
+            String b64 = null;
 
-            if (b64 == null) {
+            if (raw) {
+                logger.info("AddCRLServlet: CRL in request body");
+            } else {
+                b64 = cmsReq.getHttpReq().getParameter("crl");
+                logger.info("AddCRLServlet: CRL: " + b64);
+            }
+
+            if (!raw && b64 == null) {
                 // store a message in the signed audit log file
                 auditMessage = CMS.getLogMessage(
                         AuditEvent.CRL_RETRIEVAL,
@@ -198,7 +211,7 @@ public class AddCRLServlet extends CMSServlet {
             String nouiParm = cmsReq.getHttpReq().getParameter("noui");
             boolean noUI = false;
 
-            if (nouiParm != null && nouiParm.equals("true")) {
+            if (raw || nouiParm != null && nouiParm.equals("true")) {
                 noUI = true;
                 logger.debug("AddCRLServlet: noUI=true");
             } else {
@@ -232,7 +245,7 @@ public class AddCRLServlet extends CMSServlet {
             ArgBlock fixed = new ArgBlock();
             CMSTemplateParams argSet = new CMSTemplateParams(header, fixed);
 
-            if (b64.indexOf(BEGIN_HEADER) == -1) {
+            if (!raw && b64.indexOf(BEGIN_HEADER) == -1) {
                 logger.error(CMS.getLogMessage("CMSGW_MISSING_CRL_HEADER"));
 
                 // store a message in the signed audit log file
@@ -247,7 +260,7 @@ public class AddCRLServlet extends CMSServlet {
                 throw new ECMSGWException(CMS.getUserMessage(getLocale(req),
                                           "CMS_GW_MISSING_CRL_HEADER"));
             }
-            if (b64.indexOf(END_HEADER) == -1) {
+            if (!raw && b64.indexOf(END_HEADER) == -1) {
                 logger.error(CMS.getLogMessage("CMSGW_MISSING_CRL_FOOTER"));
 
                 // store a message in the signed audit log file
@@ -273,7 +286,7 @@ public class AddCRLServlet extends CMSServlet {
                 if (statsSub != null) {
                     statsSub.startTiming("decode_crl");
                 }
-                crl = mapCRL1(b64);
+                crl = raw ? readCRL(req, cs.getOCSPConfig().getCRLMaxSize()) : mapCRL1(b64);
                 if (statsSub != null) {
                     statsSub.endTiming("decode_crl");
                 }
@@ -298,6 +311,25 @@ public class AddCRLServlet extends CMSServlet {
 
                 // acknowledge that the CRL has been retrieved
                 CRLFetched = true;
+            } catch (CRLTooLargeException e) {
+                logger.error("AddCRLServlet: " + e.getMessage());
+
+                // store a message in the signed audit log file
+                auditMessage = CMS.getLogMessage(
+                        AuditEvent.CRL_RETRIEVAL,
+                        auditSubjectID,
+                        ILogger.FAILURE,
+                        auditCRLNum);
+
+                audit(auditMessage);
+
+                try {
+                    resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+                } catch (IOException ioe) {
+                    throw new ECMSGWException(CMS.getUserMessage("CMS_GW_DECODING_CRL_ERROR"), ioe);
+                }
+                return;
+
             } catch (Exception e) {
                 // error
 
@@ -407,7 +439,8 @@ public class AddCRLServlet extends CMSServlet {
 
             if ((pt.getThisUpdate() != null) &&
                     (pt.getThisUpdate().getTime() >=
-                    crl.getThisUpdate().getTime())) {
+                    crl.getThisUpdate().getTime()) &&
+                    !replacesDeltaCRL(pt, crl)) {
 
                 logger.warn("AddCRLServlet: no update, received CRL is older than current CRL");
 
@@ -443,56 +476,63 @@ public class AddCRLServlet extends CMSServlet {
 
             if (crl.isDeltaCRL()) {
 
-                logger.warn("AddCRLServlet: no update, " + CMS.getUserMessage("CMS_GW_DELTA_CRL_NOT_SUPPORTED"));
+                logger.info("AddCRLServlet: Applying delta CRL");
 
-                if (noUI) {
-                    try {
-                        resp.setContentType("application/text");
-                        resp.getOutputStream().write("status=1\n".getBytes());
-                        resp.getOutputStream().write(
-                                "error=Delta CRLs are not supported.\n".getBytes());
-                        resp.getOutputStream().flush();
-                        cmsReq.setStatus(CMSRequest.SUCCESS);
+                if (!defStore.updateDeltaCRL(crl)) {
 
-                        return;
-                    } catch (Exception e) {
+                    logger.warn("AddCRLServlet: no update, " + CMS.getUserMessage("CMS_GW_BASE_CRL_NOT_FOUND"));
+
+                    if (noUI) {
+                        try {
+                            resp.setContentType("application/text");
+                            // status=2 tells the publisher to send the full CRL
+                            resp.getOutputStream().write("status=2\n".getBytes());
+                            resp.getOutputStream().write(
+                                    "error=Base CRL not found, full CRL required.\n".getBytes());
+                            resp.getOutputStream().flush();
+                            cmsReq.setStatus(CMSRequest.SUCCESS);
+
+                            return;
+                        } catch (Exception e) {
+                        }
+                    } else {
+                        throw new ECMSGWException(CMS.getUserMessage("CMS_GW_BASE_CRL_NOT_FOUND"));
                     }
-                } else {
-                    throw new ECMSGWException(CMS.getUserMessage("CMS_GW_DELTA_CRL_NOT_SUPPORTED"));
                 }
-            }
 
-            logger.info("AddCRLServlet: Start Committing CRL");
+            } else {
+                logger.info("AddCRLServlet: Start Committing CRL");
 
-            // *****************************************************
-            // The commit transaction may take long time and
-            // there may have a system crash during the transaction
-            // *****************************************************
+                // *****************************************************
+                // The commit transaction may take long time and
+                // there may have a system crash during the transaction
+                // *****************************************************
 
-            RepositoryRecord repRec = defStore.createRepositoryRecord();
+                RepositoryRecord repRec = defStore.createRepositoryRecord();
 
-            repRec.set(RepositoryRecord.ATTR_SERIALNO,
-                    new BigInteger(Long.toString(crl.getThisUpdate().getTime())));
-            try {
-                defStore.addRepository(
-                        crl.getIssuerDN().getName(),
-                        Long.toString(crl.getThisUpdate().getTime()),
-                        repRec);
-                logger.info("AddCRLServlet: Added CRL Updated " + Long.toString(crl.getThisUpdate().getTime()));
-            } catch (Exception e) {
-                logger.warn("AddCRLServlet: add repository: " + e.getMessage(), e);
-            }
+                repRec.set(RepositoryRecord.ATTR_SERIALNO,
+                        new BigInteger(Long.toString(crl.getThisUpdate().getTime())));
+                try {
+                    defStore.addRepository(
+                            crl.getIssuerDN().getName(),
+                            Long.toString(crl.getThisUpdate().getTime()),
+                            repRec);
+                    logger.info("AddCRLServlet: Added CRL Updated " + Long.toString(crl.getThisUpdate().getTime()));
+                } catch (Exception e) {
+                    logger.warn("AddCRLServlet: add repository: " + e.getMessage(), e);
+                }
 
-            logger.info("AddCRLServlet: Created CRL Repository " + Long.toString(crl.getThisUpdate().getTime()));
+                logger.info("AddCRLServlet: Created CRL Repository " + Long.toString(crl.getThisUpdate().getTime()));
 
-            if (defStore.waitOnCRLUpdate()) {
-                defStore.updateCRL(crl);
-            } else {
-                // when the CRL large, the thread is terminiated by the
-                // servlet framework before it can finish its work
-                UpdateCRLThread uct = new UpdateCRLThread(defStore, crl);
+                if (defStore.waitOnCRLUpdate()) {
+                    defStore.updateCRL(crl);
+                } else {
+                    // when the CRL large, the thread is terminiated by the
+                    // servlet framework before it can finish its work
+                    UpdateCRLThread uct = new UpdateCRLThread(defStore, crl);
 
-                uct.start();
+                    uct.start();
+                }
             }
 
             try {
@@ -553,6 +593,80 @@ public class AddCRLServlet extends CMSServlet {
         }
     }
 
+    /**
+     * Checks whether the full CRL was generated together with the
+     * delta CRL that has been applied last, so it has the same
+     * thisUpdate but should still replace the current CRL.
+     */
+    boolean replacesDeltaCRL(CRLIssuingPointRecord pt, X509CRLImpl crl) {
+
+        if (crl.isDeltaCRL() || pt.getThisUpdate().getTime() != crl.getThisUpdate().getTime()) {
+            return false;
+        }
+
+        BigInteger crlNumber = crl.getCRLNumber();
+        BigInteger latestNumber = pt.getLatestCRLNumber();
+
+        if (crlNumber == null || latestNumber == null || latestNumber.equals(pt.getCRLNumber())) {
+            // no delta CRL applied since the last full CRL
+            return false;
+        }
+
+        return crlNumber.compareTo(latestNumber) >= 0;
+    }
+
+    /**
+     * Checks whether the request body contains the DER encoded CRL.
+     */
+    boolean isRawCRL(HttpServletRequest req) {
+
+        String contentType = req.getContentType();
+        if (contentType == null) {
+            return false;
+        }
+
+        int i = contentType.indexOf(';');
+        if (i >= 0) {
+            contentType = contentType.substring(0, i);
+        }
+
+        return CONTENT_TYPE_PKIX_CRL.equalsIgnoreCase(contentType.trim());
+    }
+
+    /**
+     * Reads the DER encoded CRL from the request body.
+     *
+     * @param maxSize maximum size of the CRL after decompression
+     * @exception CRLTooLargeException the CRL exceeds the maximum size
+     */
+    public X509CRLImpl readCRL(HttpServletRequest req, int maxSize)
+            throws IOException {
+
+        InputStream is = req.getInputStream();
+
+        if ("gzip".equalsIgnoreCase(req.getHeader("Content-Encoding"))) {
+            is = new GZIPInputStream(is);
+        }
+
+        byte[] data;
+        try {
+            // do not inflate more than the maximum size
+            data = is.readNBytes(maxSize);
+
+            if (is.read() >= 0) {
+                throw new CRLTooLargeException("CRL exceeds maximum size: " + maxSize);
+            }
+        } finally {
+            is.close();
+        }
+
+        try {
+            return new X509CRLImpl(data, false);
+        } catch (Exception e) {
+            throw new IOException(e.toString());
+        }
+    }
+
     public X509CRLImpl mapCRL1(String mime64)
             throws IOException {
         mime64 = Cert.stripCRLBrackets(mime64.trim());
@@ -569,6 +683,15 @@ public class AddCRLServlet extends CMSServlet {
     }
 }
 
+class CRLTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CRLTooLargeException(String message) {
+        super(message);
+    }
+}
+
 class UpdateCRLThread extends Thread {
     private IDefStore mDefStore = null;
     private X509CRL mCRL = null;
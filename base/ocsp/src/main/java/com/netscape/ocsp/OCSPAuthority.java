@@ -28,19 +28,20 @@ import java.security.cert.CertificateParsingException;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
-import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.dogtagpki.server.ocsp.OCSPConfig;
 import org.dogtagpki.server.ocsp.OCSPEngine;
 import org.dogtagpki.server.ocsp.OCSPEngineConfig;
+import org.dogtagpki.server.ocsp.OCSPResponseCacheConfig;
+import org.mozilla.jss.asn1.ANY;
 import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.InvalidBERException;
 import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
 import org.mozilla.jss.asn1.OCTET_STRING;
 import org.mozilla.jss.crypto.TokenException;
-import org.mozilla.jss.netscape.security.util.DerOutputStream;
-import org.mozilla.jss.netscape.security.util.DerValue;
 import org.mozilla.jss.netscape.security.x509.AlgorithmId;
 import org.mozilla.jss.netscape.security.x509.X500Name;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
@@ -61,6 +62,7 @@ import com.netscape.certsrv.security.SigningUnitConfig;
 import com.netscape.certsrv.util.IStatsSubsystem;
 import com.netscape.cms.logging.Logger;
 import com.netscape.cms.logging.SignedAuditLogger;
+import com.netscape.cms.ocsp.DefStore;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.dbs.DBSubsystem;
@@ -91,8 +93,6 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPAuthority.class);
     private static final Logger signedAuditLogger = SignedAuditLogger.getLogger();
 
-    private long mServedTime = 0;
-
     public final static OBJECT_IDENTIFIER OCSP_NONCE = new OBJECT_IDENTIFIER("1.3.6.1.5.5.7.48.1.2");
 
     private Hashtable<String, IOCSPStore> mStores = new Hashtable<>();
@@ -102,12 +102,17 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
 
     private String[] mOCSPSigningAlgorithms = null;
     private IOCSPStore mDefStore = null;
+    private OCSPResponseCache mResponseCache;
+
+    // responder ID of the current signing cert
+    private volatile CachedResponderID mResponderID;
 
-    public long mNumOCSPRequest = 0;
-    public long mTotalTime = 0;
-    public long mTotalData = 0;
-    public long mSignTime = 0;
-    public long mLookupTime = 0;
+    // times in nanoseconds
+    protected LongAdder mNumOCSPRequest = new LongAdder();
+    protected LongAdder mTotalTime = new LongAdder();
+    protected LongAdder mTotalData = new LongAdder();
+    protected LongAdder mSignTime = new LongAdder();
+    protected LongAdder mLookupTime = new LongAdder();
 
     /**
      * Retrieves the name of this subsystem.
@@ -174,6 +179,8 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
                 logger.warn(CMS.getLogMessage("CMSCORE_OCSP_SIGNING_UNIT", e.toString()), e);
             }
 
+            initResponseCache();
+
         } catch (EBaseException e) {
             logger.error("OCSPAuthority: " + e.getMessage(), e);
             throw e;
@@ -318,6 +325,25 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
         getOCSPSigningAlgorithms();
     }
 
+    private void initResponseCache() throws EBaseException {
+
+        OCSPResponseCacheConfig cacheConfig = mConfig.getResponseCacheConfig();
+
+        if (!cacheConfig.isEnabled()) {
+            return;
+        }
+
+        if (!(mDefStore instanceof DefStore)) {
+            logger.warn("OCSPAuthority: Response cache requires " + DefStore.class.getName());
+            return;
+        }
+
+        logger.info("OCSPAuthority: Initializing OCSP response cache");
+
+        mResponseCache = new OCSPResponseCache(this, (DefStore) mDefStore);
+        mResponseCache.init(cacheConfig);
+    }
+
     /**
      * Notifies this subsystem if owner is in running mode.
      */
@@ -328,6 +354,9 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
             if (mDefStore != null)
                 mDefStore.startup();
 
+            if (mResponseCache != null)
+                mResponseCache.start();
+
         } catch (EBaseException e) {
             logger.warn("OCSPAuthority: " + e.getMessage(), e);
             if (engine.isPreOpMode()) {
@@ -364,34 +393,88 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
             throw new EBaseException("OCSP request is empty");
         }
 
-        OCSPEngine engine = OCSPEngine.getInstance();
-        IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
-
-        incNumOCSPRequest(1);
-        long startTime = new Date().getTime();
+        mNumOCSPRequest.increment();
+        long startTime = System.nanoTime();
 
         OCSPResponse response;
 
+        try {
+            Extension nonce[] = null;
+
+            for (int j = 0; j < tbsReq.getExtensionsCount(); j++) {
+                Extension thisExt = tbsReq.getRequestExtensionAt(j);
+
+                if (thisExt.getExtnId().equals(IOCSPAuthority.OCSP_NONCE)) {
+                    nonce = new Extension[1];
+                    nonce[0] = thisExt;
+                }
+            }
+
+            Request reqs[] = new Request[tbsReq.getRequestCount()];
+            for (int i = 0; i < reqs.length; i++) {
+                reqs[i] = tbsReq.getRequestAt(i);
+            }
+
+            if (mResponseCache != null && nonce == null && reqs.length == 1
+                    && OCSPResponseCache.isCacheable(reqs[0])) {
+
+                // responses without nonce do not depend on the request,
+                // so they can be served from the cache without signing
+                response = mResponseCache.get(reqs[0]);
+
+                if (response == null) {
+                    response = mResponseCache.generate(reqs[0]);
+                }
+
+            } else {
+                response = createResponse(reqs, nonce);
+            }
+
+        } catch (EBaseException e) {
+            logger.error(CMS.getLogMessage("OCSP_REQUEST_FAILURE", e.toString()), e);
+            throw e;
+
+        } catch (Exception e) {
+            logger.error(CMS.getLogMessage("OCSP_REQUEST_FAILURE", e.toString()), e);
+            throw new EBaseException(e);
+        }
+
+        logger.info("OCSPAuthority: Done validating OCSP request");
+
+        mTotalTime.add(System.nanoTime() - startTime);
+
+        return response;
+    }
+
+    /**
+     * Looks up the status of the certificates in the default store
+     * and returns a signed OCSP response.
+     *
+     * @param reqs the single requests
+     * @param nonce the nonce extension, or null
+     * @return OCSPResponse the signed OCSP response
+     */
+    public OCSPResponse createResponse(Request reqs[], Extension nonce[]) throws EBaseException {
+
+        OCSPEngine engine = OCSPEngine.getInstance();
+        IStatsSubsystem statsSub = (IStatsSubsystem) engine.getSubsystem(IStatsSubsystem.ID);
+
         try {
             // (3) look into database to check the certificate's status
-            Vector<SingleResponse> singleResponses = new Vector<>();
+            SingleResponse res[] = new SingleResponse[reqs.length];
 
             if (statsSub != null) {
                 statsSub.startTiming("lookup");
             }
 
-            long lookupStartTime = new Date().getTime();
+            long lookupStartTime = System.nanoTime();
 
-            for (int i = 0; i < tbsReq.getRequestCount(); i++) {
+            for (int i = 0; i < reqs.length; i++) {
                 logger.info("OCSPAuthority: Processing request #" + i);
-
-                Request req = tbsReq.getRequestAt(i);
-                SingleResponse sr = mDefStore.processRequest(req);
-                singleResponses.addElement(sr);
+                res[i] = mDefStore.processRequest(reqs[i]);
             }
 
-            long lookupEndTime = new Date().getTime();
-            incLookupTime(lookupEndTime - lookupStartTime);
+            mLookupTime.add(System.nanoTime() - lookupStartTime);
 
             if (statsSub != null) {
                 statsSub.endTiming("lookup");
@@ -401,30 +484,14 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
                 statsSub.startTiming("build_response");
             }
 
-            SingleResponse res[] = new SingleResponse[singleResponses.size()];
-            singleResponses.copyInto(res);
-
-            ResponderID rid = null;
-
-            if (mDefStore.isByName()) {
-                rid = getResponderIDByName();
-            } else {
-                rid = getResponderIDByHash();
-            }
-
-            Extension nonce[] = null;
-
-            for (int j = 0; j < tbsReq.getExtensionsCount(); j++) {
-                Extension thisExt = tbsReq.getRequestExtensionAt(j);
-
-                if (thisExt.getExtnId().equals(IOCSPAuthority.OCSP_NONCE)) {
-                    nonce = new Extension[1];
-                    nonce[0] = thisExt;
-                }
-            }
+            CachedResponderID responderID = getResponderID();
 
-            ResponseData rd = new ResponseData(rid,
-                    new GeneralizedTime(new Date()), res, nonce);
+            ResponseData rd = new ResponseData(
+                    responderID.responderID,
+                    responderID.encodedResponderID,
+                    new GeneralizedTime(new Date()),
+                    res,
+                    nonce);
 
             if (statsSub != null) {
                 statsSub.endTiming("build_response");
@@ -434,39 +501,68 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
                 statsSub.startTiming("signing");
             }
 
-            long signStartTime = new Date().getTime();
+            long signStartTime = System.nanoTime();
 
             BasicOCSPResponse basicRes = sign(rd);
 
-            long signEndTime = new Date().getTime();
-            incSignTime(signEndTime - signStartTime);
+            mSignTime.add(System.nanoTime() - signStartTime);
 
             if (statsSub != null) {
                 statsSub.endTiming("signing");
             }
 
-            response = new OCSPResponse(
+            return new OCSPResponse(
                     OCSPResponseStatus.SUCCESSFUL,
                     new ResponseBytes(ResponseBytes.OCSP_BASIC,
                             new OCTET_STRING(ASN1Util.encode(basicRes))));
 
         } catch (EBaseException e) {
-            logger.error(CMS.getLogMessage("OCSP_REQUEST_FAILURE", e.toString()), e);
             throw e;
 
         } catch (Exception e) {
-            logger.error(CMS.getLogMessage("OCSP_REQUEST_FAILURE", e.toString()), e);
             throw new EBaseException(e);
         }
+    }
 
-        logger.info("OCSPAuthority: Done validating OCSP request");
+    /**
+     * Returns the responder ID of the current signing unit. The
+     * responder ID and its encoding are computed once per signing cert
+     * and published as a single immutable object, so requests do not
+     * need any locking.
+     */
+    private CachedResponderID getResponderID() {
 
-        long endTime = new Date().getTime();
-        incTotalTime(endTime - startTime);
+        // the signing unit creates a new cert object when it is
+        // reinitialized, e.g. after the signing cert is renewed
+        X509CertImpl cert = mSigningUnit.getCertImpl();
 
-        mServedTime = mServedTime + (endTime - startTime);
+        CachedResponderID cached = mResponderID;
+        if (cached != null && cached.cert == cert) {
+            return cached;
+        }
 
-        return response;
+        ResponderID responderID = mDefStore.isByName() ? getResponderIDByName() : getResponderIDByHash();
+        ANY encodedResponderID = null;
+
+        try {
+            encodedResponderID = ResponseData.encodeResponderID(responderID);
+        } catch (Exception e) {
+            logger.warn("OCSPAuthority: Unable to encode responder ID: " + e.getMessage(), e);
+        }
+
+        // concurrent requests might create the same responder ID,
+        // the last one wins
+        cached = new CachedResponderID(cert, responderID, encodedResponderID);
+        mResponderID = cached;
+
+        return cached;
+    }
+
+    /**
+     * Returns the response cache, or null if it is disabled.
+     */
+    public OCSPResponseCache getResponseCache() {
+        return mResponseCache;
     }
 
     /**
@@ -476,6 +572,13 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
      */
     @Override
     public void shutdown() {
+        if (mResponseCache != null) {
+            mResponseCache.stop();
+        }
+
+        if (mSigningUnit != null) {
+            mSigningUnit.shutdown();
+        }
     }
 
     /**
@@ -512,42 +615,23 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
 
         OCSPEngine engine = OCSPEngine.getInstance();
 
-        try (DerOutputStream out = new DerOutputStream()) {
-            DerOutputStream tmp = new DerOutputStream();
-
+        try {
             String algname = mSigningUnit.getDefaultAlgorithm();
 
+            // encode the response data only once
             byte rd_data[] = ASN1Util.encode(rd);
-            if (rd_data != null) {
-                mTotalData += rd_data.length;
-            }
-
-            rd.encode(tmp);
-            AlgorithmId.get(algname).encode(tmp);
+            mTotalData.add(rd_data.length);
 
             logger.debug("OCSPAuthority: adding signature");
             byte[] signature = mSigningUnit.sign(rd_data, algname);
 
-            tmp.putBitString(signature);
-            // XXX - optional, put the certificate chains in also
-
-            DerOutputStream tmpChain = new DerOutputStream();
-            DerOutputStream tmp1 = new DerOutputStream();
-            java.security.cert.X509Certificate chains[] = mSigningUnit.getCertChain().getChain();
-
-            for (int i = 0; i < chains.length; i++) {
-                tmpChain.putDerValue(new DerValue(chains[i].getEncoded()));
-            }
-
-            tmp1.write(DerValue.tag_Sequence, tmpChain);
-            tmp.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 0),
-                    tmp1);
-
-            out.write(DerValue.tag_Sequence, tmp);
-
-            BasicOCSPResponse response = new BasicOCSPResponse(out.toByteArray());
+            byte[] data = SigningUnit.encodeSignedData(
+                    rd_data,
+                    mSigningUnit.getEncodedAlgorithmId(algname),
+                    signature,
+                    mSigningUnit.getEncodedCertChain());
 
-            return response;
+            return BasicOCSPResponse.wrap(data);
 
         } catch (NoSuchAlgorithmException e) {
             logger.error(CMS.getLogMessage("OPERATION_ERROR", e.toString()), e);
@@ -668,7 +752,7 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
      */
     @Override
     public long getNumOCSPRequest() {
-        return mNumOCSPRequest;
+        return mNumOCSPRequest.sum();
     }
 
     /**
@@ -679,7 +763,7 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
      */
     @Override
     public long getOCSPRequestTotalTime() {
-        return mTotalTime;
+        return TimeUnit.NANOSECONDS.toMillis(mTotalTime.sum());
     }
 
     /**
@@ -690,12 +774,12 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
      */
     @Override
     public long getOCSPTotalSignTime() {
-        return mSignTime;
+        return TimeUnit.NANOSECONDS.toMillis(mSignTime.sum());
     }
 
     @Override
     public long getOCSPTotalLookupTime() {
-        return mLookupTime;
+        return TimeUnit.NANOSECONDS.toMillis(mLookupTime.sum());
     }
 
     /**
@@ -706,26 +790,42 @@ public class OCSPAuthority implements IOCSPAuthority, IOCSPService, IAuthority {
      */
     @Override
     public long getOCSPTotalData() {
-        return mTotalData;
+        return mTotalData.sum();
     }
 
     @Override
     public void incTotalTime(long inc) {
-        mTotalTime += inc;
+        mTotalTime.add(TimeUnit.MILLISECONDS.toNanos(inc));
     }
 
     @Override
     public void incSignTime(long inc) {
-        mSignTime += inc;
+        mSignTime.add(TimeUnit.MILLISECONDS.toNanos(inc));
     }
 
     @Override
     public void incLookupTime(long inc) {
-        mLookupTime += inc;
+        mLookupTime.add(TimeUnit.MILLISECONDS.toNanos(inc));
     }
 
     @Override
     public void incNumOCSPRequest(long inc) {
-        mNumOCSPRequest += inc;
+        mNumOCSPRequest.add(inc);
+    }
+
+    /**
+     * Responder ID created for a signing cert.
+     */
+    private static class CachedResponderID {
+
+        final X509CertImpl cert;
+        final ResponderID responderID;
+        final ANY encodedResponderID;
+
+        CachedResponderID(X509CertImpl cert, ResponderID responderID, ANY encodedResponderID) {
+            this.cert = cert;
+            this.responderID = responderID;
+            this.encodedResponderID = encodedResponderID;
+        }
     }
 }
@@ -0,0 +1,321 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ocsp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.dogtagpki.server.ocsp.OCSPResponseCacheConfig;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.GeneralizedTime;
+import org.mozilla.jss.asn1.Tag;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cms.ocsp.CRLStatusIndex;
+import com.netscape.cms.ocsp.DefStore;
+import com.netscape.cmsutil.ocsp.OCSPResponse;
+import com.netscape.cmsutil.ocsp.Request;
+
+/**
+ * Cache of signed OCSP responses for requests without a nonce.
+ *
+ * Responses are keyed by the DER encoding of the CertID and remember
+ * the status index entry they were generated from, so a response is
+ * no longer served once DefStore commits a new CRL for the issuer.
+ * A background task regenerates frequently requested responses before
+ * they expire or become stale and drops the others.
+ *
+ * The responses are stored DER-encoded so cache hits do not need to
+ * encode them again. When the cache is full the oldest response is
+ * evicted to make room for the new one.
+ */
+public class OCSPResponseCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPResponseCache.class);
+
+    private OCSPAuthority authority;
+    private DefStore store;
+
+    private int size;
+    private long maxAge;
+    private int refreshInterval;
+    private int hotThreshold;
+
+    private Map<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+
+    // entries in insertion order, may contain entries that have
+    // already been replaced or removed
+    private Queue<Entry> order = new ConcurrentLinkedQueue<>();
+
+    private ScheduledExecutorService executor;
+
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder evictions = new LongAdder();
+    private AtomicLong lastRefresh = new AtomicLong();
+
+    public OCSPResponseCache(OCSPAuthority authority, DefStore store) {
+        this.authority = authority;
+        this.store = store;
+    }
+
+    public void init(OCSPResponseCacheConfig config) throws EBaseException {
+
+        size = config.getSize();
+        maxAge = config.getMaxAge() * 1000L;
+        refreshInterval = config.getRefreshInterval();
+        hotThreshold = config.getHotThreshold();
+
+        logger.info("OCSPResponseCache: - size: " + size);
+        logger.info("OCSPResponseCache: - max age: " + config.getMaxAge() + "s");
+        logger.info("OCSPResponseCache: - refresh interval: " + refreshInterval + "s");
+        logger.info("OCSPResponseCache: - hot threshold: " + hotThreshold);
+    }
+
+    public void start() {
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "OCSPResponseCache");
+            t.setDaemon(true);
+            return t;
+        });
+
+        executor.scheduleWithFixedDelay(
+                this::refresh,
+                refreshInterval,
+                refreshInterval,
+                TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        entries.clear();
+        order.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getLastRefresh() {
+        return lastRefresh.get();
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Checks whether the response for the given single request can be
+     * cached. Requests with extensions are always processed normally.
+     */
+    public static boolean isCacheable(Request req) {
+        return req.getExtensionsCount() == 0;
+    }
+
+    /**
+     * Returns the cached response for the given request, or null if
+     * there is no valid cached response.
+     */
+    public OCSPResponse get(Request req) {
+
+        ByteBuffer key = ByteBuffer.wrap(ASN1Util.encode(req.getCertID()));
+        Entry entry = entries.get(key);
+
+        if (entry == null || !isValid(entry, System.currentTimeMillis())) {
+            misses.increment();
+            return null;
+        }
+
+        entry.hits.increment();
+        hits.increment();
+
+        return entry.response;
+    }
+
+    /**
+     * Generates a response for the given request and stores it in
+     * the cache, evicting the oldest responses if the cache is full.
+     */
+    public OCSPResponse generate(Request req) throws EBaseException {
+
+        ByteBuffer key = ByteBuffer.wrap(ASN1Util.encode(req.getCertID()));
+        Entry entry = createEntry(key, req);
+
+        if (size <= 0) {
+            return entry.response;
+        }
+
+        entries.put(key, entry);
+        order.add(entry);
+
+        while (entries.size() > size) {
+
+            Entry oldest = order.poll();
+            if (oldest == null) {
+                break;
+            }
+
+            if (entries.remove(oldest.key, oldest)) {
+                evictions.increment();
+            }
+        }
+
+        return entry.response;
+    }
+
+    private Entry createEntry(ByteBuffer key, Request req) throws EBaseException {
+
+        // look up the issuer before generating the response so that
+        // a concurrent CRL update leaves the entry stale, never current
+        byte[] keyHash = req.getCertID().getIssuerKeyHash().toByteArray();
+        CRLStatusIndex.Issuer issuer = store.getStatusIndex().getIssuer(keyHash);
+
+        long now = System.currentTimeMillis();
+        long expiration = now + maxAge;
+
+        if (issuer != null) {
+            GeneralizedTime nextUpdate = issuer.getNextUpdate();
+            if (nextUpdate != null) {
+                expiration = Math.min(expiration, nextUpdate.toDate().getTime());
+            }
+        }
+
+        OCSPResponse response = authority.createResponse(new Request[] { req }, null);
+
+        return new Entry(key, req, keyHash, issuer, new EncodedResponse(response), expiration);
+    }
+
+    private boolean isValid(Entry entry, long now) {
+
+        if (now >= entry.expiration) {
+            return false;
+        }
+
+        CRLStatusIndex.Issuer issuer = store.getStatusIndex().getIssuer(entry.keyHash);
+        return issuer != null && issuer == entry.issuer;
+    }
+
+    /**
+     * Regenerates hot responses that expire before the next refresh or
+     * have become stale, and removes all other expired or stale responses.
+     */
+    void refresh() {
+
+        long now = System.currentTimeMillis();
+        long deadline = now + refreshInterval * 1000L;
+
+        int refreshed = 0;
+        int removed = 0;
+
+        for (Map.Entry<ByteBuffer, Entry> e : entries.entrySet()) {
+
+            Entry entry = e.getValue();
+            long count = entry.hits.sumThenReset();
+
+            if (entry.expiration > deadline && isValid(entry, now)) {
+                continue;
+            }
+
+            if (count < hotThreshold) {
+                entries.remove(e.getKey(), entry);
+                removed++;
+                continue;
+            }
+
+            try {
+                Entry newEntry = createEntry(e.getKey(), entry.request);
+                if (entries.replace(e.getKey(), entry, newEntry)) {
+                    order.add(newEntry);
+                }
+                refreshed++;
+
+            } catch (Exception ex) {
+                logger.warn("OCSPResponseCache: Unable to refresh response: " + ex.getMessage(), ex);
+                entries.remove(e.getKey(), entry);
+                removed++;
+            }
+        }
+
+        // drop replaced and removed entries from the eviction order
+        order.removeIf(entry -> entries.get(entry.key) != entry);
+
+        lastRefresh.set(now);
+
+        logger.debug("OCSPResponseCache: Refreshed " + refreshed + " and removed " + removed
+                + " of " + entries.size() + " responses");
+    }
+
+    /**
+     * OCSP response that writes its DER encoding captured
+     * at creation time instead of encoding it again.
+     */
+    static class EncodedResponse extends OCSPResponse {
+
+        final byte[] encoded;
+
+        EncodedResponse(OCSPResponse response) {
+            super(response.getResponseStatus(), response.getResponseBytes());
+            this.encoded = ASN1Util.encode(response);
+        }
+
+        public byte[] getEncoded() {
+            return encoded;
+        }
+
+        @Override
+        public void encode(Tag implicitTag, OutputStream ostream) throws IOException {
+
+            if (!getTag().equals(implicitTag)) {
+                super.encode(implicitTag, ostream);
+                return;
+            }
+
+            ostream.write(encoded);
+        }
+    }
+
+    static class Entry {
+
+        final ByteBuffer key;
+        final Request request;
+        final byte[] keyHash;
+        final CRLStatusIndex.Issuer issuer;
+        final EncodedResponse response;
+        final long expiration;
+        final LongAdder hits = new LongAdder();
+
+        Entry(ByteBuffer key, Request request, byte[] keyHash, CRLStatusIndex.Issuer issuer,
+                EncodedResponse response, long expiration) {
+            this.key = key;
+            this.request = request;
+            this.keyHash = keyHash;
+            this.issuer = issuer;
+            this.response = response;
+            this.expiration = expiration;
+        }
+    }
+}
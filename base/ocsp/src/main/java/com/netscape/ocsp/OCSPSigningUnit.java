@@ -88,6 +88,8 @@ public final class OCSPSigningUnit extends SigningUnit {
 
             mPubk = mCert.getPublicKey();
 
+            initSignaturePool();
+
             // get def alg and check if def sign alg is valid for token.
             mDefSigningAlgname = config.getDefaultSigningAlgorithm();
             mDefSigningAlgorithm = checkSigningAlgorithmFromName(mDefSigningAlgname);
@@ -135,16 +137,8 @@ public final class OCSPSigningUnit extends SigningUnit {
             signAlg = checkSigningAlgorithmFromName(algname);
         }
 
-        // XXX use a pool of signers based on alg ?
-        // XXX Map algor. name to id. hack: use hardcoded define for now.
-        logger.info("OCSPSigningUnit: Getting algorithm context for " + algname + " " + signAlg);
-        Signature signer = mToken.getSignatureContext(signAlg);
-
-        signer.initSign(mPrivk);
-        signer.update(data);
-
-        logger.info("OCSPSigningUnit: Signing OCSP response");
-        return signer.sign();
+        logger.info("OCSPSigningUnit: Signing with " + signAlg);
+        return signWithPool(data, signAlg);
     }
 
     @Override
@@ -5,6 +5,7 @@
 //
 package org.dogtagpki.server.ocsp;
 
+import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.security.SigningUnitConfig;
 import com.netscape.cmscore.base.ConfigStorage;
 import com.netscape.cmscore.base.ConfigStore;
@@ -15,6 +16,8 @@ import com.netscape.cmscore.base.SimpleProperties;
  */
 public class OCSPConfig extends ConfigStore {
 
+    public static final int DEFAULT_CRL_MAX_SIZE = 256 * 1024 * 1024;
+
     public OCSPConfig(ConfigStorage storage) {
         super(storage);
     }
@@ -29,4 +32,19 @@ public class OCSPConfig extends ConfigStore {
     public SigningUnitConfig getSigningUnitConfig() {
         return getSubStore("signing", SigningUnitConfig.class);
     }
+
+    /**
+     * Returns ocsp.crlMaxSize parameter, the maximum size in bytes
+     * of a CRL received in a request body (after decompression).
+     */
+    public int getCRLMaxSize() throws EBaseException {
+        return getInteger("crlMaxSize", DEFAULT_CRL_MAX_SIZE);
+    }
+
+    /**
+     * Returns ocsp.responseCache.* parameters.
+     */
+    public OCSPResponseCacheConfig getResponseCacheConfig() {
+        return getSubStore("responseCache", OCSPResponseCacheConfig.class);
+    }
 }
@@ -0,0 +1,64 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ocsp;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides ocsp.responseCache.* parameters.
+ */
+public class OCSPResponseCacheConfig extends ConfigStore {
+
+    public OCSPResponseCacheConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public OCSPResponseCacheConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    /**
+     * Returns ocsp.responseCache.enable parameter.
+     */
+    public boolean isEnabled() throws EBaseException {
+        return getBoolean("enable", false);
+    }
+
+    /**
+     * Returns ocsp.responseCache.size parameter.
+     */
+    public int getSize() throws EBaseException {
+        return getInteger("size", 10000);
+    }
+
+    /**
+     * Returns ocsp.responseCache.maxAge parameter (in seconds).
+     */
+    public int getMaxAge() throws EBaseException {
+        return getInteger("maxAge", 600);
+    }
+
+    /**
+     * Returns ocsp.responseCache.refreshInterval parameter (in seconds).
+     */
+    public int getRefreshInterval() throws EBaseException {
+        return getInteger("refreshInterval", 30);
+    }
+
+    /**
+     * Returns ocsp.responseCache.hotThreshold parameter.
+     *
+     * Responses that were served at least this many times since
+     * the last refresh are regenerated in the background before
+     * they expire, other responses are dropped.
+     */
+    public int getHotThreshold() throws EBaseException {
+        return getInteger("hotThreshold", 10);
+    }
+}
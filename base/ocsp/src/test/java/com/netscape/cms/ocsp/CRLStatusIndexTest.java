@@ -0,0 +1,222 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.ocsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+import com.netscape.cmsutil.ocsp.CertID;
+
+public class CRLStatusIndexTest {
+
+    // self-signed test CA certificate
+    static final String CA_CERT =
+            "MIIDBTCCAe2gAwIBAgIUFRJ/SvHoErcIqRwqk6pZEl1+stkwDQYJKoZIhvcNAQELBQAwEjEQMA4G"
+            + "A1UEAwwHVGVzdCBDQTAeFw0yNjEwMTgxOTU0NThaFw00NjEwMTMxOTU0NThaMBIxEDAOBgNVBAMM"
+            + "B1Rlc3QgQ0EwggEiMA0GCSqGSIb3DQEBAQUAA4IBDwAwggEKAoIBAQCqtqdztwWutS6t7xfDLn7L"
+            + "QlNc0DDuPcmbsjLpt1UzBNeQpAmclg0Qvp4Zxp7PsHjn3hB/1PURV6uxA7JunQWyhNcvJPrAZy0l"
+            + "QEswVT7cnf0TOU2M36FUnvj/MvJ+EHItDpNSDK1+wuhj8n0adjhNtWt7u/JJtXs7Fgr3sAPzTW4v"
+            + "8aJFcKzNss8QueHVseX2ryg8PN4gEvPGf5nuzJIYCMh3lAmb/4Bt1qG5gah5ULGi0s9W4A2sR9xq"
+            + "GTBBEqG/6Yqg5I85wvMvMjidYcpokX2Cf7LMC0rGQ6paFDTHv07inIakoCrCYX/biZperqWAxKii"
+            + "2hDrvBLQ/l47W4IpAgMBAAGjUzBRMB0GA1UdDgQWBBRHnnfLZiH5y5hHQA5jzQuXMPp9tTAfBgNV"
+            + "HSMEGDAWgBRHnnfLZiH5y5hHQA5jzQuXMPp9tTAPBgNVHRMBAf8EBTADAQH/MA0GCSqGSIb3DQEB"
+            + "CwUAA4IBAQAifENJmJOPuU8uuRvpTC6AOR6XKdalekjXveVBTAkge4c/Ba3eZmXEY5czjDeP4/ws"
+            + "y+vgNsMeLf3R3l3SaqcRi+Kv9D99y2s6caU96Xx147yRGQvRBB1pNcVu9gJSp/dF0psh46O6FIfN"
+            + "JTPdkPppX/Ty0z7He/J6rEusS2pe6FSyD69aLTOw55wdqLedQLtAu7xIT77QGp3DkZeJnUnvG/LP"
+            + "67BKXS4CQdvtwDhDoHkfYcVAC+o/g3/ogGbVBgjc4HRc56o0OME+0WikbpHejnfBGpTs3YjB5PGI"
+            + "BKPK+ld7o0rE3TX8cywDvDcT4s+UlF3OKnyPte6nhAHZF9tI";
+
+    // serial number that does not fit into a long
+    static final BigInteger BIG_SERIAL = new BigInteger("123456789012345678901234567890");
+
+    X509CertImpl cert;
+    CRLStatusIndex.Issuer issuer;
+
+    @Before
+    public void setUp() throws Exception {
+
+        cert = new X509CertImpl(Base64.getDecoder().decode(CA_CERT));
+
+        List<RevokedCertImpl> entries = new ArrayList<>();
+        entries.add(new RevokedCertImpl(BigInteger.valueOf(5), new Date(5000)));
+        entries.add(new RevokedCertImpl(BigInteger.valueOf(1), new Date(1000)));
+        entries.add(new RevokedCertImpl(BigInteger.valueOf(3), new Date(3000)));
+        entries.add(new RevokedCertImpl(BIG_SERIAL, new Date(9000)));
+
+        issuer = CRLStatusIndex.Issuer.create(
+                "MasterCRL",
+                cert,
+                BigInteger.ONE,
+                new Date(),
+                null,
+                entries);
+    }
+
+    RevokedCertImpl createRemoveFromCRLEntry(BigInteger serialNumber) throws Exception {
+        CRLExtensions exts = new CRLExtensions();
+        exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(RevocationReason.REMOVE_FROM_CRL));
+        return new RevokedCertImpl(serialNumber, new Date(), exts);
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+
+        assertEquals(4, issuer.size());
+
+        assertEquals(1000, issuer.getRevocationTime(BigInteger.valueOf(1)));
+        assertEquals(3000, issuer.getRevocationTime(BigInteger.valueOf(3)));
+        assertEquals(5000, issuer.getRevocationTime(BigInteger.valueOf(5)));
+        assertEquals(9000, issuer.getRevocationTime(BIG_SERIAL));
+
+        assertEquals(CRLStatusIndex.NOT_REVOKED, issuer.getRevocationTime(BigInteger.valueOf(2)));
+        assertEquals(CRLStatusIndex.NOT_REVOKED, issuer.getRevocationTime(BIG_SERIAL.add(BigInteger.ONE)));
+    }
+
+    @Test
+    public void testApplyDeltaAddsEntries() throws Exception {
+
+        List<RevokedCertImpl> delta = new ArrayList<>();
+        delta.add(new RevokedCertImpl(BigInteger.valueOf(2), new Date(2000)));
+        delta.add(new RevokedCertImpl(BigInteger.valueOf(7), new Date(7000)));
+        delta.add(new RevokedCertImpl(BIG_SERIAL.add(BigInteger.ONE), new Date(9100)));
+
+        CRLStatusIndex.Issuer updated = issuer.applyDelta(BigInteger.TWO, new Date(), null, delta);
+
+        assertEquals(BigInteger.TWO, updated.getCRLNumber());
+        assertEquals(7, updated.size());
+
+        assertEquals(1000, updated.getRevocationTime(BigInteger.valueOf(1)));
+        assertEquals(2000, updated.getRevocationTime(BigInteger.valueOf(2)));
+        assertEquals(3000, updated.getRevocationTime(BigInteger.valueOf(3)));
+        assertEquals(5000, updated.getRevocationTime(BigInteger.valueOf(5)));
+        assertEquals(7000, updated.getRevocationTime(BigInteger.valueOf(7)));
+        assertEquals(9000, updated.getRevocationTime(BIG_SERIAL));
+        assertEquals(9100, updated.getRevocationTime(BIG_SERIAL.add(BigInteger.ONE)));
+
+        // the original entry is not modified
+        assertEquals(4, issuer.size());
+        assertEquals(CRLStatusIndex.NOT_REVOKED, issuer.getRevocationTime(BigInteger.valueOf(2)));
+    }
+
+    @Test
+    public void testApplyDeltaReplacesEntries() throws Exception {
+
+        List<RevokedCertImpl> delta = new ArrayList<>();
+        delta.add(new RevokedCertImpl(BigInteger.valueOf(3), new Date(3500)));
+        delta.add(new RevokedCertImpl(BIG_SERIAL, new Date(9500)));
+
+        CRLStatusIndex.Issuer updated = issuer.applyDelta(BigInteger.TWO, new Date(), null, delta);
+
+        assertEquals(4, updated.size());
+        assertEquals(3500, updated.getRevocationTime(BigInteger.valueOf(3)));
+        assertEquals(9500, updated.getRevocationTime(BIG_SERIAL));
+    }
+
+    @Test
+    public void testApplyDeltaRemovesEntries() throws Exception {
+
+        List<RevokedCertImpl> delta = new ArrayList<>();
+        delta.add(createRemoveFromCRLEntry(BigInteger.valueOf(1)));
+        delta.add(createRemoveFromCRLEntry(BigInteger.valueOf(5)));
+        delta.add(createRemoveFromCRLEntry(BIG_SERIAL));
+
+        // removing a certificate that is not on the CRL is a no-op
+        delta.add(createRemoveFromCRLEntry(BigInteger.valueOf(4)));
+
+        CRLStatusIndex.Issuer updated = issuer.applyDelta(BigInteger.TWO, new Date(), null, delta);
+
+        assertEquals(1, updated.size());
+        assertEquals(CRLStatusIndex.NOT_REVOKED, updated.getRevocationTime(BigInteger.valueOf(1)));
+        assertEquals(3000, updated.getRevocationTime(BigInteger.valueOf(3)));
+        assertEquals(CRLStatusIndex.NOT_REVOKED, updated.getRevocationTime(BigInteger.valueOf(5)));
+        assertEquals(CRLStatusIndex.NOT_REVOKED, updated.getRevocationTime(BIG_SERIAL));
+    }
+
+    @Test
+    public void testApplyEmptyDelta() throws Exception {
+
+        CRLStatusIndex.Issuer updated = issuer.applyDelta(BigInteger.TWO, new Date(), null, null);
+
+        assertEquals(4, updated.size());
+        assertEquals(BigInteger.TWO, updated.getCRLNumber());
+    }
+
+    @Test
+    public void testIsRemoved() throws Exception {
+
+        assertTrue(CRLStatusIndex.Issuer.isRemoved(createRemoveFromCRLEntry(BigInteger.ONE)));
+        assertFalse(CRLStatusIndex.Issuer.isRemoved(new RevokedCertImpl(BigInteger.ONE, new Date())));
+    }
+
+    @Test
+    public void testIndexLookup() throws Exception {
+
+        X509Key key = (X509Key) cert.getPublicKey();
+        byte[] name = cert.getSubjectX500Principal().getEncoded();
+
+        CRLStatusIndex index = CRLStatusIndex.EMPTY.with(issuer);
+
+        for (String digestName : CRLStatusIndex.DIGEST_NAMES) {
+            MessageDigest md = MessageDigest.getInstance(digestName);
+            assertSame(issuer, index.getIssuer(md.digest(key.getKey())));
+            assertTrue(issuer.matchesNameHash(md.digest(name)));
+        }
+
+        assertSame(issuer, index.getIssuerById("MasterCRL"));
+
+        CRLStatusIndex.Issuer updated = issuer.applyDelta(BigInteger.TWO, new Date(), null, null);
+        index = index.with(updated);
+        assertSame(updated, index.getIssuerById("MasterCRL"));
+        assertEquals(1, index.getIssuers().size());
+
+        index = index.without("MasterCRL");
+        assertEquals(0, index.getIssuers().size());
+    }
+
+    @Test
+    public void testSHA384CertID() throws Exception {
+
+        X509Key key = (X509Key) cert.getPublicKey();
+        byte[] name = cert.getSubjectX500Principal().getEncoded();
+
+        MessageDigest md = MessageDigest.getInstance("SHA-384");
+        CertID cid = new CertID(
+                new AlgorithmIdentifier(new OBJECT_IDENTIFIER("2.16.840.1.101.3.4.2.2")),
+                new OCTET_STRING(md.digest(name)),
+                new OCTET_STRING(md.digest(key.getKey())),
+                new INTEGER(5));
+        assertEquals("SHA-384", cid.getDigestName());
+
+        CRLStatusIndex index = CRLStatusIndex.EMPTY.with(issuer);
+
+        CRLStatusIndex.Issuer found = index.getIssuer(cid.getIssuerKeyHash().toByteArray());
+        assertSame(issuer, found);
+        assertTrue(found.matchesNameHash(cid.getIssuerNameHash().toByteArray()));
+        assertEquals(5000, found.getRevocationTime(cid.getSerialNumber()));
+    }
+}
@@ -0,0 +1,220 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.security;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.Signature;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+import org.mozilla.jss.crypto.TokenException;
+import org.mozilla.jss.netscape.security.util.Utils;
+
+import com.netscape.certsrv.base.EBaseException;
+
+/**
+ * A bounded pool of signature contexts initialized for signing
+ * with a single private key, one pool per signing algorithm.
+ *
+ * Creating a signature context and initializing it with the
+ * private key opens a new PKCS #11 session on every call, so the
+ * signing units borrow initialized contexts from this pool instead.
+ * Signing units using the same key and pool configuration (e.g. the
+ * CA, CRL, and OCSP signing units with the default configuration)
+ * share one pool. The pool is removed once all of its signing units
+ * have released it.
+ */
+public class SignaturePool {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SignaturePool.class);
+
+    public static final int DEFAULT_SIZE = 16;
+    public static final int DEFAULT_TIMEOUT = 30;
+
+    private static Map<String, SignaturePool> pools = new ConcurrentHashMap<>();
+
+    private String id;
+    private CryptoToken token;
+    private PrivateKey privateKey;
+    private int size;
+    private int timeout;
+
+    // number of signing units using this pool, guarded by the pools map
+    private int users;
+
+    private Map<SignatureAlgorithm, AlgorithmPool> algorithmPools = new ConcurrentHashMap<>();
+
+    private LongAdder borrowCount = new LongAdder();
+    private LongAdder waitCount = new LongAdder();
+    private LongAdder waitTime = new LongAdder();
+    private LongAdder createCount = new LongAdder();
+
+    SignaturePool(String id, CryptoToken token, PrivateKey privateKey, int size, int timeout) {
+        this.id = id;
+        this.token = token;
+        this.privateKey = privateKey;
+        this.size = size;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the pool for the given private key and configuration,
+     * creating it if needed. The pool must be released with
+     * {@link #releaseInstance(SignaturePool)} when the caller no
+     * longer uses it.
+     *
+     * @param token token containing the private key
+     * @param privateKey signing key
+     * @param size maximum number of contexts per algorithm
+     * @param timeout maximum time to wait for a context in seconds
+     */
+    public static SignaturePool getInstance(
+            CryptoToken token,
+            PrivateKey privateKey,
+            int size,
+            int timeout) throws TokenException {
+
+        String id = token.getName() + ":" + Utils.HexEncode(privateKey.getUniqueID())
+                + ":" + size + ":" + timeout;
+
+        return pools.compute(id, (k, pool) -> {
+            if (pool == null || !pool.privateKey.equals(privateKey)) {
+                logger.info("SignaturePool: Creating signature pool for key " + k + " with " + size + " contexts");
+                pool = new SignaturePool(id, token, privateKey, size, timeout);
+            }
+            pool.users++;
+            return pool;
+        });
+    }
+
+    /**
+     * Releases a pool returned by {@link #getInstance}. The pool is
+     * removed when it is no longer used by any signing unit, so that
+     * a later request for the same key creates a new one. Contexts
+     * that are still borrowed can be returned to the released pool.
+     */
+    public static void releaseInstance(SignaturePool pool) {
+
+        pools.computeIfPresent(pool.id, (k, p) -> {
+            if (p != pool) {
+                // the pool has already been replaced
+                return p;
+            }
+            if (--p.users > 0) {
+                return p;
+            }
+            logger.info("SignaturePool: Removing signature pool for key " + k);
+            return null;
+        });
+    }
+
+    /**
+     * Returns a signature context initialized for signing with the
+     * given algorithm. The context must be returned with
+     * {@link #release(SignatureAlgorithm, Signature, boolean)}.
+     */
+    public Signature borrow(SignatureAlgorithm algorithm)
+            throws EBaseException, NoSuchAlgorithmException, TokenException, InvalidKeyException {
+
+        AlgorithmPool pool = algorithmPools.computeIfAbsent(algorithm, a -> new AlgorithmPool(size));
+
+        borrowCount.increment();
+
+        if (!pool.permits.tryAcquire()) {
+
+            waitCount.increment();
+            long start = System.nanoTime();
+
+            try {
+                if (!pool.permits.tryAcquire(timeout, TimeUnit.SECONDS)) {
+                    throw new EBaseException("Unable to get signature context for " + algorithm
+                            + " within " + timeout + " seconds");
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EBaseException("Interrupted while waiting for signature context: " + e.getMessage(), e);
+
+            } finally {
+                waitTime.add(System.nanoTime() - start);
+            }
+        }
+
+        Signature signer = pool.idle.poll();
+        if (signer != null) {
+            return signer;
+        }
+
+        try {
+            signer = token.getSignatureContext(algorithm);
+            signer.initSign(privateKey);
+            createCount.increment();
+            return signer;
+
+        } catch (NoSuchAlgorithmException | TokenException | InvalidKeyException | RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a signature context to the pool.
+     *
+     * @param reusable false if the context is in an unknown state
+     * (e.g. signing failed) and must be discarded
+     */
+    public void release(SignatureAlgorithm algorithm, Signature signer, boolean reusable) {
+
+        AlgorithmPool pool = algorithmPools.get(algorithm);
+
+        if (reusable) {
+            pool.idle.offer(signer);
+        }
+
+        pool.permits.release();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    /**
+     * Returns the total time spent waiting for a context in nanoseconds.
+     */
+    public long getWaitTime() {
+        return waitTime.sum();
+    }
+
+    public long getCreateCount() {
+        return createCount.sum();
+    }
+
+    static class AlgorithmPool {
+
+        final ConcurrentLinkedQueue<Signature> idle = new ConcurrentLinkedQueue<>();
+        final Semaphore permits;
+
+        AlgorithmPool(int size) {
+            permits = new Semaphore(size, true);
+        }
+    }
+}
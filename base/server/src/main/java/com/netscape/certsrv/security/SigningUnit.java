@@ -17,10 +17,17 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.certsrv.security;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
+import java.security.SignatureException;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.NotInitializedException;
@@ -31,6 +38,8 @@ import org.mozilla.jss.crypto.SignatureAlgorithm;
 import org.mozilla.jss.crypto.TokenException;
 import org.mozilla.jss.crypto.X509Certificate;
 import org.mozilla.jss.netscape.security.util.Cert;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
 import org.mozilla.jss.netscape.security.x509.AlgorithmId;
 import org.mozilla.jss.netscape.security.x509.CertificateChain;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
@@ -38,6 +47,8 @@ import org.mozilla.jss.netscape.security.x509.X509Key;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.ca.ECAException;
+import com.netscape.cmscore.metrics.Metric;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 
 /**
  * A class represents the signing unit which is
@@ -65,6 +76,13 @@ public abstract class SigningUnit {
     protected String mDefSigningAlgname;
     protected SignatureAlgorithm mDefSigningAlgorithm;
 
+    protected SignaturePool mSignaturePool;
+    private boolean mSignaturePoolAcquired;
+    private List<Metric> mSignaturePoolMetrics = new ArrayList<>();
+    protected Map<String, byte[]> mEncodedAlgorithmIds = new ConcurrentHashMap<>();
+    protected volatile byte[] mEncodedCertChain;
+    protected Map<String, SignatureAlgorithm> mSigningAlgorithms = new ConcurrentHashMap<>();
+
     /**
      * Retrieves the nickname of the signing certificate.
      */
@@ -124,12 +142,136 @@ public abstract class SigningUnit {
         }
 
         certChain = new CertificateChain(certs);
+        mEncodedCertChain = null;
     }
 
     public CertificateChain getCertChain() {
         return certChain;
     }
 
+    /**
+     * Returns the DER encoding of the AlgorithmIdentifier of the given
+     * signing algorithm. The encoding is computed once per algorithm.
+     */
+    public byte[] getEncodedAlgorithmId(String algname) throws NoSuchAlgorithmException, IOException {
+
+        byte[] encoded = mEncodedAlgorithmIds.get(algname);
+        if (encoded != null) {
+            return encoded;
+        }
+
+        try (DerOutputStream out = new DerOutputStream()) {
+            AlgorithmId.get(algname).encode(out);
+            encoded = out.toByteArray();
+        }
+
+        mEncodedAlgorithmIds.put(algname, encoded);
+        return encoded;
+    }
+
+    /**
+     * Returns the DER encoding of the signing certificate chain as
+     * included in signed OCSP responses, i.e.
+     * [0] EXPLICIT SEQUENCE OF Certificate. The encoding is computed
+     * once and reset when the certificate chain is rebuilt.
+     */
+    public byte[] getEncodedCertChain() throws CertificateException, IOException {
+
+        byte[] encoded = mEncodedCertChain;
+        if (encoded != null) {
+            return encoded;
+        }
+
+        try (DerOutputStream out = new DerOutputStream();
+                DerOutputStream seq = new DerOutputStream();
+                DerOutputStream certs = new DerOutputStream()) {
+
+            for (java.security.cert.X509Certificate cert : certChain.getChain()) {
+                certs.write(cert.getEncoded());
+            }
+
+            seq.write(DerValue.tag_Sequence, certs);
+            out.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 0), seq);
+            encoded = out.toByteArray();
+        }
+
+        mEncodedCertChain = encoded;
+        return encoded;
+    }
+
+    /**
+     * Encodes SEQUENCE { tbs, algorithm, BIT STRING signature, trailer }
+     * into a single buffer of the exact size. The tbs, algorithm and
+     * trailer must already be DER encoded, the trailer may be null.
+     */
+    public static byte[] encodeSignedData(byte[] tbs, byte[] algorithm, byte[] signature, byte[] trailer) {
+
+        // BIT STRING with no unused bits
+        int bitStringLength = signature.length + 1;
+
+        int contentLength = tbs.length
+                + algorithm.length
+                + 1 + getLengthSize(bitStringLength) + bitStringLength
+                + (trailer == null ? 0 : trailer.length);
+
+        byte[] data = new byte[1 + getLengthSize(contentLength) + contentLength];
+
+        int pos = 0;
+        data[pos++] = DerValue.tag_Sequence;
+        pos = putLength(data, pos, contentLength);
+
+        System.arraycopy(tbs, 0, data, pos, tbs.length);
+        pos += tbs.length;
+
+        System.arraycopy(algorithm, 0, data, pos, algorithm.length);
+        pos += algorithm.length;
+
+        data[pos++] = DerValue.tag_BitString;
+        pos = putLength(data, pos, bitStringLength);
+        data[pos++] = 0;
+        System.arraycopy(signature, 0, data, pos, signature.length);
+        pos += signature.length;
+
+        if (trailer != null) {
+            System.arraycopy(trailer, 0, data, pos, trailer.length);
+        }
+
+        return data;
+    }
+
+    private static int getLengthSize(int length) {
+        if (length < 0x80) {
+            return 1;
+        }
+        if (length < 0x100) {
+            return 2;
+        }
+        if (length < 0x10000) {
+            return 3;
+        }
+        if (length < 0x1000000) {
+            return 4;
+        }
+        return 5;
+    }
+
+    private static int putLength(byte[] data, int pos, int length) {
+
+        int size = getLengthSize(length);
+
+        if (size == 1) {
+            data[pos++] = (byte) length;
+            return pos;
+        }
+
+        data[pos++] = (byte) (0x80 | (size - 1));
+        for (int i = size - 2; i >= 0; i--) {
+            data[pos++] = (byte) (length >>> (8 * i));
+        }
+
+        return pos;
+    }
+
     /**
      * Signs the given data in specific algorithm.
      *
@@ -223,6 +365,174 @@ public abstract class SigningUnit {
      */
     public abstract void updateConfig(String nickname, String tokenname);
 
+    /**
+     * Initializes the pool of signature contexts for the private key.
+     * This must be called after the private key has been loaded.
+     */
+    protected synchronized void initSignaturePool() throws EBaseException, TokenException {
+
+        // the signing unit might be reinitialized with a new key
+        releaseSignaturePool();
+
+        mSignaturePool = SignaturePool.getInstance(
+                mToken,
+                mPrivk,
+                mConfig.getSignaturePoolSize(),
+                mConfig.getSignaturePoolTimeout());
+        mSignaturePoolAcquired = true;
+        mSigningAlgorithms.clear();
+
+        registerSignaturePoolMetrics(mSignaturePool);
+    }
+
+    /**
+     * Registers the statistics of the signature pool labeled with the
+     * config name of this signing unit (e.g. ca.signing). Signing units
+     * sharing a pool report the same values.
+     */
+    private void registerSignaturePoolMetrics(SignaturePool pool) {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        String name = mConfig.getName();
+
+        mSignaturePoolMetrics.add(registry.getFunctionCounter(
+                "pki_signature_pool_borrows_total",
+                "Number of signature contexts borrowed from the pool",
+                pool::getBorrowCount,
+                "signing_unit", name));
+
+        mSignaturePoolMetrics.add(registry.getFunctionCounter(
+                "pki_signature_pool_waits_total",
+                "Number of times no signature context was available immediately",
+                pool::getWaitCount,
+                "signing_unit", name));
+
+        mSignaturePoolMetrics.add(registry.getFunctionCounter(
+                "pki_signature_pool_wait_time_nanoseconds_total",
+                "Total time spent waiting for a signature context",
+                pool::getWaitTime,
+                "signing_unit", name));
+
+        mSignaturePoolMetrics.add(registry.getFunctionCounter(
+                "pki_signature_pool_contexts_created_total",
+                "Number of signature contexts created",
+                pool::getCreateCount,
+                "signing_unit", name));
+    }
+
+    private synchronized void releaseSignaturePool() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        for (Metric metric : mSignaturePoolMetrics) {
+            registry.remove(metric);
+        }
+
+        mSignaturePoolMetrics.clear();
+
+        if (mSignaturePoolAcquired) {
+            SignaturePool.releaseInstance(mSignaturePool);
+            mSignaturePoolAcquired = false;
+        }
+    }
+
+    public SignaturePool getSignaturePool() {
+        return mSignaturePool;
+    }
+
+    /**
+     * Releases the resources used by this signing unit. Signing
+     * operations that are still in progress can complete.
+     */
+    public void shutdown() {
+        releaseSignaturePool();
+    }
+
+    /**
+     * Writes the data to be signed in multiple parts.
+     */
+    public interface DataWriter {
+        void writeTo(OutputStream out) throws Exception;
+    }
+
+    /**
+     * Signs the data written by the given writer with a signature
+     * context from the pool. The data is passed to the signature
+     * context as it is written, so it does not have to be collected
+     * into a single buffer.
+     *
+     * @param writer data writer
+     * @param signAlg signing algorithm
+     * @return signature
+     */
+    protected byte[] signWithPool(DataWriter writer, SignatureAlgorithm signAlg) throws Exception {
+
+        Signature signer = mSignaturePool.borrow(signAlg);
+        boolean reusable = false;
+
+        try {
+            writer.writeTo(new OutputStream() {
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    try {
+                        signer.update(b, off, len);
+                    } catch (SignatureException e) {
+                        throw new IOException(e);
+                    }
+                }
+            });
+
+            if (mConfig.getTestSignatureFailure()) {
+                throw new SignatureException("SignatureException forced for testing");
+            }
+
+            byte[] signature = signer.sign();
+
+            // sign() resets the context to the state after initSign()
+            reusable = true;
+            return signature;
+
+        } finally {
+            mSignaturePool.release(signAlg, signer, reusable);
+        }
+    }
+
+    /**
+     * Signs the given data with a signature context from the pool.
+     *
+     * @param data data to be signed
+     * @param signAlg signing algorithm
+     * @return signature
+     */
+    protected byte[] signWithPool(byte[] data, SignatureAlgorithm signAlg) throws Exception {
+
+        Signature signer = mSignaturePool.borrow(signAlg);
+        boolean reusable = false;
+
+        try {
+            signer.update(data);
+
+            if (mConfig.getTestSignatureFailure()) {
+                throw new SignatureException("SignatureException forced for testing");
+            }
+
+            byte[] signature = signer.sign();
+
+            // sign() resets the context to the state after initSign()
+            reusable = true;
+            return signature;
+
+        } finally {
+            mSignaturePool.release(signAlg, signer, reusable);
+        }
+    }
+
     /**
      * Checks if the given algorithm name is supported.
      *
@@ -232,14 +542,29 @@ public abstract class SigningUnit {
      */
     public SignatureAlgorithm checkSigningAlgorithmFromName(String algname)
             throws EBaseException {
+
+        SignatureAlgorithm sigalg = mSigningAlgorithms.get(algname);
+        if (sigalg != null) {
+            return sigalg;
+        }
+
         try {
-            SignatureAlgorithm sigalg = Cert.mapAlgorithmToJss(algname);
+            sigalg = Cert.mapAlgorithmToJss(algname);
             if (sigalg == null) {
                 throw new ECAException("Signing algorithm not supported: " + algname);
             }
-            Signature signer = mToken.getSignatureContext(sigalg);
 
-            signer.initSign(mPrivk);
+            if (mSignaturePool == null) {
+                Signature signer = mToken.getSignatureContext(sigalg);
+                signer.initSign(mPrivk);
+
+            } else {
+                // the context created for the check will be reused for signing
+                Signature signer = mSignaturePool.borrow(sigalg);
+                mSignaturePool.release(sigalg, signer, true);
+            }
+
+            mSigningAlgorithms.put(algname, sigalg);
             return sigalg;
 
         } catch (NoSuchAlgorithmException e) {
@@ -100,4 +100,18 @@ public class SigningUnitConfig extends ConfigStore {
     public void setDefaultSigningAlgorithm(String algorithm) {
         putString("defaultSigningAlgorithm", algorithm);
     }
+
+    /**
+     * Returns the maximum number of signature contexts per algorithm.
+     */
+    public int getSignaturePoolSize() throws EBaseException {
+        return getInteger("signaturePoolSize", SignaturePool.DEFAULT_SIZE);
+    }
+
+    /**
+     * Returns the maximum time to wait for a signature context in seconds.
+     */
+    public int getSignaturePoolTimeout() throws EBaseException {
+        return getInteger("signaturePoolTimeout", SignaturePool.DEFAULT_TIMEOUT);
+    }
 }
@@ -17,13 +17,19 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.authorization;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.dogtagpki.server.authentication.AuthToken;
 import org.dogtagpki.server.authorization.AuthorizationConfig;
+import org.dogtagpki.server.authorization.AuthzDecisionCacheConfig;
 import org.dogtagpki.server.authorization.AuthzManagerConfig;
 import org.dogtagpki.server.authorization.AuthzToken;
 import org.dogtagpki.server.authorization.IAuthzManager;
@@ -39,6 +45,7 @@ import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.apps.EngineConfig;
 import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.usrgrp.UGSubsystem;
 
 /**
  * An abstract class represents an authorization manager that governs the
@@ -88,6 +95,16 @@ public abstract class AAclAuthz implements IAuthzManager {
     private Hashtable<String, ACL> mACLs = new Hashtable<>();
     private Hashtable<String, IAccessEvaluator> mEvaluators = new Hashtable<>();
 
+    /* ACLs compiled for evaluation with AuthToken, null if outdated */
+    private volatile CompiledACLs mCompiledACLs;
+
+    /* cache of granted permissions, null if disabled */
+    private Map<List<Object>, CachedDecision> mDecisionCache;
+    private int mDecisionCacheSize;
+    private long mDecisionCacheTimeout;
+
+    private EvaluationOrder mOrder;
+
     /* Vector of extendedPluginInfo strings */
     protected static Vector<String> mExtendedPluginInfo = null;
 
@@ -115,6 +132,17 @@ public abstract class AAclAuthz implements IAuthzManager {
 
         logger.debug("AAclAuthz: init begins");
 
+        mOrder = getOrder();
+
+        AuthzDecisionCacheConfig cacheConfig = config.getDecisionCacheConfig();
+        if (cacheConfig.isEnabled()) {
+            mDecisionCacheSize = cacheConfig.getSize();
+            mDecisionCacheTimeout = cacheConfig.getTimeout() * 1000L;
+            mDecisionCache = new ConcurrentHashMap<>();
+            logger.info("AAclAuthz: decision cache size: " + mDecisionCacheSize);
+            logger.info("AAclAuthz: decision cache timeout: " + cacheConfig.getTimeout() + "s");
+        }
+
         // load access evaluators specified in the config file
         CMSEngine engine = CMS.getCMSEngine();
         EngineConfig mainConfig = engine.getConfig();
@@ -197,11 +225,43 @@ public abstract class AAclAuthz implements IAuthzManager {
             } else {
                 curACL.merge(acl);
             }
+            invalidateACLs();
         } else {
             logger.warn("AAclAuthz: parseACL failed");
         }
     }
 
+    /**
+     * Discards the compiled ACLs and the cached decisions after
+     * the ACLs or evaluators have been modified.
+     */
+    protected synchronized void invalidateACLs() {
+        mCompiledACLs = null;
+        if (mDecisionCache != null) {
+            mDecisionCache.clear();
+        }
+    }
+
+    /**
+     * Returns the compiled ACLs, compiling them if they have been
+     * modified since the last call.
+     */
+    protected CompiledACLs getCompiledACLs() {
+
+        CompiledACLs compiledACLs = mCompiledACLs;
+        if (compiledACLs != null) {
+            return compiledACLs;
+        }
+
+        synchronized (this) {
+            if (mCompiledACLs == null) {
+                logger.debug("AAclAuthz: compiling ACLs");
+                mCompiledACLs = CompiledACLs.compile(new ArrayList<>(mACLs.values()), mEvaluators);
+            }
+            return mCompiledACLs;
+        }
+    }
+
     @Override
     public void accessInit(String accessInfo) throws EBaseException {
         addACLs(accessInfo);
@@ -252,6 +312,7 @@ public abstract class AAclAuthz implements IAuthzManager {
     @Override
     public void registerEvaluator(String type, IAccessEvaluator evaluator) {
         mEvaluators.put(type, evaluator);
+        invalidateACLs();
         logger.info("AAclAuthz: " + type + " evaluator registered");
     }
 
@@ -499,22 +560,40 @@ public abstract class AAclAuthz implements IAuthzManager {
      * @param perm permission requested
      * @exception EACLsException access permission denied
      */
-    public synchronized void checkPermission(AuthToken authToken, String name,
+    public void checkPermission(AuthToken authToken, String name,
             String perm)
             throws EACLsException {
 
         logger.debug("AAclAuthz.checkPermission(" + name + ", " + perm + ")");
 
-        Vector<String> nodes = getNodes(name);
-        EvaluationOrder order = getOrder();
+        CompiledACLs compiledACLs = getCompiledACLs();
+        CompiledACLs.Decision decision = compiledACLs.getDecision(name, perm);
+
+        List<Object> cacheKey = null;
+        long generation = 0;
+
+        if (mDecisionCache != null && decision.isCacheable()) {
+            cacheKey = getDecisionCacheKey(authToken, name, perm);
+            generation = getUGGeneration();
+
+            if (cacheKey != null) {
+                CachedDecision cached = mDecisionCache.get(cacheKey);
+                if (cached != null && cached.isValid(compiledACLs, generation, System.currentTimeMillis())) {
+                    logger.info("AAclAuthz: Granting " + perm + " permission for " + name + " (cached)");
+                    return;
+                }
+            }
+        }
+
+        EvaluationOrder order = mOrder == null ? getOrder() : mOrder;
 
         boolean permitted = false;
         if (order == EvaluationOrder.DENY_ALLOW) {
-            checkDenyEntries(authToken, nodes, perm);
-            permitted = checkAllowEntries(authToken, nodes, perm);
+            checkDenyEntries(authToken, decision);
+            permitted = decision.isAllowed(authToken);
         } else if (order == EvaluationOrder.ALLOW_DENY) {
-            permitted = checkAllowEntries(authToken, nodes, perm);
-            checkDenyEntries(authToken, nodes, perm);
+            permitted = decision.isAllowed(authToken);
+            checkDenyEntries(authToken, decision);
         }
 
         if (!permitted) {
@@ -527,16 +606,71 @@ public abstract class AAclAuthz implements IAuthzManager {
             throw new EACLsException(CMS.getUserMessage("CMS_ACL_NO_PERMISSION", params));
         }
 
+        if (cacheKey != null) {
+            if (mDecisionCache.size() >= mDecisionCacheSize) {
+                mDecisionCache.clear();
+            }
+            mDecisionCache.put(cacheKey, new CachedDecision(
+                    compiledACLs,
+                    generation,
+                    System.currentTimeMillis() + mDecisionCacheTimeout));
+        }
+
         logger.info("AAclAuthz: Granting " + perm + " permission for " + name);
     }
 
+    /** throw EACLsException if a deny entry is matched */
+    private void checkDenyEntries(AuthToken authToken, CompiledACLs.Decision decision)
+            throws EACLsException {
+        if (decision.isDenied(authToken)) {
+            logger.error("AAclAuthz: checkPermission(): permission denied");
+            throw new EACLsException(CMS.getUserMessage("CMS_ACL_PERMISSION_DENIED"));
+        }
+    }
+
+    /**
+     * Returns the decision cache key for the user and groups in the
+     * AuthToken, or null if the decision should not be cached.
+     *
+     * The key is a list of the components rather than a joined string,
+     * since the resource name, user IDs and group names may contain
+     * any separator and must not collide with those of another user.
+     */
+    private List<Object> getDecisionCacheKey(AuthToken authToken, String name, String perm) {
+
+        if (authToken == null) {
+            return null;
+        }
+
+        String userID = authToken.getInString(AuthToken.USER_ID);
+        String uid = authToken.getInString(AuthToken.UID);
+
+        if (userID == null && uid == null) {
+            return null;
+        }
+
+        String[] groups = authToken.getInStringArray(AuthToken.GROUPS);
+
+        // copy the groups so later changes to the array do not affect the key
+        List<String> groupList = groups == null ? null : new ArrayList<>(Arrays.asList(groups));
+
+        return Arrays.asList(name, perm, userID, uid, groupList);
+    }
+
+    private long getUGGeneration() {
+        CMSEngine engine = CMS.getCMSEngine();
+        UGSubsystem ug = engine == null ? null : engine.getUGSubsystem();
+        return ug == null ? 0 : ug.getGeneration();
+    }
+
     protected boolean checkAllowEntries(
             AuthToken authToken,
             Iterable<String> nodes,
             String perm) {
+        CompiledACLs compiledACLs = getCompiledACLs();
         for (ACLEntry entry : getEntries(ACLEntry.Type.ALLOW, nodes, perm)) {
             logger.debug("checkAllowEntries(): expressions: " + entry.getAttributeExpressions());
-            if (evaluateExpressions(authToken, entry.getAttributeExpressions())) {
+            if (compiledACLs.getExpression(entry.getAttributeExpressions()).evaluate(authToken)) {
                 return true;
             }
         }
@@ -549,9 +683,10 @@ public abstract class AAclAuthz implements IAuthzManager {
             Iterable<String> nodes,
             String perm)
             throws EACLsException {
+        CompiledACLs compiledACLs = getCompiledACLs();
         for (ACLEntry entry : getEntries(ACLEntry.Type.DENY, nodes, perm)) {
             logger.debug("checkDenyEntries(): expressions: " + entry.getAttributeExpressions());
-            if (evaluateExpressions(authToken, entry.getAttributeExpressions())) {
+            if (compiledACLs.getExpression(entry.getAttributeExpressions()).evaluate(authToken)) {
                 logger.error("AAclAuthz: checkPermission(): permission denied");
                 throw new EACLsException(CMS.getUserMessage("CMS_ACL_PERMISSION_DENIED"));
             }
@@ -583,77 +718,6 @@ public abstract class AAclAuthz implements IAuthzManager {
         return v;
     }
 
-    /**
-     * Resolves the given expressions.
-     * expression || expression || ...
-     * example:
-     * group="Administrators" || group="Operators"
-     */
-    private boolean evaluateExpressions(AuthToken authToken, String s) {
-        // XXX - just handle "||" (or) among multiple expressions for now
-        // XXX - could use some optimization ... later
-        logger.debug("evaluating expressions: " + s);
-
-        Vector<Object> v = new Vector<>();
-
-        while (s.length() > 0) {
-            int orIndex = s.indexOf("||");
-            int andIndex = s.indexOf("&&");
-
-            // this is the last expression
-            if (orIndex == -1 && andIndex == -1) {
-                boolean passed = evaluateExpression(authToken, s.trim());
-
-                logger.debug("evaluated expression: " + s.trim() + " to be " + passed);
-                v.addElement(Boolean.valueOf(passed));
-                break;
-
-                // || first
-            } else if (andIndex == -1 || (orIndex != -1 && orIndex < andIndex)) {
-                String s1 = s.substring(0, orIndex);
-                boolean passed = evaluateExpression(authToken, s1.trim());
-
-                logger.debug("evaluated expression: " + s1.trim() + " to be " + passed);
-                v.addElement(Boolean.valueOf(passed));
-                v.addElement("||");
-                s = s.substring(orIndex + 2);
-                // && first
-            } else {
-                String s1 = s.substring(0, andIndex);
-                boolean passed = evaluateExpression(authToken, s1.trim());
-
-                logger.debug("evaluated expression: " + s1.trim() + " to be " + passed);
-                v.addElement(Boolean.valueOf(passed));
-                v.addElement("&&");
-                s = s.substring(andIndex + 2);
-            }
-        }
-
-        if (v.isEmpty()) {
-            return false;
-        }
-
-        if (v.size() == 1) {
-            Boolean bool = (Boolean) v.remove(0);
-
-            return bool.booleanValue();
-        }
-
-        boolean left = false;
-        String op = "";
-        boolean right = false;
-
-        while (!v.isEmpty()) {
-            if (op.equals(""))
-                left = ((Boolean) v.remove(0)).booleanValue();
-            op = (String) v.remove(0);
-            right = ((Boolean) v.remove(0)).booleanValue();
-            left = evaluateExp(left, op, right);
-        }
-
-        return left;
-    }
-
     public Vector<String> getNodes(String resourceID) {
         Vector<String> v = new Vector<>();
 
@@ -674,57 +738,6 @@ public abstract class AAclAuthz implements IAuthzManager {
         return v;
     }
 
-    /**
-     * Resolves the given expression.
-     */
-    private boolean evaluateExpression(AuthToken authToken, String expression) {
-        String op = getOp(expression);
-        String type = "";
-        String value = "";
-
-        if (!op.equals("")) {
-            int len = op.length();
-            int i = expression.indexOf(op);
-
-            type = expression.substring(0, i).trim();
-            value = expression.substring(i + len).trim();
-        }
-        IAccessEvaluator evaluator = mEvaluators.get(type);
-
-        if (evaluator == null) {
-            logger.warn("AAclAuthz: " + CMS.getLogMessage("AUTHZ_EVALUATOR_NOT_FOUND", type));
-            return false;
-        }
-
-        return evaluator.evaluate(authToken, type, op, value);
-    }
-
-    private String getOp(String exp) {
-        int i = exp.indexOf("!=");
-
-        if (i == -1) {
-            i = exp.indexOf("=");
-            if (i == -1) {
-                i = exp.indexOf(">");
-                if (i == -1) {
-                    i = exp.indexOf("<");
-                    if (i == -1) {
-                        logger.warn("AAclAuthz: " + CMS.getLogMessage("AUTHZ_OP_NOT_SUPPORTED", exp));
-                    } else {
-                        return "<";
-                    }
-                } else {
-                    return ">";
-                }
-            } else {
-                return "=";
-            }
-        } else {
-            return "!=";
-        }
-        return "";
-    }
-
     private boolean evaluateExp(boolean left, String op, boolean right) {
         if (op.equals("||")) {
             return left || right;
@@ -760,6 +773,7 @@ public abstract class AAclAuthz implements IAuthzManager {
         }
 
         mACLs.put(ac.getName(), ac);
+        invalidateACLs();
     }
 
     /**
@@ -873,6 +887,25 @@ public abstract class AAclAuthz implements IAuthzManager {
     }
 
     public boolean evaluateACLs(AuthToken authToken, String exp) {
-        return evaluateExpressions(authToken, exp);
+        return getCompiledACLs().getExpression(exp).evaluate(authToken);
+    }
+
+    static class CachedDecision {
+
+        final CompiledACLs compiledACLs;
+        final long generation;
+        final long expiration;
+
+        CachedDecision(CompiledACLs compiledACLs, long generation, long expiration) {
+            this.compiledACLs = compiledACLs;
+            this.generation = generation;
+            this.expiration = expiration;
+        }
+
+        boolean isValid(CompiledACLs compiledACLs, long generation, long now) {
+            return this.compiledACLs == compiledACLs
+                    && this.generation == generation
+                    && now < expiration;
+        }
     }
 }
@@ -0,0 +1,392 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.authorization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dogtagpki.server.authentication.AuthToken;
+
+import com.netscape.certsrv.acls.ACLEntry;
+import com.netscape.certsrv.evaluators.IAccessEvaluator;
+import com.netscape.cms.evaluators.GroupAccessEvaluator;
+import com.netscape.cms.evaluators.UserAccessEvaluator;
+import com.netscape.cmscore.apps.CMS;
+
+/**
+ * Immutable snapshot of the ACLs of an authorization manager compiled
+ * for evaluation with an AuthToken.
+ *
+ * The attribute expressions of all ACL entries are parsed once when
+ * the snapshot is created and bound to their evaluators. The allow
+ * and deny entries that apply to a resource (including its parent
+ * nodes) and a permission are collected on first use into a
+ * {@link Decision}, so checking a permission does not need any lock.
+ * A new snapshot is created whenever the ACLs or evaluators change.
+ */
+public class CompiledACLs {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CompiledACLs.class);
+
+    public static final CompiledACLs EMPTY = new CompiledACLs(Collections.emptyMap(), Collections.emptyMap());
+
+    // resource name -> permission -> entries of that node
+    private final Map<String, Map<String, Decision>> nodes;
+
+    // [resource name, permission] -> entries of the resource and its parents
+    private final Map<List<String>, Decision> decisions = new ConcurrentHashMap<>();
+
+    private final Map<String, IAccessEvaluator> evaluators;
+
+    // expressions evaluated outside of ACLs (see AAclAuthz.evaluateACLs())
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    private CompiledACLs(Map<String, Map<String, Decision>> nodes, Map<String, IAccessEvaluator> evaluators) {
+        this.nodes = nodes;
+        this.evaluators = evaluators;
+    }
+
+    /**
+     * Compiles the given ACLs using the given evaluators.
+     */
+    public static CompiledACLs compile(
+            Iterable<ACL> acls,
+            Map<String, IAccessEvaluator> evaluators) {
+
+        // evaluators can be registered later
+        Map<String, IAccessEvaluator> compiledEvaluators = new HashMap<>(evaluators);
+
+        Map<String, Map<String, Decision>> nodes = new HashMap<>();
+
+        // share compiled expressions between entries
+        Map<String, Expression> expressions = new HashMap<>();
+
+        for (ACL acl : acls) {
+
+            Map<String, List<Expression>> allow = new HashMap<>();
+            Map<String, List<Expression>> deny = new HashMap<>();
+
+            Enumeration<ACLEntry> entries = acl.entries();
+            while (entries.hasMoreElements()) {
+                ACLEntry entry = entries.nextElement();
+
+                String s = entry.getAttributeExpressions();
+                Expression expression = expressions.computeIfAbsent(
+                        s == null ? "" : s,
+                        k -> Expression.parse(k, compiledEvaluators));
+
+                Map<String, List<Expression>> target = entry.getType() == ACLEntry.Type.ALLOW ? allow : deny;
+
+                Enumeration<String> permissions = entry.permissions();
+                while (permissions.hasMoreElements()) {
+                    String permission = permissions.nextElement();
+                    target.computeIfAbsent(permission, k -> new ArrayList<>()).add(expression);
+                }
+            }
+
+            Set<String> permissions = new HashSet<>(allow.keySet());
+            permissions.addAll(deny.keySet());
+
+            Map<String, Decision> node = new HashMap<>();
+
+            for (String permission : permissions) {
+                node.put(permission, new Decision(
+                        allow.getOrDefault(permission, Collections.emptyList()),
+                        deny.getOrDefault(permission, Collections.emptyList())));
+            }
+
+            nodes.put(acl.getName(), node);
+        }
+
+        return new CompiledACLs(nodes, compiledEvaluators);
+    }
+
+    /**
+     * Returns the allow and deny entries that apply to the given
+     * resource and its parent nodes for the given permission.
+     */
+    public Decision getDecision(String resource, String permission) {
+        return decisions.computeIfAbsent(Arrays.asList(resource, permission), k -> createDecision(resource, permission));
+    }
+
+    /**
+     * Returns the given attribute expression compiled with the
+     * evaluators of this snapshot.
+     */
+    public Expression getExpression(String expression) {
+        return expressions.computeIfAbsent(expression, k -> Expression.parse(k, evaluators));
+    }
+
+    private Decision createDecision(String resource, String permission) {
+
+        List<Expression> allow = new ArrayList<>();
+        List<Expression> deny = new ArrayList<>();
+
+        String name = resource;
+        while (name != null && !name.isEmpty()) {
+
+            Map<String, Decision> node = nodes.get(name);
+            if (node != null) {
+                Decision decision = node.get(permission);
+                if (decision != null) {
+                    Collections.addAll(allow, decision.allow);
+                    Collections.addAll(deny, decision.deny);
+                }
+            }
+
+            int index = name.lastIndexOf(".");
+            name = index == -1 ? null : name.substring(0, index);
+        }
+
+        return new Decision(allow, deny);
+    }
+
+    /**
+     * Allow and deny expressions for a resource and permission.
+     */
+    public static class Decision {
+
+        private final Expression[] allow;
+        private final Expression[] deny;
+        private final boolean cacheable;
+
+        Decision(List<Expression> allow, List<Expression> deny) {
+
+            this.allow = allow.toArray(new Expression[allow.size()]);
+            this.deny = deny.toArray(new Expression[deny.size()]);
+
+            boolean cacheable = true;
+            for (Expression e : this.allow) {
+                cacheable &= e.isCacheable();
+            }
+            for (Expression e : this.deny) {
+                cacheable &= e.isCacheable();
+            }
+            this.cacheable = cacheable;
+        }
+
+        /**
+         * Checks whether any allow entry matches.
+         */
+        public boolean isAllowed(AuthToken authToken) {
+            for (Expression e : allow) {
+                if (e.evaluate(authToken)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks whether any deny entry matches.
+         */
+        public boolean isDenied(AuthToken authToken) {
+            for (Expression e : deny) {
+                if (e.evaluate(authToken)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks whether the outcome only depends on the user ID and
+         * group memberships, i.e. it can be cached per user.
+         */
+        public boolean isCacheable() {
+            return cacheable;
+        }
+    }
+
+    /**
+     * Attribute expression such as:
+     * group="Administrators" || group="Operators"
+     *
+     * The terms are combined from left to right without precedence,
+     * the same way as AAclAuthz evaluates expression strings.
+     */
+    public static class Expression {
+
+        private final String source;
+        private final Term[] terms;
+
+        // and[i] is true if terms[i + 1] is combined with "&&", false for "||"
+        private final boolean[] and;
+
+        private final boolean cacheable;
+
+        private Expression(String source, Term[] terms, boolean[] and) {
+            this.source = source;
+            this.terms = terms;
+            this.and = and;
+
+            boolean cacheable = true;
+            for (Term term : terms) {
+                cacheable &= term.isCacheable();
+            }
+            this.cacheable = cacheable;
+        }
+
+        public static Expression parse(String s, Map<String, IAccessEvaluator> evaluators) {
+
+            String source = s;
+            List<Term> terms = new ArrayList<>();
+            List<Boolean> ops = new ArrayList<>();
+
+            while (s.length() > 0) {
+                int orIndex = s.indexOf("||");
+                int andIndex = s.indexOf("&&");
+
+                // this is the last expression
+                if (orIndex == -1 && andIndex == -1) {
+                    terms.add(Term.parse(s.trim(), evaluators));
+                    break;
+
+                // || first
+                } else if (andIndex == -1 || (orIndex != -1 && orIndex < andIndex)) {
+                    terms.add(Term.parse(s.substring(0, orIndex).trim(), evaluators));
+                    ops.add(Boolean.FALSE);
+                    s = s.substring(orIndex + 2);
+
+                // && first
+                } else {
+                    terms.add(Term.parse(s.substring(0, andIndex).trim(), evaluators));
+                    ops.add(Boolean.TRUE);
+                    s = s.substring(andIndex + 2);
+                }
+            }
+
+            // a trailing operator has no right operand
+            if (ops.size() >= terms.size() && !ops.isEmpty()) {
+                ops.remove(ops.size() - 1);
+            }
+
+            boolean[] and = new boolean[ops.size()];
+            for (int i = 0; i < and.length; i++) {
+                and[i] = ops.get(i);
+            }
+
+            return new Expression(source, terms.toArray(new Term[terms.size()]), and);
+        }
+
+        public boolean evaluate(AuthToken authToken) {
+
+            if (terms.length == 0) {
+                return false;
+            }
+
+            boolean result = terms[0].evaluate(authToken);
+
+            for (int i = 1; i < terms.length; i++) {
+                if (and[i - 1]) {
+                    result = result && terms[i].evaluate(authToken);
+                } else {
+                    result = result || terms[i].evaluate(authToken);
+                }
+            }
+
+            logger.debug("CompiledACLs: evaluated expression: " + source + " to be " + result);
+            return result;
+        }
+
+        public boolean isCacheable() {
+            return cacheable;
+        }
+
+        @Override
+        public String toString() {
+            return source;
+        }
+    }
+
+    /**
+     * Single comparison such as group="Administrators".
+     */
+    public static class Term {
+
+        private final String type;
+        private final String op;
+        private final String value;
+        private final IAccessEvaluator evaluator;
+
+        private Term(String type, String op, String value, IAccessEvaluator evaluator) {
+            this.type = type;
+            this.op = op;
+            this.value = value;
+            this.evaluator = evaluator;
+        }
+
+        public static Term parse(String expression, Map<String, IAccessEvaluator> evaluators) {
+
+            String op = getOp(expression);
+            String type = "";
+            String value = "";
+
+            if (!op.equals("")) {
+                int len = op.length();
+                int i = expression.indexOf(op);
+
+                type = expression.substring(0, i).trim();
+                value = expression.substring(i + len).trim();
+            }
+
+            IAccessEvaluator evaluator = evaluators.get(type);
+
+            if (evaluator == null) {
+                logger.warn("CompiledACLs: " + CMS.getLogMessage("AUTHZ_EVALUATOR_NOT_FOUND", type));
+            }
+
+            return new Term(type, op, value, evaluator);
+        }
+
+        private static String getOp(String exp) {
+
+            if (exp.indexOf("!=") != -1) {
+                return "!=";
+            }
+            if (exp.indexOf("=") != -1) {
+                return "=";
+            }
+            if (exp.indexOf(">") != -1) {
+                return ">";
+            }
+            if (exp.indexOf("<") != -1) {
+                return "<";
+            }
+
+            logger.warn("CompiledACLs: " + CMS.getLogMessage("AUTHZ_OP_NOT_SUPPORTED", exp));
+            return "";
+        }
+
+        public boolean evaluate(AuthToken authToken) {
+
+            if (evaluator == null) {
+                return false;
+            }
+
+            return evaluator.evaluate(authToken, type, op, value);
+        }
+
+        /**
+         * User and group evaluators only depend on the user ID and
+         * group memberships. Other evaluators (e.g. IP address) depend
+         * on the request.
+         */
+        public boolean isCacheable() {
+            return evaluator == null
+                    || evaluator instanceof UserAccessEvaluator
+                    || evaluator instanceof GroupAccessEvaluator;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.netscape.cms.jobs;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 
@@ -74,7 +75,10 @@ public abstract class Job implements Runnable {
     protected Hashtable<String, Object> mContentParams = new Hashtable<>();
     protected Hashtable<String, Object> mItemParams = new Hashtable<>();
 
-    boolean stopped;
+    volatile boolean stopped;
+
+    // number of records processed by the current or last run
+    LongAdder recordsProcessed = new LongAdder();
 
     public Job() {
     }
@@ -286,4 +290,28 @@ public abstract class Job implements Runnable {
     public boolean isStopped() {
         return stopped;
     }
+
+    /**
+     * Prepares the job for a new run. This clears a previous stop request
+     * (e.g. a cancelled run) and the number of processed records.
+     */
+    public void reset() {
+        stopped = false;
+        recordsProcessed.reset();
+    }
+
+    /**
+     * Counts a record processed by the current run. Long running jobs should
+     * call this method for each record so the progress can be monitored.
+     */
+    public void recordProcessed() {
+        recordsProcessed.increment();
+    }
+
+    /**
+     * Returns the number of records processed by the current or last run.
+     */
+    public long getRecordsProcessed() {
+        return recordsProcessed.sum();
+    }
 }
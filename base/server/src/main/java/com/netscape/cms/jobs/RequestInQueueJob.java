@@ -203,6 +203,7 @@ public class RequestInQueueJob extends Job
              }
              */
             count++;
+            recordProcessed();
         }
 
         //		if (count == 0) return;
@@ -43,14 +43,21 @@ import java.security.Signature;
 import java.security.SignatureException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.servlet.ServletException;
 
@@ -80,6 +87,8 @@ import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.apps.EngineConfig;
 import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.metrics.Metric;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 
 import netscape.ldap.client.JDAPAVA;
 import netscape.ldap.client.JDAPFilter;
@@ -116,6 +125,13 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
     static final String PROP_LAST_HASH_FILE_NAME = "lastHashFileName";
     static final String PROP_BUFFER_SIZE = "bufferSize";
     static final String PROP_FLUSH_INTERVAL = "flushInterval";
+    static final String PROP_ASYNC = "async";
+    static final String PROP_QUEUE_SIZE = "queueSize";
+    static final String PROP_BATCH_SIZE = "batchSize";
+    static final String PROP_OVERFLOW_POLICY = "overflowPolicy";
+
+    public static final String OVERFLOW_BLOCK = "block";
+    public static final String OVERFLOW_FAIL = "fail";
 
     private final static String LOG_SIGNED_AUDIT_EXCEPTION =
                                "LOG_SIGNED_AUDIT_EXCEPTION_1";
@@ -140,6 +156,21 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     static final int FLUSH_INTERVAL = 5;
 
+    /**
+     * The output stream buffer size in bytes in asynchronous mode
+     */
+    static final int ASYNC_BUFFER_SIZE = 65536;
+
+    /**
+     * The default maximum number of events waiting to be written
+     */
+    static final int QUEUE_SIZE = 10000;
+
+    /**
+     * The default maximum number of events written in a batch
+     */
+    static final int BATCH_SIZE = 1000;
+
     /**
      * The log file
      */
@@ -171,9 +202,11 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
     protected Date mDate = new Date();
 
     /**
-     * The number of bytes written to the current log file
+     * The number of bytes written to the current log file. It is updated
+     * while holding the log, but can be read without it (e.g. to check
+     * whether the log needs to be rotated).
      */
-    protected int mBytesWritten = 0;
+    protected volatile int mBytesWritten = 0;
 
     /**
      * The output buffer size in bytes
@@ -195,6 +228,47 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     private Thread mFlushThread = null;
 
+    /**
+     * Events are written by a separate thread
+     */
+    protected boolean mAsync = false;
+
+    /**
+     * The events waiting to be written in asynchronous mode
+     */
+    protected volatile BlockingQueue<QueuedEvent> mQueue = null;
+
+    /**
+     * Signals the writer thread that events have been queued
+     */
+    private Semaphore mQueueSignal = new Semaphore(0);
+
+    /**
+     * The maximum number of events written in a batch
+     */
+    protected int mBatchSize = BATCH_SIZE;
+
+    /**
+     * Block the logging thread if the queue is full,
+     * otherwise reject the event
+     */
+    protected boolean mBlockOnOverflow = true;
+
+    /**
+     * The thread writing queued events in asynchronous mode
+     */
+    private volatile Thread mWriterThread = null;
+
+    private LongAdder mRejected = new LongAdder();
+    private LongAdder mWritten = new LongAdder();
+    private LongAdder mBatches = new LongAdder();
+    private LongAdder mWriteLatency = new LongAdder();
+    private LongAccumulator mMaxWriteLatency = new LongAccumulator(Long::max, 0);
+
+    // queue metrics registered while the writer thread is running
+    private List<Metric> mMetrics = new ArrayList<>();
+    private LongAccumulator mMaxQueueSize = new LongAccumulator(Long::max, 0);
+
     /**
      * The mandatory log event types
      */
@@ -486,10 +560,202 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
             throw new ELogException(message, e);
         }
 
+        mAsync = config.getBoolean(PROP_ASYNC, false);
+
         if (mOn) {
             init(fileName, config.getInteger(PROP_BUFFER_SIZE, BUFFER_SIZE),
                     config.getInteger(PROP_FLUSH_INTERVAL, FLUSH_INTERVAL));
         }
+
+        if (mOn && mAsync) {
+            String policy = config.getString(PROP_OVERFLOW_POLICY, OVERFLOW_BLOCK);
+
+            if (!OVERFLOW_BLOCK.equals(policy) && !OVERFLOW_FAIL.equals(policy)) {
+                String message = CMS.getUserMessage("CMS_BASE_GET_PROPERTY_FAILED",
+                        config.getName() + "." + PROP_OVERFLOW_POLICY);
+                logger.error("LogFile: " + message + ": " + policy);
+                throw new ELogException(message);
+            }
+
+            startWriter(
+                    config.getInteger(PROP_QUEUE_SIZE, QUEUE_SIZE),
+                    config.getInteger(PROP_BATCH_SIZE, BATCH_SIZE),
+                    OVERFLOW_BLOCK.equals(policy));
+        }
+    }
+
+    /**
+     * Starts writing events in a separate thread. Logging threads only
+     * add the events to a bounded queue, and the writer thread writes
+     * them in batches, so the file and the signature are not updated
+     * while the logging threads are waiting.
+     *
+     * @param queueSize The maximum number of events waiting to be written
+     * @param batchSize The maximum number of events written in a batch
+     * @param blockOnOverflow Block the logging thread if the queue is full,
+     *            otherwise reject the event
+     */
+    public synchronized void startWriter(int queueSize, int batchSize, boolean blockOnOverflow) {
+
+        if (mWriterThread != null) {
+            return;
+        }
+
+        logger.info("LogFile: Writing " + mFileName + " asynchronously");
+        logger.info("LogFile: - queue size: " + queueSize);
+        logger.info("LogFile: - batch size: " + batchSize);
+        logger.info("LogFile: - overflow policy: " + (blockOnOverflow ? OVERFLOW_BLOCK : OVERFLOW_FAIL));
+
+        mBatchSize = Math.max(1, batchSize);
+        mBlockOnOverflow = blockOnOverflow;
+        mQueue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+
+        mWriterThread = new WriterThread();
+        mWriterThread.setDaemon(true);
+        mWriterThread.start();
+
+        registerMetrics();
+    }
+
+    /**
+     * Registers the queue statistics in the metrics registry,
+     * labeled with the log file name.
+     */
+    private void registerMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        mMetrics.add(registry.getGauge(
+                "pki_log_queue_size",
+                "Number of log events waiting to be written",
+                this::getQueueSize,
+                "log", mFileName));
+
+        mMetrics.add(registry.getGauge(
+                "pki_log_max_queue_size",
+                "Largest number of log events that have been waiting to be written",
+                this::getMaxQueueSize,
+                "log", mFileName));
+
+        mMetrics.add(registry.getFunctionCounter(
+                "pki_log_events_written_total",
+                "Number of log events written by the writer thread",
+                this::getWritten,
+                "log", mFileName));
+
+        mMetrics.add(registry.getFunctionCounter(
+                "pki_log_batches_total",
+                "Number of batches written by the writer thread",
+                this::getBatches,
+                "log", mFileName));
+
+        mMetrics.add(registry.getFunctionCounter(
+                "pki_log_events_rejected_total",
+                "Number of log events rejected because the queue was full",
+                this::getRejected,
+                "log", mFileName));
+
+        mMetrics.add(registry.getFunctionCounter(
+                "pki_log_write_latency_nanoseconds_total",
+                "Total time between queuing and writing the log events",
+                this::getWriteLatency,
+                "log", mFileName));
+
+        mMetrics.add(registry.getGauge(
+                "pki_log_max_write_latency_nanoseconds",
+                "Longest time between queuing and writing a log event",
+                this::getMaxWriteLatency,
+                "log", mFileName));
+    }
+
+    private void unregisterMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        for (Metric metric : mMetrics) {
+            registry.remove(metric);
+        }
+
+        mMetrics.clear();
+    }
+
+    /**
+     * Stops the writer thread and writes the remaining queued events.
+     */
+    public synchronized void stopWriter() {
+
+        Thread writerThread = mWriterThread;
+        if (writerThread == null) {
+            return;
+        }
+
+        mWriterThread = null;
+        writerThread.interrupt();
+
+        writeQueuedEvents(Integer.MAX_VALUE);
+        mQueue = null;
+
+        unregisterMetrics();
+
+        logger.info("LogFile: Stopped writing " + mFileName + " asynchronously");
+        logger.info("LogFile: - written: " + getWritten());
+        logger.info("LogFile: - batches: " + getBatches());
+        logger.info("LogFile: - rejected: " + getRejected());
+        logger.info("LogFile: - max queue size: " + getMaxQueueSize());
+        logger.info("LogFile: - max write latency: " + getMaxWriteLatency() / 1000 + " us");
+    }
+
+    /**
+     * Returns the number of events waiting to be written.
+     */
+    public int getQueueSize() {
+        BlockingQueue<QueuedEvent> queue = mQueue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Returns the largest number of events that have been
+     * waiting to be written.
+     */
+    public long getMaxQueueSize() {
+        return mMaxQueueSize.get();
+    }
+
+    /**
+     * Returns the number of events rejected because the queue was full.
+     */
+    public long getRejected() {
+        return mRejected.sum();
+    }
+
+    /**
+     * Returns the number of events written from the queue.
+     */
+    public long getWritten() {
+        return mWritten.sum();
+    }
+
+    /**
+     * Returns the number of batches written from the queue.
+     */
+    public long getBatches() {
+        return mBatches.sum();
+    }
+
+    /**
+     * Returns the total time between queuing and writing
+     * the events in nanoseconds.
+     */
+    public long getWriteLatency() {
+        return mWriteLatency.sum();
+    }
+
+    /**
+     * Returns the longest time between queuing and writing
+     * an event in nanoseconds.
+     */
+    public long getMaxWriteLatency() {
+        return mMaxWriteLatency.get();
     }
 
     /**
@@ -736,8 +1002,11 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
                     logger.warn(message, e);
                 }
             }
+            // in asynchronous mode the events are written in batches,
+            // so use a larger buffer than the flush threshold
             mLogWriter = new BufferedWriter(
-                        new FileWriter(out.getFD()), mBufferSize);
+                        new FileWriter(out.getFD()),
+                        mAsync ? Math.max(mBufferSize, ASYNC_BUFFER_SIZE) : mBufferSize);
 
             // The first time we open, mSignature will not have been
             // initialized yet. That's ok, we will push our first signature
@@ -828,6 +1097,7 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
         String auditMessage = null;
 
         setFlushInterval(0);
+        stopWriter();
 
         // log signed audit shutdown success
         auditMessage = CMS.getLogMessage(
@@ -902,12 +1172,168 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
     }
 
     /**
-     * Synchronized method to write an event to the log file.
+     * Event waiting to be written in asynchronous mode. The attributes
+     * of the logging thread are captured when the event is queued.
+     */
+    static class QueuedEvent {
+
+        LogEvent event;
+        String threadName;
+        String trace;
+        long time;
+
+        QueuedEvent(LogEvent event, String threadName, String trace) {
+            this.event = event;
+            this.threadName = threadName;
+            this.trace = trace;
+            this.time = System.nanoTime();
+        }
+    }
+
+    /**
+     * Log writer thread. Waits for queued events and writes them in
+     * batches. Stopping the writer will cause this thread to exit.
+     */
+    final class WriterThread extends Thread {
+
+        public WriterThread() {
+            super();
+            super.setName(mFileName + ".writer-" + (Thread.activeCount() + 1));
+        }
+
+        @Override
+        public void run() {
+            BlockingQueue<QueuedEvent> queue = mQueue;
+
+            while (mWriterThread == this) {
+                try {
+                    if (queue.isEmpty()) {
+                        mQueueSignal.acquire();
+                    }
+                } catch (InterruptedException e) {
+                    // shutdown
+                    break;
+                }
+
+                mQueueSignal.drainPermits();
+                writeQueuedEvents(queue, mBatchSize);
+            }
+        }
+    }
+
+    /**
+     * Adds an event to the queue of the writer thread.
      *
      * @param event The log event
      */
-    protected synchronized void doLog(LogEvent event) throws ELogException {
-        doLog(event, false);
+    protected void queue(LogEvent event, BlockingQueue<QueuedEvent> queue) throws ELogException {
+
+        QueuedEvent qe = new QueuedEvent(
+                event,
+                Thread.currentThread().getName(),
+                mTrace ? getTrace() : null);
+
+        if (!queue.offer(qe)) {
+
+            if (!mBlockOnOverflow) {
+                mRejected.increment();
+
+                String message = CMS.getUserMessage("CMS_LOG_WRITE_FAILED",
+                        mFileName, event.toString(), "Log queue is full");
+                logger.error("LogFile: " + message);
+                System.err.println(message);
+                if (mLogSigning) {
+                    // Failed to write to audit log, shut down CMS
+                    shutdownCMS();
+                }
+                throw new ELogException(message);
+            }
+
+            try {
+                queue.put(qe);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ELogException(CMS.getUserMessage("CMS_LOG_WRITE_FAILED",
+                        mFileName, event.toString(), e.toString()), e);
+            }
+        }
+
+        mMaxQueueSize.accumulate(queue.size());
+        mQueueSignal.release();
+
+        if (mQueue != queue) {
+            // the writer has been stopped in the meantime
+            writeQueuedEvents(queue, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Writes up to the specified number of queued events. The log is
+     * flushed (and signed) at most once per batch.
+     *
+     * @param maxEvents The maximum number of events to write
+     */
+    protected void writeQueuedEvents(int maxEvents) {
+
+        BlockingQueue<QueuedEvent> queue = mQueue;
+        if (queue == null) {
+            return;
+        }
+
+        writeQueuedEvents(queue, maxEvents);
+    }
+
+    private synchronized void writeQueuedEvents(BlockingQueue<QueuedEvent> queue, int maxEvents) {
+
+        List<QueuedEvent> batch = new ArrayList<>(Math.min(maxEvents, queue.size()));
+        queue.drainTo(batch, maxEvents);
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        for (QueuedEvent qe : batch) {
+            try {
+                doLog(qe.event, qe.threadName, qe.trace, true);
+            } catch (ELogException e) {
+                // already reported
+            }
+
+            long latency = System.nanoTime() - qe.time;
+            mWriteLatency.add(latency);
+            mMaxWriteLatency.accumulate(latency);
+        }
+
+        mWritten.add(batch.size());
+        mBatches.increment();
+
+        if (mBufferSize > 0 && mBytesUnflushed > mBufferSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes an event to the log file, or adds it to the queue
+     * of the writer thread in asynchronous mode.
+     *
+     * @param event The log event
+     */
+    protected void doLog(LogEvent event) throws ELogException {
+
+        BlockingQueue<QueuedEvent> queue = mQueue;
+
+        if (queue == null) {
+            doLog(event, false);
+
+        } else if (Thread.holdsLock(this)) {
+            // called while holding the log (e.g. during shutdown),
+            // write the queued events first to keep the order
+            writeQueuedEvents(Integer.MAX_VALUE);
+            doLog(event, false);
+
+        } else {
+            queue(event, queue);
+        }
     }
 
     // Standard line separator byte. We always sign this line separator,
@@ -922,8 +1348,54 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     private synchronized void doLog(LogEvent event, boolean noFlush)
             throws ELogException {
+        doLog(event, Thread.currentThread().getName(), mTrace ? getTrace() : null, noFlush);
+    }
 
-        String entry = logEvt2String(event);
+    /**
+     * Returns the source file, line, and method that logged
+     * the event in the current thread.
+     */
+    private String getTrace() {
+        try {
+            CharArrayWriter cw = new CharArrayWriter(200);
+            PrintWriter pw = new PrintWriter(cw);
+            Exception e = new Exception();
+            e.printStackTrace(pw);
+            char[] c = cw.toCharArray();
+            cw.close();
+            pw.close();
+
+            CharArrayReader cr = new CharArrayReader(c);
+            LineNumberReader lr = new LineNumberReader(cr);
+
+            String text = null;
+            String method = null;
+            String fileAndLine = null;
+            if (lr.ready()) {
+                text = lr.readLine();
+                do {
+                    text = lr.readLine();
+                } while (text.indexOf("logging") != -1);
+                int p = text.indexOf("(");
+                fileAndLine = text.substring(p);
+
+                String classandmethod = text.substring(0, p);
+                int q = classandmethod.lastIndexOf(".");
+                method = classandmethod.substring(q + 1);
+                return fileAndLine + " " + method;
+            }
+
+        } catch (IOException e) {
+            logger.warn("LogFile: Unable to get trace: " + e.getMessage(), e);
+        }
+
+        return null;
+    }
+
+    private synchronized void doLog(LogEvent event, String threadName, String trace, boolean noFlush)
+            throws ELogException {
+
+        String entry = logEvt2String(event, threadName);
 
         if (mLogWriter == null) {
             String[] params = { mFileName, entry };
@@ -949,36 +1421,8 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
                         logger.warn("LogFile: missing audit log signature");
                     }
                 }
-                if (mTrace) {
-                    CharArrayWriter cw = new CharArrayWriter(200);
-                    PrintWriter pw = new PrintWriter(cw);
-                    Exception e = new Exception();
-                    e.printStackTrace(pw);
-                    char[] c = cw.toCharArray();
-                    cw.close();
-                    pw.close();
-
-                    CharArrayReader cr = new CharArrayReader(c);
-                    LineNumberReader lr = new LineNumberReader(cr);
-
-                    String text = null;
-                    String method = null;
-                    String fileAndLine = null;
-                    if (lr.ready()) {
-                        text = lr.readLine();
-                        do {
-                            text = lr.readLine();
-                        } while (text.indexOf("logging") != -1);
-                        int p = text.indexOf("(");
-                        fileAndLine = text.substring(p);
-
-                        String classandmethod = text.substring(0, p);
-                        int q = classandmethod.lastIndexOf(".");
-                        method = classandmethod.substring(q + 1);
-                        mLogWriter.write(fileAndLine, 0/*offset*/, fileAndLine.length());
-                        mLogWriter.write(" ", 0/*offset*/, " ".length());
-                        mLogWriter.write(method, 0/*offset*/, method.length());
-                    }
+                if (trace != null) {
+                    mLogWriter.write(trace, 0/*offset*/, trace.length());
                 }
                 mLogWriter.newLine();
 
@@ -1225,6 +1669,10 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
     }
 
     public String logEvt2String(LogEvent ev) {
+        return logEvt2String(ev, Thread.currentThread().getName());
+    }
+
+    public String logEvt2String(LogEvent ev, String threadName) {
         String entry = null;
 
         // Hmm.. multiple threads could hit this and reset the time.
@@ -1237,12 +1685,12 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
         // This should follow the Common Log Format which still needs
         // some work.
         if (ev.getMultiline() == ILogger.L_MULTILINE) {
-            entry = engine.getPID() + "." + Thread.currentThread().getName() + " - ["
+            entry = engine.getPID() + "." + threadName + " - ["
                     + mLogDateFormat.format(mDate) + "] [" +
                     ev.getSource().value() + "] [" + Integer.toString(ev.getLevel())
                     + "] " + prepareMultiline(ev.toString());
         } else {
-            entry = engine.getPID() + "." + Thread.currentThread().getName() + " - ["
+            entry = engine.getPID() + "." + threadName + " - ["
                     + mLogDateFormat.format(mDate) + "] [" +
                     ev.getSource().value() + "] [" + Integer.toString(ev.getLevel())
                     + "] " + ev.toString();
@@ -1510,6 +1958,10 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
         v.addElement(PROP_FILE_NAME + "=");
         v.addElement(PROP_BUFFER_SIZE + "=");
         v.addElement(PROP_FLUSH_INTERVAL + "=");
+        v.addElement(PROP_ASYNC + "=");
+        v.addElement(PROP_QUEUE_SIZE + "=");
+        v.addElement(PROP_BATCH_SIZE + "=");
+        v.addElement(PROP_OVERFLOW_POLICY + "=");
 
         // needs to find a way to determine what type you want. if this
         // is not for the signed audit type, then we should not show the
@@ -1560,6 +2012,10 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
             }
             v.addElement(PROP_BUFFER_SIZE + "=" + mBufferSize);
             v.addElement(PROP_FLUSH_INTERVAL + "=" + mFlushInterval / 1000);
+            v.addElement(PROP_ASYNC + "=" + mAsync);
+            v.addElement(PROP_QUEUE_SIZE + "=" + mConfig.getInteger(PROP_QUEUE_SIZE, QUEUE_SIZE));
+            v.addElement(PROP_BATCH_SIZE + "=" + mBatchSize);
+            v.addElement(PROP_OVERFLOW_POLICY + "=" + (mBlockOnOverflow ? OVERFLOW_BLOCK : OVERFLOW_FAIL));
 
             if ((mType != null) && mType.equals(ILogger.PROP_SIGNED_AUDIT)) {
                 v.addElement(PROP_SIGNED_AUDIT_LOG_SIGNING + "="
@@ -1599,6 +2055,11 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
                     PROP_BUFFER_SIZE + ";integer;The size of the buffer to receive log messages in kilobytes(KB)",
                     PROP_FLUSH_INTERVAL
                             + ";integer;The maximum time in seconds before the buffer is flushed to the file",
+                    PROP_ASYNC + ";boolean;Write the log messages to the file in a separate thread",
+                    PROP_QUEUE_SIZE + ";integer;The maximum number of log messages waiting to be written",
+                    PROP_BATCH_SIZE + ";integer;The maximum number of log messages written in a batch",
+                    PROP_OVERFLOW_POLICY
+                            + ";choice(block,fail);Whether to block or to reject log messages when the queue is full",
                     IExtendedPluginInfo.HELP_TOKEN +
                             ";configuration-logrules-logfile",
                     IExtendedPluginInfo.HELP_TEXT +
@@ -1633,6 +2094,11 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
                     PROP_BUFFER_SIZE + ";integer;The size of the buffer to receive log messages in kilobytes(KB)",
                     PROP_FLUSH_INTERVAL
                             + ";integer;The maximum time in seconds before the buffer is flushed to the file",
+                    PROP_ASYNC + ";boolean;Write the log messages to the file in a separate thread",
+                    PROP_QUEUE_SIZE + ";integer;The maximum number of log messages waiting to be written",
+                    PROP_BATCH_SIZE + ";integer;The maximum number of log messages written in a batch",
+                    PROP_OVERFLOW_POLICY
+                            + ";choice(block,fail);Whether to block or to reject log messages when the queue is full",
                     IExtendedPluginInfo.HELP_TOKEN +
                             ";configuration-logrules-logfile",
                     IExtendedPluginInfo.HELP_TEXT +
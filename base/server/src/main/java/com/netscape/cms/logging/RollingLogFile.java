@@ -492,16 +492,27 @@ public class RollingLogFile extends LogFile {
      * @param ev The event to be logged.
      **/
     @Override
-    public synchronized void log(LogEvent ev) throws ELogException {
+    public void log(LogEvent ev) throws ELogException {
         //xxx, Shall we log first without checking if it exceed the maximum?
         super.log(ev); // Will increment mBytesWritten
 
-        if ((0 != mMaxFileSize) && (mBytesWritten > mMaxFileSize)) {
-            flush();
-            try {
-                rotate();
-            } catch (IOException e) {
-                throw new ELogException(CMS.getUserMessage("CMS_LOG_ROTATE_LOG_FAILED", mFile.getName(), e.toString()));
+        // In asynchronous mode the event may not have been written yet,
+        // so the file will be rotated by a later event. The size is
+        // checked without locking the log so the logging threads do not
+        // wait for the writer thread unless the log needs to be rotated.
+        if (0 == mMaxFileSize || mBytesWritten <= mMaxFileSize) {
+            return;
+        }
+
+        synchronized (this) {
+            // the log might have been rotated by another thread
+            if (mBytesWritten > mMaxFileSize) {
+                flush();
+                try {
+                    rotate();
+                } catch (IOException e) {
+                    throw new ELogException(CMS.getUserMessage("CMS_LOG_ROTATE_LOG_FAILED", mFile.getName(), e.toString()));
+                }
             }
         }
     }
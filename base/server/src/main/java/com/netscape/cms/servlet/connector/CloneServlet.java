@@ -249,7 +249,13 @@ public class CloneServlet extends CMSServlet {
         }
 
         // encode reply
-        String encodedrep = mReqEncoder.encode(replymsg);
+        // reply in the encoding of the request
+        String encodedrep;
+        if (mReqEncoder.isCompact(encodedreq) && replymsg instanceof HttpPKIMessage) {
+            encodedrep = mReqEncoder.encodeCompact((HttpPKIMessage) replymsg);
+        } else {
+            encodedrep = mReqEncoder.encode(replymsg);
+        }
 
         resp.setStatus(HttpServletResponse.SC_OK);
         resp.setContentType("text/html");
@@ -306,7 +306,13 @@ public class ConnectorServlet extends CMSServlet {
 
         // encode reply
         try {
-            String encodedrep = mReqEncoder.encode(replymsg);
+            // reply in the encoding of the request
+            String encodedrep;
+            if (mReqEncoder.isCompact(encodedreq) && replymsg instanceof HttpPKIMessage) {
+                encodedrep = mReqEncoder.encodeCompact((HttpPKIMessage) replymsg);
+            } else {
+                encodedrep = mReqEncoder.encode(replymsg);
+            }
 
             resp.setStatus(HttpServletResponse.SC_OK);
             resp.setContentType("text/html");
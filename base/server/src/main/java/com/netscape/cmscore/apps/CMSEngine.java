@@ -680,6 +680,7 @@ public class CMSEngine {
         IPasswordStore passwordStore = getPasswordStore();
 
         ugSubsystem.init(ldapConfig, socketConfig, passwordStore);
+        ugSubsystem.initCache(ugConfig.getCacheConfig());
     }
 
     public void initOIDLoaderSubsystem() throws Exception {
@@ -10,6 +10,7 @@ import com.netscape.cmscore.base.ConfigStorage;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.base.SimpleProperties;
 import com.netscape.cmscore.dbs.DBSubsystem;
+import com.netscape.cmscore.dbs.RevokedCertificatesMapper;
 import com.netscape.cmscore.ldapconn.LDAPConfig;
 
 public class DatabaseConfig extends ConfigStore {
@@ -246,6 +247,22 @@ public class DatabaseConfig extends ConfigStore {
         putString(DBSubsystem.PROP_REPLICA_INCREMENT, replicaIncrement);
     }
 
+    public String getCRLCacheFormat() throws EBaseException {
+        return getString(DBSubsystem.PROP_CRL_CACHE_FORMAT, RevokedCertificatesMapper.FORMAT_SERIALIZED);
+    }
+
+    public void setCRLCacheFormat(String crlCacheFormat) {
+        putString(DBSubsystem.PROP_CRL_CACHE_FORMAT, crlCacheFormat);
+    }
+
+    public int getCRLCacheMaxUpdates() throws EBaseException {
+        return getInteger(DBSubsystem.PROP_CRL_CACHE_MAX_UPDATES, 100);
+    }
+
+    public void setCRLCacheMaxUpdates(int crlCacheMaxUpdates) {
+        putInteger(DBSubsystem.PROP_CRL_CACHE_MAX_UPDATES, crlCacheMaxUpdates);
+    }
+
     public LDAPConfig getLDAPConfig() throws EBaseException {
         return getSubStore("ldap", LDAPConfig.class);
     }
@@ -41,6 +41,8 @@ public class HttpConnFactory {
     private String mNickname = "";
     private String mClientCiphers = null;
     private int mTimeout = 0;
+    private boolean mKeepAlive;
+    private boolean mCompactMessages;
 
     /**
      * Constructor for initializing from the config store.
@@ -76,6 +78,30 @@ public class HttpConnFactory {
         init(minConns, maxConns);
     }
 
+    public boolean isKeepAlive() {
+        return mKeepAlive;
+    }
+
+    /**
+     * Keeps the connections open between requests. This only applies
+     * to connections created afterwards.
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        mKeepAlive = keepAlive;
+    }
+
+    public boolean isCompactMessages() {
+        return mCompactMessages;
+    }
+
+    /**
+     * Sends messages with the compact encoding. This only applies
+     * to connections created afterwards.
+     */
+    public void setCompactMessages(boolean compactMessages) {
+        mCompactMessages = compactMessages;
+    }
+
     /**
      * initialize parameters obtained from either constructor or
      * config store
@@ -136,6 +162,9 @@ public class HttpConnFactory {
                 retConn = new HttpConnection(mDest, tFactory, mTimeout);
             }
 
+            retConn.setKeepAlive(mKeepAlive);
+            retConn.setCompactMessages(mCompactMessages);
+
         } catch (Exception e) {
             String message = "Unable to create HTTP connection: " + e.getMessage();
             logger.error(message, e);
@@ -145,32 +174,6 @@ public class HttpConnFactory {
         return retConn;
     }
 
-    /**
-     * makes the minumum number of connections
-     */
-    private void makeMinimum() throws EBaseException {
-
-        logger.debug("In HttpConnFactory.makeMinimum.");
-        int increment;
-
-        if (mNumConns < mMinConns && mTotal <= mMaxConns) {
-
-            increment = Math.min(mMinConns - mNumConns, mMaxConns - mTotal);
-
-            if (increment == 0)
-                return;
-
-            logger.debug("increasing minimum connections by " + increment);
-            for (int i = increment - 1; i >= 0; i--) {
-                mConns[i] = createConnection();
-            }
-            mTotal += increment;
-            mNumConns += increment;
-            logger.debug("new total available http connections " + mTotal);
-            logger.debug("new number of http connections " + mNumConns);
-        }
-    }
-
     /**
      * gets a conenction from this factory.
      * All connections obtained from the factory must be returned by
@@ -202,6 +205,9 @@ public class HttpConnFactory {
      * If not returned the limited max number is affected but if that
      * number is large not much harm is done.
      * Returns null if maximum number of connections reached.
+     * New connections are created outside of the lock, so a slow
+     * connection attempt does not block the threads returning or
+     * reusing the other connections.
      * The best thing to do is to put returnConn in a finally clause so it
      * always gets called. For example,
      *
@@ -217,39 +223,67 @@ public class HttpConnFactory {
      * }
      * </pre>
      */
-    public synchronized HttpConnection getConn(boolean waitForConn)
+    public HttpConnection getConn(boolean waitForConn)
             throws EBaseException {
         boolean waited = false;
 
         logger.debug("In HttpConnFactory.getConn");
-        if (mNumConns == 0)
-            makeMinimum();
-        if (mNumConns == 0) {
-            if (!waitForConn)
-                return null;
-            try {
-                logger.warn("HttpConnFactory: Ran out of HTTP connections");
-                waited = true;
-                logger.debug("HttpConn:about to wait for a new http connection");
-                while (mNumConns == 0)
-                    wait();
 
-                logger.debug("HttpConn:done waiting for new http connection");
-            } catch (InterruptedException e) {
+        synchronized (this) {
+            while (mNumConns == 0) {
+
+                if (mTotal < mMaxConns) {
+                    // reserve a slot for a new connection
+                    mTotal++;
+                    break;
+                }
+
+                if (!waitForConn)
+                    return null;
+
+                if (!waited) {
+                    logger.warn("HttpConnFactory: Ran out of HTTP connections");
+                    logger.debug("HttpConn:about to wait for a new http connection");
+                    waited = true;
+                }
+
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new EBaseException("Interrupted while waiting for HTTP connection", e);
+                }
             }
-        }
-        mNumConns--;
-        HttpConnection conn = mConns[mNumConns];
 
-        mConns[mNumConns] = null;
+            if (mNumConns > 0) {
+                mNumConns--;
+                HttpConnection conn = mConns[mNumConns];
+
+                mConns[mNumConns] = null;
+
+                if (waited) {
+                    logger.warn("HttpConn:had to wait for an available connection from pool");
+                    logger.warn("Http connections are available again in http connection pool");
+                }
+                logger.debug("HttpgetConn: mNumConns now " + mNumConns);
 
-        if (waited) {
-            logger.warn("HttpConn:had to wait for an available connection from pool");
-            logger.warn("Http connections are available again in http connection pool");
+                return conn;
+            }
         }
-        logger.debug("HttpgetConn: mNumConns now " + mNumConns);
 
-        return conn;
+        try {
+            HttpConnection conn = createConnection();
+            logger.debug("HttpgetConn: new total http connections " + mTotal);
+            return conn;
+
+        } catch (EBaseException e) {
+            synchronized (this) {
+                // release the reserved slot
+                mTotal--;
+                notify();
+            }
+            throw e;
+        }
     }
 
     /**
@@ -33,6 +33,9 @@ import com.netscape.certsrv.logging.SignedAuditEvent;
 import com.netscape.certsrv.logging.event.ClientAccessSessionEstablishEvent;
 import com.netscape.cms.logging.SignedAuditLogger;
 import com.netscape.cmscore.apps.CMS;
+import com.netscape.cmscore.metrics.Counter;
+import com.netscape.cmscore.metrics.Histogram;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 import com.netscape.cmsutil.http.HttpClient;
 import com.netscape.cmsutil.http.HttpRequest;
 import com.netscape.cmsutil.http.HttpResponse;
@@ -57,18 +60,19 @@ public class HttpConnection {
 
     int timeout = 0;
     List<InetSocketAddress> targets;
-    String localIP = "localhost";
+    boolean compactMessages;
+
+    Histogram requestTime;
+    Counter requestFailures;
+
+    // resolved once since it is only used for auditing
+    static String localIP = getLocalIP();
 
     public HttpConnection(RemoteAuthority dest, ISocketFactory factory,
             int timeout // seconds
             ) {
 
         logger.debug("HttpConnection: Creating HttpConnection with timeout=" + timeout);
-        try {
-            localIP = InetAddress.getLocalHost().getHostAddress();
-        } catch (UnknownHostException e) {
-            // default to "localhost";
-        }
 
         mDest = dest;
         mReqEncoder = new HttpRequestEncoder();
@@ -78,6 +82,19 @@ public class HttpConnection {
 
         targets = parseTarget(dest.getHost(), dest.getPort());
 
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String authority = dest.getHost() + ":" + dest.getPort();
+
+        requestTime = metrics.getHistogram(
+                "pki_connector_request_duration_seconds",
+                "Duration of the requests to remote authorities",
+                "authority", authority);
+
+        requestFailures = metrics.getCounter(
+                "pki_connector_request_failures_total",
+                "Number of failed requests to remote authorities",
+                "authority", authority);
+
         try {
             mHttpreq.setMethod("POST");
 
@@ -106,6 +123,38 @@ public class HttpConnection {
         this(dest, factory, 0);
     }
 
+    static String getLocalIP() {
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    public boolean isKeepAlive() {
+        return mHttpClient.isKeepAlive();
+    }
+
+    /**
+     * Keeps the connection to the remote authority open between
+     * requests instead of reconnecting for each request.
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        mHttpClient.setKeepAlive(keepAlive);
+    }
+
+    public boolean isCompactMessages() {
+        return compactMessages;
+    }
+
+    /**
+     * Sends HttpPKIMessages with the compact encoding instead of
+     * Java serialization. The remote authority must support it.
+     */
+    public void setCompactMessages(boolean compactMessages) {
+        this.compactMessages = compactMessages;
+    }
+
     List<InetSocketAddress> parseTarget(String target, int port) {
 
         List<InetSocketAddress> results = new ArrayList<>();
@@ -210,7 +259,11 @@ public class HttpConnection {
         String content = null;
 
         try {
-            content = mReqEncoder.encode(tomsg);
+            if (compactMessages && tomsg instanceof HttpPKIMessage) {
+                content = mReqEncoder.encodeCompact((HttpPKIMessage) tomsg);
+            } else {
+                content = mReqEncoder.encode(tomsg);
+            }
         } catch (IOException e) {
             throw new EBaseException(CMS.getUserMessage("CMS_BASE_INVALID_ATTRIBUTE", "Could not encode request"));
         }
@@ -270,15 +323,27 @@ public class HttpConnection {
 
     private HttpResponse doSend(String content) throws EBaseException {
 
+        long startTime = System.nanoTime();
+        boolean success = false;
+
+        try {
+            HttpResponse resp = sendRequest(content);
+            success = true;
+            return resp;
+
+        } finally {
+            requestTime.observeSince(startTime);
+            if (!success) {
+                requestFailures.increment();
+            }
+        }
+    }
+
+    private HttpResponse sendRequest(String content) throws EBaseException {
+
         HttpResponse resp = null;
         boolean reconnected = false;
         SignedAuditEvent auditEvent;
-        String localIP = "localhost";
-        try {
-            localIP = InetAddress.getLocalHost().getHostAddress();
-        } catch (UnknownHostException e) {
-            // default to "localhost";
-        }
 
         if (getRequestURI() == null) {
             throw new EBaseException(CMS.getUserMessage("CMS_BASE_INVALID_ATTRIBUTE", "URI not set in HttpRequest"));
@@ -71,6 +71,8 @@ public class HttpConnector extends Connector {
 
         try {
             mConnFactory = new HttpConnFactory(minConns, maxConns, dest, nickName, clientCiphers, 0);
+            mConnFactory.setKeepAlive(config.getBoolean("keepAlive", false));
+            mConnFactory.setCompactMessages(config.getBoolean("compactMessages", false));
         } catch (EBaseException e) {
             logger.warn("HttpConn: can't create new HttpConnFactory: " + e.getMessage(), e);
         }
@@ -106,6 +108,8 @@ public class HttpConnector extends Connector {
 
         try {
             mConnFactory = new HttpConnFactory(minConns, maxConns, dest, nickName, clientCiphers, timeout);
+            mConnFactory.setKeepAlive(config.getBoolean("keepAlive", false));
+            mConnFactory.setCompactMessages(config.getBoolean("compactMessages", false));
         } catch (EBaseException e) {
             logger.warn("HttpConn: can't create new HttpConnFactory: " + e.getMessage(), e);
         }
@@ -18,11 +18,15 @@
 package com.netscape.cmscore.connector;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.OptionalDataException;
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Vector;
 
@@ -38,6 +42,10 @@ public class HttpPKIMessage implements IHttpPKIMessage {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(HttpPKIMessage.class);
 
+    // value types in the compact encoding
+    static final byte TYPE_STRING = 1;
+    static final byte TYPE_HASHTABLE = 2;
+
     // initialized to "" because nulls don't serialize well.
     public String reqType = "";
     public String reqId = "";
@@ -135,6 +143,134 @@ public class HttpPKIMessage implements IHttpPKIMessage {
         }
     }
 
+    /**
+     * Writes the message in the compact encoding (see HttpRequestEncoder).
+     * Like in Java serialization, values other than strings and string
+     * hashtables are skipped.
+     */
+    @SuppressWarnings("unchecked")
+    public void writeTo(DataOutputStream out) throws IOException {
+
+        writeString(out, reqType);
+        writeString(out, reqId);
+        writeString(out, reqStatus);
+        writeString(out, reqRealm);
+
+        Vector<Object> nameVals = new Vector<>();
+        Enumeration<Object> enum1 = mNameVals.elements();
+
+        while (enum1.hasMoreElements()) {
+            Object key = enum1.nextElement();
+            if (!enum1.hasMoreElements()) {
+                logger.warn("Incorrect pairing of name/value for " + key);
+                break;
+            }
+            Object val = enum1.nextElement();
+
+            if (key instanceof String && (val instanceof String || val instanceof Hashtable)) {
+                nameVals.addElement(key);
+                nameVals.addElement(val);
+                continue;
+            }
+
+            logger.warn("HttpPKIMessage: skipped key=" + key + " val="
+                    + (val == null ? null : val.getClass().getName()));
+        }
+
+        out.writeInt(nameVals.size() / 2);
+
+        for (int i = 0; i < nameVals.size(); i += 2) {
+            writeString(out, (String) nameVals.elementAt(i));
+            Object val = nameVals.elementAt(i + 1);
+
+            if (val instanceof String) {
+                out.writeByte(TYPE_STRING);
+                writeString(out, (String) val);
+                continue;
+            }
+
+            Hashtable<String, String> table = (Hashtable<String, String>) val;
+            out.writeByte(TYPE_HASHTABLE);
+            out.writeInt(table.size());
+
+            for (Map.Entry<String, String> entry : table.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads the message in the compact encoding (see HttpRequestEncoder).
+     */
+    public void readFrom(DataInputStream in) throws IOException {
+
+        reqType = readString(in);
+        reqId = readString(in);
+        reqStatus = readString(in);
+        reqRealm = readString(in);
+        mNameVals = new Vector<>();
+
+        int size = in.readInt();
+
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            byte type = in.readByte();
+
+            if (type == TYPE_STRING) {
+                mNameVals.addElement(key);
+                mNameVals.addElement(readString(in));
+
+            } else if (type == TYPE_HASHTABLE) {
+                int tableSize = in.readInt();
+                Hashtable<String, String> table = new Hashtable<>();
+
+                for (int j = 0; j < tableSize; j++) {
+                    String name = readString(in);
+                    String value = readString(in);
+                    if (name != null && value != null) {
+                        table.put(name, value);
+                    }
+                }
+
+                mNameVals.addElement(key);
+                mNameVals.addElement(table);
+
+            } else {
+                throw new IOException("Invalid value type for " + key + ": " + type);
+            }
+        }
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        if (length > in.available()) {
+            throw new IOException("Invalid string length: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     private void writeObject(java.io.ObjectOutputStream out)
             throws IOException {
         logger.debug("writeObject");
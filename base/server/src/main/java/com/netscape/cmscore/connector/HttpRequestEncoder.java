@@ -19,10 +19,13 @@ package com.netscape.cmscore.connector;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OptionalDataException;
+import java.util.Arrays;
 
 import org.mozilla.jss.netscape.security.util.Utils;
 
@@ -30,11 +33,29 @@ import org.mozilla.jss.netscape.security.util.Utils;
  * This represents a rquest encoder that serializes and
  * deserializes a request to a Remote Authority so that it can be sent through
  * the connector.
+ *
+ * Messages are encoded either with Java serialization, or with
+ * a compact versioned encoding for HttpPKIMessage:
+ *
+ * <pre>
+ * "PKIM" version(1) reqType reqId reqStatus reqRealm count (name type value)*
+ * </pre>
+ *
+ * where strings are encoded as a 4-byte length (-1 for null) followed
+ * by UTF-8 bytes. Both are sent base64-encoded. decode() accepts both
+ * encodings, so a receiver can reply in the encoding of the request.
  */
 public class HttpRequestEncoder {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(HttpRequestEncoder.class);
 
+    public static final int COMPACT_VERSION = 1;
+
+    static final byte[] COMPACT_MAGIC = { 'P', 'K', 'I', 'M' };
+
+    // base64 prefix of the magic
+    static final String COMPACT_PREFIX = "UEtJTQ";
+
     /**
      * Encodes a request object.
      *
@@ -55,6 +76,34 @@ public class HttpRequestEncoder {
         return s;
     }
 
+    /**
+     * Encodes a message with the compact encoding.
+     *
+     * @param msg Message to encode.
+     * @return String containing encoded message.
+     * @exception IOException Failure of the encoding operation due to IO error.
+     */
+    public String encodeCompact(HttpPKIMessage msg)
+            throws IOException {
+
+        ByteArrayOutputStream ba = new ByteArrayOutputStream();
+        DataOutputStream os = new DataOutputStream(ba);
+
+        os.write(COMPACT_MAGIC);
+        os.writeByte(COMPACT_VERSION);
+        msg.writeTo(os);
+        os.flush();
+
+        return Utils.base64encode(ba.toByteArray(), false);
+    }
+
+    /**
+     * Checks whether an encoded message uses the compact encoding.
+     */
+    public boolean isCompact(String s) {
+        return s != null && s.startsWith(COMPACT_PREFIX);
+    }
+
     /**
      * Decodes a String into an object.
      *
@@ -69,6 +118,23 @@ public class HttpRequestEncoder {
         try {
 
             serial = Utils.base64decode(s);
+
+            if (serial.length > COMPACT_MAGIC.length
+                    && Arrays.equals(serial, 0, COMPACT_MAGIC.length, COMPACT_MAGIC, 0, COMPACT_MAGIC.length)) {
+
+                DataInputStream is = new DataInputStream(new ByteArrayInputStream(serial));
+                is.skipBytes(COMPACT_MAGIC.length);
+
+                int version = is.readUnsignedByte();
+                if (version > COMPACT_VERSION) {
+                    throw new IOException("Unsupported message version: " + version);
+                }
+
+                HttpPKIMessage msg = new HttpPKIMessage();
+                msg.readFrom(is);
+                return msg;
+            }
+
             ByteArrayInputStream ba = new ByteArrayInputStream(serial);
             ObjectInputStream is = new ObjectInputStream(ba);
 
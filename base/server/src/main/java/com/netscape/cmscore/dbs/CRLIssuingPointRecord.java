@@ -292,6 +292,23 @@ public class CRLIssuingPointRecord implements IDBObj {
         return mDeltaCRLSize;
     }
 
+    /**
+     * Retrieves the number of the latest CRL, i.e. the delta CRL
+     * number if a newer delta CRL has been stored, otherwise the
+     * CRL number.
+     *
+     * @return latest CRL number
+     */
+    public BigInteger getLatestCRLNumber() {
+        if (mCRLNumber == null) {
+            return mDeltaCRLNumber;
+        }
+        if (mDeltaCRLNumber != null && mDeltaCRLNumber.compareTo(mCRLNumber) > 0) {
+            return mDeltaCRLNumber;
+        }
+        return mCRLNumber;
+    }
+
     /**
      * Retrieve Retrieve reference to the first unsaved data.
      *
@@ -120,6 +120,11 @@ public class CertRecord implements IDBObj {
 
     private BigInteger mId = null;
     private X509CertImpl mX509Certificate = null;
+    // certificate retrieved from the database, decoded on first access
+    private byte[] mEncodedCertificate = null;
+    // validity retrieved from the database without the certificate
+    private Date mNotBefore = null;
+    private Date mNotAfter = null;
     private String mStatus = null;
     private String mAutoRenew = null;
     private MetaInfo mMetaInfo = null;
@@ -180,6 +185,9 @@ public class CertRecord implements IDBObj {
             mMetaInfo = (MetaInfo) obj;
         } else if (name.equalsIgnoreCase(ATTR_X509CERT)) {
             mX509Certificate = (X509CertImpl) obj;
+            mEncodedCertificate = null;
+            mNotBefore = null;
+            mNotAfter = null;
         } else if (name.equalsIgnoreCase(ATTR_CERT_STATUS)) {
             mStatus = (String) obj;
         } else if (name.equalsIgnoreCase(ATTR_AUTO_RENEW)) {
@@ -211,7 +219,7 @@ public class CertRecord implements IDBObj {
         } else if (name.equalsIgnoreCase(ATTR_META_INFO)) {
             return mMetaInfo;
         } else if (name.equalsIgnoreCase(ATTR_X509CERT)) {
-            return mX509Certificate;
+            return getCertificate();
         } else if (name.equalsIgnoreCase(ATTR_CERT_STATUS)) {
             return mStatus;
         } else if (name.equalsIgnoreCase(ATTR_AUTO_RENEW)) {
@@ -252,12 +260,49 @@ public class CertRecord implements IDBObj {
     /**
      * Retrieves certificate from certificate record.
      *
-     * @return certificate
+     * Like records with an invalid certificate, records retrieved
+     * without the certificate attribute do not have a certificate.
+     *
+     * @return certificate, or null if the record does not contain
+     * a certificate or the certificate cannot be decoded
      */
-    public X509CertImpl getCertificate() {
+    public synchronized X509CertImpl getCertificate() {
+
+        if (mX509Certificate == null && mEncodedCertificate != null) {
+            try {
+                mX509Certificate = new X509CertImpl(mEncodedCertificate);
+            } catch (Exception e) {
+                logger.error("CertRecord: Unable to decode certificate " + mId + ": " + e.getMessage(), e);
+            }
+            mEncodedCertificate = null;
+        }
+
         return mX509Certificate;
     }
 
+    /**
+     * Sets the DER-encoded certificate retrieved from the database.
+     * The certificate will be decoded when it is first accessed, so
+     * records that are only used for their status or validity do
+     * not need to decode it.
+     *
+     * @param encodedCertificate DER-encoded certificate
+     */
+    public synchronized void setEncodedCertificate(byte[] encodedCertificate) {
+        mX509Certificate = null;
+        mEncodedCertificate = encodedCertificate;
+    }
+
+    /**
+     * Sets the validity retrieved from the database. This allows
+     * getNotBefore() and getNotAfter() to be used without decoding
+     * the certificate, or without retrieving it at all.
+     */
+    public void setValidity(Date notBefore, Date notAfter) {
+        mNotBefore = notBefore;
+        mNotAfter = notAfter;
+    }
+
     /**
      * Retrieves meta information.
      *
@@ -336,18 +381,24 @@ public class CertRecord implements IDBObj {
      * @return certificate serial number
      */
     public BigInteger getCertificateSerialNumber() {
-        return mX509Certificate.getSerialNumber();
+        return getCertificate().getSerialNumber();
     }
 
     /**
      * Retrieves not after.
      */
     public Date getNotAfter() {
-        return mX509Certificate.getNotAfter();
+        if (mNotAfter != null) {
+            return mNotAfter;
+        }
+        return getCertificate().getNotAfter();
     }
 
     public Date getNotBefore() {
-        return mX509Certificate.getNotBefore();
+        if (mNotBefore != null) {
+            return mNotBefore;
+        }
+        return getCertificate().getNotBefore();
     }
 
     /**
@@ -19,10 +19,15 @@ package com.netscape.cmscore.dbs;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 import org.mozilla.jss.netscape.security.x509.CertificateValidity;
@@ -67,6 +72,8 @@ public class CertificateRepository extends Repository {
     public final static String PROP_INCREMENT = "certdbInc";
     public final static String PROP_TRANS_MAXRECORDS = "transitMaxRecords";
     public final static String PROP_TRANS_PAGESIZE = "transitRecordPageSize";
+    public final static String PROP_TRANS_THREADS = "transitThreads";
+    public final static String PROP_TRANS_BATCHSIZE = "transitBatchSize";
 
     public final String CERT_X509ATTRIBUTE = "x509signedcert";
     private static final String PROP_ENABLE_RANDOM_SERIAL_NUMBERS = "enableRandomSerialNumbers";
@@ -77,6 +84,7 @@ public class CertificateRepository extends Repository {
     private static final String PROP_COLLISION_RECOVERY_STEPS = "collisionRecoverySteps";
     private static final String PROP_COLLISION_RECOVERY_REGENERATIONS = "collisionRecoveryRegenerations";
     private static final String PROP_MINIMUM_RANDOM_BITS = "minimumRandomBits";
+    private static final String PROP_RANDOM_SERIAL_NUMBER_BATCH_SIZE = "randomSerialNumberBatchSize";
     private static final BigInteger BI_MINUS_ONE = BigInteger.ONE.negate();
 
     public static final String PROP_CERT_ID_GENERATOR = "cert.id.generator";
@@ -92,6 +100,7 @@ public class CertificateRepository extends Repository {
     private int mMaxCollisionRecoveryRegenerations = 3;
     private DatabaseConfig mDBConfig = null;
     private boolean mForceModeChange = false;
+    private RandomSerialNumberAllocator mRandomSerialNumberAllocator;
 
     /**
      * Constructs a certificate repository.
@@ -127,6 +136,14 @@ public class CertificateRepository extends Repository {
         } else {
             initLegacyGenerator();
         }
+
+        int batchSize = mDBConfig.getInteger(PROP_RANDOM_SERIAL_NUMBER_BATCH_SIZE, 0);
+        logger.debug("CertificateRepository: - random serial number batch size: " + batchSize);
+
+        if (idGenerator != RANDOM && batchSize > 0) {
+            mRandomSerialNumberAllocator = new RandomSerialNumberAllocator(this, batchSize);
+            mRandomSerialNumberAllocator.start();
+        }
     }
 
     public void initLegacyGenerator() throws Exception {
@@ -274,6 +291,52 @@ public class CertificateRepository extends Repository {
         return nextSerialNumber;
     }
 
+    /**
+     * Generates random serial numbers for RandomSerialNumberAllocator
+     * without checking them for collisions.
+     */
+    synchronized List<BigInteger> generateRandomSerialNumbers(int count) throws EBaseException {
+
+        List<BigInteger> serialNumbers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            serialNumbers.add(getRandomSerialNumber(getRandomNumber()));
+        }
+
+        return serialNumbers;
+    }
+
+    /**
+     * Returns the serial numbers that already exist in the repository
+     * using a single search.
+     */
+    Set<BigInteger> findExistingSerialNumbers(Collection<BigInteger> serialNumbers) throws EBaseException {
+
+        Set<BigInteger> existing = new HashSet<>();
+        if (serialNumbers.isEmpty()) {
+            return existing;
+        }
+
+        StringBuilder filter = new StringBuilder("(|");
+        for (BigInteger serialNumber : serialNumbers) {
+            filter.append("(" + CertRecord.ATTR_ID + "=" + serialNumber + ")");
+        }
+        filter.append(")");
+
+        Enumeration<Object> e = findCertRecs(filter.toString(), new String[] {CertRecord.ATTR_ID, "objectclass"});
+        while (e != null && e.hasMoreElements()) {
+            CertRecord rec = (CertRecord) e.nextElement();
+            if (rec != null && rec.getSerialNumber() != null) {
+                existing.add(rec.getSerialNumber());
+            }
+        }
+
+        return existing;
+    }
+
+    public RandomSerialNumberAllocator getRandomSerialNumberAllocator() {
+        return mRandomSerialNumberAllocator;
+    }
+
     private BigInteger checkSerialNumbers(BigInteger randomNumber, BigInteger serialNumber) throws EBaseException {
         BigInteger nextSerialNumber = null;
         BigInteger initialRandomNumber = randomNumber;
@@ -284,7 +347,9 @@ public class CertificateRepository extends Repository {
         do {
             logger.debug("CertificateRepository: checkSerialNumbers  checking("+(i+1)+")="+serialNumber);
             try {
-                if (readCertificateRecord(serialNumber) != null) {
+                if (mRandomSerialNumberAllocator != null && mRandomSerialNumberAllocator.isReserved(serialNumber)) {
+                    logger.debug("CertificateRepository: checkSerialNumbers  serial number "+serialNumber+" is reserved");
+                } else if (readCertificateRecord(serialNumber) != null) {
                     logger.debug("CertificateRepository: checkSerialNumbers  collision detected for serialNumber="+serialNumber);
                 }
             } catch (EDBRecordNotFoundException nfe) {
@@ -328,13 +393,34 @@ public class CertificateRepository extends Repository {
      * @exception EBaseException failed to retrieve next serial number
      */
     @Override
-    public synchronized BigInteger getNextSerialNumber()
+    public BigInteger getNextSerialNumber()
             throws EBaseException {
 
         if (idGenerator == RANDOM) {
             return super.getNextSerialNumber();
         }
 
+        RandomSerialNumberAllocator allocator = mRandomSerialNumberAllocator;
+        if (mEnableRandomSerialNumbers && allocator != null) {
+
+            BigInteger nextSerialNumber = allocator.poll(mMinSerialNo, mMaxSerialNo);
+            if (nextSerialNumber != null) {
+                synchronized (this) {
+                    updateRandomCounter(nextSerialNumber);
+                    super.checkRange();
+                }
+                return nextSerialNumber;
+            }
+
+            logger.debug("CertificateRepository: getNextSerialNumber  no allocated serial numbers available");
+        }
+
+        return generateNextSerialNumber();
+    }
+
+    private synchronized BigInteger generateNextSerialNumber()
+            throws EBaseException {
+
         BigInteger nextSerialNumber = null;
         BigInteger randomNumber = null;
 
@@ -358,16 +444,7 @@ public class CertificateRepository extends Repository {
                 throw new EBaseException( "nextSerialNumber is null" );
             }
 
-            if (mCounter.compareTo(BigInteger.ZERO) >= 0 &&
-                mMinSerialNo != null && mMaxSerialNo != null &&
-                nextSerialNumber != null &&
-                nextSerialNumber.compareTo(mMinSerialNo) >= 0 &&
-                nextSerialNumber.compareTo(mMaxSerialNo) <= 0) {
-                mCounter = mCounter.add(BigInteger.ONE);
-            }
-            logger.debug("CertificateRepository: getNextSerialNumber  nextSerialNumber="+
-                      nextSerialNumber+"  mCounter="+mCounter);
-
+            updateRandomCounter(nextSerialNumber);
             super.checkRange();
         } else {
             nextSerialNumber = super.getNextSerialNumber();
@@ -376,6 +453,19 @@ public class CertificateRepository extends Repository {
         return nextSerialNumber;
     }
 
+    private void updateRandomCounter(BigInteger nextSerialNumber) {
+
+        if (mCounter.compareTo(BigInteger.ZERO) >= 0 &&
+            mMinSerialNo != null && mMaxSerialNo != null &&
+            nextSerialNumber != null &&
+            nextSerialNumber.compareTo(mMinSerialNo) >= 0 &&
+            nextSerialNumber.compareTo(mMaxSerialNo) <= 0) {
+            mCounter = mCounter.add(BigInteger.ONE);
+        }
+        logger.debug("CertificateRepository: getNextSerialNumber  nextSerialNumber="+
+                  nextSerialNumber+"  mCounter="+mCounter);
+    }
+
     @Override
     public BigInteger getRangeLength() {
         if (dbSubsystem.getEnableSerialMgmt() && mEnableRandomSerialNumbers) {
@@ -666,7 +756,9 @@ public class CertificateRepository extends Repository {
      */
     public void removeCertRecords(BigInteger beginS, BigInteger endS) throws EBaseException {
         String filter = "(" + CertRecord.ATTR_CERT_STATUS + "=*" + ")";
-        CertRecordList list = findCertRecordsInList(filter, null, "serialno", 10);
+        // only the serial numbers are needed
+        String[] attrs = new String[] { "objectclass", CertRecord.ATTR_ID };
+        CertRecordList list = findCertRecordsInList(filter, attrs, "serialno", 10);
         int size = list.getSize();
         Enumeration<CertRecord> e = list.getCertRecords(0, size - 1);
         while (e.hasMoreElements()) {
@@ -783,6 +875,45 @@ public class CertificateRepository extends Repository {
         }
     }
 
+    /**
+     * Updates the status of a batch of certificates using a single session.
+     *
+     * Unlike updateStatus(Vector, String), this does not lock the repository,
+     * so batches of different certificates can be updated concurrently, each
+     * with its own LDAP connection. Failed updates are logged and skipped.
+     *
+     * @param list serial numbers of the certificates
+     * @param status new certificate status
+     * @return number of updated certificates
+     * @exception EBaseException failed to create session
+     */
+    public int updateStatusBatch(List<BigInteger> list, String status) throws EBaseException {
+
+        int count = 0;
+
+        try (DBSSession s = dbSubsystem.createSession()) {
+            for (BigInteger serialNumber : list) {
+
+                logger.debug("CertificateRepository: Updating the status of cert " + serialNumber + " to " + status);
+
+                ModificationSet mods = new ModificationSet();
+                mods.add(CertRecord.ATTR_CERT_STATUS, Modification.MOD_REPLACE, status);
+                mods.add(CertRecord.ATTR_MODIFY_TIME, Modification.MOD_REPLACE, new Date());
+
+                try {
+                    s.modify("cn=" + serialNumber + "," + mBaseDN, mods);
+                    count++;
+
+                } catch (EBaseException e) {
+                    logger.warn("CertificateRepository: Unable to update the status of cert "
+                            + serialNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+
+        return count;
+    }
+
     /**
      * Reads the certificate identified by the given serial no.
      *
@@ -1112,12 +1243,30 @@ public class CertificateRepository extends Repository {
      */
     public Enumeration<CertRecord> searchCertificates(String filter, int maxSize,
             int timeLimit,String sortAttribute) throws EBaseException {
+        return searchCertificates(filter, maxSize, timeLimit, sortAttribute, null);
+    }
+
+    /**
+     * Finds all certificates given a filter, and only retrieves
+     * the selected attributes of the records. The attributes must
+     * include "objectclass".
+     *
+     * @param filter search filter
+     * @param maxSize max size to return
+     * @param timeLimit timeout value
+     * @param sortAttribute Attribute of CertRecord to sort the results
+     * @param attrs selected attributes, or null for all attributes
+     * @return a list of certificates
+     * @exception EBaseException failed to search
+     */
+    public Enumeration<CertRecord> searchCertificates(String filter, int maxSize,
+            int timeLimit, String sortAttribute, String[] attrs) throws EBaseException {
 
         Vector<CertRecord> v = new Vector<>();
 
         logger.debug("searchCertificateswith time limit filter " + filter);
         try (DBSSession s = dbSubsystem.createSession()) {
-            DBSearchResults sr = s.search(mBaseDN, filter, maxSize, timeLimit,sortAttribute);
+            DBSearchResults sr = s.search(mBaseDN, filter, maxSize, timeLimit, sortAttribute, attrs);
             while (sr.hasMoreElements()) {
                 v.add((CertRecord) sr.nextElement());
             }
@@ -1861,7 +2010,8 @@ public class CertificateRepository extends Repository {
             String[] attrs = null;
 
             if (mConsistencyCheck == false) {
-                attrs = new String[] { "objectclass", CertRecord.ATTR_ID, CertRecord.ATTR_X509CERT };
+                // only the validity is needed, see CertRecord.getNotBefore()
+                attrs = new String[] { "objectclass", CertRecord.ATTR_ID, CertificateValidity.NOT_BEFORE };
             }
 
             logger.debug("getInvalidCertificatesByNotBeforeDate filter " + ldapfilter);
@@ -1898,7 +2048,8 @@ public class CertificateRepository extends Repository {
             String[] attrs = null;
 
             if (mConsistencyCheck == false) {
-                attrs = new String[] { "objectclass", CertRecord.ATTR_ID, CertRecord.ATTR_X509CERT };
+                // only the validity is needed, see CertRecord.getNotAfter()
+                attrs = new String[] { "objectclass", CertRecord.ATTR_ID, CertificateValidity.NOT_AFTER };
             }
 
             logger.debug("getValidCertsByNotAfterDate filter " + ldapfilter);
@@ -1931,7 +2082,7 @@ public class CertificateRepository extends Repository {
 
             if (mConsistencyCheck == false) {
                 attrs = new String[] { "objectclass", CertRecord.ATTR_REVOKED_ON, CertRecord.ATTR_ID,
-                            CertRecord.ATTR_REVO_INFO, CertificateValidity.NOT_AFTER, CertRecord.ATTR_X509CERT };
+                            CertRecord.ATTR_REVO_INFO, CertificateValidity.NOT_AFTER };
             }
 
             logger.debug("getRevokedCertificatesByNotAfterDate filter " + ldapfilter);
@@ -2185,5 +2336,8 @@ public class CertificateRepository extends Repository {
     }
 
     public void shutdown() {
+        if (mRandomSerialNumberAllocator != null) {
+            mRandomSerialNumberAllocator.stop();
+        }
     }
 }
@@ -211,6 +211,30 @@ public class DBSSession implements AutoCloseable {
         return null;
     }
 
+    /**
+     * Retrieves a list of object that satifies the given
+     * filter, and only populates the selected attributes.
+     *
+     * @param base starting point of the search
+     * @param filter search filter
+     * @param maxSize max number of entries
+     * @param timeLimit timeout limit
+     * @param sortAttribute Field to sort the records on
+     * @param attrs selected attributes, or null for all attributes
+     * @return search results
+     * @exception EBaseException failed to search
+     */
+    public DBSearchResults search(
+            String base,
+            String filter,
+            int maxSize,
+            int timeLimit,
+            String sortAttribute,
+            String[] attrs
+            ) throws EBaseException {
+        return null;
+    }
+
     /**
      * Sets persistent search to retrieve modified
      * certificate records.
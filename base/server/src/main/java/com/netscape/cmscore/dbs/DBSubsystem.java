@@ -112,6 +112,8 @@ public class DBSubsystem {
     private static final String PROP_LDAP = "ldap";
     public static final String PROP_NEXT_RANGE = "nextRange";
     public static final String PROP_ENABLE_SERIAL_MGMT = "enableSerialManagement";
+    public static final String PROP_CRL_CACHE_FORMAT = "crlCacheFormat";
+    public static final String PROP_CRL_CACHE_MAX_UPDATES = "crlCacheMaxUpdates";
 
     /**
      * Constructs database subsystem.
@@ -324,14 +326,21 @@ public class DBSubsystem {
                     ByteArrayMapper(CRLDBSchema.LDAP_ATTR_DELTA_CRL));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_CA_CERT, new
                     ByteArrayMapper(CRLDBSchema.LDAP_ATTR_CA_CERT));
+
+            // revoked certificates stored in serialized format can always be read,
+            // but they are only stored in compact format if it is enabled
+            String crlCacheFormat = mDBConfig.getCRLCacheFormat();
+            logger.debug("DBSubsystem: CRL cache format: " + crlCacheFormat);
+            boolean compact = RevokedCertificatesMapper.FORMAT_COMPACT.equals(crlCacheFormat);
+
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_CRL_CACHE, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_CRL_CACHE));
+                    RevokedCertificatesMapper(CRLDBSchema.LDAP_ATTR_CRL_CACHE, compact));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_REVOKED_CERTS, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS));
+                    RevokedCertificatesMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS, compact));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_UNREVOKED_CERTS, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_UNREVOKED_CERTS));
+                    RevokedCertificatesMapper(CRLDBSchema.LDAP_ATTR_UNREVOKED_CERTS, compact));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_EXPIRED_CERTS, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_EXPIRED_CERTS));
+                    RevokedCertificatesMapper(CRLDBSchema.LDAP_ATTR_EXPIRED_CERTS, compact));
 
             boolean registered = reg.isObjectClassRegistered(RepositoryRecord.class.getName());
             logger.debug("registered: " + registered);
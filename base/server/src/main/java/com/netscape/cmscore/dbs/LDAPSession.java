@@ -28,6 +28,8 @@ import com.netscape.certsrv.dbs.DBVirtualList;
 import com.netscape.certsrv.dbs.Modification;
 import com.netscape.certsrv.dbs.ModificationSet;
 import com.netscape.cmscore.apps.CMS;
+import com.netscape.cmscore.metrics.Histogram;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 
 import netscape.ldap.LDAPAttribute;
 import netscape.ldap.LDAPAttributeSet;
@@ -57,6 +59,15 @@ public class LDAPSession extends DBSSession {
 
     public final static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LDAPSession.class);
 
+    public static final String METRIC_OPERATION_DURATION = "pki_ldap_operation_duration_seconds";
+    public static final String METRIC_OPERATION_HELP = "Duration of the LDAP operations";
+
+    static final Histogram addTime = createHistogram("add");
+    static final Histogram readTime = createHistogram("read");
+    static final Histogram modifyTime = createHistogram("modify");
+    static final Histogram deleteTime = createHistogram("delete");
+    static final Histogram searchTime = createHistogram("search");
+
     private DBSubsystem dbSubsystem;
     private LDAPConnection mConn = null;
 
@@ -77,6 +88,13 @@ public class LDAPSession extends DBSSession {
         }
     }
 
+    static Histogram createHistogram(String operation) {
+        return MetricsRegistry.getInstance().getHistogram(
+                METRIC_OPERATION_DURATION,
+                METRIC_OPERATION_HELP,
+                "operation", operation);
+    }
+
     public LDAPConnection getConnection() {
         return mConn;
     }
@@ -123,7 +141,13 @@ public class LDAPSession extends DBSSession {
              * @phase local ldap add
              * @message LDAPSession: begin LDAP add <entry>
              */
-            mConn.add(e);
+            long startTime = System.nanoTime();
+
+            try {
+                mConn.add(e);
+            } finally {
+                addTime.observeSince(startTime);
+            }
 
         } catch (LDAPException e) {
             if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE) {
@@ -170,10 +194,18 @@ public class LDAPSession extends DBSSession {
              * @phase local ldap read
              * @message LDAPSession: begin LDAP read <entry>
              */
-            LDAPSearchResults res = mConn.search(name,
-                    LDAPv3.SCOPE_BASE, "(objectclass=*)",
-                    ldapattrs, false);
-            LDAPEntry entry = (LDAPEntry) res.nextElement();
+            long startTime = System.nanoTime();
+            LDAPEntry entry;
+
+            try {
+                LDAPSearchResults res = mConn.search(name,
+                        LDAPv3.SCOPE_BASE, "(objectclass=*)",
+                        ldapattrs, false);
+                entry = (LDAPEntry) res.nextElement();
+            } finally {
+                readTime.observeSince(startTime);
+            }
+
             LDAPAttributeSet attrSet = entry.getAttributeSet();
 
             for (Enumeration<LDAPAttribute> e = attrSet.getAttributes(); e.hasMoreElements(); ) {
@@ -207,6 +239,8 @@ public class LDAPSession extends DBSSession {
 
         logger.info("LDAPSession: Deleting " + name);
 
+        long startTime = System.nanoTime();
+
         try {
             mConn.delete(name);
         } catch (LDAPException e) {
@@ -214,6 +248,8 @@ public class LDAPSession extends DBSSession {
                 throw new EDBNotAvailException(
                         CMS.getUserMessage("CMS_DBS_INTERNAL_DIR_UNAVAILABLE"));
             throw new EDBException("Unable to delete LDAP record: " + e.getMessage(), e);
+        } finally {
+            deleteTime.observeSince(startTime);
         }
     }
 
@@ -261,7 +297,13 @@ public class LDAPSession extends DBSSession {
              * @phase local ldap add
              * @message LDAPSession: begin LDAP modify <entry>
              */
-            mConn.modify(name, ldapMods);
+            long startTime = System.nanoTime();
+
+            try {
+                mConn.modify(name, ldapMods);
+            } finally {
+                modifyTime.observeSince(startTime);
+            }
 
         } catch (LDAPException e) {
 
@@ -317,11 +359,17 @@ public class LDAPSession extends DBSSession {
 
             cons.setMaxResults(maxSize);
 
-            LDAPSearchResults res = mConn.search(base,
-                    LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            long startTime = System.nanoTime();
+
+            try {
+                LDAPSearchResults res = mConn.search(base,
+                        LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
 
-            return new DBSearchResults(dbSubsystem.getRegistry(),
-                    res);
+                return new DBSearchResults(dbSubsystem.getRegistry(),
+                        res);
+            } finally {
+                searchTime.observeSince(startTime);
+            }
         } catch (LDAPException e) {
             if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE)
                 throw new EDBNotAvailException(
@@ -353,11 +401,17 @@ public class LDAPSession extends DBSSession {
                 cons.setServerControls( sortCtrl );
             }
 
-            LDAPSearchResults res = mConn.search(base,
-                    LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            long startTime = System.nanoTime();
+
+            try {
+                LDAPSearchResults res = mConn.search(base,
+                        LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
 
-            return new DBSearchResults(dbSubsystem.getRegistry(),
-                    res);
+                return new DBSearchResults(dbSubsystem.getRegistry(),
+                        res);
+            } finally {
+                searchTime.observeSince(startTime);
+            }
         } catch (LDAPException e) {
             if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE)
                 throw new EDBNotAvailException(
@@ -384,11 +438,17 @@ public class LDAPSession extends DBSSession {
             cons.setMaxResults(maxSize);
             cons.setServerTimeLimit(timeLimit);
 
-            LDAPSearchResults res = mConn.search(base,
-                    LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            long startTime = System.nanoTime();
 
-            return new DBSearchResults(dbSubsystem.getRegistry(),
-                    res);
+            try {
+                LDAPSearchResults res = mConn.search(base,
+                        LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+
+                return new DBSearchResults(dbSubsystem.getRegistry(),
+                        res);
+            } finally {
+                searchTime.observeSince(startTime);
+            }
         } catch (LDAPException e) {
             if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE)
                 throw new EDBNotAvailException(
@@ -402,11 +462,26 @@ public class LDAPSession extends DBSSession {
     @Override
     public DBSearchResults search(String base, String filter, int maxSize,
             int timeLimit, String sortAttribute) throws EBaseException {
+        return search(base, filter, maxSize, timeLimit, sortAttribute, null);
+    }
+
+    /**
+     * Retrieves a list of objects that satisfies the given
+     * filter, and only populates the selected attributes.
+     */
+    @Override
+    public DBSearchResults search(String base, String filter, int maxSize,
+            int timeLimit, String sortAttribute, String attrs[]) throws EBaseException {
 
         logger.info("LDAPSession: Searching " + base + " for " + filter);
 
         try {
             String ldapattrs[] = null;
+
+            if (attrs != null) {
+                ldapattrs = dbSubsystem.getRegistry(
+                        ).getLDAPAttributes(attrs);
+            }
             String ldapfilter =
                     dbSubsystem.getRegistry().getFilter(filter);
 
@@ -421,11 +496,17 @@ public class LDAPSession extends DBSSession {
                 cons.setServerControls( sortCtrl );
             }
 
-            LDAPSearchResults res = mConn.search(base,
-                    LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            long startTime = System.nanoTime();
+
+            try {
+                LDAPSearchResults res = mConn.search(base,
+                        LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
 
-            return new DBSearchResults(dbSubsystem.getRegistry(),
-                    res);
+                return new DBSearchResults(dbSubsystem.getRegistry(),
+                        res);
+            } finally {
+                searchTime.observeSince(startTime);
+            }
         } catch (LDAPException e) {
             if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE)
                 throw new EDBNotAvailException(
@@ -466,11 +547,17 @@ public class LDAPSession extends DBSSession {
 
             cons.setMaxResults(0);
 
-            LDAPSearchResults res = mConn.search(base,
-                    LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            long startTime = System.nanoTime();
 
-            return new DBSearchResults(dbSubsystem.getRegistry(),
-                    res);
+            try {
+                LDAPSearchResults res = mConn.search(base,
+                        LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+
+                return new DBSearchResults(dbSubsystem.getRegistry(),
+                        res);
+            } finally {
+                searchTime.observeSince(startTime);
+            }
         } catch (LDAPException e) {
             if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE)
                 throw new EDBNotAvailException(
@@ -0,0 +1,204 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Allocator of random serial numbers (RSNv1) for CertificateRepository.
+ *
+ * A background thread generates batches of random serial numbers,
+ * reserves them, checks them for collisions with a single LDAP search
+ * per batch, and queues the available ones. Certificate issuance then
+ * takes serial numbers from the queue without waiting for LDAP, and
+ * falls back to the regular collision check if the queue is empty.
+ */
+public class RandomSerialNumberAllocator {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RandomSerialNumberAllocator.class);
+
+    private CertificateRepository repository;
+    private int batchSize;
+
+    private ConcurrentLinkedQueue<BigInteger> queue = new ConcurrentLinkedQueue<>();
+    private AtomicInteger queueSize = new AtomicInteger();
+
+    // serial numbers being checked or queued
+    private Set<BigInteger> reserved = ConcurrentHashMap.newKeySet();
+
+    private AtomicBoolean filling = new AtomicBoolean();
+    private ExecutorService executor;
+
+    private LongAdder allocated = new LongAdder();
+    private LongAdder collisions = new LongAdder();
+    private LongAdder batches = new LongAdder();
+
+    public RandomSerialNumberAllocator(CertificateRepository repository, int batchSize) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+    }
+
+    public void start() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "RandomSerialNumberAllocator");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        clear();
+    }
+
+    /**
+     * Discards all queued serial numbers, e.g. after a range change.
+     */
+    public void clear() {
+        BigInteger serialNumber;
+        while ((serialNumber = queue.poll()) != null) {
+            queueSize.decrementAndGet();
+            reserved.remove(serialNumber);
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    public long getAllocated() {
+        return allocated.sum();
+    }
+
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Checks whether the serial number has been reserved by the
+     * allocator and must not be issued by anyone else.
+     */
+    public boolean isReserved(BigInteger serialNumber) {
+        return reserved.contains(serialNumber);
+    }
+
+    /**
+     * Returns a collision-checked serial number within the given range,
+     * or null if none is available. Refills the queue in the background
+     * when it runs low.
+     */
+    public BigInteger poll(BigInteger minSerialNo, BigInteger maxSerialNo) {
+
+        BigInteger serialNumber;
+        try {
+            while ((serialNumber = queue.poll()) != null) {
+                queueSize.decrementAndGet();
+                reserved.remove(serialNumber);
+
+                if (minSerialNo != null && serialNumber.compareTo(minSerialNo) < 0
+                        || maxSerialNo != null && serialNumber.compareTo(maxSerialNo) > 0) {
+                    // generated for a previous range
+                    continue;
+                }
+
+                allocated.increment();
+                return serialNumber;
+            }
+
+            return null;
+
+        } finally {
+            if (queueSize.get() <= batchSize / 2) {
+                fill();
+            }
+        }
+    }
+
+    private void fill() {
+
+        ExecutorService executor = this.executor;
+        if (executor == null || !filling.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    generateBatch();
+                } catch (Exception e) {
+                    logger.warn("RandomSerialNumberAllocator: Unable to generate serial numbers: " + e.getMessage(), e);
+                } finally {
+                    filling.set(false);
+                }
+            });
+
+        } catch (Exception e) {
+            filling.set(false);
+            logger.warn("RandomSerialNumberAllocator: Unable to schedule serial number generation: " + e.getMessage(), e);
+        }
+    }
+
+    void generateBatch() throws Exception {
+
+        List<BigInteger> candidates = new ArrayList<>(batchSize);
+
+        for (BigInteger serialNumber : repository.generateRandomSerialNumbers(batchSize)) {
+            // reserve the serial number before checking it so that
+            // it cannot be issued by the fallback path in the meantime
+            if (reserved.add(serialNumber)) {
+                candidates.add(serialNumber);
+            }
+        }
+
+        Set<BigInteger> existing;
+        try {
+            existing = repository.findExistingSerialNumbers(candidates);
+
+        } catch (Exception e) {
+            reserved.removeAll(candidates);
+            throw e;
+        }
+
+        int count = 0;
+        for (BigInteger serialNumber : candidates) {
+
+            if (existing.contains(serialNumber)) {
+                logger.debug("RandomSerialNumberAllocator: collision detected for serial number " + serialNumber);
+                reserved.remove(serialNumber);
+                collisions.increment();
+                continue;
+            }
+
+            queue.offer(serialNumber);
+            queueSize.incrementAndGet();
+            count++;
+        }
+
+        batches.increment();
+        logger.debug("RandomSerialNumberAllocator: Queued " + count + " serial numbers");
+    }
+}
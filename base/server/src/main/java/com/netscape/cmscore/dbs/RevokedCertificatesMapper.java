@@ -0,0 +1,372 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBAttrMapper;
+import com.netscape.certsrv.dbs.EDBException;
+import com.netscape.certsrv.dbs.IDBObj;
+import com.netscape.cmscore.apps.CMS;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+/**
+ * A class represents an attribute mapper that maps a table of
+ * revoked certificates into a multi-valued binary LDAP attribute,
+ * and vice versa.
+ *
+ * In compact format each attribute value consists of a header
+ * (magic, version, type, sequence number) followed by a stream of
+ * DER-encoded revoked certificate entries. A value of type FULL
+ * contains the whole table, and values of type UPDATE contain
+ * changes appended with MOD_ADD which are applied in sequence order.
+ * Updates that are not newer than the full table are ignored.
+ *
+ * Values stored by ObjectStreamMapper (i.e. serialized Hashtable)
+ * are still accepted, so existing records are converted to the
+ * compact format the next time the table is replaced.
+ */
+public class RevokedCertificatesMapper extends DBAttrMapper {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RevokedCertificatesMapper.class);
+
+    public static final String FORMAT_SERIALIZED = "serialized";
+    public static final String FORMAT_COMPACT = "compact";
+
+    public static final byte[] MAGIC = { 'R', 'C' };
+    public static final byte VERSION = 1;
+
+    public static final byte TYPE_FULL = 0;
+    public static final byte TYPE_UPDATE = 1;
+
+    public static final byte OP_END = 0;
+    public static final byte OP_PUT = 1;
+    public static final byte OP_REMOVE = 2;
+
+    private String mLdapName;
+    private boolean compact;
+    private Vector<String> v = new Vector<>();
+
+    /**
+     * Constructs revoked certificates mapper.
+     *
+     * @param ldapName LDAP attribute name
+     * @param compact true to store tables in compact format,
+     * false to store them as serialized Java objects
+     */
+    public RevokedCertificatesMapper(String ldapName, boolean compact) {
+        mLdapName = ldapName;
+        this.compact = compact;
+        v.addElement(mLdapName);
+    }
+
+    /**
+     * Retrieves a list of supported ldap attributes.
+     */
+    @Override
+    public Enumeration<String> getSupportedLDAPAttributeNames() {
+        return v.elements();
+    }
+
+    /**
+     * Maps a table of revoked certificates (or an update of the table)
+     * to ldap attribute set.
+     */
+    @Override
+    public void mapObjectToLDAPAttributeSet(IDBObj parent, String name,
+            Object obj, LDAPAttributeSet attrs)
+            throws EBaseException {
+
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+            if (obj instanceof RevokedCertificatesUpdate) {
+                RevokedCertificatesUpdate update = (RevokedCertificatesUpdate) obj;
+                logger.debug("RevokedCertificatesMapper: Mapping " + update.size() + " changes in " + name);
+                encodeUpdate(update, bos);
+
+            } else if (compact) {
+                @SuppressWarnings("unchecked")
+                Map<BigInteger, RevokedCertificate> revokedCerts = (Map<BigInteger, RevokedCertificate>) obj;
+                logger.debug("RevokedCertificatesMapper: Mapping " + revokedCerts.size() + " entries in " + name);
+                encode(revokedCerts, bos);
+
+            } else {
+                ObjectOutputStream os = new ObjectOutputStream(bos);
+                os.writeObject(obj);
+                os.flush();
+            }
+
+            attrs.add(new LDAPAttribute(mLdapName, bos.toByteArray()));
+
+        } catch (Exception e) {
+            logger.error("RevokedCertificatesMapper: Unable to map " + name + ": " + e.getMessage(), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_SERIALIZE_FAILED", name), e);
+        }
+    }
+
+    /**
+     * Maps LDAP attributes into a table of revoked certificates,
+     * and put the table into 'parent'.
+     */
+    @Override
+    public void mapLDAPAttributeSetToObject(LDAPAttributeSet attrs,
+            String name, IDBObj parent) throws EBaseException {
+
+        LDAPAttribute attr = attrs.getAttribute(mLdapName);
+
+        if (attr == null) {
+            return;
+        }
+
+        try {
+            Hashtable<BigInteger, RevokedCertificate> revokedCerts = new Hashtable<>();
+            List<RevokedCertificatesUpdate> updates = new ArrayList<>();
+
+            // sequence number of the full table
+            long baseSequence = 0;
+
+            Enumeration<byte[]> values = attr.getByteValues();
+            while (values.hasMoreElements()) {
+                byte[] value = values.nextElement();
+
+                if (isSerialized(value)) {
+                    logger.debug("RevokedCertificatesMapper: Loading " + name + " in serialized format");
+                    revokedCerts.putAll(deserialize(value));
+                    continue;
+                }
+
+                RevokedCertificatesUpdate update = new RevokedCertificatesUpdate();
+                long sequence = decode(new ByteArrayInputStream(value), revokedCerts, update);
+                RevokedCertificatesUpdate.observeSequence(sequence);
+
+                // full tables do not set the sequence of the update
+                if (update.getSequence() == 0) {
+                    baseSequence = Math.max(baseSequence, sequence);
+                } else {
+                    updates.add(update);
+                }
+            }
+
+            updates.sort(Comparator.comparingLong(RevokedCertificatesUpdate::getSequence));
+
+            int applied = 0;
+            for (RevokedCertificatesUpdate update : updates) {
+
+                if (update.getSequence() <= baseSequence) {
+                    // already included in the full table
+                    continue;
+                }
+
+                update.applyTo(revokedCerts);
+                applied++;
+            }
+
+            logger.debug("RevokedCertificatesMapper: Loaded " + revokedCerts.size() + " entries in " + name
+                    + " with " + applied + " of " + updates.size() + " updates");
+
+            parent.set(name, revokedCerts);
+
+        } catch (EBaseException e) {
+            throw e;
+
+        } catch (Exception e) {
+            logger.error("RevokedCertificatesMapper: Unable to map " + name + ": " + e.getMessage(), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_DESERIALIZE_FAILED", name), e);
+        }
+    }
+
+    /**
+     * Maps search filters into LDAP search filter.
+     */
+    @Override
+    public String mapSearchFilter(String name, String op,
+            String value) throws EBaseException {
+        return mLdapName + op + value;
+    }
+
+    /**
+     * Returns true if the value was stored by ObjectStreamMapper.
+     */
+    public static boolean isSerialized(byte[] value) {
+        // java.io.ObjectStreamConstants.STREAM_MAGIC
+        return value.length >= 2 && value[0] == (byte) 0xAC && value[1] == (byte) 0xED;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<BigInteger, RevokedCertificate> deserialize(byte[] value) throws Exception {
+        try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(value))) {
+            return (Map<BigInteger, RevokedCertificate>) is.readObject();
+        }
+    }
+
+    static void writeHeader(DataOutputStream out, byte type, long sequence) throws IOException {
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        out.writeLong(sequence);
+    }
+
+    static void writeEntry(DataOutputStream out, BigInteger serialNumber, RevokedCertificate revokedCert)
+            throws Exception {
+
+        if (revokedCert == null) {
+            byte[] serial = serialNumber.toByteArray();
+            out.writeByte(OP_REMOVE);
+            out.writeShort(serial.length);
+            out.write(serial);
+            return;
+        }
+
+        byte[] entry = revokedCert.getEncoded();
+        out.writeByte(OP_PUT);
+        out.writeInt(entry.length);
+        out.write(entry);
+    }
+
+    /**
+     * Writes a table of revoked certificates in compact format.
+     */
+    public static void encode(Map<BigInteger, RevokedCertificate> revokedCerts, OutputStream os)
+            throws Exception {
+
+        DataOutputStream out = new DataOutputStream(os);
+
+        // lock the table like Hashtable.writeObject() does
+        synchronized (revokedCerts) {
+
+            // updates recorded before this point are included in the table
+            writeHeader(out, TYPE_FULL, RevokedCertificatesUpdate.nextSequence());
+
+            for (Map.Entry<BigInteger, RevokedCertificate> entry : revokedCerts.entrySet()) {
+                writeEntry(out, entry.getKey(), entry.getValue());
+            }
+        }
+
+        out.writeByte(OP_END);
+        out.flush();
+    }
+
+    /**
+     * Writes an update of a table of revoked certificates in compact format.
+     */
+    public static void encodeUpdate(RevokedCertificatesUpdate update, OutputStream os)
+            throws Exception {
+
+        DataOutputStream out = new DataOutputStream(os);
+
+        synchronized (update) {
+            writeHeader(out, TYPE_UPDATE, update.getSequence());
+
+            for (Map.Entry<BigInteger, RevokedCertificate> entry : update.getEntries().entrySet()) {
+                writeEntry(out, entry.getKey(), entry.getValue());
+            }
+        }
+
+        out.writeByte(OP_END);
+        out.flush();
+    }
+
+    /**
+     * Reads a value in compact format. The entries of a full table are
+     * stored directly into the specified table, while the entries of an
+     * update are stored into the specified update (including its sequence
+     * number) so they can be applied in sequence order.
+     *
+     * @return the sequence number of the value
+     */
+    public static long decode(
+            InputStream is,
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            RevokedCertificatesUpdate update)
+            throws Exception {
+
+        DataInputStream in = new DataInputStream(is);
+
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (magic[0] != MAGIC[0] || magic[1] != MAGIC[1]) {
+            throw new IOException("Invalid revoked certificates format");
+        }
+
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported revoked certificates version: " + version);
+        }
+
+        byte type = in.readByte();
+        long sequence = in.readLong();
+
+        if (type != TYPE_FULL && type != TYPE_UPDATE) {
+            throw new IOException("Unsupported revoked certificates type: " + type);
+        }
+
+        boolean full = type == TYPE_FULL;
+        if (!full) {
+            update.setSequence(sequence);
+        }
+
+        while (true) {
+            byte op = in.readByte();
+
+            if (op == OP_END) {
+                break;
+
+            } else if (op == OP_PUT) {
+                byte[] entry = new byte[in.readInt()];
+                in.readFully(entry);
+
+                RevokedCertImpl revokedCert = new RevokedCertImpl(entry);
+                BigInteger serialNumber = revokedCert.getSerialNumber();
+
+                if (full) {
+                    revokedCerts.put(serialNumber, revokedCert);
+                } else {
+                    update.getEntries().put(serialNumber, revokedCert);
+                }
+
+            } else if (op == OP_REMOVE) {
+                byte[] serial = new byte[in.readUnsignedShort()];
+                in.readFully(serial);
+
+                BigInteger serialNumber = new BigInteger(serial);
+
+                if (full) {
+                    revokedCerts.remove(serialNumber);
+                } else {
+                    update.getEntries().put(serialNumber, null);
+                }
+
+            } else {
+                throw new IOException("Invalid revoked certificates entry: " + op);
+            }
+        }
+
+        return sequence;
+    }
+}
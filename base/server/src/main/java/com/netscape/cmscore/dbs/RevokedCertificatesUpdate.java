@@ -0,0 +1,108 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * Changes to a revoked certificates table that can be appended
+ * to the stored table without rewriting it.
+ *
+ * Updates are applied in the order of their sequence numbers,
+ * which are assigned when the first change is recorded. Full tables
+ * are stored with a sequence number as well, and updates at or below
+ * that number are already included in the table.
+ *
+ * Sequence numbers are based on the local clock, so each server also
+ * advances its sequence past the sequence numbers it has loaded. This
+ * keeps the updates of a server ordered after the changes it has seen
+ * even if the clocks of the clones differ.
+ */
+public class RevokedCertificatesUpdate {
+
+    private static AtomicLong lastSequence = new AtomicLong();
+
+    private long sequence;
+
+    // serial number -> revoked certificate, or null if removed
+    private Map<BigInteger, RevokedCertificate> entries = new LinkedHashMap<>();
+
+    public RevokedCertificatesUpdate() {
+    }
+
+    public RevokedCertificatesUpdate(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns a sequence number greater than any previously returned
+     * sequence number, including those from previous server runs.
+     */
+    static long nextSequence() {
+        long now = System.currentTimeMillis() * 1000;
+        return lastSequence.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    /**
+     * Ensures that subsequent sequence numbers are greater than
+     * the specified sequence number (e.g. one loaded from the database).
+     */
+    static void observeSequence(long sequence) {
+        lastSequence.accumulateAndGet(sequence, Math::max);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public synchronized void put(BigInteger serialNumber, RevokedCertificate revokedCert) {
+        if (sequence == 0) {
+            sequence = nextSequence();
+        }
+        entries.put(serialNumber, revokedCert);
+    }
+
+    public synchronized void remove(BigInteger serialNumber) {
+        if (sequence == 0) {
+            sequence = nextSequence();
+        }
+        entries.put(serialNumber, null);
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the changes. A null value means the entry is removed.
+     */
+    public Map<BigInteger, RevokedCertificate> getEntries() {
+        return entries;
+    }
+
+    public synchronized void applyTo(Map<BigInteger, RevokedCertificate> revokedCerts) {
+        for (Map.Entry<BigInteger, RevokedCertificate> entry : entries.entrySet()) {
+            if (entry.getValue() == null) {
+                revokedCerts.remove(entry.getKey());
+            } else {
+                revokedCerts.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
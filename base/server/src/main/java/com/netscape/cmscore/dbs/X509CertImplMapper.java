@@ -306,7 +306,25 @@ public class X509CertImplMapper extends DBAttrMapper {
                 attr = attrs.getAttribute(
                             CertDBSchema.LDAP_ATTR_SIGNED_CERT + ";binary");
             }
-            if (attr != null) {
+            if (parent instanceof CertRecord) {
+                CertRecord record = (CertRecord) parent;
+
+                // the validity is also stored in separate attributes,
+                // so it can be used without decoding the certificate,
+                // or when only these attributes were retrieved
+                LDAPAttribute notBefore = attrs.getAttribute(CertDBSchema.LDAP_ATTR_NOT_BEFORE);
+                LDAPAttribute notAfter = attrs.getAttribute(CertDBSchema.LDAP_ATTR_NOT_AFTER);
+
+                record.setValidity(
+                        notBefore == null ? null : DateMapper.dateFromDB(notBefore.getStringValues().nextElement()),
+                        notAfter == null ? null : DateMapper.dateFromDB(notAfter.getStringValues().nextElement()));
+
+                if (attr != null) {
+                    // decode the certificate on first access
+                    record.setEncodedCertificate(attr.getByteValues().nextElement());
+                }
+
+            } else if (attr != null) {
                 byte der[] = attr.getByteValues().nextElement();
                 X509CertImpl impl = new X509CertImpl(der);
 
@@ -0,0 +1,107 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.jobs;
+
+import java.util.Date;
+import java.util.concurrent.Future;
+
+/**
+ * Execution state and statistics of a scheduled job.
+ *
+ * The fields are guarded by the JobsScheduler.
+ */
+public class JobStats {
+
+    String id;
+
+    // whether a run has been submitted and has not finished yet
+    boolean running;
+
+    // whether another run should start when the current run finishes
+    boolean queued;
+
+    Future<?> future;
+
+    long runs;
+    long failures;
+    long cancellations;
+
+    Date lastStartTime;
+    long lastDuration;
+    long lastRecordsProcessed;
+    long totalRecordsProcessed;
+
+    // whether the current run has started executing
+    boolean started;
+
+    public JobStats(String id) {
+        this.id = id;
+    }
+
+    JobStats copy() {
+        JobStats stats = new JobStats(id);
+        stats.running = running;
+        stats.queued = queued;
+        stats.started = started;
+        stats.runs = runs;
+        stats.failures = failures;
+        stats.cancellations = cancellations;
+        stats.lastStartTime = lastStartTime;
+        stats.lastDuration = lastDuration;
+        stats.lastRecordsProcessed = lastRecordsProcessed;
+        stats.totalRecordsProcessed = totalRecordsProcessed;
+        return stats;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isQueued() {
+        return queued;
+    }
+
+    /**
+     * Returns the number of completed runs.
+     */
+    public long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Returns the number of runs that ended with an error.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getCancellations() {
+        return cancellations;
+    }
+
+    public Date getLastStartTime() {
+        return lastStartTime;
+    }
+
+    /**
+     * Returns the duration of the last completed run in milliseconds.
+     */
+    public long getLastDuration() {
+        return lastDuration;
+    }
+
+    public long getLastRecordsProcessed() {
+        return lastRecordsProcessed;
+    }
+
+    public long getTotalRecordsProcessed() {
+        return totalRecordsProcessed;
+    }
+}
@@ -17,10 +17,19 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.jobs;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.jobs.EJobsException;
@@ -32,8 +41,15 @@ import com.netscape.cmscore.apps.CMS;
  * This is a daemon thread that handles scheduled jobs like cron would
  * do with different jobs. This daemon wakes up at a pre-configured
  * interval to see
- * if there is any job to be done, if so, a thread is created to execute
- * the job(s).
+ * if there is any job to be done, if so, the job(s) are executed in a
+ * thread pool.
+ * <p>
+ * The number of jobs that can run at the same time is specified by
+ * <b>jobsScheduler.threads</b> (default: number of jobs). If a job is
+ * still running when it is due again, <b>jobsScheduler.overlap</b>
+ * determines whether the new run is skipped (<b>skip</b>, default) or
+ * started when the current run finishes (<b>queue</b>). At most one
+ * run is queued per job.
  * <p>
  * The interval <b>jobsScheduler.interval</b> in the configuration is specified as number of minutes. If not set, the
  * default is 1 minute. Note that the cron specification for each job CAN NOT be finer than the granularity of the
@@ -99,24 +115,63 @@ public class JobsScheduler implements Runnable {
      */
     public static final String PROP_PLUGIN = "pluginName";
 
+    /**
+     * constant that represents the configuration parameter
+     * "threads" for this component in CMS.cfg. The value of which
+     * gives the maximum number of jobs running at the same time
+     */
+    public static final String PROP_THREADS = "threads";
+
+    /**
+     * constant that represents the configuration parameter
+     * "overlap" for this component in CMS.cfg. The value of which
+     * tells CMS what to do when a job is due while still running
+     */
+    public static final String PROP_OVERLAP = "overlap";
+
+    public static final String OVERLAP_SKIP = "skip";
+    public static final String OVERLAP_QUEUE = "queue";
+
+    /**
+     * constant that represents the configuration parameter
+     * "shutdownTimeout" for this component in CMS.cfg. The value of which
+     * gives the number of seconds to wait for running jobs on shutdown
+     */
+    public static final String PROP_SHUTDOWN_TIMEOUT = "shutdownTimeout";
+
+    public static final int DEFAULT_SHUTDOWN_TIMEOUT = 30;
+
     protected static final long MINUTE_MILLI = 60000;
     protected static final String DELIM = ",";
 
+    protected String mId = ID;
+
     /**
      * Scheduler thread doing job scheduling
      */
-    protected String mId = ID;
-    protected Thread mScheduleThread = null;
+    protected ScheduledExecutorService mScheduler;
+
+    /**
+     * Threads executing the jobs
+     */
+    protected ExecutorService mExecutor;
 
     public Hashtable<String, JobPlugin> mJobPlugins = new Hashtable<>();
     public Hashtable<String, Job> mJobs = new Hashtable<>();
-    private Hashtable<String, Thread> mJobThreads = new Hashtable<>();
+    private Hashtable<String, JobStats> mJobStats = new Hashtable<>();
 
     private JobsSchedulerConfig mConfig;
 
     // in milliseconds. daemon wakeup interval, default 1 minute.
     private long mInterval = 0;
 
+    private int mThreads;
+    private String mOverlap = OVERLAP_SKIP;
+    private boolean mShutdown;
+
+    // in seconds
+    int mShutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+
     // singleton enforcement
 
     private static JobsScheduler mInstance = new JobsScheduler();
@@ -127,7 +182,8 @@ public class JobsScheduler implements Runnable {
 
     // end singleton enforcement.
 
-    private JobsScheduler() {
+    // package-private for testing
+    JobsScheduler() {
     }
 
     /**
@@ -196,6 +252,7 @@ public class JobsScheduler implements Runnable {
 
                 // register the job
                 mJobs.put(jobName, job);
+                mJobStats.put(jobName, new JobStats(jobName));
 
             } catch (EBaseException e) {
                 logger.error(CMS.getLogMessage("CMSCORE_JOBS_INIT_ERROR", e.toString()), e);
@@ -207,6 +264,22 @@ public class JobsScheduler implements Runnable {
             }
         }
 
+        mThreads = mConfig.getInteger(PROP_THREADS, 0);
+        if (mThreads <= 0) {
+            mThreads = Math.max(1, mJobs.size());
+        }
+        logger.info("JobsScheduler: - threads: " + mThreads);
+
+        mOverlap = mConfig.getString(PROP_OVERLAP, OVERLAP_SKIP);
+        if (!OVERLAP_SKIP.equals(mOverlap) && !OVERLAP_QUEUE.equals(mOverlap)) {
+            logger.warn("JobsScheduler: Invalid overlap policy: " + mOverlap);
+            mOverlap = OVERLAP_SKIP;
+        }
+        logger.info("JobsScheduler: - overlap: " + mOverlap);
+
+        mShutdownTimeout = mConfig.getInteger(PROP_SHUTDOWN_TIMEOUT, DEFAULT_SHUTDOWN_TIMEOUT);
+        logger.info("JobsScheduler: - shutdown timeout: " + mShutdownTimeout + " seconds");
+
         // are we enabled?
         if (mConfig.getBoolean(PROP_ENABLED, false) == true) {
             // start the daemon thread
@@ -235,115 +308,203 @@ public class JobsScheduler implements Runnable {
     /**
      * when wake up:
      * . execute the scheduled job(s)
-     * * if job still running from previous interval, skip it
-     * . figure out when is the next wakeup time (every interval). If
-     * current wakup time runs over the interval, skip the missed interval(s)
-     * . sleep till the next wakeup time
+     * * if job still running from previous interval, skip or queue it
+     * depending on the overlap policy
+     * <p>
+     * The scheduler wakes up at the 1st second of the minute and then
+     * every interval. If the current wakeup runs over the interval,
+     * the missed interval(s) are skipped.
      */
     @Override
     public void run() {
-        long wokeupTime = 0;
-
-        while (true) {
-            // get time now
-            Calendar cal = Calendar.getInstance();
-            long rightNow = cal.getTime().getTime();
-            long duration;
-            long second = cal.get(Calendar.SECOND);
 
-            if (second != 1) { // scheduler needs adjustment
-                // adjust to wake up at 1st second
-                long milliSec = cal.get(Calendar.MILLISECOND);
-
-                // possible to be at exactly second 1, millisecond 0,
-                // just let it skip to next second, fine.
-                duration = (60 - second) * 1000 + 1000 - milliSec;
-                logger.info("JobsScheduler: adjustment for cron behavior: sleep for " + duration + " milliseconds");
-            } else {
+        // woke up...
+        try {
+            if (mConfig.getBoolean(PROP_ENABLED, false) == false) {
+                mScheduler.shutdown();
+                return;
+            }
+        } catch (Exception e) {
+            mScheduler.shutdown();
+            return;
+        }
 
-                // when is the next wakeup time for the JobsScheduler?
-                // reset next wakeup time - wake up every preset interval
+        // get time now
+        Calendar cal = Calendar.getInstance();
 
-                duration = mInterval - rightNow + wokeupTime;
+        for (Enumeration<Job> e = mJobs.elements(); e.hasMoreElements(); ) {
+            Job job = e.nextElement();
 
+            try {
+                if (!job.isEnabled())
+                    continue;
+            } catch (Exception ex) {
+                continue; // ignore this job
             }
 
-            while (duration < 0) {
-                duration += mInterval;
+            // start the job if necessary
+            if (isShowTime(job, cal) == true) {
+                startJob(job.getId());
             }
+        }
+    }
 
-            if (duration != 0) {
-                try {
-                    Thread.sleep(duration);
-                } catch (InterruptedException e) {
-                    System.out.println(e);
-                }
-            }
+    public synchronized void startJob(String id) {
 
-            // if (duration == 0), it's time
+        Job job = mJobs.get(id);
+        if (job == null) {
+            logger.warn("JobsScheduler: Job " + id + " not found");
+            return;
+        }
 
-            // woke up...
-            try {
-                if (mConfig.getBoolean(PROP_ENABLED, false) == false) {
-                    return;
-                }
-            } catch (Exception e) {
+        JobStats stats = mJobStats.computeIfAbsent(id, JobStats::new);
+
+        if (stats.running) {
+
+            if (OVERLAP_QUEUE.equals(mOverlap) && !stats.queued) {
+                logger.info("JobsScheduler: Job " + id + " still running, queuing next run");
+                stats.queued = true;
                 return;
             }
 
-            // check to see if new jobs are registered
-            // ... later
+            logger.info("JobsScheduler: Job " + id + " still running");
+            return;
+        }
 
-            // get time now
-            cal = Calendar.getInstance();
+        submitJob(job, stats);
+    }
 
-            /**
-             * Get the current time outside the jobs while loop
-             * to make sure that the rightful jobs are run
-             * -- milliseconds from the epoch
-             */
-            wokeupTime = cal.getTime().getTime();
+    private void submitJob(Job job, JobStats stats) {
 
-            for (Enumeration<Job> e = mJobs.elements(); e.hasMoreElements(); ) {
-                Job job = e.nextElement();
+        logger.info("JobsScheduler: Starting job " + stats.id);
 
-                try {
-                    if (!job.isEnabled())
-                        continue;
-                } catch (Exception ex) {
-                    continue; // ignore this job
-                }
+        if (mExecutor == null) {
+            // jobs can be started manually while the daemon is disabled
+            createExecutor();
+        }
 
-                // first, check to see if thread already running
-                // ...
+        try {
+            stats.running = true;
+            stats.started = false;
+            stats.future = mExecutor.submit(() -> runJob(job, stats));
 
-                // start the job thread if necessary
-                if (isShowTime(job, cal) == true) {
-                    //	logger.info("JobsScheduler: show time for: "+job.getId());
+        } catch (RejectedExecutionException e) {
+            logger.warn("JobsScheduler: Unable to start job " + stats.id + ": " + e.getMessage());
+            stats.running = false;
+        }
+    }
 
-                    startJob(job.getId());
-                }
-            } // for
+    private void runJob(Job job, JobStats stats) {
+
+        long startTime;
+
+        synchronized (this) {
+            if (stats.future == null || stats.future.isCancelled()) {
+                // cancelled before it started
+                return;
+            }
+
+            startTime = System.currentTimeMillis();
+            stats.started = true;
+            stats.lastStartTime = new Date(startTime);
+
+            // clear stop request and counters from the previous run
+            job.reset();
+        }
+
+        boolean failed = false;
+
+        try {
+            job.run();
 
+        } catch (Exception e) {
+            logger.error("JobsScheduler: Job " + stats.id + " failed: " + e.getMessage(), e);
+            failed = true;
+
+        } finally {
+            finishJob(job, stats, startTime, failed);
         }
     }
 
-    public synchronized void startJob(String id) {
+    private synchronized void finishJob(Job job, JobStats stats, long startTime, boolean failed) {
 
-        Thread thread = mJobThreads.get(id);
+        long duration = System.currentTimeMillis() - startTime;
+        long records = job.getRecordsProcessed();
 
-        if (thread != null && thread.isAlive()) {
-            logger.info("JobsScheduler: Job " + id + " still running");
-            return;
+        logger.info("JobsScheduler: Job " + stats.id + " finished in " + duration
+                + " ms, records processed: " + records);
+
+        stats.runs++;
+        if (failed) {
+            stats.failures++;
+        }
+
+        stats.lastDuration = duration;
+        stats.lastRecordsProcessed = records;
+        stats.totalRecordsProcessed += records;
+
+        stats.running = false;
+        stats.started = false;
+        stats.future = null;
+
+        if (stats.queued) {
+            stats.queued = false;
+            if (!mShutdown) {
+                submitJob(job, stats);
+            }
         }
+    }
 
-        logger.info("JobsScheduler: Starting job " + id);
+    /**
+     * Cancels a job. A pending run is removed. A running job is asked
+     * to stop and will finish at the next record it processes.
+     *
+     * @param id job ID
+     * @return true if the job was running or queued
+     */
+    public synchronized boolean cancelJob(String id) {
 
         Job job = mJobs.get(id);
-        thread = new Thread(job, id);
-        mJobThreads.put(id, thread);
+        JobStats stats = mJobStats.get(id);
+
+        if (job == null || stats == null || !stats.running) {
+            return false;
+        }
+
+        logger.info("JobsScheduler: Cancelling job " + id);
+
+        stats.queued = false;
+        stats.cancellations++;
 
-        thread.start();
+        if (!stats.started) {
+            // remove the run from the executor queue
+            stats.future.cancel(false);
+            stats.running = false;
+            stats.future = null;
+            return true;
+        }
+
+        job.stop();
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the execution state and statistics of a job.
+     *
+     * @param id job ID
+     * @return job statistics, or null if the job does not exist
+     */
+    public synchronized JobStats getJobStats(String id) {
+        JobStats stats = mJobStats.get(id);
+        return stats == null ? null : stats.copy();
+    }
+
+    public synchronized Collection<JobStats> getJobStats() {
+        Collection<JobStats> list = new ArrayList<>();
+        for (JobStats stats : mJobStats.values()) {
+            list.add(stats.copy());
+        }
+        return list;
     }
 
     /**
@@ -454,11 +615,38 @@ public class JobsScheduler implements Runnable {
      * Starts up the JobsScheduler daemon. Usually called from the
      * initialization method when it's successfully initialized.
      */
-    public void startDaemon() {
-        mScheduleThread = new Thread(this, "JobScheduler");
+    public synchronized void startDaemon() {
+
+        if (mExecutor == null) {
+            createExecutor();
+        }
+
+        mScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "JobScheduler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // adjust to wake up at 1st second for cron behavior
+        Calendar cal = Calendar.getInstance();
+        long second = cal.get(Calendar.SECOND);
+        long milliSec = cal.get(Calendar.MILLISECOND);
+        long delay = ((60 - second) * 1000 + 1000 - milliSec) % MINUTE_MILLI;
+
+        logger.info("JobsScheduler: adjustment for cron behavior: delay " + delay + " milliseconds");
+
+        // fixed rate skips the missed intervals if a wakeup runs over
+        mScheduler.scheduleAtFixedRate(this, delay, Math.max(mInterval, 1000), TimeUnit.MILLISECONDS);
+
         logger.info("JobsScheduler: started Jobs Scheduler daemon thread");
-        mScheduleThread.setDaemon(true);
-        mScheduleThread.start();
+    }
+
+    private void createExecutor() {
+
+        AtomicInteger counter = new AtomicInteger();
+
+        mExecutor = Executors.newFixedThreadPool(Math.max(1, mThreads), r ->
+                new Thread(r, "JobsScheduler-" + counter.incrementAndGet()));
     }
 
     /**
@@ -473,11 +661,42 @@ public class JobsScheduler implements Runnable {
     /**
      * shuts down Jobs one by one.
      * <P>
+     * Running jobs are asked to stop. Jobs that do not finish within
+     * the shutdown timeout are interrupted.
      */
     public void shutdown() {
+
+        synchronized (this) {
+            mShutdown = true;
+            for (JobStats stats : mJobStats.values()) {
+                stats.queued = false;
+            }
+        }
+
         for (Job job : mJobs.values()) {
             job.stop();
         }
+
+        if (mScheduler != null) {
+            mScheduler.shutdownNow();
+        }
+
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+
+            try {
+                if (!mExecutor.awaitTermination(mShutdownTimeout, TimeUnit.SECONDS)) {
+                    logger.warn("JobsScheduler: Jobs still running after " + mShutdownTimeout
+                            + " seconds, interrupting");
+                    mExecutor.shutdownNow();
+                }
+
+            } catch (InterruptedException e) {
+                logger.warn("JobsScheduler: Interrupted while waiting for jobs, interrupting jobs");
+                mExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     /**
@@ -17,10 +17,17 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.ldapconn;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.ldap.ELdapException;
 import com.netscape.certsrv.ldap.ELdapServerDownException;
 import com.netscape.certsrv.ldap.ILdapConnFactory;
+import com.netscape.cmscore.metrics.Histogram;
+import com.netscape.cmscore.metrics.Metric;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 import com.netscape.cmsutil.password.IPasswordStore;
 
 import netscape.ldap.LDAPConnection;
@@ -66,6 +73,14 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
 
     public static final String PROP_ERROR_IF_DOWN = "errorIfDown";
 
+    public static final String PROP_POOL_TYPE = "poolType";
+    public static final String PROP_BORROW_TIMEOUT = "borrowTimeout";
+    public static final String PROP_MAX_IDLE_TIME = "maxIdleTime";
+    public static final String PROP_HEALTH_CHECK_INTERVAL = "healthCheckInterval";
+
+    public static final String POOL_TYPE_DEFAULT = "default";
+    public static final String POOL_TYPE_NONBLOCKING = "nonblocking";
+
     private int mNumConns = 0; // number of available conns in array
     private int mTotal = 0; // total num conns
 
@@ -73,6 +88,16 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
     private LdapBoundConnection mMasterConn = null; // master connection object.
     private LdapBoundConnection[] mConns;
 
+    private String mPoolType = POOL_TYPE_DEFAULT;
+    private int mBorrowTimeout = 30; // seconds
+    private int mMaxIdleTime = 600; // seconds
+    private int mHealthCheckInterval = 60; // seconds
+
+    /**
+     * non-blocking pool used instead of mConns if poolType is nonblocking
+     */
+    private volatile LdapConnPool mPool;
+
     /**
      * return error if server is down at creation time.
      */
@@ -83,6 +108,21 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
      */
     private boolean mDefErrorIfDown = false;
 
+    // time to obtain a connection, including waiting for a free connection
+    private Histogram mBorrowTime;
+
+    // Factories with the same ID might exist at the same time (e.g. a
+    // short-lived factory next to the subsystem's factory), so the
+    // gauges are also labeled with a unique number of the factory.
+    private static final AtomicInteger factoryCount = new AtomicInteger();
+    private final String mFactoryLabel = Integer.toString(factoryCount.incrementAndGet());
+
+    // gauges referencing this factory, removed on reset() and shutdown()
+    private List<Metric> mMetrics = new ArrayList<>();
+
+    // serializes reconnecting the master connection, see createPooledConnection()
+    private final Object mReconnectLock = new Object();
+
     /**
      * Constructor for initializing from the config store.
      * must be followed by init(ConfigStore)
@@ -90,22 +130,41 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
     public LdapBoundConnFactory(String id) {
         logger.debug("Creating LdapBoundConnFactor(" + id + ")");
         this.id = id;
+        mBorrowTime = createBorrowTime(id);
     }
 
     public LdapBoundConnFactory(String id, boolean defErrorIfDown) {
         logger.debug("Creating LdapBoundConnFactor(" + id + ")");
         this.id = id;
         mDefErrorIfDown = defErrorIfDown;
+        mBorrowTime = createBorrowTime(id);
+    }
+
+    static Histogram createBorrowTime(String id) {
+        return MetricsRegistry.getInstance().getHistogram(
+                "pki_ldap_borrow_duration_seconds",
+                "Time to obtain a connection from the LDAP connection pool",
+                "pool", id);
     }
 
     @Override
     public int totalConn() {
+        LdapConnPool pool = mPool;
+        if (pool != null) {
+            return pool.totalConn();
+        }
         return mTotal;
     }
 
     @Override
-    public synchronized int freeConn() {
-        return mNumConns;
+    public int freeConn() {
+        LdapConnPool pool = mPool;
+        if (pool != null) {
+            return pool.freeConn();
+        }
+        synchronized (this) {
+            return mNumConns;
+        }
     }
 
     @Override
@@ -223,6 +282,11 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
         doCloning = dbConfig.getBoolean("doCloning", true);
         logger.debug("LdapBoundConnFactory: doCloning: " + doCloning);
 
+        mPoolType = dbConfig.getString(PROP_POOL_TYPE, POOL_TYPE_DEFAULT);
+        mBorrowTimeout = dbConfig.getInteger(PROP_BORROW_TIMEOUT, mBorrowTimeout);
+        mMaxIdleTime = dbConfig.getInteger(PROP_MAX_IDLE_TIME, mMaxIdleTime);
+        mHealthCheckInterval = dbConfig.getInteger(PROP_HEALTH_CHECK_INTERVAL, mHealthCheckInterval);
+
         init();
     }
 
@@ -256,6 +320,35 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
         logger.debug("LdapBoundConnFactory: port: " + mConnInfo.getPort());
         logger.debug("LdapBoundConnFactory: secure: " + mConnInfo.getSecure());
         logger.debug("LdapBoundConnFactory: authentication: " + mAuthInfo.getAuthType());
+        logger.debug("LdapBoundConnFactory: pool type: " + mPoolType);
+
+        registerMetrics();
+
+        if (POOL_TYPE_NONBLOCKING.equals(mPoolType)) {
+
+            if (mBorrowTimeout <= 0)
+                throw new ELdapException("Invalid borrow timeout: " + mBorrowTimeout);
+
+            // Create master connection to check the server and to clone others
+            makeConnection(mErrorIfDown);
+
+            LdapConnPool pool = new LdapConnPool(
+                    this,
+                    id,
+                    mMinConns,
+                    mMaxConns,
+                    mMaxResults,
+                    mBorrowTimeout,
+                    mMaxIdleTime,
+                    mHealthCheckInterval);
+            pool.init();
+
+            mPool = pool;
+            return;
+        }
+
+        if (!POOL_TYPE_DEFAULT.equals(mPoolType))
+            throw new ELdapException("Invalid pool type: " + mPoolType);
 
         mConns = new LdapBoundConnection[mMaxConns];
 
@@ -266,6 +359,106 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
         makeMinimum();
     }
 
+    /**
+     * Returns the label that distinguishes this factory from other
+     * factories with the same ID in the metrics.
+     */
+    String getFactoryLabel() {
+        return mFactoryLabel;
+    }
+
+    private void registerMetrics() {
+
+        // the factory might be initialized again after reset()
+        unregisterMetrics();
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        mMetrics.add(registry.getGauge(
+                "pki_ldap_pool_connections",
+                "Number of LDAP connections in the pool",
+                this::totalConn,
+                "pool", id, "factory", mFactoryLabel));
+
+        mMetrics.add(registry.getGauge(
+                "pki_ldap_pool_idle_connections",
+                "Number of idle LDAP connections in the pool",
+                this::freeConn,
+                "pool", id, "factory", mFactoryLabel));
+    }
+
+    private void unregisterMetrics() {
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        for (Metric metric : mMetrics) {
+            registry.remove(metric);
+        }
+
+        mMetrics.clear();
+    }
+
+    /**
+     * Creates a new connection for the non-blocking pool, either by
+     * cloning the master connection or by making a new connection.
+     *
+     * If the master connection has to be reconnected, the connection
+     * is made without holding the factory lock, so a slow or unreachable
+     * server does not block threads returning connections or reading
+     * the pool state. Only one thread reconnects at a time, the others
+     * wait for it and clone the new master connection.
+     */
+    LdapBoundConnection createPooledConnection() throws ELdapException {
+
+        if (!doCloning) {
+            return makeNewConnection(true);
+        }
+
+        LdapBoundConnection master;
+
+        synchronized (this) {
+            master = mMasterConn;
+            if (master != null && master.isConnected()) {
+                return (LdapBoundConnection) master.clone();
+            }
+        }
+
+        synchronized (mReconnectLock) {
+
+            synchronized (this) {
+                // another thread might have reconnected in the meantime
+                if (mMasterConn != master && mMasterConn != null && mMasterConn.isConnected()) {
+                    return (LdapBoundConnection) mMasterConn.clone();
+                }
+            }
+
+            LdapBoundConnection newMaster;
+            try {
+                newMaster = makeNewConnection(true);
+
+            } catch (ELdapException e) {
+                synchronized (this) {
+                    if (mMasterConn == master) {
+                        mMasterConn = null;
+                    }
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                mMasterConn = newMaster;
+                return (LdapBoundConnection) newMaster.clone();
+            }
+        }
+    }
+
+    /**
+     * Returns the non-blocking pool, or null if the default pool is used.
+     */
+    public LdapConnPool getPool() {
+        return mPool;
+    }
+
     /**
      * makes the initial master connection used to clone others..
      *
@@ -427,7 +620,25 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
      * }
      * </pre>
      */
-    public synchronized LdapBoundConnection getConn(boolean waitForConn)
+    public LdapBoundConnection getConn(boolean waitForConn)
+            throws ELdapException {
+
+        long startTime = System.nanoTime();
+
+        try {
+            LdapConnPool pool = mPool;
+            if (pool != null) {
+                return pool.getConn(waitForConn);
+            }
+
+            return getPooledConn(waitForConn);
+
+        } finally {
+            mBorrowTime.observeSince(startTime);
+        }
+    }
+
+    private synchronized LdapBoundConnection getPooledConn(boolean waitForConn)
             throws ELdapException {
         boolean waited = false;
 
@@ -531,7 +742,18 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
      * </pre>
      */
     @Override
-    public synchronized void returnConn(LDAPConnection conn) {
+    public void returnConn(LDAPConnection conn) {
+
+        LdapConnPool pool = mPool;
+        if (pool != null) {
+            pool.returnConn(conn);
+            return;
+        }
+
+        returnPooledConn(conn);
+    }
+
+    private synchronized void returnPooledConn(LDAPConnection conn) {
         if (conn == null) {
             return;
         }
@@ -576,6 +798,19 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
     public synchronized void reset()
             throws ELdapException {
         logger.debug("Destroying LdapBoundConnFactory(" + id + ")");
+
+        if (mPool != null) {
+            mPool.reset();
+            mPool = null;
+            closeMasterConn();
+            unregisterMetrics();
+
+            if (mAuthInfo != null) {
+                mAuthInfo.reset();
+            }
+            return;
+        }
+
         if (mNumConns == mTotal) {
             for (int i = 0; i < mNumConns; i++) {
                 try {
@@ -603,6 +838,8 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
             throw new ELdapException(message);
         }
 
+        unregisterMetrics();
+
         if (mAuthInfo != null) {
             mAuthInfo.reset();
         }
@@ -612,6 +849,11 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
 
         logger.debug("Destroying LdapBoundConnFactory(" + id + ")");
 
+        if (mPool != null) {
+            mPool.shutdown();
+            mPool = null;
+        }
+
         for (int i = 0; i < mNumConns; i++) {
             if (mConns[i] != null) {
                 mConns[i].close();
@@ -619,11 +861,8 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
             }
         }
 
-        if (mMasterConn != null) {
-            logger.debug("LdapBoundConnFactory: disconnecting master connection");
-            mMasterConn.close();
-            mMasterConn = null;
-        }
+        closeMasterConn();
+        unregisterMetrics();
 
         mTotal = 0;
         mNumConns = 0;
@@ -633,6 +872,14 @@ public class LdapBoundConnFactory implements ILdapConnFactory {
         }
     }
 
+    private void closeMasterConn() {
+        if (mMasterConn != null) {
+            logger.debug("LdapBoundConnFactory: disconnecting master connection");
+            mMasterConn.close();
+            mMasterConn = null;
+        }
+    }
+
     /**
      * return ldap connection info
      */
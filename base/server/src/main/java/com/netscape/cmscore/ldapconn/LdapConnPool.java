@@ -0,0 +1,465 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.ldapconn;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.netscape.certsrv.ldap.ELdapException;
+import com.netscape.certsrv.ldap.ELdapServerDownException;
+import com.netscape.certsrv.ldap.ILdapConnFactory;
+import com.netscape.cmscore.metrics.Counter;
+import com.netscape.cmscore.metrics.Metric;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+
+import netscape.ldap.LDAPConnection;
+import netscape.ldap.LDAPException;
+import netscape.ldap.LDAPSearchResults;
+import netscape.ldap.LDAPv3;
+
+/**
+ * Non-blocking pool of LDAP connections used by LdapBoundConnFactory
+ * when <LDAP>.poolType is set to "nonblocking".
+ *
+ * Idle connections are kept in a lock-free stack. The number of
+ * connections is bounded by a fair semaphore, so threads waiting for
+ * a connection are served in order and give up after a timeout.
+ * Connections are created, checked, and reconnected outside of any
+ * pool-wide lock, and a background task checks idle connections with
+ * a root DSE search, closes connections that are broken or have been
+ * idle for too long, and restores the minimum number of connections.
+ */
+public class LdapConnPool implements ILdapConnFactory {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LdapConnPool.class);
+
+    private LdapBoundConnFactory factory;
+    private String id;
+
+    private int minConns;
+    private int maxConns;
+    private int maxResults;
+    private long borrowTimeout;
+    private long maxIdleTime;
+    private int healthCheckInterval;
+
+    private ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    private Semaphore permits;
+    private AtomicInteger total = new AtomicInteger();
+    private AtomicInteger waiters = new AtomicInteger();
+
+    private LongAdder borrowCount = new LongAdder();
+    private LongAdder borrowTime = new LongAdder();
+    private LongAccumulator maxBorrowTime = new LongAccumulator(Long::max, 0);
+    private Counter timeoutCount;
+    private Counter reconnectCount;
+
+    // gauges referencing this pool, removed on shutdown()
+    private List<Metric> metrics = new ArrayList<>();
+
+    private ScheduledExecutorService executor;
+
+    public LdapConnPool(
+            LdapBoundConnFactory factory,
+            String id,
+            int minConns,
+            int maxConns,
+            int maxResults,
+            int borrowTimeout,
+            int maxIdleTime,
+            int healthCheckInterval) {
+
+        this.factory = factory;
+        this.id = id;
+        this.minConns = minConns;
+        this.maxConns = maxConns;
+        this.maxResults = maxResults;
+        this.borrowTimeout = borrowTimeout * 1000L;
+        this.maxIdleTime = maxIdleTime * 1000L;
+        this.healthCheckInterval = healthCheckInterval;
+
+        permits = new Semaphore(maxConns, true);
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        timeoutCount = registry.getCounter(
+                "pki_ldap_pool_timeouts_total",
+                "Number of times no LDAP connection became available within the borrow timeout",
+                "pool", id);
+
+        reconnectCount = registry.getCounter(
+                "pki_ldap_pool_reconnects_total",
+                "Number of pooled LDAP connections that had to be reconnected",
+                "pool", id);
+
+        metrics.add(registry.getGauge(
+                "pki_ldap_pool_in_use_connections",
+                "Number of LDAP connections borrowed from the pool",
+                this::getInUse,
+                "pool", id, "factory", factory.getFactoryLabel()));
+
+        metrics.add(registry.getGauge(
+                "pki_ldap_pool_waiters",
+                "Number of threads waiting for an LDAP connection",
+                this::getWaiters,
+                "pool", id, "factory", factory.getFactoryLabel()));
+    }
+
+    /**
+     * Creates the minimum number of connections and starts the
+     * background health check.
+     */
+    public void init() throws ELdapException {
+
+        logger.debug("LdapConnPool(" + id + "): creating " + minConns + " connections");
+
+        try {
+            makeMinimum();
+        } catch (ELdapServerDownException e) {
+            // the health check will try again
+            logger.warn("LdapConnPool(" + id + "): " + e.getMessage());
+        }
+
+        if (healthCheckInterval <= 0) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LdapConnPool-" + id);
+            t.setDaemon(true);
+            return t;
+        });
+
+        executor.scheduleWithFixedDelay(
+                this::checkHealth,
+                healthCheckInterval,
+                healthCheckInterval,
+                TimeUnit.SECONDS);
+    }
+
+    @Override
+    public int totalConn() {
+        return total.get();
+    }
+
+    @Override
+    public int freeConn() {
+        return idle.size();
+    }
+
+    @Override
+    public int maxConn() {
+        return maxConns;
+    }
+
+    public int getInUse() {
+        return maxConns - permits.availablePermits();
+    }
+
+    public int getWaiters() {
+        return waiters.get();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /**
+     * Returns the total time spent borrowing connections in nanoseconds.
+     */
+    public long getBorrowTime() {
+        return borrowTime.sum();
+    }
+
+    /**
+     * Returns the longest time spent borrowing a connection in nanoseconds.
+     */
+    public long getMaxBorrowTime() {
+        return maxBorrowTime.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    @Override
+    public LDAPConnection getConn() throws ELdapException {
+        return getConn(true);
+    }
+
+    /**
+     * Returns a connection from the pool.
+     *
+     * @param waitForConn whether to wait for a connection if all
+     * connections are in use, otherwise null is returned
+     */
+    public LdapBoundConnection getConn(boolean waitForConn) throws ELdapException {
+
+        long start = System.nanoTime();
+
+        if (!permits.tryAcquire()) {
+
+            if (!waitForConn) {
+                return null;
+            }
+
+            logger.warn("LdapConnPool(" + id + "): out of LDAP connections");
+            waiters.incrementAndGet();
+
+            try {
+                if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                    timeoutCount.increment();
+                    throw new ELdapException("Unable to get LDAP connection from " + id
+                            + " within " + borrowTimeout / 1000 + " seconds");
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ELdapException("Interrupted while waiting for LDAP connection: " + e.getMessage(), e);
+
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+
+        LdapBoundConnection conn;
+
+        try {
+            conn = takeConnection();
+
+            // Reset the SIZELIMIT option in case the previous owner changed it.
+            conn.setOption(LDAPv3.SIZELIMIT, maxResults);
+
+        } catch (LDAPException e) {
+            permits.release();
+            throw new ELdapException("Unable to set LDAP size limit: " + e.getMessage(), e);
+
+        } catch (ELdapException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        long time = System.nanoTime() - start;
+        borrowCount.increment();
+        borrowTime.add(time);
+        maxBorrowTime.accumulate(time);
+
+        return conn;
+    }
+
+    /**
+     * Takes a live idle connection or creates a new one.
+     * The caller must hold a permit.
+     */
+    private LdapBoundConnection takeConnection() throws ELdapException {
+
+        IdleConnection ic;
+        while ((ic = idle.pollFirst()) != null) {
+
+            if (ic.conn.isConnected()) {
+                return ic.conn;
+            }
+
+            logger.debug("LdapConnPool(" + id + "): discarding disconnected connection");
+            close(ic.conn);
+            reconnectCount.increment();
+        }
+
+        LdapBoundConnection conn = factory.createPooledConnection();
+        if (conn == null) {
+            throw new ELdapServerDownException("LDAP server is unavailable for " + id);
+        }
+
+        total.incrementAndGet();
+        return conn;
+    }
+
+    @Override
+    public void returnConn(LDAPConnection conn) {
+
+        if (conn == null) {
+            return;
+        }
+
+        if (!(conn instanceof LdapBoundConnection)) {
+            logger.warn("LdapConnPool(" + id + "): Unable to return connection: not a bound connection");
+            return;
+        }
+
+        LdapBoundConnection boundconn = (LdapBoundConnection) conn;
+
+        if (boundconn.isConnected()) {
+            idle.offerFirst(new IdleConnection(boundconn, System.currentTimeMillis()));
+        } else {
+            close(boundconn);
+        }
+
+        permits.release();
+    }
+
+    private void close(LdapBoundConnection conn) {
+        total.decrementAndGet();
+        conn.close();
+    }
+
+    private void makeMinimum() throws ELdapException {
+
+        while (total.get() < minConns) {
+            LdapBoundConnection conn = factory.createPooledConnection();
+            if (conn == null) {
+                // server is down, the health check will try again
+                return;
+            }
+            total.incrementAndGet();
+            idle.offerLast(new IdleConnection(conn, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Closes broken connections and connections idle for longer
+     * than the maximum idle time (keeping the minimum number of
+     * connections), then restores the minimum number of connections.
+     */
+    void checkHealth() {
+
+        long now = System.currentTimeMillis();
+        int closed = 0;
+
+        Iterator<IdleConnection> i = idle.descendingIterator();
+        while (i.hasNext()) {
+            IdleConnection ic = i.next();
+
+            boolean expired = maxIdleTime > 0 && now - ic.lastUsed > maxIdleTime && total.get() > minConns;
+            if (ic.conn.isConnected() && !expired) {
+                if (checkConnection(ic)) {
+                    closed++;
+                }
+                continue;
+            }
+
+            // another thread might have taken it in the meantime
+            if (idle.removeLastOccurrence(ic)) {
+                close(ic.conn);
+                closed++;
+            }
+        }
+
+        try {
+            makeMinimum();
+        } catch (Exception e) {
+            logger.warn("LdapConnPool(" + id + "): Unable to create connections: " + e.getMessage(), e);
+        }
+
+        logger.debug("LdapConnPool(" + id + "): closed " + closed + " connections, total: " + total.get()
+                + ", idle: " + idle.size() + ", in use: " + getInUse() + ", waiters: " + waiters.get());
+    }
+
+    /**
+     * Checks an idle connection with a base search of the root DSE,
+     * since isConnected() does not notice if the server or a firewall
+     * has dropped the connection. The connection is taken out of the
+     * pool during the search, and it is skipped if all connections
+     * are in use.
+     *
+     * @return true if the connection was broken and has been closed
+     */
+    private boolean checkConnection(IdleConnection ic) {
+
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+
+        try {
+            // another thread might have taken it in the meantime
+            if (!idle.removeLastOccurrence(ic)) {
+                return false;
+            }
+
+            try {
+                LDAPSearchResults res = ic.conn.search(
+                        "",
+                        LDAPv3.SCOPE_BASE,
+                        "(objectclass=*)",
+                        new String[] { LDAPv3.NO_ATTRS },
+                        true);
+
+                while (res.hasMoreElements()) {
+                    res.next();
+                }
+
+            } catch (LDAPException e) {
+                logger.debug("LdapConnPool(" + id + "): closing broken connection: " + e.getMessage());
+                close(ic.conn);
+                return true;
+            }
+
+            idle.offerLast(ic);
+            return false;
+
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void reset() throws ELdapException {
+
+        if (getInUse() > 0) {
+            String message = "Unable to reset LDAP connection pool due to outstanding connections";
+            logger.error("LdapConnPool(" + id + "): " + message);
+            throw new ELdapException(message);
+        }
+
+        shutdown();
+    }
+
+    public void shutdown() {
+
+        logger.debug("LdapConnPool(" + id + "): shutting down");
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+
+        IdleConnection ic;
+        while ((ic = idle.pollFirst()) != null) {
+            close(ic.conn);
+        }
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+
+        for (Metric metric : metrics) {
+            registry.remove(metric);
+        }
+
+        metrics.clear();
+    }
+
+    static class IdleConnection {
+
+        final LdapBoundConnection conn;
+        final long lastUsed;
+
+        IdleConnection(LdapBoundConnection conn, long lastUsed) {
+            this.conn = conn;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A monotonically increasing counter maintained by its owner, e.g. the
+ * number of events written by a log. The value is read from a supplier
+ * when the metrics are exported.
+ */
+public class FunctionCounter extends Metric {
+
+    private volatile LongSupplier supplier;
+
+    public FunctionCounter(String name, String help, String labels, LongSupplier supplier) {
+        super(name, help, labels);
+        this.supplier = supplier;
+    }
+
+    public void setSupplier(LongSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    public long get() {
+        return supplier.getAsLong();
+    }
+
+    @Override
+    public String getType() {
+        return "counter";
+    }
+
+    @Override
+    public void write(StringBuilder sb) {
+        writeSample(sb, null, null, Long.toString(get()));
+    }
+}
@@ -0,0 +1,41 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value that can go up and down, e.g. the number of connections
+ * in a pool. The value is read from a supplier when the metrics are
+ * exported, so the owner does not need to update it.
+ */
+public class Gauge extends Metric {
+
+    private volatile LongSupplier supplier;
+
+    public Gauge(String name, String help, String labels, LongSupplier supplier) {
+        super(name, help, labels);
+        this.supplier = supplier;
+    }
+
+    public void setSupplier(LongSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    public long get() {
+        return supplier.getAsLong();
+    }
+
+    @Override
+    public String getType() {
+        return "gauge";
+    }
+
+    @Override
+    public void write(StringBuilder sb) {
+        writeSample(sb, null, null, Long.toString(get()));
+    }
+}
@@ -0,0 +1,112 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed buckets.
+ *
+ * Durations are recorded in nanoseconds into striped counters, so
+ * recording a value does not require any locking. Percentiles can be
+ * estimated from the exported buckets, e.g. with histogram_quantile()
+ * in Prometheus.
+ */
+public class Histogram extends Metric {
+
+    // upper bounds of the buckets in seconds
+    public static final double[] BUCKETS = {
+        0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+        0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+
+    private static final long[] BOUNDS = new long[BUCKETS.length];
+    private static final String[] BOUND_LABELS = new String[BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BOUNDS[i] = (long) (BUCKETS[i] * TimeUnit.SECONDS.toNanos(1));
+            BOUND_LABELS[i] = "le=\"" + BigDecimal.valueOf(BUCKETS[i]).stripTrailingZeros().toPlainString() + "\"";
+        }
+    }
+
+    // the last bucket counts values above the largest bound
+    private LongAdder[] counts = new LongAdder[BUCKETS.length + 1];
+    private LongAdder sum = new LongAdder();
+
+    public Histogram(String name, String help, String labels) {
+        super(name, help, labels);
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration in nanoseconds.
+     */
+    public void observe(long nanos) {
+
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        int i = 0;
+        while (i < BOUNDS.length && nanos > BOUNDS[i]) {
+            i++;
+        }
+
+        counts[i].increment();
+        sum.add(nanos);
+    }
+
+    /**
+     * Records the time elapsed since the given System.nanoTime() value.
+     */
+    public void observeSince(long startTime) {
+        observe(System.nanoTime() - startTime);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder c : counts) {
+            count += c.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of the recorded durations in nanoseconds.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    @Override
+    public String getType() {
+        return "histogram";
+    }
+
+    @Override
+    public void write(StringBuilder sb) {
+
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS.length; i++) {
+            count += counts[i].sum();
+            writeSample(sb, "_bucket", BOUND_LABELS[i], Long.toString(count));
+        }
+
+        count += counts[BUCKETS.length].sum();
+        writeSample(sb, "_bucket", "le=\"+Inf\"", Long.toString(count));
+
+        double seconds = (double) sum.sum() / TimeUnit.SECONDS.toNanos(1);
+        writeSample(sb, "_sum", null, Double.toString(seconds));
+        writeSample(sb, "_count", null, Long.toString(count));
+    }
+}
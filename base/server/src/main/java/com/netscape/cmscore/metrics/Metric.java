@@ -0,0 +1,70 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.metrics;
+
+/**
+ * A metric in the metrics registry, identified by its name and labels.
+ */
+public abstract class Metric {
+
+    protected String name;
+    protected String help;
+
+    // formatted labels without braces, e.g. operation="add"
+    protected String labels;
+
+    protected Metric(String name, String help, String labels) {
+        this.name = name;
+        this.help = help;
+        this.labels = labels;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public String getLabels() {
+        return labels;
+    }
+
+    /**
+     * Returns the metric type in the Prometheus text format.
+     */
+    public abstract String getType();
+
+    /**
+     * Writes the samples of this metric in the Prometheus text format.
+     */
+    public abstract void write(StringBuilder sb);
+
+    protected void writeSample(StringBuilder sb, String suffix, String extraLabels, String value) {
+
+        sb.append(name);
+        if (suffix != null) {
+            sb.append(suffix);
+        }
+
+        if (!labels.isEmpty() || extraLabels != null) {
+            sb.append('{');
+            sb.append(labels);
+            if (extraLabels != null) {
+                if (!labels.isEmpty()) {
+                    sb.append(',');
+                }
+                sb.append(extraLabels);
+            }
+            sb.append('}');
+        }
+
+        sb.append(' ');
+        sb.append(value);
+        sb.append('\n');
+    }
+}
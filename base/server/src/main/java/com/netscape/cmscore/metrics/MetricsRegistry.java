@@ -0,0 +1,191 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the counters, gauges, and latency histograms of the subsystem.
+ *
+ * Metrics are created on first use and kept for the lifetime of the
+ * subsystem. Callers on hot paths should keep a reference to the
+ * metric instead of looking it up for each operation. The metrics
+ * can be exported in the Prometheus text format.
+ */
+public class MetricsRegistry {
+
+    private static MetricsRegistry instance = new MetricsRegistry();
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    // name{labels} -> metric
+    private Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the counter with the given name and labels,
+     * creating it if necessary.
+     *
+     * @param labels label names and values, e.g. "operation", "add"
+     */
+    public Counter getCounter(String name, String help, String... labels) {
+
+        String formattedLabels = formatLabels(labels);
+        Metric metric = metrics.computeIfAbsent(
+                name + "{" + formattedLabels + "}",
+                key -> new Counter(name, help, formattedLabels));
+
+        if (!(metric instanceof Counter)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a counter");
+        }
+
+        return (Counter) metric;
+    }
+
+    /**
+     * Returns the gauge with the given name and labels, creating it
+     * if necessary. If the gauge already exists its supplier is
+     * replaced, so a component that is reinitialized can register
+     * its gauges again.
+     *
+     * @param supplier provides the current value
+     * @param labels label names and values, e.g. "pool", "internaldb"
+     */
+    public Gauge getGauge(String name, String help, LongSupplier supplier, String... labels) {
+
+        String formattedLabels = formatLabels(labels);
+        Metric metric = metrics.computeIfAbsent(
+                name + "{" + formattedLabels + "}",
+                key -> new Gauge(name, help, formattedLabels, supplier));
+
+        if (!(metric instanceof Gauge)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a gauge");
+        }
+
+        Gauge gauge = (Gauge) metric;
+        gauge.setSupplier(supplier);
+
+        return gauge;
+    }
+
+    /**
+     * Returns the counter with the given name and labels whose value
+     * is read from a supplier, creating it if necessary. If the counter
+     * already exists its supplier is replaced.
+     *
+     * @param supplier provides the current value
+     * @param labels label names and values, e.g. "log", "transactions"
+     */
+    public FunctionCounter getFunctionCounter(String name, String help, LongSupplier supplier, String... labels) {
+
+        String formattedLabels = formatLabels(labels);
+        Metric metric = metrics.computeIfAbsent(
+                name + "{" + formattedLabels + "}",
+                key -> new FunctionCounter(name, help, formattedLabels, supplier));
+
+        if (!(metric instanceof FunctionCounter)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a function counter");
+        }
+
+        FunctionCounter counter = (FunctionCounter) metric;
+        counter.setSupplier(supplier);
+
+        return counter;
+    }
+
+    /**
+     * Returns the histogram with the given name and labels,
+     * creating it if necessary.
+     *
+     * @param labels label names and values, e.g. "operation", "add"
+     */
+    public Histogram getHistogram(String name, String help, String... labels) {
+
+        String formattedLabels = formatLabels(labels);
+        Metric metric = metrics.computeIfAbsent(
+                name + "{" + formattedLabels + "}",
+                key -> new Histogram(name, help, formattedLabels));
+
+        if (!(metric instanceof Histogram)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a histogram");
+        }
+
+        return (Histogram) metric;
+    }
+
+    /**
+     * Removes a metric, e.g. when the component providing its value
+     * is shut down. Nothing is removed if the metric has been replaced
+     * by another metric with the same name and labels.
+     *
+     * @return true if the metric was removed
+     */
+    public boolean remove(Metric metric) {
+        return metrics.remove(metric.getName() + "{" + metric.getLabels() + "}", metric);
+    }
+
+    static String formatLabels(String... labels) {
+
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Missing label value");
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < labels.length; i += 2) {
+
+            if (i > 0) {
+                sb.append(',');
+            }
+
+            String value = labels[i + 1] == null ? "" : labels[i + 1];
+
+            sb.append(labels[i]);
+            sb.append("=\"");
+            sb.append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+            sb.append('"');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Exports all metrics in the Prometheus text format.
+     */
+    public String export() {
+
+        // group the metrics by name
+        Map<String, List<Metric>> families = new TreeMap<>();
+        for (Metric metric : metrics.values()) {
+            families.computeIfAbsent(metric.getName(), name -> new ArrayList<>()).add(metric);
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (List<Metric> family : families.values()) {
+
+            Metric first = family.get(0);
+
+            sb.append("# HELP ").append(first.getName()).append(' ');
+            sb.append(first.getHelp().replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            sb.append("# TYPE ").append(first.getName()).append(' ').append(first.getType()).append('\n');
+
+            family.sort((m1, m2) -> m1.getLabels().compareTo(m2.getLabels()));
+
+            for (Metric metric : family) {
+                metric.write(sb);
+            }
+        }
+
+        return sb.toString();
+    }
+}
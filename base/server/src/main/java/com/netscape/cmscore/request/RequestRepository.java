@@ -337,7 +337,9 @@ public class RequestRepository extends Repository {
     public void removeAllObjects() throws EBaseException {
         DBSSession s = dbSubsystem.createSession();
         try {
-            DBSearchResults sr = s.search(mBaseDN, "(" + RequestRecord.ATTR_REQUEST_ID + "=*)");
+            // only the request IDs are needed
+            DBSearchResults sr = s.search(mBaseDN, "(" + RequestRecord.ATTR_REQUEST_ID + "=*)",
+                    new String[] { "objectclass", RequestRecord.ATTR_REQUEST_ID });
             while (sr.hasMoreElements()) {
                 RequestRecord r = (RequestRecord) sr.nextElement();
                 String name = "cn=" + r.getRequestId() + "," + mBaseDN;
@@ -0,0 +1,205 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.usrgrp;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of users and group memberships for UGSubsystem.
+ *
+ * Users are cached by (lowercase) user DN and by certificate, group
+ * memberships are cached as the set of (lowercase) group names per
+ * user DN. Entries expire after a timeout, and each map is cleared
+ * when it reaches the maximum size.
+ *
+ * Users are stored and returned as copies, so callers can modify
+ * the returned users without affecting the cache.
+ *
+ * Information read from LDAP before an invalidation must not be
+ * added afterwards. Callers get the generation before reading from
+ * LDAP and pass it to the put methods, which discard the entry if
+ * the cache has been invalidated in the meantime.
+ */
+public class UGCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(UGCache.class);
+
+    private int size;
+    private long timeout;
+
+    private Map<String, Entry<User>> users = new ConcurrentHashMap<>();
+    private Map<String, Entry<User>> certUsers = new ConcurrentHashMap<>();
+    private Map<String, Entry<Set<String>>> memberships = new ConcurrentHashMap<>();
+
+    // incremented whenever entries are invalidated
+    private AtomicLong generation = new AtomicLong();
+
+    private LongAdder userHits = new LongAdder();
+    private LongAdder userMisses = new LongAdder();
+    private LongAdder membershipHits = new LongAdder();
+    private LongAdder membershipMisses = new LongAdder();
+
+    /**
+     * @param size maximum number of entries per map
+     * @param timeout entry lifetime in seconds
+     */
+    public UGCache(int size, int timeout) {
+        this.size = size;
+        this.timeout = timeout * 1000L;
+    }
+
+    public User getUser(String userDN) {
+        return copy(get(users, userDN.toLowerCase(), userHits, userMisses));
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Adds a user that was read from LDAP in the given generation.
+     */
+    public void putUser(String userDN, User user, long userGeneration) {
+        put(users, userDN.toLowerCase(), null, copy(user), userGeneration);
+    }
+
+    public User getUserByCert(String cert) {
+        return copy(get(certUsers, cert, userHits, userMisses));
+    }
+
+    public void putUserByCert(String cert, String userDN, User user, long userGeneration) {
+        put(certUsers, cert, userDN.toLowerCase(), copy(user), userGeneration);
+    }
+
+    /**
+     * Returns the lowercase names of the groups the user belongs to,
+     * or null if not cached.
+     */
+    public Set<String> getMemberships(String userDN) {
+        return get(memberships, userDN.toLowerCase(), membershipHits, membershipMisses);
+    }
+
+    public void putMemberships(String userDN, Set<String> groups, long groupsGeneration) {
+        put(memberships, userDN.toLowerCase(), null, groups, groupsGeneration);
+    }
+
+    /**
+     * Removes all cached information about the given user.
+     */
+    public void invalidateUser(String userDN) {
+
+        String key = userDN.toLowerCase();
+        generation.incrementAndGet();
+
+        users.remove(key);
+        certUsers.values().removeIf(e -> key.equals(e.userDN));
+        memberships.remove(key);
+    }
+
+    /**
+     * Removes all cached group memberships, e.g. after a group
+     * has been added, removed, or modified.
+     */
+    public void invalidateMemberships() {
+        generation.incrementAndGet();
+        memberships.clear();
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        users.clear();
+        certUsers.clear();
+        memberships.clear();
+    }
+
+    public long getUserHits() {
+        return userHits.sum();
+    }
+
+    public long getUserMisses() {
+        return userMisses.sum();
+    }
+
+    public long getMembershipHits() {
+        return membershipHits.sum();
+    }
+
+    public long getMembershipMisses() {
+        return membershipMisses.sum();
+    }
+
+    public int getUserCount() {
+        return users.size() + certUsers.size();
+    }
+
+    public int getMembershipCount() {
+        return memberships.size();
+    }
+
+    private <T> T get(Map<String, Entry<T>> map, String key, LongAdder hits, LongAdder misses) {
+
+        Entry<T> entry = map.get(key);
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (System.currentTimeMillis() >= entry.expiration) {
+            map.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.value;
+    }
+
+    private static User copy(User user) {
+        return user == null ? null : user.copy();
+    }
+
+    private <T> void put(Map<String, Entry<T>> map, String key, String userDN, T value, long valueGeneration) {
+
+        if (value == null) {
+            return;
+        }
+
+        if (map.size() >= size) {
+            logger.debug("UGCache: Cache full, removing all entries");
+            map.clear();
+        }
+
+        Entry<T> entry = new Entry<>(value, userDN, System.currentTimeMillis() + timeout);
+        map.put(key, entry);
+
+        // the entry might have been invalidated while it was read from LDAP
+        if (generation.get() != valueGeneration) {
+            logger.debug("UGCache: Discarding outdated entry " + key);
+            map.remove(key, entry);
+        }
+    }
+
+    static class Entry<T> {
+
+        final T value;
+
+        // lowercase DN of the user the entry belongs to, if different from the key
+        final String userDN;
+
+        final long expiration;
+
+        Entry(T value, String userDN, long expiration) {
+            this.value = value;
+            this.userDN = userDN;
+            this.expiration = expiration;
+        }
+    }
+}
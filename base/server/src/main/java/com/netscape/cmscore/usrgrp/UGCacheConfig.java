@@ -0,0 +1,55 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.usrgrp;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides usrgrp.cache.* parameters.
+ */
+public class UGCacheConfig extends ConfigStore {
+
+    public UGCacheConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public UGCacheConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    /**
+     * Returns usrgrp.cache.enable parameter.
+     */
+    public boolean isEnabled() throws EBaseException {
+        return getBoolean("enable", false);
+    }
+
+    /**
+     * Returns usrgrp.cache.size parameter.
+     */
+    public int getSize() throws EBaseException {
+        return getInteger("size", 1000);
+    }
+
+    /**
+     * Returns usrgrp.cache.timeout parameter in seconds.
+     */
+    public int getTimeout() throws EBaseException {
+        return getInteger("timeout", 300);
+    }
+
+    /**
+     * Returns usrgrp.cache.monitor parameter. If enabled, changes made
+     * by other servers (e.g. clones) are detected with a persistent
+     * search.
+     */
+    public boolean isMonitorEnabled() throws EBaseException {
+        return getBoolean("monitor", false);
+    }
+}
@@ -0,0 +1,131 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.usrgrp;
+
+import com.netscape.cmsutil.ldap.LDAPUtil;
+
+import netscape.ldap.LDAPConnection;
+import netscape.ldap.LDAPEntry;
+import netscape.ldap.LDAPSearchConstraints;
+import netscape.ldap.LDAPSearchResults;
+import netscape.ldap.controls.LDAPEntryChangeControl;
+import netscape.ldap.controls.LDAPPersistSearchControl;
+
+/**
+ * Monitors users and groups with a persistent search and invalidates
+ * the UGSubsystem cache when they are modified by another server
+ * (e.g. a clone) or directly in LDAP. Only the cached information
+ * affected by the modified entry is invalidated.
+ */
+public class UGMonitor implements Runnable {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(UGMonitor.class);
+
+    public static final String FILTER = "(|(objectClass=cmsuser)(objectClass=groupOfUniqueNames))";
+
+    UGSubsystem ugSubsystem;
+    LDAPPersistSearchControl searchControl;
+    volatile boolean running = true;
+    volatile LDAPConnection conn;
+
+    public UGMonitor(UGSubsystem ugSubsystem) {
+        this.ugSubsystem = ugSubsystem;
+        searchControl = new LDAPPersistSearchControl(
+                LDAPPersistSearchControl.ADD
+                    | LDAPPersistSearchControl.DELETE
+                    | LDAPPersistSearchControl.MODIFY
+                    | LDAPPersistSearchControl.MODDN,
+                true,  // return only subsequent changes
+                true,  // return controls
+                true); // persistent search control is critical
+    }
+
+    @Override
+    public void run() {
+
+        while (running) { // restart persistent search in case it's interrupted
+
+            try {
+                conn = ugSubsystem.getConn();
+
+                LDAPSearchConstraints searchConstraints = conn.getSearchConstraints();
+                searchConstraints.setServerControls(searchControl);
+                searchConstraints.setBatchSize(1);
+                searchConstraints.setServerTimeLimit(0);
+
+                logger.info("UGMonitor: Start monitoring users and groups");
+
+                LDAPSearchResults results = conn.search(
+                        ugSubsystem.getBaseDN(),
+                        LDAPConnection.SCOPE_SUB,
+                        FILTER,
+                        new String[] { "uid", "cn" },
+                        true, // return attribute names only
+                        searchConstraints);
+
+                // the cache might have missed changes while the search was down
+                ugSubsystem.invalidateCache();
+
+                while (running && results.hasMoreElements()) {
+
+                    LDAPEntry entry = results.next();
+                    logger.debug("UGMonitor: " + entry.getDN() + " has been modified");
+
+                    LDAPEntryChangeControl changeControl = (LDAPEntryChangeControl)
+                            LDAPUtil.getControl(LDAPEntryChangeControl.class, results.getResponseControls());
+
+                    if (changeControl != null
+                            && changeControl.getChangeType() == LDAPPersistSearchControl.MODDN
+                            && changeControl.getPreviousDN() != null) {
+                        ugSubsystem.entryModified(changeControl.getPreviousDN());
+                    }
+
+                    // changes by this server have already been handled,
+                    // but there's no way to distinguish them
+                    ugSubsystem.entryModified(entry.getDN());
+                }
+
+                logger.info("UGMonitor: Stop monitoring users and groups");
+
+            } catch (Throwable e) {
+                if (!running) {
+                    break;
+                }
+
+                logger.warn("UGMonitor: Unable to monitor users and groups: " + e.getMessage(), e);
+                ugSubsystem.invalidateCache();
+
+                try {
+                    Thread.sleep(10 * 1000); // wait 10s then restart persistent search
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+            } finally {
+                if (conn != null) {
+                    ugSubsystem.returnConn(conn);
+                    conn = null;
+                }
+            }
+        }
+    }
+
+    public void stop() {
+
+        running = false; // terminate the loop gracefully
+
+        // interrupt the persistent search
+        LDAPConnection conn = this.conn;
+        if (conn != null) {
+            try {
+                conn.disconnect();
+            } catch (Exception e) {
+                logger.warn("UGMonitor: Unable to disconnect: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -23,8 +23,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
@@ -81,6 +84,13 @@ public class UGSubsystem {
     protected transient LdapBoundConnFactory mLdapConnFactory = null;
     protected String mBaseDN = null;
 
+    // incremented whenever users or group memberships are modified
+    private final AtomicLong generation = new AtomicLong();
+
+    private UGCache mCache;
+    private UGMonitor mMonitor;
+    private Thread mMonitorThread;
+
     /**
      * Constructs LDAP based usr/grp management
      */
@@ -98,10 +108,113 @@ public class UGSubsystem {
         mLdapConnFactory.init(socketConfig, ldapConfig, passwordStore);
     }
 
+    /**
+     * Enables the cache of users and group memberships.
+     */
+    public void initCache(UGCacheConfig config) throws EBaseException {
+
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        int size = config.getSize();
+        int timeout = config.getTimeout();
+
+        logger.info("UGSubsystem: Enabling cache");
+        logger.info("UGSubsystem: - size: " + size);
+        logger.info("UGSubsystem: - timeout: " + timeout + "s");
+
+        mCache = new UGCache(size, timeout);
+
+        if (config.isMonitorEnabled()) {
+            mMonitor = new UGMonitor(this);
+            mMonitorThread = new Thread(mMonitor, "UGMonitor");
+            mMonitorThread.setDaemon(true);
+            mMonitorThread.start();
+        }
+    }
+
+    public UGCache getCache() {
+        return mCache;
+    }
+
+    public String getBaseDN() {
+        return mBaseDN;
+    }
+
+    /**
+     * Removes all cached users and group memberships.
+     */
+    public void invalidateCache() {
+        generation.incrementAndGet();
+        if (mCache != null) {
+            mCache.clear();
+        }
+    }
+
+    /**
+     * Invalidates the cached information about a user.
+     *
+     * @param userID user ID or user DN
+     */
+    private void userModified(String userID) {
+        generation.incrementAndGet();
+        if (mCache != null && userID != null) {
+            mCache.invalidateUser(toUserDN(userID));
+        }
+    }
+
+    /**
+     * Invalidates the cached information affected by a change of
+     * the given user or group entry, e.g. as reported by UGMonitor.
+     */
+    void entryModified(String dn) {
+
+        String lowerDN = dn.toLowerCase();
+
+        if (lowerDN.endsWith("," + getGroupBaseDN().toLowerCase())) {
+            groupsModified();
+
+        } else if (lowerDN.endsWith("," + getUserBaseDN().toLowerCase())) {
+            userModified(dn);
+
+        } else {
+            invalidateCache();
+        }
+    }
+
+    private void groupsModified() {
+        generation.incrementAndGet();
+        if (mCache != null) {
+            mCache.invalidateMemberships();
+        }
+    }
+
+    /**
+     * Returns a number that changes whenever users, groups, or group
+     * memberships are modified through this subsystem, so callers can
+     * invalidate information derived from them.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
     /**
      * Disconnects usr/grp manager from the LDAP
      */
     public void shutdown() {
+
+        if (mMonitor != null) {
+            mMonitor.stop();
+            try {
+                mMonitorThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mMonitor = null;
+            mMonitorThread = null;
+        }
+
         try {
             if (mLdapConnFactory != null) {
                 mLdapConnFactory.reset();
@@ -130,14 +243,16 @@ public class UGSubsystem {
             return null;
         }
 
-        String userDN;
+        String userDN = toUserDN(userID);
 
-        if (userID.indexOf('=') < 0) { // user ID is not a DN
-            userDN = getUserDN(userID);
+        long generation = 0;
 
-        } else { // user ID is a DN
-            // TODO: use a separate method for user ID and DN
-            userDN = userID;
+        if (mCache != null) {
+            User user = mCache.getUser(userDN);
+            if (user != null) {
+                return user;
+            }
+            generation = mCache.getGeneration();
         }
 
         LDAPConnection ldapconn = null;
@@ -158,7 +273,13 @@ public class UGSubsystem {
             Enumeration<User> e = buildUsers(res);
 
             // user found
-            return e.nextElement();
+            User user = e.nextElement();
+
+            if (mCache != null) {
+                mCache.putUser(userDN, user, generation);
+            }
+
+            return user;
 
         } catch (ELdapException e) {
             throw new EUsrGrpException("Unable to retrieve user: " + userID + ": " + e.getMessage(), e);
@@ -185,17 +306,35 @@ public class UGSubsystem {
             return null;
         }
 
+        String certString = getCertificateString(cert);
+
+        long generation = 0;
+
+        if (mCache != null) {
+            User user = mCache.getUserByCert(certString);
+            if (user != null) {
+                return user;
+            }
+            generation = mCache.getGeneration();
+        }
+
         LDAPConnection ldapconn = null;
 
         try {
             ldapconn = getConn();
-            String filter = LDAP_ATTR_USER_CERT_STRING + "=" + LDAPUtil.escapeFilter(getCertificateString(cert));
+            String filter = LDAP_ATTR_USER_CERT_STRING + "=" + LDAPUtil.escapeFilter(certString);
             LDAPSearchResults res =
                     ldapconn.search(getUserBaseDN(),
                             LDAPConnection.SCOPE_SUB, filter, null, false);
             Enumeration<User> e = buildUsers(res);
 
-            return e.nextElement();
+            User user = e.nextElement();
+
+            if (mCache != null) {
+                mCache.putUserByCert(certString, getUserDN(user.getUserID()), user, generation);
+            }
+
+            return user;
 
         } catch (LDAPException e) {
             logger.warn("Unable to find user: " + e.getMessage(), e);
@@ -773,6 +912,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to add user certificate: " + e.getMessage(), e);
 
         } finally {
+            userModified(userID);
             if (ldapconn != null) {
                 returnConn(ldapconn);
             }
@@ -815,6 +955,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to add seeAlso: " + e.getMessage(), e);
 
         } finally {
+            userModified(userID);
             if (ldapconn != null) {
                 returnConn(ldapconn);
             }
@@ -857,6 +998,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to remove seeAlso: " + e.getMessage(), e);
 
         } finally {
+            userModified(userID);
             if (ldapconn != null) {
                 returnConn(ldapconn);
             }
@@ -969,6 +1111,7 @@ public class UGSubsystem {
                 throw new EUsrGrpException("Unable to remove user certificate: " + e.getMessage(), e);
 
             } finally {
+                userModified(user.getUserID());
                 if (ldapconn != null)
                     returnConn(ldapconn);
             }
@@ -1002,6 +1145,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to add user to group: " + e.getMessage(), e);
 
         } finally {
+            userModified(userid);
             if (ldapconn != null)
                 returnConn(ldapconn);
         }
@@ -1030,6 +1174,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to remove user from group: " + e.getMessage(), e);
 
         } finally {
+            userModified(userid);
             if (ldapconn != null)
                 returnConn(ldapconn);
         }
@@ -1065,6 +1210,7 @@ public class UGSubsystem {
             logger.error("Unable to remove user: " + e.getMessage(), e);
 
         } finally {
+            userModified(userid);
             if (ldapconn != null)
                 returnConn(ldapconn);
         }
@@ -1201,6 +1347,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to modify user: " + e.getMessage(), e);
 
         } finally {
+            userModified(user.getUserID());
             if (ldapconn != null)
                 returnConn(ldapconn);
         }
@@ -1518,7 +1665,7 @@ public class UGSubsystem {
         try {
             User user = getUser(userid);
             if (user != null) {
-                return isMemberOfLdapGroup(user.getUserDN(), groupname);
+                return isMemberOf(user, groupname);
             }
         } catch (Exception e) {
             /* do nothing */
@@ -1542,10 +1689,75 @@ public class UGSubsystem {
             return false;
         }
 
+        if (mCache != null) {
+            Set<String> groups = getMemberships(id.getUserDN());
+            return groups != null && groups.contains(name.toLowerCase());
+        }
+
         logger.trace("UGSubsystem.isMemberOf() using new lookup code");
         return isMemberOfLdapGroup(id.getUserDN(), name);
     }
 
+    /**
+     * Returns the lowercase names of the groups the given user DN
+     * belongs to from the cache, or from LDAP with a single search.
+     * Returns null if the groups could not be retrieved.
+     */
+    protected Set<String> getMemberships(String userDN) {
+
+        Set<String> groups = mCache.getMemberships(userDN);
+        if (groups != null) {
+            return groups;
+        }
+
+        long generation = mCache.getGeneration();
+
+        LDAPConnection ldapconn = null;
+        try {
+            ldapconn = getConn();
+
+            String filter = "(uniquemember=" + LDAPUtil.escapeFilter(userDN) + ")";
+            logger.trace("UGSubsystem: membership search base: " + getGroupBaseDN());
+            logger.trace("UGSubsystem: membership search filter: " + filter);
+
+            LDAPSearchResults res = ldapconn.search(
+                    getGroupBaseDN(),
+                    LDAPv3.SCOPE_ONE,
+                    filter,
+                    new String[] { "cn" },
+                    false);
+
+            groups = new HashSet<>();
+            while (res.hasMoreElements()) {
+                LDAPEntry entry = res.next();
+                LDAPAttribute cn = entry.getAttribute("cn");
+                if (cn == null) {
+                    continue;
+                }
+                for (String value : cn.getStringValueArray()) {
+                    groups.add(value.toLowerCase());
+                }
+            }
+
+            groups = Collections.unmodifiableSet(groups);
+            mCache.putMemberships(userDN, groups, generation);
+
+            return groups;
+
+        } catch (LDAPException e) {
+            logger.warn("UGSubsystem: Unable to get groups of " + userDN + ": " + e.getMessage(), e);
+
+        } catch (ELdapException e) {
+            logger.warn("UGSubsystem: Unable to get groups of " + userDN + ": " + e.getMessage(), e);
+
+        } finally {
+            if (ldapconn != null)
+                returnConn(ldapconn);
+        }
+
+        return null;
+    }
+
     /**
      * checks if the given user DN is in the specified group
      * by running an ldap search for the user in the group
@@ -1658,6 +1870,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to add group: " + e.getMessage(), e);
 
         } finally {
+            groupsModified();
             if (ldapconn != null)
                 returnConn(ldapconn);
         }
@@ -1686,6 +1899,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to remove group: " + e.getMessage(), e);
 
         } finally {
+            groupsModified();
             if (ldapconn != null)
                 returnConn(ldapconn);
         }
@@ -1746,6 +1960,7 @@ public class UGSubsystem {
             throw new EUsrGrpException("Unable to modify group: " + e.getMessage(), e);
 
         } finally {
+            groupsModified();
             if (ldapconn != null)
                 returnConn(ldapconn);
         }
@@ -1862,6 +2077,20 @@ public class UGSubsystem {
         return "uid=" + LDAPUtil.escapeRDNValue(userID) + "," + getUserBaseDN();
     }
 
+    /**
+     * Returns the DN of a user specified either by user ID or by DN.
+     */
+    private String toUserDN(String userID) {
+
+        if (userID.indexOf('=') < 0) { // user ID is not a DN
+            return getUserDN(userID);
+        }
+
+        // user ID is a DN
+        // TODO: use a separate method for user ID and DN
+        return userID;
+    }
+
     /**
      * Retrieves group base dn.
      */
@@ -162,6 +162,29 @@ public class User implements JSONSerializer {
         mUserid = userid;
     }
 
+    /**
+     * Returns a copy of this user that can be modified without
+     * affecting this user. The certificates themselves are shared.
+     */
+    public User copy() {
+
+        User user = new User();
+
+        user.mUserid = mUserid;
+        user.mUserDN = mUserDN;
+        user.mFullName = mFullName;
+        user.mPassword = mPassword;
+        user.mEmail = mEmail;
+        user.mPhone = mPhone;
+        user.mState = mState;
+        user.mCertDN = mCertDN;
+        user.mUserType = mUserType;
+        user.mx509Certs = mx509Certs == null ? null : mx509Certs.clone();
+        user.tpsProfiles = tpsProfiles == null ? null : new ArrayList<>(tpsProfiles);
+
+        return user;
+    }
+
     /**
      * Retrieves the name of this identity.
      *
@@ -17,29 +17,49 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.util;
 
+import java.util.ArrayDeque;
 import java.util.Date;
-import java.util.Hashtable;
-import java.util.Vector;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.util.IStatsSubsystem;
 import com.netscape.certsrv.util.StatsEvent;
 import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.metrics.Histogram;
+import com.netscape.cmscore.metrics.MetricsRegistry;
 
 /**
  * A class represents a internal subsystem. This subsystem
  * can be loaded into cert server kernel to perform
  * statistics collection.
  * <P>
+ * The timings are also recorded in the operation duration histograms
+ * of the metrics registry, labeled with the main action and the
+ * operation.
+ * <P>
  *
  * @author thomask
  * @version $Revision$, $Date$
  */
 public class StatsSubsystem implements IStatsSubsystem {
+
+    public static final String METRIC_OPERATION_DURATION = "pki_operation_duration_seconds";
+
     private String mId = null;
     private StatsEvent mAllTrans = new StatsEvent(null);
     private Date mStartTime = new Date();
-    private Hashtable<String, Vector<StatsMilestone>> mHashtable = new Hashtable<>();
+
+    // operations in progress in the current thread
+    private ThreadLocal<Deque<StatsMilestone>> mMilestones = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private MetricsRegistry mMetrics = MetricsRegistry.getInstance();
+
+    // action -> operation -> histogram, so timings do not need to
+    // format the labels and look up the histogram in the registry
+    private Map<String, Map<String, Histogram>> mHistograms = new ConcurrentHashMap<>();
 
     /**
      * Constructs a certificate server.
@@ -90,56 +110,91 @@ public class StatsSubsystem implements IStatsSubsystem {
 
     @Override
     public void startTiming(String id, boolean mainAction) {
-        Thread t = Thread.currentThread();
-        Vector<StatsMilestone> milestones = null;
-        if (mHashtable.containsKey(t.toString())) {
-            milestones = mHashtable.get(t.toString());
-        } else {
-            milestones = new Vector<>();
-            mHashtable.put(t.toString(), milestones);
+
+        long startTime = System.nanoTime();
+
+        Deque<StatsMilestone> milestones = mMilestones.get();
+        StatsMilestone parent = milestones.peekLast();
+
+        StatsEvent parentST = parent == null ? null : parent.getStatsEvent();
+        StatsEvent newST = null;
+
+        if (parentST != null) {
+            newST = getSubEvent(parentST, id);
+
+        } else if (mainAction) {
+            // operations outside of a main action do not contain main
+            // actions, so they are left over from a failed operation
+            milestones.clear();
+            parent = null;
+            newST = getSubEvent(mAllTrans, id);
         }
-        long startTime = new Date().getTime();
-        StatsEvent currentST = null;
-        for (int i = 0; i < milestones.size(); i++) {
-            StatsMilestone se = milestones.elementAt(i);
-            if (currentST == null) {
-                currentST = mAllTrans.getSubEvent(se.getId());
-            } else {
-                currentST = currentST.getSubEvent(se.getId());
-            }
+
+        // operations outside of a main action are only recorded in the metrics
+        String action = parent == null ? id : parent.getAction();
+
+        milestones.addLast(new StatsMilestone(id, action, startTime, newST, getHistogram(action, id)));
+    }
+
+    private Histogram getHistogram(String action, String id) {
+
+        Map<String, Histogram> histograms = mHistograms.get(action);
+        if (histograms == null) {
+            histograms = mHistograms.computeIfAbsent(action, key -> new ConcurrentHashMap<>());
         }
-        if (currentST == null) {
-            if (!mainAction) {
-                return; /* ignore none main action */
-            }
-            currentST = mAllTrans;
+
+        Histogram histogram = histograms.get(id);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(id, key -> mMetrics.getHistogram(
+                    METRIC_OPERATION_DURATION,
+                    "Duration of the operations",
+                    "action", action,
+                    "operation", id));
         }
-        StatsEvent newST = currentST.getSubEvent(id);
-        if (newST == null) {
-            newST = new StatsEvent(currentST);
-            newST.setName(id);
-            currentST.addSubEvent(newST);
+
+        return histogram;
+    }
+
+    private StatsEvent getSubEvent(StatsEvent parent, String id) {
+        synchronized (parent) {
+            StatsEvent st = parent.getSubEvent(id);
+            if (st == null) {
+                st = new StatsEvent(parent);
+                st.setName(id);
+                parent.addSubEvent(st);
+            }
+            return st;
         }
-        milestones.addElement(new StatsMilestone(id, startTime, newST));
     }
 
     @Override
     public void endTiming(String id) {
-        long endTime = new Date().getTime();
-        Thread t = Thread.currentThread();
-        if (!mHashtable.containsKey(t.toString())) {
-            return; /* error */
+
+        long endTime = System.nanoTime();
+
+        Deque<StatsMilestone> milestones = mMilestones.get();
+        StatsMilestone last = milestones.pollLast();
+
+        if (milestones.isEmpty()) {
+            mMilestones.remove();
         }
-        Vector<StatsMilestone> milestones = mHashtable.get(t.toString());
-        if (milestones.size() == 0) {
+
+        if (last == null) {
             return; /* error */
         }
-        StatsMilestone last = milestones.remove(milestones.size() - 1);
+
+        long duration = endTime - last.getStartTime();
+
+        last.getHistogram().observe(duration);
+
         StatsEvent st = last.getStatsEvent();
-        st.incNoOfOperations(1);
-        st.incTimeTaken(endTime - last.getStartTime());
-        if (milestones.size() == 0) {
-            mHashtable.remove(t.toString());
+        if (st == null) {
+            return;
+        }
+
+        synchronized (st) {
+            st.incNoOfOperations(1);
+            st.incTimeTaken(TimeUnit.NANOSECONDS.toMillis(duration));
         }
     }
 
@@ -179,19 +234,27 @@ public class StatsSubsystem implements IStatsSubsystem {
 
 class StatsMilestone {
     private String mId = null;
+    private String mAction = null;
     private long mStartTime = 0;
     private StatsEvent mST = null;
+    private Histogram mHistogram = null;
 
-    public StatsMilestone(String id, long startTime, StatsEvent st) {
+    public StatsMilestone(String id, String action, long startTime, StatsEvent st, Histogram histogram) {
         mId = id;
+        mAction = action;
         mStartTime = startTime;
         mST = st;
+        mHistogram = histogram;
     }
 
     public String getId() {
         return mId;
     }
 
+    public String getAction() {
+        return mAction;
+    }
+
     public long getStartTime() {
         return mStartTime;
     }
@@ -199,4 +262,8 @@ class StatsMilestone {
     public StatsEvent getStatsEvent() {
         return mST;
     }
+
+    public Histogram getHistogram() {
+        return mHistogram;
+    }
 }
@@ -0,0 +1,46 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.authorization;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides authz.instance.<name>.decisionCache.* parameters.
+ */
+public class AuthzDecisionCacheConfig extends ConfigStore {
+
+    public AuthzDecisionCacheConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public AuthzDecisionCacheConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    /**
+     * Returns authz.instance.<name>.decisionCache.enable parameter.
+     */
+    public boolean isEnabled() throws EBaseException {
+        return getBoolean("enable", false);
+    }
+
+    /**
+     * Returns authz.instance.<name>.decisionCache.size parameter.
+     */
+    public int getSize() throws EBaseException {
+        return getInteger("size", 10000);
+    }
+
+    /**
+     * Returns authz.instance.<name>.decisionCache.timeout parameter in seconds.
+     */
+    public int getTimeout() throws EBaseException {
+        return getInteger("timeout", 60);
+    }
+}
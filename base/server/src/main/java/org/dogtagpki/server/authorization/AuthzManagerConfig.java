@@ -23,4 +23,8 @@ public class AuthzManagerConfig extends ConfigStore {
     public LDAPConfig getLDAPConfig() {
         return getSubStore("ldap", LDAPConfig.class);
     }
+
+    public AuthzDecisionCacheConfig getDecisionCacheConfig() {
+        return getSubStore("decisionCache", AuthzDecisionCacheConfig.class);
+    }
 }
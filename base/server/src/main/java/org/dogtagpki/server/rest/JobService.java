@@ -13,6 +13,7 @@ import javax.ws.rs.core.Response;
 import org.dogtagpki.job.JobCollection;
 import org.dogtagpki.job.JobInfo;
 import org.dogtagpki.job.JobResource;
+import org.dogtagpki.job.JobStatus;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.ResourceNotFoundException;
@@ -21,6 +22,7 @@ import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.apps.EngineConfig;
 import com.netscape.cmscore.jobs.JobConfig;
+import com.netscape.cmscore.jobs.JobStats;
 import com.netscape.cmscore.jobs.JobsConfig;
 import com.netscape.cmscore.jobs.JobsScheduler;
 import com.netscape.cmscore.jobs.JobsSchedulerConfig;
@@ -118,4 +120,58 @@ public class JobService extends SubsystemService implements JobResource {
 
         return createOKResponse();
     }
+
+    public JobStatus createJobStatus(JobStats stats) {
+
+        JobStatus jobStatus = new JobStatus();
+        jobStatus.setID(stats.getId());
+        jobStatus.setRunning(stats.isRunning());
+        jobStatus.setQueued(stats.isQueued());
+        jobStatus.setRuns(stats.getRuns());
+        jobStatus.setFailures(stats.getFailures());
+        jobStatus.setCancellations(stats.getCancellations());
+        jobStatus.setLastStartTime(stats.getLastStartTime());
+        jobStatus.setLastDuration(stats.getLastDuration());
+        jobStatus.setLastRecordsProcessed(stats.getLastRecordsProcessed());
+        jobStatus.setTotalRecordsProcessed(stats.getTotalRecordsProcessed());
+
+        return jobStatus;
+    }
+
+    @Override
+    public Response getJobStatus(String id) throws EBaseException {
+
+        logger.info("JobService: Getting status of job " + id);
+
+        CMSEngine engine = CMS.getCMSEngine();
+        JobsScheduler jobsScheduler = engine.getJobsScheduler();
+        JobStats stats = jobsScheduler.getJobStats(id);
+
+        if (stats == null) {
+            throw new ResourceNotFoundException("Job " + id + " not found");
+        }
+
+        JobStatus jobStatus = createJobStatus(stats);
+
+        return createOKResponse(jobStatus);
+    }
+
+    @Override
+    public Response cancelJob(String id) throws EBaseException {
+
+        logger.info("JobService: Cancelling job " + id);
+
+        CMSEngine engine = CMS.getCMSEngine();
+        JobsScheduler jobsScheduler = engine.getJobsScheduler();
+
+        if (jobsScheduler.getJobStats(id) == null) {
+            throw new ResourceNotFoundException("Job " + id + " not found");
+        }
+
+        if (!jobsScheduler.cancelJob(id)) {
+            logger.info("JobService: Job " + id + " not running");
+        }
+
+        return createOKResponse();
+    }
 }
@@ -0,0 +1,30 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.rest;
+
+import javax.ws.rs.core.Response;
+
+import org.dogtagpki.metrics.MetricsResource;
+
+import com.netscape.cms.servlet.base.SubsystemService;
+import com.netscape.cmscore.metrics.MetricsRegistry;
+
+public class MetricsService extends SubsystemService implements MetricsResource {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MetricsService.class);
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Override
+    public Response getMetrics() {
+
+        logger.debug("MetricsService: Exporting metrics");
+
+        String metrics = MetricsRegistry.getInstance().export();
+
+        return Response.ok(metrics, CONTENT_TYPE).build();
+    }
+}
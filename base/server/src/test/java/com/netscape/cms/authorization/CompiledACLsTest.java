@@ -0,0 +1,220 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.authorization;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dogtagpki.server.authentication.AuthToken;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netscape.certsrv.evaluators.IAccessEvaluator;
+
+public class CompiledACLsTest {
+
+    Map<String, IAccessEvaluator> evaluators;
+
+    @Before
+    public void setUp() {
+        evaluators = new HashMap<>();
+        evaluators.put("group", new StubEvaluator("group", AuthToken.GROUPS));
+        evaluators.put("user", new StubEvaluator("user", AuthToken.USER_ID));
+    }
+
+    AuthToken createAuthToken(String userID, String... groups) {
+        AuthToken authToken = new AuthToken(null);
+        authToken.set(AuthToken.USER_ID, userID);
+        authToken.set(AuthToken.GROUPS, groups);
+        return authToken;
+    }
+
+    CompiledACLs.Expression parse(String expression) {
+        return CompiledACLs.Expression.parse(expression, evaluators);
+    }
+
+    @Test
+    public void testSingleTerm() {
+
+        CompiledACLs.Expression expression = parse("group=\"Administrators\"");
+
+        assertTrue(expression.evaluate(createAuthToken("admin", "Administrators")));
+        assertFalse(expression.evaluate(createAuthToken("agent", "Agents")));
+    }
+
+    @Test
+    public void testNotEqual() {
+
+        CompiledACLs.Expression expression = parse("group!=\"Administrators\"");
+
+        assertFalse(expression.evaluate(createAuthToken("admin", "Administrators")));
+        assertTrue(expression.evaluate(createAuthToken("agent", "Agents")));
+    }
+
+    @Test
+    public void testOr() {
+
+        CompiledACLs.Expression expression = parse("group=\"Administrators\" || group=\"Agents\"");
+
+        assertTrue(expression.evaluate(createAuthToken("admin", "Administrators")));
+        assertTrue(expression.evaluate(createAuthToken("agent", "Agents")));
+        assertFalse(expression.evaluate(createAuthToken("auditor", "Auditors")));
+    }
+
+    @Test
+    public void testAnd() {
+
+        CompiledACLs.Expression expression = parse("group=\"Agents\" && user=\"agent\"");
+
+        assertTrue(expression.evaluate(createAuthToken("agent", "Agents")));
+        assertFalse(expression.evaluate(createAuthToken("other", "Agents")));
+        assertFalse(expression.evaluate(createAuthToken("agent", "Auditors")));
+    }
+
+    @Test
+    public void testLeftToRight() {
+
+        // evaluated as (A || B) && C, without operator precedence
+        CompiledACLs.Expression expression = parse(
+                "group=\"Administrators\" || group=\"Agents\" && user=\"agent\"");
+
+        assertTrue(expression.evaluate(createAuthToken("agent", "Agents")));
+        assertFalse(expression.evaluate(createAuthToken("admin", "Administrators")));
+    }
+
+    @Test
+    public void testTrailingOperator() {
+
+        CompiledACLs.Expression expression = parse("group=\"Administrators\" ||");
+
+        assertTrue(expression.evaluate(createAuthToken("admin", "Administrators")));
+        assertFalse(expression.evaluate(createAuthToken("agent", "Agents")));
+    }
+
+    @Test
+    public void testEmptyExpression() {
+
+        CompiledACLs.Expression expression = parse("");
+
+        assertFalse(expression.evaluate(createAuthToken("admin", "Administrators")));
+    }
+
+    @Test
+    public void testCacheable() {
+
+        // only the built-in user and group evaluators are cacheable
+        assertFalse(parse("group=\"Administrators\"").isCacheable());
+    }
+
+    @Test
+    public void testDecisionIncludesParents() throws Exception {
+
+        List<ACL> acls = Arrays.asList(
+                ACL.parseACL("certServer.ca:read,modify:allow (read) group=\"Agents\":Agents can read"),
+                ACL.parseACL("certServer.ca.certs:read:allow (read) group=\"Auditors\";"
+                        + "deny (read) user=\"blocked\":Auditors can read certs"));
+
+        CompiledACLs compiledACLs = CompiledACLs.compile(acls, evaluators);
+
+        CompiledACLs.Decision decision = compiledACLs.getDecision("certServer.ca.certs", "read");
+
+        assertTrue(decision.isAllowed(createAuthToken("agent", "Agents")));
+        assertTrue(decision.isAllowed(createAuthToken("auditor", "Auditors")));
+        assertFalse(decision.isAllowed(createAuthToken("admin", "Administrators")));
+
+        assertTrue(decision.isDenied(createAuthToken("blocked", "Agents")));
+        assertFalse(decision.isDenied(createAuthToken("agent", "Agents")));
+
+        // the parent node does not inherit entries of the child node
+        CompiledACLs.Decision parent = compiledACLs.getDecision("certServer.ca", "read");
+        assertFalse(parent.isAllowed(createAuthToken("auditor", "Auditors")));
+
+        // permissions without entries do not allow anything
+        CompiledACLs.Decision modify = compiledACLs.getDecision("certServer.ca.certs", "modify");
+        assertFalse(modify.isAllowed(createAuthToken("agent", "Agents")));
+
+        // decisions are computed once per resource and permission
+        assertSame(decision, compiledACLs.getDecision("certServer.ca.certs", "read"));
+    }
+
+    @Test
+    public void testDecisionKeys() throws Exception {
+
+        CompiledACLs compiledACLs = CompiledACLs.compile(Collections.emptyList(), evaluators);
+
+        // resource and permission must not be confused when they contain separators
+        CompiledACLs.Decision decision1 = compiledACLs.getDecision("a:b", "c");
+        CompiledACLs.Decision decision2 = compiledACLs.getDecision("a", "b:c");
+
+        assertNotSame(decision1, decision2);
+    }
+
+    /**
+     * Evaluator comparing the quoted value with a token attribute.
+     */
+    static class StubEvaluator implements IAccessEvaluator {
+
+        String type;
+        String attribute;
+
+        StubEvaluator(String type, String attribute) {
+            this.type = type;
+            this.attribute = attribute;
+        }
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public String getDescription() {
+            return type;
+        }
+
+        @Override
+        public boolean evaluate(String type, String op, String value) {
+            return false;
+        }
+
+        @Override
+        public boolean evaluate(AuthToken authToken, String type, String op, String value) {
+
+            String expected = value.replace("\"", "");
+
+            String[] values = AuthToken.GROUPS.equals(attribute)
+                    ? authToken.getInStringArray(attribute)
+                    : new String[] { authToken.getInString(attribute) };
+
+            boolean found = Arrays.asList(values).contains(expected);
+
+            if ("=".equals(op)) {
+                return found;
+            }
+            if ("!=".equals(op)) {
+                return !found;
+            }
+            return false;
+        }
+
+        @Override
+        public String[] getSupportedOperators() {
+            return new String[] { "=", "!=" };
+        }
+    }
+}
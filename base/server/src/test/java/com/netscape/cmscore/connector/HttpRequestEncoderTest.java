@@ -0,0 +1,180 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpRequestEncoderTest {
+
+    HttpRequestEncoder encoder;
+    HttpPKIMessage msg;
+    Hashtable<String, String> table;
+
+    @Before
+    public void setUp() {
+
+        encoder = new HttpRequestEncoder();
+
+        table = new Hashtable<>();
+        table.put("name", "value");
+        table.put("unicode", "\u00e9\u4e2d");
+
+        msg = new HttpPKIMessage();
+        msg.reqType = "enrollment";
+        msg.reqId = "12345";
+        msg.reqStatus = "complete";
+        msg.reqRealm = "realm";
+        msg.mNameVals.addElement("profileId");
+        msg.mNameVals.addElement("caServerCert");
+        msg.mNameVals.addElement("params");
+        msg.mNameVals.addElement(table);
+    }
+
+    void assertMessageEquals(HttpPKIMessage expected, HttpPKIMessage actual) {
+        assertEquals(expected.getReqType(), actual.getReqType());
+        assertEquals(expected.getReqId(), actual.getReqId());
+        assertEquals(expected.getReqStatus(), actual.getReqStatus());
+        assertEquals(expected.getReqRealm(), actual.getReqRealm());
+        assertEquals(expected.mNameVals, actual.mNameVals);
+    }
+
+    @Test
+    public void testCompactRoundTrip() throws Exception {
+
+        String encoded = encoder.encodeCompact(msg);
+        assertTrue(encoder.isCompact(encoded));
+
+        HttpPKIMessage decoded = (HttpPKIMessage) encoder.decode(encoded);
+        assertMessageEquals(msg, decoded);
+    }
+
+    @Test
+    public void testSerializedRoundTrip() throws Exception {
+
+        // Java serialization is still accepted
+        String encoded = encoder.encode(msg);
+        assertFalse(encoder.isCompact(encoded));
+
+        HttpPKIMessage decoded = (HttpPKIMessage) encoder.decode(encoded);
+        assertMessageEquals(msg, decoded);
+    }
+
+    @Test
+    public void testNullStrings() throws Exception {
+
+        msg.reqRealm = null;
+
+        HttpPKIMessage decoded = (HttpPKIMessage) encoder.decode(encoder.encodeCompact(msg));
+
+        assertNull(decoded.getReqRealm());
+        assertEquals(msg.getReqId(), decoded.getReqId());
+    }
+
+    @Test
+    public void testEmptyMessage() throws Exception {
+
+        HttpPKIMessage empty = new HttpPKIMessage();
+
+        HttpPKIMessage decoded = (HttpPKIMessage) encoder.decode(encoder.encodeCompact(empty));
+        assertMessageEquals(empty, decoded);
+    }
+
+    @Test
+    public void testUnsupportedValuesSkipped() throws Exception {
+
+        msg.mNameVals.addElement("vector");
+        msg.mNameVals.addElement(new Vector<>());
+
+        // unpaired trailing key
+        msg.mNameVals.addElement("unpaired");
+
+        HttpPKIMessage decoded = (HttpPKIMessage) encoder.decode(encoder.encodeCompact(msg));
+
+        assertEquals(4, decoded.mNameVals.size());
+        assertEquals("caServerCert", decoded.mNameVals.elementAt(1));
+        assertEquals(table, decoded.mNameVals.elementAt(3));
+    }
+
+    byte[] encodeCompactBytes(HttpPKIMessage msg) throws Exception {
+        return Base64.getMimeDecoder().decode(encoder.encodeCompact(msg));
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws Exception {
+
+        byte[] bytes = encodeCompactBytes(msg);
+        bytes[HttpRequestEncoder.COMPACT_MAGIC.length] = HttpRequestEncoder.COMPACT_VERSION + 1;
+
+        try {
+            encoder.decode(Base64.getEncoder().encodeToString(bytes));
+            fail("Message with unsupported version should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalidValueType() throws Exception {
+
+        ByteArrayOutputStream ba = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(ba);
+
+        for (int i = 0; i < 4; i++) {
+            HttpPKIMessage.writeString(out, "");
+        }
+        out.writeInt(1);
+        HttpPKIMessage.writeString(out, "key");
+        out.writeByte(99);
+        out.flush();
+
+        HttpPKIMessage decoded = new HttpPKIMessage();
+
+        try {
+            decoded.readFrom(new DataInputStream(new ByteArrayInputStream(ba.toByteArray())));
+            fail("Message with invalid value type should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTruncatedMessage() throws Exception {
+
+        ByteArrayOutputStream ba = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(ba);
+        msg.writeTo(out);
+        out.flush();
+
+        byte[] bytes = ba.toByteArray();
+        byte[] truncated = new byte[bytes.length - 3];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        HttpPKIMessage decoded = new HttpPKIMessage();
+
+        try {
+            decoded.readFrom(new DataInputStream(new ByteArrayInputStream(truncated)));
+            fail("Truncated message should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
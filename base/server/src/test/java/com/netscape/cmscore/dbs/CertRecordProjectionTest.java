@@ -0,0 +1,149 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Base64;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+public class CertRecordProjectionTest {
+
+    // self-signed test CA certificate
+    static final String CA_CERT =
+            "MIIDBTCCAe2gAwIBAgIUFRJ/SvHoErcIqRwqk6pZEl1+stkwDQYJKoZIhvcNAQELBQAwEjEQMA4G"
+            + "A1UEAwwHVGVzdCBDQTAeFw0yNjEwMTgxOTU0NThaFw00NjEwMTMxOTU0NThaMBIxEDAOBgNVBAMM"
+            + "B1Rlc3QgQ0EwggEiMA0GCSqGSIb3DQEBAQUAA4IBDwAwggEKAoIBAQCqtqdztwWutS6t7xfDLn7L"
+            + "QlNc0DDuPcmbsjLpt1UzBNeQpAmclg0Qvp4Zxp7PsHjn3hB/1PURV6uxA7JunQWyhNcvJPrAZy0l"
+            + "QEswVT7cnf0TOU2M36FUnvj/MvJ+EHItDpNSDK1+wuhj8n0adjhNtWt7u/JJtXs7Fgr3sAPzTW4v"
+            + "8aJFcKzNss8QueHVseX2ryg8PN4gEvPGf5nuzJIYCMh3lAmb/4Bt1qG5gah5ULGi0s9W4A2sR9xq"
+            + "GTBBEqG/6Yqg5I85wvMvMjidYcpokX2Cf7LMC0rGQ6paFDTHv07inIakoCrCYX/biZperqWAxKii"
+            + "2hDrvBLQ/l47W4IpAgMBAAGjUzBRMB0GA1UdDgQWBBRHnnfLZiH5y5hHQA5jzQuXMPp9tTAfBgNV"
+            + "HSMEGDAWgBRHnnfLZiH5y5hHQA5jzQuXMPp9tTAPBgNVHRMBAf8EBTADAQH/MA0GCSqGSIb3DQEB"
+            + "CwUAA4IBAQAifENJmJOPuU8uuRvpTC6AOR6XKdalekjXveVBTAkge4c/Ba3eZmXEY5czjDeP4/ws"
+            + "y+vgNsMeLf3R3l3SaqcRi+Kv9D99y2s6caU96Xx147yRGQvRBB1pNcVu9gJSp/dF0psh46O6FIfN"
+            + "JTPdkPppX/Ty0z7He/J6rEusS2pe6FSyD69aLTOw55wdqLedQLtAu7xIT77QGp3DkZeJnUnvG/LP"
+            + "67BKXS4CQdvtwDhDoHkfYcVAC+o/g3/ogGbVBgjc4HRc56o0OME+0WikbpHejnfBGpTs3YjB5PGI"
+            + "BKPK+ld7o0rE3TX8cywDvDcT4s+UlF3OKnyPte6nhAHZF9tI";
+
+    // LDAP dates have a resolution of one second
+    static final Date NOT_BEFORE = new Date(1600000000000L);
+    static final Date NOT_AFTER = new Date(1700000000000L);
+
+    byte[] encodedCert;
+    X509CertImplMapper mapper;
+    LDAPRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+
+        encodedCert = Base64.getDecoder().decode(CA_CERT);
+        mapper = new X509CertImplMapper();
+
+        registry = new LDAPRegistry();
+        registry.registerAttribute(CertRecord.ATTR_ID,
+                new BigIntegerMapper(CertDBSchema.LDAP_ATTR_SERIALNO));
+        registry.registerAttribute(CertRecord.ATTR_X509CERT, mapper);
+        registry.registerAttribute(CertificateValidity.NOT_AFTER,
+                new DateMapper(CertDBSchema.LDAP_ATTR_NOT_AFTER));
+    }
+
+    LDAPAttributeSet createValidityAttributes() {
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        attrs.add(new LDAPAttribute(CertDBSchema.LDAP_ATTR_NOT_BEFORE, DateMapper.dateToDB(NOT_BEFORE)));
+        attrs.add(new LDAPAttribute(CertDBSchema.LDAP_ATTR_NOT_AFTER, DateMapper.dateToDB(NOT_AFTER)));
+        return attrs;
+    }
+
+    @Test
+    public void testProjectedAttributes() throws Exception {
+
+        String[] attrs = registry.getLDAPAttributes(new String[] { "objectclass", CertRecord.ATTR_ID });
+
+        // the certificate is not retrieved
+        assertArrayEquals(new String[] { "objectclass", CertDBSchema.LDAP_ATTR_SERIALNO }, attrs);
+
+        attrs = registry.getLDAPAttributes(
+                new String[] { "objectclass", CertRecord.ATTR_ID, CertificateValidity.NOT_AFTER });
+
+        assertArrayEquals(
+                new String[] { "objectclass", CertDBSchema.LDAP_ATTR_SERIALNO, CertDBSchema.LDAP_ATTR_NOT_AFTER },
+                attrs);
+
+        // null selects all attributes
+        assertNull(registry.getLDAPAttributes(null));
+    }
+
+    @Test
+    public void testValidityWithoutCertificate() throws Exception {
+
+        CertRecord record = new CertRecord();
+        mapper.mapLDAPAttributeSetToObject(createValidityAttributes(), CertRecord.ATTR_X509CERT, record);
+
+        assertEquals(NOT_BEFORE, record.getNotBefore());
+        assertEquals(NOT_AFTER, record.getNotAfter());
+
+        // records retrieved without the certificate do not have one
+        assertNull(record.getCertificate());
+    }
+
+    @Test
+    public void testLazyDecoding() throws Exception {
+
+        LDAPAttributeSet attrs = createValidityAttributes();
+        attrs.add(new LDAPAttribute(CertDBSchema.LDAP_ATTR_SIGNED_CERT + ";binary", encodedCert));
+
+        CertRecord record = new CertRecord();
+        mapper.mapLDAPAttributeSetToObject(attrs, CertRecord.ATTR_X509CERT, record);
+
+        // the validity attributes do not require decoding
+        assertEquals(NOT_AFTER, record.getNotAfter());
+
+        X509CertImpl cert = record.getCertificate();
+        assertArrayEquals(encodedCert, cert.getEncoded());
+
+        // the certificate is decoded only once
+        assertSame(cert, record.getCertificate());
+        assertSame(cert, record.get(CertRecord.ATTR_X509CERT));
+    }
+
+    @Test
+    public void testInvalidCertificate() throws Exception {
+
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        attrs.add(new LDAPAttribute(CertDBSchema.LDAP_ATTR_SIGNED_CERT, new byte[] { 1, 2, 3 }));
+
+        CertRecord record = new CertRecord();
+        mapper.mapLDAPAttributeSetToObject(attrs, CertRecord.ATTR_X509CERT, record);
+
+        assertNull(record.getCertificate());
+    }
+
+    @Test
+    public void testSetCertificate() throws Exception {
+
+        CertRecord record = new CertRecord();
+        mapper.mapLDAPAttributeSetToObject(createValidityAttributes(), CertRecord.ATTR_X509CERT, record);
+
+        // a certificate set explicitly replaces the retrieved validity
+        X509CertImpl cert = new X509CertImpl(encodedCert);
+        record.set(CertRecord.ATTR_X509CERT, cert);
+
+        assertSame(cert, record.getCertificate());
+        assertEquals(cert.getNotAfter(), record.getNotAfter());
+    }
+}
@@ -0,0 +1,319 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+public class RevokedCertificatesMapperTest {
+
+    static final String LDAP_NAME = "crlCache";
+
+    RevokedCertificatesMapper serializedMapper;
+    RevokedCertificatesMapper compactMapper;
+
+    @Before
+    public void setUp() throws Exception {
+        serializedMapper = new RevokedCertificatesMapper(LDAP_NAME, false);
+        compactMapper = new RevokedCertificatesMapper(LDAP_NAME, true);
+    }
+
+    // revocation dates are encoded with a resolution of one second
+    static Date createDate(long seconds) {
+        return new Date(seconds * 1000);
+    }
+
+    static Hashtable<BigInteger, RevokedCertificate> createTable(int size) {
+        Hashtable<BigInteger, RevokedCertificate> table = new Hashtable<>();
+        for (int i = 1; i <= size; i++) {
+            BigInteger serialNumber = BigInteger.valueOf(i);
+            table.put(serialNumber, new RevokedCertImpl(serialNumber, createDate(1600000000L + i)));
+        }
+        return table;
+    }
+
+    static void assertTableEquals(
+            Map<BigInteger, RevokedCertificate> expected,
+            Map<BigInteger, RevokedCertificate> actual) {
+
+        assertEquals(expected.keySet(), actual.keySet());
+
+        for (Map.Entry<BigInteger, RevokedCertificate> entry : expected.entrySet()) {
+            RevokedCertificate revokedCert = actual.get(entry.getKey());
+            assertEquals(entry.getKey(), revokedCert.getSerialNumber());
+            assertEquals(entry.getValue().getRevocationDate(), revokedCert.getRevocationDate());
+        }
+    }
+
+    byte[] encode(Map<BigInteger, RevokedCertificate> table) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        RevokedCertificatesMapper.encode(table, bos);
+        return bos.toByteArray();
+    }
+
+    byte[] encodeUpdate(RevokedCertificatesUpdate update) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        RevokedCertificatesMapper.encodeUpdate(update, bos);
+        return bos.toByteArray();
+    }
+
+    Hashtable<BigInteger, RevokedCertificate> load(byte[]... values) throws Exception {
+
+        LDAPAttribute attr = new LDAPAttribute(LDAP_NAME);
+        for (byte[] value : values) {
+            attr.addValue(value);
+        }
+
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        attrs.add(attr);
+
+        CRLIssuingPointRecord record = new CRLIssuingPointRecord();
+        compactMapper.mapLDAPAttributeSetToObject(attrs, CRLIssuingPointRecord.ATTR_CRL_CACHE, record);
+
+        return record.getCRLCacheNoClone();
+    }
+
+    Hashtable<BigInteger, RevokedCertificate> roundTrip(
+            Hashtable<BigInteger, RevokedCertificate> table) throws Exception {
+
+        byte[] value = encode(table);
+        assertFalse(RevokedCertificatesMapper.isSerialized(value));
+
+        Hashtable<BigInteger, RevokedCertificate> decoded = new Hashtable<>();
+        RevokedCertificatesUpdate update = new RevokedCertificatesUpdate();
+
+        long sequence = RevokedCertificatesMapper.decode(new ByteArrayInputStream(value), decoded, update);
+        assertTrue(sequence > 0);
+
+        // full tables do not set the sequence of the update
+        assertEquals(0, update.getSequence());
+        assertTrue(update.isEmpty());
+
+        return decoded;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> table = createTable(3);
+        assertTableEquals(table, roundTrip(table));
+    }
+
+    @Test
+    public void testEmptyTable() throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> table = new Hashtable<>();
+        assertTableEquals(table, roundTrip(table));
+        assertTableEquals(table, load(encode(table)));
+    }
+
+    @Test
+    public void testLargeTable() throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> table = createTable(10000);
+
+        BigInteger bigSerial = new BigInteger("123456789012345678901234567890123456789");
+        table.put(bigSerial, new RevokedCertImpl(bigSerial, createDate(1600000000L)));
+
+        assertTableEquals(table, roundTrip(table));
+        assertTableEquals(table, load(encode(table)));
+    }
+
+    @Test
+    public void testSerializedFormat() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> table = createTable(3);
+
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        serializedMapper.mapObjectToLDAPAttributeSet(null, CRLIssuingPointRecord.ATTR_CRL_CACHE, table, attrs);
+
+        byte[] serialized = attrs.getAttribute(LDAP_NAME).getByteValueArray()[0];
+        assertTrue(RevokedCertificatesMapper.isSerialized(serialized));
+
+        // existing records are still readable by the compact mapper
+        Hashtable<BigInteger, RevokedCertificate> loaded = load(serialized);
+        assertTableEquals(table, loaded);
+
+        // and are converted into the compact format when replaced
+        attrs = new LDAPAttributeSet();
+        compactMapper.mapObjectToLDAPAttributeSet(null, CRLIssuingPointRecord.ATTR_CRL_CACHE, loaded, attrs);
+
+        byte[] compact = attrs.getAttribute(LDAP_NAME).getByteValueArray()[0];
+        assertFalse(RevokedCertificatesMapper.isSerialized(compact));
+        assertTrue(compact.length < serialized.length);
+
+        assertTableEquals(table, load(compact));
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws Exception {
+
+        byte[] value = encode(createTable(1));
+        value[RevokedCertificatesMapper.MAGIC.length] = RevokedCertificatesMapper.VERSION + 1;
+
+        try {
+            RevokedCertificatesMapper.decode(
+                    new ByteArrayInputStream(value),
+                    new Hashtable<>(),
+                    new RevokedCertificatesUpdate());
+            fail("Unsupported version should be rejected");
+
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalidMagic() throws Exception {
+
+        byte[] value = encode(createTable(1));
+        value[0] = 'X';
+
+        try {
+            RevokedCertificatesMapper.decode(
+                    new ByteArrayInputStream(value),
+                    new Hashtable<>(),
+                    new RevokedCertificatesUpdate());
+            fail("Invalid format should be rejected");
+
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTruncatedInput() throws Exception {
+
+        byte[] value = encode(createTable(3));
+
+        // cut off the end marker, the middle of an entry, and the header
+        for (int length : new int[] { value.length - 1, value.length / 2, 5 }) {
+            try {
+                RevokedCertificatesMapper.decode(
+                        new ByteArrayInputStream(Arrays.copyOf(value, length)),
+                        new Hashtable<>(),
+                        new RevokedCertificatesUpdate());
+                fail("Truncated input should be rejected: " + length + " bytes");
+
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateRoundTrip() throws Exception {
+
+        RevokedCertificatesUpdate update = new RevokedCertificatesUpdate();
+        update.put(BigInteger.valueOf(4), new RevokedCertImpl(BigInteger.valueOf(4), createDate(1600000004L)));
+        update.remove(BigInteger.ONE);
+        assertTrue(update.getSequence() > 0);
+
+        Hashtable<BigInteger, RevokedCertificate> table = new Hashtable<>();
+        RevokedCertificatesUpdate decoded = new RevokedCertificatesUpdate();
+
+        long sequence = RevokedCertificatesMapper.decode(
+                new ByteArrayInputStream(encodeUpdate(update)), table, decoded);
+
+        // updates are not applied while decoding
+        assertTrue(table.isEmpty());
+
+        assertEquals(update.getSequence(), sequence);
+        assertEquals(update.getSequence(), decoded.getSequence());
+        assertEquals(2, decoded.size());
+        assertEquals(BigInteger.valueOf(4), decoded.getEntries().get(BigInteger.valueOf(4)).getSerialNumber());
+        assertTrue(decoded.getEntries().containsKey(BigInteger.ONE));
+        assertNull(decoded.getEntries().get(BigInteger.ONE));
+    }
+
+    @Test
+    public void testApplyUpdates() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> table = createTable(3);
+        byte[] full = encode(table);
+
+        long baseSequence = RevokedCertificatesMapper.decode(
+                new ByteArrayInputStream(full), new Hashtable<>(), new RevokedCertificatesUpdate());
+
+        // already included in the full table
+        RevokedCertificatesUpdate stale = new RevokedCertificatesUpdate(baseSequence);
+        stale.put(BigInteger.valueOf(9), new RevokedCertImpl(BigInteger.valueOf(9), createDate(1600000009L)));
+
+        RevokedCertificatesUpdate older = new RevokedCertificatesUpdate(baseSequence - 1);
+        older.remove(BigInteger.valueOf(3));
+
+        RevokedCertificatesUpdate first = new RevokedCertificatesUpdate(baseSequence + 1);
+        first.put(BigInteger.valueOf(4), new RevokedCertImpl(BigInteger.valueOf(4), createDate(1600000100L)));
+
+        RevokedCertificatesUpdate second = new RevokedCertificatesUpdate(baseSequence + 2);
+        second.put(BigInteger.valueOf(4), new RevokedCertImpl(BigInteger.valueOf(4), createDate(1600000200L)));
+
+        RevokedCertificatesUpdate third = new RevokedCertificatesUpdate(baseSequence + 3);
+        third.remove(BigInteger.ONE);
+
+        // values are not returned in any particular order
+        Hashtable<BigInteger, RevokedCertificate> loaded = load(
+                encodeUpdate(third),
+                encodeUpdate(second),
+                encodeUpdate(stale),
+                full,
+                encodeUpdate(first),
+                encodeUpdate(older));
+
+        assertEquals(3, loaded.size());
+        assertFalse(loaded.containsKey(BigInteger.ONE));
+        assertTrue(loaded.containsKey(BigInteger.TWO));
+        assertTrue(loaded.containsKey(BigInteger.valueOf(3)));
+        assertFalse(loaded.containsKey(BigInteger.valueOf(9)));
+        assertEquals(createDate(1600000200L), loaded.get(BigInteger.valueOf(4)).getRevocationDate());
+    }
+
+    @Test
+    public void testApplyTo() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> table = createTable(2);
+
+        RevokedCertificatesUpdate update = new RevokedCertificatesUpdate();
+        update.put(BigInteger.valueOf(3), new RevokedCertImpl(BigInteger.valueOf(3), createDate(1600000003L)));
+        update.remove(BigInteger.ONE);
+        update.remove(BigInteger.valueOf(5));
+
+        update.applyTo(table);
+
+        assertEquals(2, table.size());
+        assertFalse(table.containsKey(BigInteger.ONE));
+        assertTrue(table.containsKey(BigInteger.TWO));
+        assertTrue(table.containsKey(BigInteger.valueOf(3)));
+    }
+
+    @Test
+    public void testSequence() throws Exception {
+
+        long sequence = RevokedCertificatesUpdate.nextSequence();
+        assertTrue(RevokedCertificatesUpdate.nextSequence() > sequence);
+
+        // sequence numbers loaded from other servers are never reused
+        RevokedCertificatesUpdate.observeSequence(sequence + 1000000000L);
+        assertTrue(RevokedCertificatesUpdate.nextSequence() > sequence + 1000000000L);
+    }
+}
@@ -0,0 +1,211 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netscape.cms.jobs.Job;
+
+public class JobsSchedulerTest {
+
+    static final long TIMEOUT = 10; // seconds
+
+    JobsScheduler scheduler;
+    TestJob first;
+    TestJob second;
+
+    @Before
+    public void setUp() {
+
+        // without the threads parameter there is a single job thread,
+        // so the second job waits until the first one finishes
+        scheduler = new JobsScheduler();
+
+        first = new TestJob("first");
+        second = new TestJob("second");
+
+        scheduler.mJobs.put(first.getId(), first);
+        scheduler.mJobs.put(second.getId(), second);
+    }
+
+    @After
+    public void tearDown() {
+        first.release.countDown();
+        second.release.countDown();
+        scheduler.shutdown();
+    }
+
+    void waitUntilFinished(String id) throws Exception {
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+
+        while (scheduler.getJobStats(id).isRunning()) {
+            assertTrue("Job " + id + " did not finish", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testCancelQueuedJob() throws Exception {
+
+        scheduler.startJob(first.getId());
+        assertTrue(first.started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        scheduler.startJob(second.getId());
+
+        JobStats stats = scheduler.getJobStats(second.getId());
+        assertTrue(stats.isRunning());
+        assertFalse(stats.started);
+
+        assertTrue(scheduler.cancelJob(second.getId()));
+
+        // the pending run is removed without running the job
+        stats = scheduler.getJobStats(second.getId());
+        assertFalse(stats.isRunning());
+        assertEquals(1, stats.getCancellations());
+        assertEquals(0, stats.getRuns());
+
+        // the running job is not affected
+        assertFalse(first.isStopped());
+        assertTrue(scheduler.getJobStats(first.getId()).isRunning());
+
+        first.release.countDown();
+        waitUntilFinished(first.getId());
+
+        // the job can be started again
+        second.release.countDown();
+        scheduler.startJob(second.getId());
+        waitUntilFinished(second.getId());
+
+        assertEquals(1, second.runs.get());
+        assertEquals(1, scheduler.getJobStats(second.getId()).getRuns());
+    }
+
+    @Test
+    public void testCancelRunningJob() throws Exception {
+
+        scheduler.startJob(first.getId());
+        assertTrue(first.started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        assertTrue(scheduler.cancelJob(first.getId()));
+
+        // the running job is asked to stop
+        assertTrue(first.isStopped());
+
+        waitUntilFinished(first.getId());
+
+        JobStats stats = scheduler.getJobStats(first.getId());
+        assertEquals(1, stats.getCancellations());
+        assertEquals(1, stats.getRuns());
+        assertEquals(0, stats.getFailures());
+        assertEquals(first.getRecordsProcessed(), stats.getLastRecordsProcessed());
+
+        // the stop request does not affect the next run
+        first.release.countDown();
+        scheduler.startJob(first.getId());
+        waitUntilFinished(first.getId());
+
+        assertEquals(2, first.runs.get());
+        assertEquals(1, scheduler.getJobStats(first.getId()).getCancellations());
+    }
+
+    @Test
+    public void testCancelIdleJob() throws Exception {
+
+        scheduler.startJob(first.getId());
+        assertTrue(scheduler.cancelJob(first.getId()));
+        waitUntilFinished(first.getId());
+
+        // nothing left to cancel
+        assertFalse(scheduler.cancelJob(first.getId()));
+        assertFalse(scheduler.cancelJob(second.getId()));
+        assertFalse(scheduler.cancelJob("unknown"));
+    }
+
+    @Test
+    public void testShutdownStopsJobs() throws Exception {
+
+        scheduler.startJob(first.getId());
+        assertTrue(first.started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        scheduler.shutdown();
+
+        // the running job stopped before shutdown returned
+        assertTrue(scheduler.mExecutor.isTerminated());
+        assertFalse(scheduler.getJobStats(first.getId()).isRunning());
+        assertEquals(1, scheduler.getJobStats(first.getId()).getRuns());
+    }
+
+    @Test
+    public void testShutdownInterruptsJobs() throws Exception {
+
+        first.ignoreStop = true;
+        scheduler.mShutdownTimeout = 1;
+
+        scheduler.startJob(first.getId());
+        assertTrue(first.started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        scheduler.shutdown();
+
+        // the job did not stop within the timeout and was interrupted
+        assertTrue(first.interrupted.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(scheduler.mExecutor.awaitTermination(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Job processing records until it is stopped or released.
+     */
+    static class TestJob extends Job {
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        volatile boolean ignoreStop;
+
+        TestJob(String id) {
+            mId = id;
+        }
+
+        @Override
+        public String[] getConfigParams() {
+            return null;
+        }
+
+        @Override
+        public void init(JobsScheduler scheduler, String id, String implName, JobConfig config) {
+        }
+
+        @Override
+        public void run() {
+
+            runs.incrementAndGet();
+            started.countDown();
+
+            try {
+                while (!release.await(10, TimeUnit.MILLISECONDS)) {
+                    if (isStopped() && !ignoreStop) {
+                        return;
+                    }
+                    recordProcessed();
+                }
+
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    String export(Histogram histogram) {
+        StringBuilder sb = new StringBuilder();
+        histogram.write(sb);
+        return sb.toString();
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        Histogram histogram = new Histogram("test_duration_seconds", "Test", "");
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+
+        String output = export(histogram);
+
+        assertTrue(output.contains("test_duration_seconds_bucket{le=\"0.0005\"} 0\n"));
+        assertTrue(output.contains("test_duration_seconds_bucket{le=\"+Inf\"} 0\n"));
+        assertTrue(output.contains("test_duration_seconds_sum 0.0\n"));
+        assertTrue(output.contains("test_duration_seconds_count 0\n"));
+    }
+
+    @Test
+    public void testBuckets() throws Exception {
+
+        Histogram histogram = new Histogram("test_duration_seconds", "Test", "");
+
+        histogram.observe(MILLIS / 2);    // 0.5 ms, on the bound of the first bucket
+        histogram.observe(MILLIS / 2 + 1);
+        histogram.observe(3 * MILLIS);
+        histogram.observe(40 * TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(4, histogram.getCount());
+
+        String output = export(histogram);
+
+        // the buckets are cumulative and include their upper bound
+        assertTrue(output.contains("test_duration_seconds_bucket{le=\"0.0005\"} 1\n"));
+        assertTrue(output.contains("test_duration_seconds_bucket{le=\"0.001\"} 2\n"));
+        assertTrue(output.contains("test_duration_seconds_bucket{le=\"0.0025\"} 2\n"));
+        assertTrue(output.contains("test_duration_seconds_bucket{le=\"0.005\"} 3\n"));
+        assertTrue(output.contains("test_duration_seconds_bucket{le=\"30\"} 3\n"));
+
+        // values above the largest bound are only in the +Inf bucket
+        assertTrue(output.contains("test_duration_seconds_bucket{le=\"+Inf\"} 4\n"));
+        assertTrue(output.contains("test_duration_seconds_count 4\n"));
+    }
+
+    @Test
+    public void testSum() throws Exception {
+
+        Histogram histogram = new Histogram("test_duration_seconds", "Test", "");
+
+        histogram.observe(250 * MILLIS);
+        histogram.observe(1250 * MILLIS);
+
+        // negative durations (e.g. from clock adjustments) count as zero
+        histogram.observe(-MILLIS);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(1500 * MILLIS, histogram.getSum());
+
+        String output = export(histogram);
+
+        assertTrue(output.contains("test_duration_seconds_bucket{le=\"0.0005\"} 1\n"));
+        assertTrue(output.contains("test_duration_seconds_sum 1.5\n"));
+    }
+
+    @Test
+    public void testLabels() throws Exception {
+
+        Histogram histogram = new Histogram("test_duration_seconds", "Test", "operation=\"add\"");
+        histogram.observe(MILLIS);
+
+        String output = export(histogram);
+
+        assertTrue(output.contains("test_duration_seconds_bucket{operation=\"add\",le=\"0.001\"} 1\n"));
+        assertTrue(output.contains("test_duration_seconds_sum{operation=\"add\"} 0.001\n"));
+        assertTrue(output.contains("test_duration_seconds_count{operation=\"add\"} 1\n"));
+    }
+
+    @Test
+    public void testObserveSince() throws Exception {
+
+        Histogram histogram = new Histogram("test_duration_seconds", "Test", "");
+
+        long startTime = System.nanoTime() - 2 * MILLIS;
+        histogram.observeSince(startTime);
+
+        assertEquals(1, histogram.getCount());
+        assertTrue(histogram.getSum() >= 2 * MILLIS);
+    }
+}
@@ -0,0 +1,145 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+    MetricsRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new MetricsRegistry();
+    }
+
+    @Test
+    public void testFormatLabels() throws Exception {
+
+        assertEquals("", MetricsRegistry.formatLabels());
+        assertEquals("operation=\"add\"", MetricsRegistry.formatLabels("operation", "add"));
+        assertEquals("a=\"1\",b=\"\"", MetricsRegistry.formatLabels("a", "1", "b", null));
+
+        // special characters are escaped
+        assertEquals("path=\"a\\\\b \\\"c\\\"\\n\"", MetricsRegistry.formatLabels("path", "a\\b \"c\"\n"));
+
+        try {
+            MetricsRegistry.formatLabels("operation");
+            fail("Labels without value should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetMetric() throws Exception {
+
+        Counter counter = registry.getCounter("test_total", "Test", "operation", "add");
+
+        // the same metric is returned for the same name and labels
+        assertSame(counter, registry.getCounter("test_total", "Test", "operation", "add"));
+        assertNotSame(counter, registry.getCounter("test_total", "Test", "operation", "delete"));
+
+        try {
+            registry.getHistogram("test_total", "Test", "operation", "add");
+            fail("Metric with a different type should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGauge() throws Exception {
+
+        AtomicLong value = new AtomicLong(5);
+        Gauge gauge = registry.getGauge("test_connections", "Test", value::get, "pool", "internaldb");
+
+        assertEquals(5, gauge.get());
+        value.set(3);
+        assertEquals(3, gauge.get());
+
+        // registering the gauge again replaces the supplier
+        assertSame(gauge, registry.getGauge("test_connections", "Test", () -> 7, "pool", "internaldb"));
+        assertEquals(7, gauge.get());
+    }
+
+    @Test
+    public void testFunctionCounter() throws Exception {
+
+        AtomicLong value = new AtomicLong(5);
+        FunctionCounter counter = registry.getFunctionCounter("test_events_total", "Test", value::get, "log", "audit");
+
+        assertEquals(5, counter.get());
+        value.incrementAndGet();
+        assertEquals(6, counter.get());
+
+        assertTrue(registry.export().contains("# TYPE test_events_total counter\n"
+                + "test_events_total{log=\"audit\"} 6\n"));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+
+        Gauge gauge = registry.getGauge("test_connections", "Test", () -> 1, "pool", "internaldb");
+
+        assertTrue(registry.remove(gauge));
+        assertEquals("", registry.export());
+
+        // a removed metric is created again on next use
+        Gauge newGauge = registry.getGauge("test_connections", "Test", () -> 2, "pool", "internaldb");
+        assertNotSame(gauge, newGauge);
+
+        // removing a metric that has been replaced does not remove the new metric
+        assertFalse(registry.remove(gauge));
+        assertTrue(registry.export().contains("test_connections{pool=\"internaldb\"} 2\n"));
+    }
+
+    @Test
+    public void testExport() throws Exception {
+
+        registry.getCounter("test_requests_total", "Number of requests", "operation", "search").add(2);
+        registry.getCounter("test_requests_total", "Number of requests", "operation", "add").increment();
+        registry.getGauge("test_connections", "Number of\nconnections", () -> 4);
+        registry.getHistogram("test_duration_seconds", "Duration", "operation", "add").observe(1000000);
+
+        String expected =
+                "# HELP test_connections Number of\\nconnections\n"
+                + "# TYPE test_connections gauge\n"
+                + "test_connections 4\n"
+                + "# HELP test_duration_seconds Duration\n"
+                + "# TYPE test_duration_seconds histogram\n"
+                + "test_duration_seconds_bucket{operation=\"add\",le=\"0.0005\"} 0\n"
+                + "test_duration_seconds_bucket{operation=\"add\",le=\"0.001\"} 1\n";
+
+        String output = registry.export();
+        assertTrue(output, output.startsWith(expected));
+
+        // families are sorted by name, metrics by labels
+        assertTrue(output, output.endsWith(
+                "test_duration_seconds_bucket{operation=\"add\",le=\"+Inf\"} 1\n"
+                + "test_duration_seconds_sum{operation=\"add\"} 0.001\n"
+                + "test_duration_seconds_count{operation=\"add\"} 1\n"
+                + "# HELP test_requests_total Number of requests\n"
+                + "# TYPE test_requests_total counter\n"
+                + "test_requests_total{operation=\"add\"} 1\n"
+                + "test_requests_total{operation=\"search\"} 2\n"));
+    }
+
+    @Test
+    public void testExportEmpty() throws Exception {
+        assertEquals("", registry.export());
+    }
+}
@@ -20,6 +20,7 @@ package com.netscape.tks;
 import org.dogtagpki.server.tks.TKSConfig;
 import org.dogtagpki.server.tks.TKSEngine;
 import org.dogtagpki.server.tks.TKSEngineConfig;
+import org.dogtagpki.server.tks.servlet.SymmetricKeyCache;
 
 import com.netscape.certsrv.authority.IAuthority;
 import com.netscape.certsrv.base.EBaseException;
@@ -101,6 +102,7 @@ public class TKSAuthority implements IAuthority {
      */
     @Override
     public void shutdown() {
+        SymmetricKeyCache.clear();
         logger.info("TKSAuthority is stopped");
     }
 
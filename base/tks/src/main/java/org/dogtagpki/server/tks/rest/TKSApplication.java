@@ -12,6 +12,7 @@ import org.dogtagpki.server.rest.AuthMethodInterceptor;
 import org.dogtagpki.server.rest.GroupService;
 import org.dogtagpki.server.rest.JobService;
 import org.dogtagpki.server.rest.MessageFormatInterceptor;
+import org.dogtagpki.server.rest.MetricsService;
 import org.dogtagpki.server.rest.PKIExceptionMapper;
 import org.dogtagpki.server.rest.SelfTestService;
 import org.dogtagpki.server.rest.SessionContextInterceptor;
@@ -36,6 +37,9 @@ public class TKSApplication extends Application {
         // selftests
         classes.add(SelfTestService.class);
 
+        // metrics
+        classes.add(MetricsService.class);
+
         // user and group management
         classes.add(GroupService.class);
         classes.add(UserService.class);
@@ -15,6 +15,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.dogtagpki.server.tks.TKSEngine;
 import org.dogtagpki.server.tks.TKSEngineConfig;
 import org.dogtagpki.server.tks.TPSConnectorConfig;
+import org.dogtagpki.server.tks.servlet.SymmetricKeyCache;
 import org.mozilla.jss.NotInitializedException;
 import org.mozilla.jss.crypto.SymmetricKey;
 import org.mozilla.jss.crypto.TokenException;
@@ -302,6 +303,9 @@ public class TPSConnectorService extends PKIService implements TPSConnectorResou
 
             CryptoUtil.createSharedSecret(nickname);
 
+            // discard handles of a previous shared secret with the same name
+            SymmetricKeyCache.remove(nickname);
+
             TPSConnectorConfig tpsConfig = cs.getTPSConnectorConfig(id);
             tpsConfig.setNickname(nickname);
             cs.commit(true);
@@ -377,6 +381,10 @@ public class TPSConnectorService extends PKIService implements TPSConnectorResou
             CryptoUtil.deleteSharedSecret(nickname);
             CryptoUtil.createSharedSecret(nickname);
 
+            // discard handles of the old shared secret, including those
+            // looked up by requests that started before the replacement
+            SymmetricKeyCache.remove(nickname);
+
             //Create des3 session sym key to wrap the shared secret.
             SymmetricKey tempKey = CryptoUtil.createDes3SessionKeyOnInternal();
 
@@ -427,6 +435,7 @@ public class TPSConnectorService extends PKIService implements TPSConnectorResou
                 return createNoContentResponse();
             }
             CryptoUtil.deleteSharedSecret(nickname);
+            SymmetricKeyCache.remove(nickname);
 
             tpsConfig.setNickname("");
             cs.commit(true);
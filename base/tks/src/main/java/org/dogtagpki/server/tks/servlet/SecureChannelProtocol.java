@@ -1147,6 +1147,20 @@ public class SecureChannelProtocol {
         }
         SymmetricKey[] keys;
 
+        String tokenName;
+        try {
+            tokenName = token.getName();
+        } catch (TokenException e) {
+            throw new EBaseException(method + "Can't get the token name!");
+        }
+
+        SymmetricKey key = SymmetricKeyCache.get(tokenName, name);
+        if (key != null) {
+            return key;
+        }
+
+        long keyGeneration = SymmetricKeyCache.getGeneration();
+
         logger.debug(method + "Searching for sym key: " + name);
         try {
             keys = token.getCryptoStore().getSymmetricKeys();
@@ -1159,6 +1173,7 @@ public class SecureChannelProtocol {
             if (cur != null) {
                 if (name.equals(cur.getNickName())) {
                     logger.debug(method + "Found key: " + name);
+                    SymmetricKeyCache.put(tokenName, name, cur, keyGeneration);
                     return cur;
                 }
             }
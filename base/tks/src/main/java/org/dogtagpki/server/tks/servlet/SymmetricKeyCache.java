@@ -0,0 +1,110 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.tks.servlet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.crypto.SymmetricKey;
+
+/**
+ * Handles of the symmetric keys stored on the tokens (master keys,
+ * shared secrets, developer keys) by token name and nickname.
+ *
+ * Finding a key by nickname requires going through all symmetric
+ * keys on the token, so the handles are looked up once and reused
+ * for subsequent requests. A handle is removed when its key is
+ * replaced or deleted, or when it is no longer usable.
+ *
+ * Since the cache cannot tell whether a handle still refers to the
+ * current key, a handle looked up before a key was replaced must not
+ * be added afterwards. Callers get the generation before looking up
+ * a key and pass it to put(), which discards the handle if any key
+ * has been removed in the meantime.
+ */
+public class SymmetricKeyCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SymmetricKeyCache.class);
+
+    // token name -> nickname -> key
+    private static final Map<String, Map<String, SymmetricKey>> keys = new ConcurrentHashMap<>();
+
+    // incremented whenever keys are removed
+    private static final AtomicLong generation = new AtomicLong();
+
+    public static SymmetricKey get(String tokenName, String nickname) {
+
+        Map<String, SymmetricKey> tokenKeys = keys.get(tokenName);
+        if (tokenKeys == null) {
+            return null;
+        }
+
+        SymmetricKey key = tokenKeys.get(nickname);
+        if (key == null) {
+            return null;
+        }
+
+        if (!isValid(key)) {
+            logger.debug("SymmetricKeyCache: Removing unusable key " + nickname + " from " + tokenName);
+            tokenKeys.remove(nickname, key);
+            return null;
+        }
+
+        return key;
+    }
+
+    public static long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Adds a key handle that was looked up in the given generation.
+     */
+    public static void put(String tokenName, String nickname, SymmetricKey key, long keyGeneration) {
+
+        Map<String, SymmetricKey> tokenKeys = keys.computeIfAbsent(tokenName, name -> new ConcurrentHashMap<>());
+        tokenKeys.put(nickname, key);
+
+        // the key might have been replaced while the handle was looked up
+        if (generation.get() != keyGeneration) {
+            logger.debug("SymmetricKeyCache: Discarding outdated key " + nickname + " from " + tokenName);
+            tokenKeys.remove(nickname, key);
+        }
+    }
+
+    /**
+     * Removes a key from all tokens, e.g. after the key has been
+     * replaced or deleted.
+     */
+    public static void remove(String nickname) {
+
+        logger.debug("SymmetricKeyCache: Removing key " + nickname);
+        generation.incrementAndGet();
+
+        for (Map<String, SymmetricKey> tokenKeys : keys.values()) {
+            tokenKeys.remove(nickname);
+        }
+    }
+
+    /**
+     * Removes all keys, e.g. after a key changeover or on shutdown.
+     */
+    public static void clear() {
+        logger.debug("SymmetricKeyCache: Removing all keys");
+        generation.incrementAndGet();
+        keys.clear();
+    }
+
+    static boolean isValid(SymmetricKey key) {
+        try {
+            return key.getOwningToken().isPresent();
+        } catch (Exception e) {
+            logger.warn("SymmetricKeyCache: Unable to check key: " + e.getMessage(), e);
+            return false;
+        }
+    }
+}
@@ -612,6 +612,8 @@ public class TokenServlet extends CMSServlet {
                             session_key);
 
                     if (dekKey == null) {
+                        // the shared secret might have been replaced, look it up again next time
+                        removeSharedSecretKey();
                         throw new EBaseException(
                                 "TokenServlet.computeSessionKeySCP02: Can't unwrap DEK key onto the token!");
                     }
@@ -2983,6 +2985,21 @@ public class TokenServlet extends CMSServlet {
         super.service(req, resp);
     }
 
+    /**
+     * Removes the shared secret handle from the cache.
+     */
+    private void removeSharedSecretKey() {
+
+        TKSEngine engine = TKSEngine.getInstance();
+        TKSEngineConfig config = engine.getConfig();
+
+        try {
+            SymmetricKeyCache.remove(getSharedSecretName(config));
+        } catch (EBaseException e) {
+            logger.warn("TokenServlet: Unable to get shared secret name: " + e.getMessage(), e);
+        }
+    }
+
     private PK11SymKey getSharedSecretKey() throws EBaseException, NotInitializedException {
 
         TKSEngine engine = TKSEngine.getInstance();
@@ -3000,6 +3017,17 @@ public class TokenServlet extends CMSServlet {
 
         logger.debug("TokenServlet.getSharedSecretTransportKey: calculated key name: " + sharedSecretName);
 
+        // We know for now that shared secret is on this token
+        String tokenName = CryptoUtil.INTERNAL_TOKEN_FULL_NAME;
+
+        // reuse the shared secret handle instead of listing the keys on each request
+        SymmetricKey cachedKey = SymmetricKeyCache.get(tokenName, sharedSecretName);
+        if (cachedKey instanceof PK11SymKey) {
+            return (PK11SymKey) cachedKey;
+        }
+
+        long keyGeneration = SymmetricKeyCache.getGeneration();
+
         String symmKeys = null;
         boolean keyPresent = false;
         try {
@@ -3023,10 +3051,12 @@ public class TokenServlet extends CMSServlet {
             throw new EBaseException("TokenServlet.getSharedSecret: Can't find shared secret!");
         }
 
-        // We know for now that shared secret is on this token
-        String tokenName = CryptoUtil.INTERNAL_TOKEN_FULL_NAME;
         PK11SymKey sharedSecret = SessionKey.GetSymKeyByName(tokenName, sharedSecretName);
 
+        if (sharedSecret != null) {
+            SymmetricKeyCache.put(tokenName, sharedSecretName, sharedSecret, keyGeneration);
+        }
+
         logger.debug("TokenServlet.getSharedSecret: SymKey returns: " + sharedSecret);
 
         return sharedSecret;
@@ -66,6 +66,8 @@ public class CACertFindCLI extends CommandCLI {
         option.setArgName("size");
         options.addOption(option);
 
+        options.addOption(null, "all", false, "Retrieve all matching certificates page by page in serial number order");
+
         //file input
         option = new Option(null, "input", true, "File containing the search constraints");
         option.setArgName("file path");
@@ -225,6 +227,12 @@ public class CACertFindCLI extends CommandCLI {
         mainCLI.init();
 
         CACertClient certClient = certCLI.getCertClient();
+
+        if (cmd.hasOption("all")) {
+            findAllCerts(certClient, searchData, size);
+            return;
+        }
+
         CertDataInfos certs = certClient.findCerts(searchData, start, size);
 
         MainCLI.printMessage(certs.getTotal() + " entries found");
@@ -246,6 +254,34 @@ public class CACertFindCLI extends CommandCLI {
         MainCLI.printMessage("Number of entries returned " + certs.getEntries().size());
     }
 
+    /**
+     * Retrieves the matching certificates one page at a time using
+     * continuation tokens and prints them as they are received.
+     */
+    public void findAllCerts(CACertClient certClient, CertSearchRequest searchData, Integer size) throws Exception {
+
+        String next = ""; // first page
+        int total = 0;
+
+        while (next != null) {
+
+            CertDataInfos certs = certClient.findCerts(searchData, null, size, next);
+
+            for (CertDataInfo cert : certs.getEntries()) {
+                if (total > 0) {
+                    System.out.println();
+                }
+
+                CACertCLI.printCertInfo(cert);
+                total++;
+            }
+
+            next = certs.getNext();
+        }
+
+        MainCLI.printMessage("Number of entries returned " + total);
+    }
+
     public Long convertValidityDurationUnit(String unit) throws Exception {
 
         if (unit.equalsIgnoreCase("day")) {
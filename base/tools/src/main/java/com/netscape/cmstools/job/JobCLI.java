@@ -10,6 +10,7 @@ import java.util.Map;
 import org.dogtagpki.cli.CLI;
 import org.dogtagpki.job.JobClient;
 import org.dogtagpki.job.JobInfo;
+import org.dogtagpki.job.JobStatus;
 
 import com.netscape.certsrv.client.PKIClient;
 import com.netscape.cmstools.cli.SubsystemCLI;
@@ -27,6 +28,8 @@ public class JobCLI extends CLI {
         addModule(new JobFindCLI(this));
         addModule(new JobShowCLI(this));
         addModule(new JobStartCLI(this));
+        addModule(new JobStatusCLI(this));
+        addModule(new JobCancelCLI(this));
     }
 
     public JobClient getJobClient() throws Exception {
@@ -63,4 +66,21 @@ public class JobCLI extends CLI {
             }
         }
     }
+
+    public static void printJobStatus(JobStatus jobStatus) {
+        System.out.println("  Job ID: " + jobStatus.getID());
+        System.out.println("  Running: " + jobStatus.isRunning());
+        System.out.println("  Queued: " + jobStatus.isQueued());
+        System.out.println("  Runs: " + jobStatus.getRuns());
+        System.out.println("  Failures: " + jobStatus.getFailures());
+        System.out.println("  Cancellations: " + jobStatus.getCancellations());
+
+        if (jobStatus.getLastStartTime() != null) {
+            System.out.println("  Last Start Time: " + jobStatus.getLastStartTime());
+            System.out.println("  Last Duration: " + jobStatus.getLastDuration() + " ms");
+            System.out.println("  Last Records Processed: " + jobStatus.getLastRecordsProcessed());
+        }
+
+        System.out.println("  Total Records Processed: " + jobStatus.getTotalRecordsProcessed());
+    }
 }
@@ -28,6 +28,7 @@ import org.dogtagpki.server.rest.AuthMethodInterceptor;
 import org.dogtagpki.server.rest.GroupService;
 import org.dogtagpki.server.rest.JobService;
 import org.dogtagpki.server.rest.MessageFormatInterceptor;
+import org.dogtagpki.server.rest.MetricsService;
 import org.dogtagpki.server.rest.PKIExceptionMapper;
 import org.dogtagpki.server.rest.SelfTestService;
 import org.dogtagpki.server.rest.SessionContextInterceptor;
@@ -80,6 +81,9 @@ public class TPSApplication extends Application {
         // selftests
         classes.add(SelfTestService.class);
 
+        // metrics
+        classes.add(MetricsService.class);
+
         // tokens
         classes.add(TokenService.class);
 